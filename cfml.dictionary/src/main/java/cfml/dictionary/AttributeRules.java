@@ -0,0 +1,259 @@
+package cfml.dictionary;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The attribute rules of a tag, compiled from its parameters and their triggers into a form that can check a tag
+ * without building maps of its attributes.
+ *
+ * Every parameter gets an index. Parameters required without triggers make up a fixed bitset, and every trigger is
+ * filed under the attribute it looks at, so checking a tag is one lookup per attribute it has. Tags compile their
+ * rules once they are frozen, see {@link Tag#getAttributeRules()}.
+ *
+ * The rules follow {@link Parameter#isTriggered(java.util.HashMap)} and {@link Parameter#isRequired(java.util.HashMap)}
+ * : a parameter without triggers is required when it says so, a parameter with triggers is only available once one
+ * of them matches and only required when that trigger is. A trigger on several attributes matches when all of them
+ * do. Values are compared ignoring case, and a value holding an expression (a #) could be anything, so parameters
+ * depending on it are not checked.
+ *
+ * @see Check
+ */
+public final class AttributeRules {
+	
+	/** the rules of a tag without parameters */
+	static final AttributeRules EMPTY = new AttributeRules(Collections.<Parameter> emptySet());
+	
+	/** parameter names in lower case, by index */
+	private final String[] names;
+	/** parameter index by lower case name */
+	private final Map<String, Integer> indexes = new HashMap<String, Integer>();
+	/** parameters that are required whatever else is there */
+	private final BitSet required = new BitSet();
+	/** parameters that are only available when triggered */
+	private final BitSet conditional = new BitSet();
+	/** the triggers looking at an attribute, by lower case attribute name */
+	private final Map<String, Rule[]> rules = new HashMap<String, Rule[]>();
+	/** the number of attributes each trigger looks at, by trigger id */
+	private final int[] triggerSizes;
+	
+	/**
+	 * One attribute/value pair of a trigger.
+	 */
+	private static final class Rule {
+		final String value;
+		final int parameter;
+		final int trigger;
+		final boolean required;
+		
+		Rule(String value, int parameter, int trigger, boolean required) {
+			this.value = value;
+			this.parameter = parameter;
+			this.trigger = trigger;
+			this.required = required;
+		}
+	}
+	
+	/** the order of {@link Parameter#compareTo(Object)}, without going through the raw Comparable */
+	private static final Comparator<Parameter> BY_NAME = new Comparator<Parameter>() {
+		@Override
+		public int compare(Parameter a, Parameter b) {
+			return a.getName().compareTo(b.getName());
+		}
+	};
+	
+	AttributeRules(Set<Parameter> parameters) {
+		List<Parameter> sorted = new ArrayList<Parameter>(parameters);
+		Collections.sort(sorted, BY_NAME);
+		names = new String[sorted.size()];
+		
+		Map<String, List<Rule>> byAttribute = new HashMap<String, List<Rule>>();
+		List<Integer> sizes = new ArrayList<Integer>();
+		for (int i = 0; i < names.length; i++) {
+			Parameter param = sorted.get(i);
+			names[i] = param.getName().toLowerCase(Locale.ENGLISH);
+			indexes.put(names[i], i);
+			
+			List<?> triggers = param.getTriggerList();
+			if (triggers.isEmpty()) {
+				if (param.isRequired()) {
+					required.set(i);
+				}
+				continue;
+			}
+			conditional.set(i);
+			for (Object object : triggers) {
+				Trigger trigger = (Trigger) object;
+				if (trigger.triggerParams.isEmpty()) {
+					// an empty trigger always fires
+					conditional.clear(i);
+					if (trigger.isRequired) {
+						required.set(i);
+					}
+					continue;
+				}
+				int id = sizes.size();
+				sizes.add(trigger.triggerParams.size());
+				Iterator<?> pairs = trigger.triggerParams.entrySet().iterator();
+				while (pairs.hasNext()) {
+					Map.Entry<?, ?> pair = (Map.Entry<?, ?>) pairs.next();
+					String attribute = String.valueOf(pair.getKey()).toLowerCase(Locale.ENGLISH);
+					List<Rule> list = byAttribute.get(attribute);
+					if (list == null) {
+						list = new ArrayList<Rule>();
+						byAttribute.put(attribute, list);
+					}
+					list.add(new Rule(String.valueOf(pair.getValue()), i, id, trigger.isRequired));
+				}
+			}
+		}
+		
+		for (Map.Entry<String, List<Rule>> entry : byAttribute.entrySet()) {
+			rules.put(entry.getKey(), entry.getValue().toArray(new Rule[entry.getValue().size()]));
+		}
+		triggerSizes = new int[sizes.size()];
+		for (int i = 0; i < triggerSizes.length; i++) {
+			triggerSizes[i] = sizes.get(i);
+		}
+	}
+	
+	/**
+	 * @return the number of parameters
+	 */
+	public int size() {
+		return names.length;
+	}
+	
+	/**
+	 * @param index
+	 * @return the lower case name of the parameter at index
+	 */
+	public String getName(int index) {
+		return names[index];
+	}
+	
+	/**
+	 * @param name
+	 *            an attribute name
+	 * @return the index of the parameter with that name, or -1 if the tag does not have it
+	 */
+	public int indexOf(String name) {
+		Integer index = indexes.get(name.toLowerCase(Locale.ENGLISH));
+		return index == null ? -1 : index.intValue();
+	}
+	
+	/**
+	 * @param index
+	 * @return true if the parameter at index is required without anything triggering it
+	 */
+	public boolean isAlwaysRequired(int index) {
+		return required.get(index);
+	}
+	
+	/**
+	 * Checks the attributes of one tag against these rules. A check only holds a few bitsets, which are reused from
+	 * one tag to the next, so one check can be used for all the tags of a file. Not safe to share between threads.
+	 */
+	public static final class Check {
+		private AttributeRules rules = EMPTY;
+		private final BitSet present = new BitSet();
+		private final BitSet triggered = new BitSet();
+		private final BitSet required = new BitSet();
+		/** parameters with a trigger on an attribute that is there */
+		private final BitSet decided = new BitSet();
+		/** parameters with a trigger on an attribute whose value is an expression */
+		private final BitSet undecided = new BitSet();
+		private final BitSet result = new BitSet();
+		private int[] matches = new int[0];
+		
+		/**
+		 * Starts checking a tag.
+		 *
+		 * @param rules
+		 *            the rules of the tag
+		 */
+		public void reset(AttributeRules rules) {
+			this.rules = rules;
+			present.clear();
+			triggered.clear();
+			required.clear();
+			decided.clear();
+			undecided.clear();
+			if (matches.length < rules.triggerSizes.length) {
+				matches = new int[rules.triggerSizes.length];
+			} else {
+				Arrays.fill(matches, 0, rules.triggerSizes.length, 0);
+			}
+		}
+		
+		/**
+		 * Adds an attribute of the tag being checked.
+		 *
+		 * @param name
+		 *            the attribute name
+		 * @param value
+		 *            the attribute value, null if it has none
+		 */
+		public void attribute(String name, String value) {
+			String key = name.toLowerCase(Locale.ENGLISH);
+			Integer index = rules.indexes.get(key);
+			if (index != null) {
+				present.set(index.intValue());
+			}
+			Rule[] attributeRules = rules.rules.get(key);
+			if (attributeRules == null) {
+				return;
+			}
+			boolean dynamic = value != null && value.indexOf('#') >= 0;
+			for (Rule rule : attributeRules) {
+				if (dynamic) {
+					undecided.set(rule.parameter);
+					continue;
+				}
+				decided.set(rule.parameter);
+				if (value != null && rule.value.equalsIgnoreCase(value)
+						&& ++matches[rule.trigger] == rules.triggerSizes[rule.trigger]) {
+					triggered.set(rule.parameter);
+					if (rule.required) {
+						required.set(rule.parameter);
+					}
+				}
+			}
+		}
+		
+		/**
+		 * @return the indexes of the parameters that are required but missing. The bitset is reused by the next call
+		 */
+		public BitSet missing() {
+			result.clear();
+			result.or(rules.required);
+			result.or(required);
+			result.andNot(present);
+			result.andNot(undecided);
+			return result;
+		}
+		
+		/**
+		 * @return the indexes of the parameters that are there although the attributes they depend on say they should
+		 *         not be. The bitset is reused by the next call
+		 */
+		public BitSet notTriggered() {
+			result.clear();
+			result.or(rules.conditional);
+			result.and(present);
+			result.and(decided);
+			result.andNot(triggered);
+			result.andNot(undecided);
+			return result;
+		}
+	}
+}
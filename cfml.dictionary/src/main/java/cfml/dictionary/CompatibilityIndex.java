@@ -0,0 +1,157 @@
+package cfml.dictionary;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Which of a set of dictionary versions define each tag, tag attribute and function.
+ *
+ * Every version gets a bit, and every name maps to the bits of the versions that define it, so asking which versions
+ * do not support something is a map lookup and a mask. The index for the CF versions of the dictionary config is built
+ * once by {@link DictionaryManager#getCompatibilityIndex()}.
+ *
+ * @see DictionaryManager#getCompatibilityIndex()
+ */
+public final class CompatibilityIndex {
+	
+	/** the most versions an index can hold, one per bit of a long */
+	public static final int MAX_VERSIONS = 64;
+	
+	private final String[] keys;
+	private final String[] labels;
+	private final long allVersions;
+	private final Map<String, Long> tags = new HashMap<String, Long>();
+	/** keyed by tag name + "." + attribute name */
+	private final Map<String, Long> attributes = new HashMap<String, Long>();
+	private final Map<String, Long> functions = new HashMap<String, Long>();
+	
+	/**
+	 * @param keys
+	 *            the version keys
+	 * @param labels
+	 *            the version labels, in the same order
+	 * @param dictionaries
+	 *            the dictionaries of the versions, in the same order
+	 */
+	public CompatibilityIndex(String[] keys, String[] labels, SyntaxDictionary[] dictionaries) {
+		if (keys.length > MAX_VERSIONS) {
+			throw new IllegalArgumentException("A compatibility index can hold at most " + MAX_VERSIONS
+					+ " versions, not " + keys.length);
+		}
+		if (labels.length != keys.length || dictionaries.length != keys.length) {
+			throw new IllegalArgumentException("Every version needs a key, a label and a dictionary");
+		}
+		this.keys = keys.clone();
+		this.labels = labels.clone();
+		allVersions = keys.length == MAX_VERSIONS ? -1L : (1L << keys.length) - 1;
+		
+		for (int i = 0; i < dictionaries.length; i++) {
+			long bit = 1L << i;
+			for (Tag tag : dictionaries[i].getSyntaxelements().values()) {
+				String name = tag.getName().toLowerCase(Locale.ENGLISH);
+				add(tags, name, bit);
+				if (tag.getParameters() != null) {
+					for (Parameter param : tag.getParameters()) {
+						add(attributes, name + "." + param.getName().toLowerCase(Locale.ENGLISH), bit);
+					}
+				}
+			}
+			for (String function : dictionaries[i].getFunctions()) {
+				add(functions, function.toLowerCase(Locale.ENGLISH), bit);
+			}
+		}
+	}
+	
+	private static void add(Map<String, Long> index, String name, long bit) {
+		Long versions = index.get(name);
+		index.put(name, versions == null ? bit : versions.longValue() | bit);
+	}
+	
+	private static long get(Map<String, Long> index, String name) {
+		Long versions = index.get(name.toLowerCase(Locale.ENGLISH));
+		return versions == null ? 0L : versions.longValue();
+	}
+	
+	/**
+	 * @return the number of versions in this index
+	 */
+	public int size() {
+		return keys.length;
+	}
+	
+	/**
+	 * @param version
+	 *            the bit of the version
+	 * @return the key of the version
+	 */
+	public String getKey(int version) {
+		return keys[version];
+	}
+	
+	/**
+	 * @param version
+	 *            the bit of the version
+	 * @return the label of the version
+	 */
+	public String getLabel(int version) {
+		return labels[version];
+	}
+	
+	/**
+	 * @return the bits of all versions in this index
+	 */
+	public long getAllVersions() {
+		return allVersions;
+	}
+	
+	/**
+	 * @param name
+	 *            a tag name
+	 * @return the bits of the versions that define the tag, 0 if none does
+	 */
+	public long getTagVersions(String name) {
+		return get(tags, name);
+	}
+	
+	/**
+	 * @param tag
+	 *            a tag name
+	 * @param attribute
+	 *            an attribute name
+	 * @return the bits of the versions that define the attribute for the tag, 0 if none does
+	 */
+	public long getAttributeVersions(String tag, String attribute) {
+		return get(attributes, tag + "." + attribute);
+	}
+	
+	/**
+	 * @param name
+	 *            a function name
+	 * @return the bits of the versions that define the function, 0 if none does
+	 */
+	public long getFunctionVersions(String name) {
+		return get(functions, name);
+	}
+	
+	/**
+	 * @param versions
+	 *            version bits
+	 * @return the labels of the versions, in index order
+	 */
+	public List<String> getLabels(long versions) {
+		if (versions == 0) {
+			return Collections.emptyList();
+		}
+		List<String> result = new ArrayList<String>(Long.bitCount(versions));
+		for (int i = 0; i < labels.length; i++) {
+			if ((versions & (1L << i)) != 0) {
+				result.add(labels[i]);
+			}
+		}
+		return result;
+	}
+}
@@ -0,0 +1,231 @@
+package cfml.dictionary;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Shares dictionary entries between the versions loaded from one dictionary config.
+ * 
+ * Most of the bundled grammars are near copies of each other (some are byte for byte identical), so every tag,
+ * function, parameter and value is interned here: versions that define an entry identically get the same frozen
+ * object. The tag and function maps of a version are then stored as an overlay of the differences on top of the most
+ * similar version loaded before it, or share that version's map outright when there are no differences.
+ */
+class DictionaryEntryPool {
+	
+	private final ConcurrentMap<String, String> strings = new ConcurrentHashMap<String, String>();
+	private final ConcurrentMap<Key, Value> values = new ConcurrentHashMap<Key, Value>();
+	private final ConcurrentMap<Key, Parameter> parameters = new ConcurrentHashMap<Key, Parameter>();
+	private final ConcurrentMap<Key, Procedure> procedures = new ConcurrentHashMap<Key, Procedure>();
+	
+	/** flat maps that later versions can be overlaid on */
+	private final List<Map<String, Tag>> tagBases = new ArrayList<Map<String, Tag>>();
+	private final List<Map<String, Function>> functionBases = new ArrayList<Map<String, Function>>();
+	
+	/**
+	 * Interns the tags and functions of a freshly loaded dictionary, swaps its maps for shared ones and freezes it.
+	 * 
+	 * @param dic
+	 *            the loaded dictionary
+	 */
+	void share(SyntaxDictionary dic) {
+		Map<String, Tag> tags = new HashMap<String, Tag>();
+		for (Map.Entry<String, Tag> entry : dic.syntaxelements.entrySet()) {
+			tags.put(entry.getKey(), intern(entry.getValue()));
+		}
+		Map<String, Function> functions = new HashMap<String, Function>();
+		for (Map.Entry<String, Function> entry : dic.functions.entrySet()) {
+			functions.put(entry.getKey(), intern(entry.getValue()));
+		}
+		dic.syntaxelements = overlay(tagBases, tags);
+		dic.functions = overlay(functionBases, functions);
+		dic.freeze();
+	}
+	
+	/**
+	 * @return the number of distinct tags and functions held by the pool
+	 */
+	int procedureCount() {
+		return procedures.size();
+	}
+	
+	Tag intern(Tag tag) {
+		if (tag.isFrozen()) {
+			return tag;
+		}
+		Object paramKeys = internParameters(tag, false);
+		List<String> returnKeys = new ArrayList<String>();
+		for (Return ret : tag.getReturns()) {
+			returnKeys.add(ret.getParameterName() + ":" + ret.getType());
+		}
+		Collections.sort(returnKeys);
+		tag.name = string(tag.name);
+		tag.help = string(tag.help);
+		Key key = new Key(Tag.class, tag.name, tag.help, tag.creator, tag.single, tag.xmlstyle, tag.hybrid,
+				tag.anyAttribute, tag.endtagrequired, paramKeys, returnKeys);
+		return canonical(procedures, key, tag);
+	}
+	
+	Function intern(Function function) {
+		if (function.isFrozen()) {
+			return function;
+		}
+		Object paramKeys = internParameters(function, true);
+		function.name = string(function.name);
+		function.help = string(function.help);
+		function.returns = string(function.returns);
+		Key key = new Key(function.getClass(), function.name, function.help, function.creator, function.returns,
+				paramKeys);
+		return canonical(procedures, key, function);
+	}
+	
+	/**
+	 * Replaces the parameters of a procedure with their interned copies.
+	 * 
+	 * @return the keys of the parameters, in order for functions and as a set for tags
+	 */
+	private Object internParameters(Procedure procedure, boolean ordered) {
+		if (procedure.parameters == null) {
+			return null;
+		}
+		Set<Parameter> interned = ordered ? new LinkedHashSet<Parameter>() : new HashSet<Parameter>();
+		List<Key> keys = new ArrayList<Key>();
+		for (Parameter param : procedure.parameters) {
+			Key key = key(param);
+			interned.add(canonical(parameters, key, param));
+			keys.add(key);
+		}
+		procedure.parameters = interned;
+		return ordered ? keys : Arrays.asList(keys.size(), new HashSet<Key>(keys));
+	}
+	
+	private Key key(Parameter param) {
+		param.name = string(param.name);
+		param.type = string(param.type);
+		param.help = string(param.help);
+		param.defaultValue = string(param.defaultValue);
+		param.category = string(param.category);
+		param.returnVarType = string(param.returnVarType);
+		
+		Set<Key> valueKeys = null;
+		if (param.values != null) {
+			Set<Value> interned = new HashSet<Value>();
+			valueKeys = new HashSet<Key>();
+			for (Object item : param.values) {
+				Value value = (Value) item;
+				value.value = string(value.value);
+				value.help = string(value.help);
+				Key key = new Key(value.value, value.help);
+				interned.add(canonical(values, key, value));
+				valueKeys.add(key);
+			}
+			param.values = interned;
+		}
+		List<String> triggerKeys = new ArrayList<String>();
+		for (Object item : param.triggers) {
+			Trigger trigger = (Trigger) item;
+			triggerKeys.add(trigger.toString() + ":" + trigger.isRequired + ":" + trigger.index);
+		}
+		return new Key(param.name, param.type, param.help, param.defaultValue, param.required, param.category,
+				param.returnVarType, valueKeys, triggerKeys);
+	}
+	
+	private String string(String value) {
+		if (value == null) {
+			return null;
+		}
+		String existing = strings.putIfAbsent(value, value);
+		return existing != null ? existing : value;
+	}
+	
+	private static <T> T canonical(ConcurrentMap<Key, ? super T> pool, Key key, T entry) {
+		freeze(entry);
+		@SuppressWarnings("unchecked")
+		T existing = (T) ((ConcurrentMap<Key, Object>) pool).putIfAbsent(key, entry);
+		return existing != null ? existing : entry;
+	}
+	
+	private static void freeze(Object entry) {
+		if (entry instanceof Procedure) {
+			((Procedure) entry).freeze();
+		} else if (entry instanceof Parameter) {
+			((Parameter) entry).freeze();
+		} else if (entry instanceof Value) {
+			((Value) entry).freeze();
+		}
+	}
+	
+	/**
+	 * Picks the loaded map that shares the most entries with the passed one. If it shares more than half of them the
+	 * result is an overlay of the differences on top of it, otherwise the passed map becomes a new base.
+	 */
+	private synchronized <V> Map<String, V> overlay(List<Map<String, V>> bases, Map<String, V> entries) {
+		Map<String, V> best = null;
+		int bestShared = -1;
+		for (Map<String, V> base : bases) {
+			int shared = 0;
+			for (Map.Entry<String, V> entry : entries.entrySet()) {
+				if (base.get(entry.getKey()) == entry.getValue()) {
+					shared++;
+				}
+			}
+			if (shared > bestShared) {
+				best = base;
+				bestShared = shared;
+			}
+		}
+		if (best == null || bestShared * 2 <= entries.size()) {
+			Map<String, V> base = Collections.unmodifiableMap(entries);
+			bases.add(base);
+			return base;
+		}
+		if (bestShared == entries.size() && best.size() == entries.size()) {
+			return best;
+		}
+		Map<String, V> changed = new HashMap<String, V>();
+		for (Map.Entry<String, V> entry : entries.entrySet()) {
+			if (best.get(entry.getKey()) != entry.getValue()) {
+				changed.put(entry.getKey(), entry.getValue());
+			}
+		}
+		Set<String> removed = new HashSet<String>();
+		for (String key : best.keySet()) {
+			if (!entries.containsKey(key)) {
+				removed.add(key);
+			}
+		}
+		return new DictionaryOverlayMap<V>(best, changed, removed);
+	}
+	
+	/**
+	 * Structural identity of an entry. Parts are compared with equals, nested entries by their own keys.
+	 */
+	private static final class Key {
+		private final Object[] parts;
+		private final int hash;
+		
+		Key(Object... parts) {
+			this.parts = parts;
+			this.hash = Arrays.hashCode(parts);
+		}
+		
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof Key && ((Key) obj).hash == hash && Arrays.equals(((Key) obj).parts, parts);
+		}
+	}
+}
@@ -29,8 +29,28 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -54,12 +74,19 @@ import cfml.dictionary.syntax.SQLSyntaxDictionary;
  * 
  *         This class loads all the dictionaries and can be used to get specific dictionaries. This (hopefully) well
  *         help in abstracting the dictionaries not intended to be instantiated
+ * 
+ *         The manager is safe to use from many threads. The config file is read once per dictionary directory into an
+ *         immutable snapshot, every version is loaded at most once per snapshot and the loaded dictionaries are frozen
+ *         before they are published, so lookups never lock.
+ * 
+ *         Versions loaded from the same config share every tag and function they define identically, see
+ *         {@link DictionaryEntryPool}.
  */
 public class DictionaryManager {
 	
 	/** the coldfusion dictionaries folder */
-	public static String DICTIONARY_DIR = "";
-	public static String CF_DICTIONARY;
+	public static volatile String DICTIONARY_DIR = "";
+	public static volatile String CF_DICTIONARY;
 	/** the coldfusion dictionary */
 	public static final String CFDIC_KEY = DictionaryPreferenceConstants.CFDIC_KEY;
 	/** the javascript dictionary */
@@ -69,25 +96,23 @@ public class DictionaryManager {
 	/** the (yet to be made) html dictionary */
 	public static final String HTDIC_KEY = DictionaryPreferenceConstants.HTDIC_KEY;
 	/** all the dictionaries */
-	private static Map dictionaries = new HashMap();
-	/** the dictionary cache - for swtiching between grammars */
-	private static Map dictionariesCache = new HashMap();
+	private static final ConcurrentMap<String, SyntaxDictionary> dictionaries = new ConcurrentHashMap<String, SyntaxDictionary>();
 	
-	/** map of versions, might be a replication of the above */
-	private static Map dictionaryVersionCache = new HashMap();
+	/** map of versions loaded by {@link #getDictionaryByVersionAlt(String)} */
+	private static final ConcurrentMap<String, SyntaxDictionary> dictionaryVersionCache = new ConcurrentHashMap<String, SyntaxDictionary>();
+	
+	/** the dictionary config file and the version cache that goes with it */
+	private static volatile DictionaryConfig dictionaryConfig = null;
+	private static volatile DictionaryPreferences fPrefs;
+	private static volatile String fBuiltInDictionaryPath;
+	
+	private static volatile boolean initialized;
 	
-	/** the dictionary config file in DOM form */
-	private static Document dictionaryConfig = null;
-	private static DictionaryPreferences fPrefs;
-	private static String fBuiltInDictionaryPath;
-
-	private static boolean initialized;
-
 	private DictionaryManager(DictionaryPreferences prefs) {
 		fPrefs = prefs;
 		init();
 	}
-
+	
 	static private void init() {
 		try {
 			fBuiltInDictionaryPath = "jar:"
@@ -101,11 +126,11 @@ public class DictionaryManager {
 		DICTIONARY_DIR = fPrefs.getDictionaryDir();
 		CF_DICTIONARY = fPrefs.getCFDictionary();
 	}
-
+	
 	/**
 	 * Loads the dictionary config file. The config file lists all the dictionary files that are available to the system
 	 */
-	private static void loadDictionaryConfig() {
+	private static synchronized void loadDictionaryConfig() {
 		try {
 			if (fPrefs == null) {
 				fPrefs = new DictionaryPreferences();
@@ -116,26 +141,40 @@ public class DictionaryManager {
 			factory.setIgnoringElementContentWhitespace(true);
 			factory.setCoalescing(true);
 			DocumentBuilder builder = factory.newDocumentBuilder();
-			if (fPrefs.getDictionaryDir().length() != 0) {
-				dictionaryConfig = builder.parse(new File(fPrefs.getDictionaryDir() + "/dictionaryconfig.xml"));
+			Document document;
+			String dictionaryDir = fPrefs.getDictionaryDir();
+			if (dictionaryDir.length() != 0) {
+				document = builder.parse(new File(dictionaryDir + "/dictionaryconfig.xml"));
 			} else {
-				// System.out.println("u->" + fBuiltInDictionaryPath + "dictionaryconfig.xml");
-				// URL dc = new URL(fBuiltInDictionaryPath + "dictionaryconfig.xml");
-				// System.out.println("url->" + dc);
-				// dictionaryConfig = builder.parse(dc.openStream());
-				dictionaryConfig = builder.parse(DictionaryManager.class
+				document = builder.parse(DictionaryManager.class
 						.getResourceAsStream("/org.cfeclipse.cfml/dictionary/dictionaryconfig.xml"));
 			}
-			// URL configurl = DictionaryManager.class.getResource("/dictionary/dictionaryconfig.xml");
-			// URL configurl = new URL(dictionaryConfigURL + "/dictionaryconfig.xml");
-			// System.err.println(configurl.getPath());
-			// System.err.println(configurl.getFile().toString());
-			// dictionaryConfig = builder.parse(configurl.getFile());
+			dictionaryConfig = new DictionaryConfig(dictionaryDir, fBuiltInDictionaryPath, document);
 		} catch (Exception e) {
 			e.printStackTrace(System.err);
 		}
 	}
-
+	
+	/**
+	 * Gets the config for the current dictionary directory, reading it if it has not been read yet.
+	 * 
+	 * @return the config snapshot
+	 */
+	private static DictionaryConfig getConfig() {
+		DictionaryConfig config = dictionaryConfig;
+		if (config == null) {
+			synchronized (DictionaryManager.class) {
+				if (dictionaryConfig == null) {
+					loadDictionaryConfig();
+				}
+				config = dictionaryConfig;
+			}
+			if (config == null)
+				throw new IllegalArgumentException("Problem loading dictionaryconfig.xml");
+		}
+		return config;
+	}
+	
 	/**
 	 * Tell the dictionaries to load based on the config file
 	 */
@@ -143,44 +182,53 @@ public class DictionaryManager {
 		if (initialized) {
 			return;
 		}
-		// long time = System.currentTimeMillis();
-		// System.out.println("Dictionaries initialized start");
-		
-		// get the dictionary config file into a DOM
-		loadDictionaryConfig();
-		String cfdictversion = getInitialDictVersion();
-		if (dictionaryConfig == null)
-			throw new IllegalArgumentException("Problem loading dictionaryconfig.xml");
-		
-		// load the default dictionaries into the cache
-		// this is kind of weak but it'll do pig... it'll do...
-		if (cfdictversion.trim().length() == 0) {
-			cfdictversion = getFirstVersion(CFDIC_KEY);
+		synchronized (DictionaryManager.class) {
+			if (initialized) {
+				return;
+			}
+			// get the dictionary config file
+			getConfig();
+			String cfdictversion = getInitialDictVersion();
+			
+			// load the default dictionaries into the cache
+			// this is kind of weak but it'll do pig... it'll do...
+			if (cfdictversion == null || cfdictversion.trim().length() == 0) {
+				cfdictversion = getFirstVersion(CFDIC_KEY);
+			}
+			String htdictversion = getFirstVersion(HTDIC_KEY);
+			String jsdictversion = getFirstVersion(JSDIC_KEY);
+			
+			// start loading the dictionaries into the cache, they are independent so they load side by side
+			DictionaryConfig config = getConfig();
+			load(config, cfdictversion);
+			load(config, htdictversion);
+			load(config, jsdictversion);
+			
+			// wait for them, and make sure they are there
+			loadDictionaryByVersion(cfdictversion);
+			loadDictionaryByVersion(htdictversion);
+			loadDictionaryByVersion(jsdictversion);
+			
+			// load from the cache to the live
+			loadDictionaryFromCache(cfdictversion, CFDIC_KEY);
+			loadDictionaryFromCache(cfdictversion, SQLDIC_KEY);
+			loadDictionaryFromCache(htdictversion, HTDIC_KEY);
+			loadDictionaryFromCache(jsdictversion, JSDIC_KEY);
+			
+			initialized = true;
 		}
-		String htdictversion = getFirstVersion(HTDIC_KEY);
-		String jsdictversion = getFirstVersion(JSDIC_KEY);
-		
-		// load the dictionary into the cache
-		loadDictionaryByVersion(cfdictversion);
-		loadDictionaryByVersion(htdictversion);
-		loadDictionaryByVersion(jsdictversion);
-		
-		// load from the cache to the live
-		loadDictionaryFromCache(cfdictversion, CFDIC_KEY);
-		loadDictionaryFromCache(cfdictversion, SQLDIC_KEY);
-		loadDictionaryFromCache(htdictversion, HTDIC_KEY);
-		loadDictionaryFromCache(jsdictversion, JSDIC_KEY);
-		
-		// System.out.println("Dictionaries initialized in " +
-		// (System.currentTimeMillis() - time) + " ms");
-
-		initialized = true;
 	}
 	
 	/**
-	 * Tell the dictionaries to load based on the config file
+	 * Tell the dictionaries to load based on the config file. If the preferences point at a different dictionary
+	 * directory than the one currently in use, the config is re-read and the live dictionaries are reloaded from it.
 	 */
-	public static void initDictionaries(DictionaryPreferences prefs) {
+	public static synchronized void initDictionaries(DictionaryPreferences prefs) {
+		DictionaryConfig config = dictionaryConfig;
+		if (config != null && !config.dictionaryDir.equals(prefs.getDictionaryDir())) {
+			dictionaryConfig = null;
+			initialized = false;
+		}
 		fPrefs = prefs;
 		init();
 		initDictionaries();
@@ -194,38 +242,34 @@ public class DictionaryManager {
 	
 	/**
 	 * Gets the first version set in the dictionaryconfig file for the given dictionary. This is useful when hitting an
-	 * error and wanting to get a fall back dictionary. This might error if there are no versions defined for the given
-	 * dictionary (or if the document is not valid)
+	 * error and wanting to get a fall back dictionary.
 	 * 
 	 * @param forDictionary
-	 * @return
+	 * @return the version key, or null if there are no versions defined for the given dictionary
 	 */
 	public static String getFirstVersion(String forDictionary) {
-		return dictionaryConfig.getElementById(forDictionary).getFirstChild().getAttributes().getNamedItem("key")
-				.getNodeValue();
+		List<String[]> versions = getConfig().versions.get(forDictionary);
+		if (versions == null || versions.isEmpty()) {
+			return null;
+		}
+		return versions.get(0)[1];
 	}
 	
 	/**
 	 * This gets a string array of supported types. This is mostly used in the radio display on the project settings. It
 	 * builds a string array from the key and label attributes in the dictionary config file
 	 * 
-	 * @return {key, label} array
+	 * @return {label, key} array
 	 */
 	public static String[][] getConfiguredDictionaries() {
-		NodeList cfmltypes = dictionaryConfig.getElementById(CFDIC_KEY).getChildNodes();
-		
-		byte typeslen = (byte) cfmltypes.getLength();
-		
-		String[][] options = new String[typeslen][2];
-		
-		for (byte z = 0; z < typeslen; z++) {
-			String key = cfmltypes.item(z).getAttributes().getNamedItem("key").getNodeValue();
-			String label = cfmltypes.item(z).getAttributes().getNamedItem("label").getNodeValue();
-			
-			options[z][0] = label;
-			options[z][1] = key;
+		List<String[]> versions = getConfig().versions.get(CFDIC_KEY);
+		if (versions == null) {
+			return new String[0][2];
+		}
+		String[][] options = new String[versions.size()][];
+		for (int z = 0; z < options.length; z++) {
+			options[z] = versions.get(z).clone();
 		}
-		
 		return options;
 	}
 	
@@ -252,8 +296,6 @@ public class DictionaryManager {
 			throw new IllegalArgumentException("Problem loading version node " + versionkey
 					+ " from dictionaryconfig.xml");
 		}
-		// add finally add them to the cache
-		addDictionaryToCache(versionkey, dic);
 	}
 	
 	/**
@@ -263,55 +305,182 @@ public class DictionaryManager {
 	 * @return
 	 */
 	public static SyntaxDictionary getDictionaryByVersionAlt(String versionkey) {
+		SyntaxDictionary cached = dictionaryVersionCache.get(versionkey);
+		if (cached != null) {
+			return cached;
+		}
+		SAXBuilder builder = new SAXBuilder();
+		URL dictionaryConfigURL = null;
 		
-		if (dictionaryVersionCache.containsKey(versionkey)) {
-			return (SyntaxDictionary) dictionaryVersionCache.get(versionkey);
-		} else {
-			SAXBuilder builder = new SAXBuilder();
-			SyntaxDictionary dic = new SQLSyntaxDictionary();
-			URL dictionaryConfigURL = null;
+		try {
+			dictionaryConfigURL = new URL(DICTIONARY_DIR);
+			URL configurl = new URL(dictionaryConfigURL, "dictionaryconfig.xml");
+			org.jdom2.Document document = builder.build(configurl);
 			
-			try {
-				dictionaryConfigURL = new URL(DICTIONARY_DIR);
-				URL configurl = new URL(dictionaryConfigURL, "dictionaryconfig.xml");
-				org.jdom2.Document document = builder.build(configurl);
-				
-				XPath x = XPath.newInstance("//dictionary[@id='CF_DICTIONARY']/version[@key=\'" + versionkey
-						+ "\']/grammar[1]");
-				
-				Element grammerElement = (Element) x.selectSingleNode(document);
-				dic = new SQLSyntaxDictionary();
-				dic.loadDictionary(getDictionaryLocation(grammerElement.getAttributeValue("location")));
-				dictionaryVersionCache.put(versionkey, dic);
-			} catch (MalformedURLException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
-			} catch (JDOMException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
-			} catch (IOException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
-			}
+			XPath x = XPath.newInstance("//dictionary[@id='CF_DICTIONARY']/version[@key=\'" + versionkey
+					+ "\']/grammar[1]");
 			
+			Element grammerElement = (Element) x.selectSingleNode(document);
+			SyntaxDictionary dic = new SQLSyntaxDictionary();
+			dic.loadDictionary(getDictionaryLocation(getConfig(), grammerElement.getAttributeValue("location")));
+			dic.freeze();
+			dictionaryVersionCache.putIfAbsent(versionkey, dic);
+		} catch (MalformedURLException e) {
+			// TODO Auto-generated catch block
+			e.printStackTrace();
+		} catch (JDOMException e) {
+			// TODO Auto-generated catch block
+			e.printStackTrace();
+		} catch (IOException e) {
+			// TODO Auto-generated catch block
+			e.printStackTrace();
 		}
-		return (SyntaxDictionary) dictionaryVersionCache.get(versionkey);
+		return dictionaryVersionCache.get(versionkey);
 	}
 	
+	/**
+	 * Gets the dictionary for a version key, loading it the first time it is asked for. Concurrent callers asking for
+	 * the same version wait for the one load rather than starting their own. The returned dictionary is shared and
+	 * frozen.
+	 * 
+	 * The grammar files of a version are parsed in parallel on a small pool of loader threads and merged in the order
+	 * the config file lists them, so a file like user.xml still overrides the files listed before it.
+	 * 
+	 * @param versionkey
+	 *            the version key from the dictionary config file
+	 * @return the dictionary, or null if the config file does not define the version
+	 */
 	public static SyntaxDictionary getDictionaryByVersion(String versionkey) {
-		if (dictionaryConfig == null)
-			throw new IllegalArgumentException("Problem loading dictionaryconfig.xml");
+		CompletableFuture<SyntaxDictionary> load = load(getConfig(), versionkey);
+		if (load == null) {
+			return null;
+		}
 		
-		// grab the cfml dictionary
-		// Node n = dictionaryConfig.getElementById(CFDIC).getFirstChild();
-		Node versionNode = dictionaryConfig.getElementById(versionkey);
-		if (versionNode == null) {
+		try {
+			return load.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IllegalArgumentException("Problem loading version node " + versionkey
+					+ " from dictionaryconfig.xml", e.getCause());
+		} catch (CancellationException e) {
+			throw new IllegalArgumentException("Problem loading version node " + versionkey
+					+ " from dictionaryconfig.xml", e);
+		}
+	}
+	
+	/**
+	 * Gets the index of which CF versions in the config file define each tag, tag attribute and function. Building it
+	 * loads every CF version, side by side, so the first call takes a while; after that it is shared.
+	 * 
+	 * @return the compatibility index of the CF versions, in config file order
+	 */
+	public static CompatibilityIndex getCompatibilityIndex() {
+		DictionaryConfig config = getConfig();
+		CompatibilityIndex index = config.compatibility;
+		if (index != null) {
+			return index;
+		}
+		synchronized (config) {
+			if (config.compatibility == null) {
+				List<String[]> versions = config.versions.get(CFDIC_KEY);
+				if (versions == null) {
+					versions = Collections.emptyList();
+				}
+				String[] keys = new String[versions.size()];
+				String[] labels = new String[versions.size()];
+				SyntaxDictionary[] dictionaries = new SyntaxDictionary[versions.size()];
+				for (int i = 0; i < keys.length; i++) {
+					labels[i] = versions.get(i)[0];
+					keys[i] = versions.get(i)[1];
+					load(config, keys[i]);
+				}
+				for (int i = 0; i < keys.length; i++) {
+					try {
+						dictionaries[i] = load(config, keys[i]).join();
+					} catch (CompletionException e) {
+						throw new IllegalArgumentException("Problem loading version node " + keys[i]
+								+ " from dictionaryconfig.xml", e.getCause());
+					}
+				}
+				config.compatibility = new CompatibilityIndex(keys, labels, dictionaries);
+			}
+			return config.compatibility;
+		}
+	}
+	
+	/**
+	 * Starts loading a version unless it is loaded or loading already.
+	 * 
+	 * @param config
+	 * @param versionkey
+	 * @return the load of the version, or null if the config file does not define the version
+	 */
+	private static CompletableFuture<SyntaxDictionary> load(final DictionaryConfig config, final String versionkey) {
+		if (versionkey == null || !config.dictionaryTypes.containsKey(versionkey)) {
 			return null;
-			//
+		}
+		// the loads of the config may be replaced meanwhile, see setDictionariesCache
+		final ConcurrentMap<String, CompletableFuture<SyntaxDictionary>> loads = config.loads;
+		CompletableFuture<SyntaxDictionary> load = loads.get(versionkey);
+		if (load != null) {
+			return load;
+		}
+		final CompletableFuture<SyntaxDictionary> newLoad = new CompletableFuture<SyntaxDictionary>();
+		load = loads.putIfAbsent(versionkey, newLoad);
+		if (load != null) {
+			return load;
+		}
+		
+		// parse every grammar file on its own
+		List<String> grammars = config.grammars.get(versionkey);
+		final List<CompletableFuture<SyntaxDictionary>> parts = new ArrayList<CompletableFuture<SyntaxDictionary>>();
+		for (final String filename : grammars) {
+			parts.add(CompletableFuture.supplyAsync(new Supplier<SyntaxDictionary>() {
+				public SyntaxDictionary get() {
+					SyntaxDictionary part = new SyntaxDictionary() {
+					};
+					part.loadDictionary(getDictionaryLocation(config, filename));
+					return part;
+				}
+			}, LoaderPool.EXECUTOR));
 		}
 		
+		// then merge them in config order once they are all there. None of this blocks a loader thread, so loads
+		// started from the loader threads themselves can not starve the pool
+		CompletableFuture.allOf(parts.toArray(new CompletableFuture[parts.size()])).whenComplete(
+				new BiConsumer<Void, Throwable>() {
+					public void accept(Void ignored, Throwable failure) {
+						try {
+							if (failure != null) {
+								throw failure instanceof CompletionException ? failure.getCause() : failure;
+							}
+							newLoad.complete(loadVersion(config, versionkey, parts));
+						} catch (Throwable e) {
+							// let the next caller try again
+							loads.remove(versionkey, newLoad);
+							newLoad.completeExceptionally(e);
+						}
+					}
+				});
+		return newLoad;
+	}
+	
+	/**
+	 * Makes the dictionary for a version based on the type of dictionary it belongs to and merges the grammar files
+	 * into it.
+	 * 
+	 * @param config
+	 * @param versionkey
+	 * @param parts
+	 *            the parsed grammar files of the version, in config file order
+	 * @return the loaded, frozen dictionary
+	 */
+	private static SyntaxDictionary loadVersion(DictionaryConfig config, String versionkey,
+			List<CompletableFuture<SyntaxDictionary>> parts) {
 		// get the dictype from the parent node
-		String dicttype = versionNode.getParentNode().getAttributes().getNamedItem("id").getNodeValue();
+		String dicttype = config.dictionaryTypes.get(versionkey);
 		
 		// now, make and load the dictionary based on the type
 		SyntaxDictionary dic = null;
@@ -320,10 +489,10 @@ public class DictionaryManager {
 			// load the sql keywords into the cache
 			dic = new SQLSyntaxDictionary();
 			// TODO: make this not a hack
-			String sqlwords = dictionaryConfig.getElementById(SQLDIC_KEY).getFirstChild().getFirstChild()
-					.getAttributes().getNamedItem("location").getNodeValue();
+			List<String[]> sqlVersions = config.versions.get(SQLDIC_KEY);
+			String sqlwords = config.grammars.get(sqlVersions.get(0)[1]).get(0);
 			try {
-				((SQLSyntaxDictionary) dic).loadKeywords(new URL(getDictionaryLocation(sqlwords)));
+				((SQLSyntaxDictionary) dic).loadKeywords(new URL(getDictionaryLocation(config, sqlwords)));
 			} catch (MalformedURLException e) {
 				throw new IllegalArgumentException("Problem loading version node " + sqlwords
 						+ " from dictionaryconfig.xml");
@@ -332,31 +501,31 @@ public class DictionaryManager {
 			dic = new JSSyntaxDictionary();
 		} else if (dicttype.equals(HTDIC_KEY)) {
 			dic = new HTMLSyntaxDictionary();
+		} else {
+			throw new IllegalArgumentException("Problem loading version node " + versionkey
+					+ " from dictionaryconfig.xml");
 		}
 		
-		// get a list of all the grammars to load
-		NodeList grammars = versionNode.getChildNodes();
-		byte nlen = (byte) grammars.getLength();
-		
-		// loop over the grammars and add them to the dictionaries
-		Node n = null;
-		for (byte z = 0; z < nlen; z++) {
-			n = grammars.item(z);
-			String filename = n.getAttributes().getNamedItem("location").getNodeValue().trim();
-			dic.loadDictionary(getDictionaryLocation(filename));
+		// loop over the grammars and add them to the dictionaries, later files win
+		for (CompletableFuture<SyntaxDictionary> part : parts) {
+			dic.merge(part.join());
 		}
+		// share the entries this version has in common with the ones already loaded
+		config.entries.share(dic);
 		return dic;
 	}
 	
-	private static String getDictionaryLocation(String path) {
-		if (fPrefs.getDictionaryDir().length() == 0) {
-			path = DictionaryManager.class.getResource("/org.cfeclipse.cfml/dictionary/" + path).toString();
-			if (path == null) {
-				path = fBuiltInDictionaryPath + path;
+	private static String getDictionaryLocation(DictionaryConfig config, String path) {
+		if (config.dictionaryDir.length() == 0) {
+			URL resource = DictionaryManager.class.getResource("/org.cfeclipse.cfml/dictionary/" + path);
+			if (resource != null) {
+				path = resource.toString();
+			} else {
+				path = config.builtInDictionaryPath + path;
 			}
 		} else {
 			if (path.startsWith("http")) {
-				File dictFile = new File(fPrefs.getDictionaryDir() + path);
+				File dictFile = new File(config.dictionaryDir + path);
 				if (!dictFile.exists()) {
 					try {
 						URL url = new URL(path);
@@ -371,7 +540,7 @@ public class DictionaryManager {
 				}
 				// download the file to dictDir
 			} else {
-				File dictDir = new File(fPrefs.getDictionaryDir());
+				File dictDir = new File(config.dictionaryDir);
 				path = "file:" + dictDir.getAbsolutePath() + "/" + path;
 			}
 		}
@@ -379,55 +548,23 @@ public class DictionaryManager {
 	}
 	
 	/**
-	 * Takes a Syntax dictionary from the cache and puts it into the live dictionary
+	 * Takes a Syntax dictionary from the cache and puts it into the live dictionary. The dictionary is loaded into the
+	 * cache first if it is not there yet.
 	 * 
 	 * @param cachekey
 	 * @param livekey
 	 */
 	public static synchronized void loadDictionaryFromCache(String cachekey, String livekey) {
-		
-		loadDictionaryFromCache(cachekey, livekey, false);
-	}
-	
-	/**
-	 * Takes a Syntax dictionary from the cache and puts it into the live dictionary. Doesn't try to load dictionary if
-	 * retry is true.
-	 * 
-	 * @param cachekey
-	 * @param livekey
-	 * @param retry
-	 *            - Indicates if we have already tried to load the dictionary into the cache.
-	 */
-	private static synchronized void loadDictionaryFromCache(String cachekey, String livekey, boolean retry) {
-		
-		if (dictionariesCache.containsKey(cachekey) && dictionaries.containsKey(livekey)) {
-			// Object tdic = dictionaries.get(livekey);
-			Object tdic = dictionariesCache.get(cachekey);
-			
-			dictionaries.put(livekey, tdic);
-		} else if (dictionariesCache.containsKey(cachekey)) {
-			dictionaries.put(livekey, dictionariesCache.get(cachekey));
-		} else if (!dictionariesCache.containsKey(cachekey) && cachekey != null && cachekey.length() > 0) {
-			if (retry) {
-				// We've already tried to load the dictionary, so something must
-				// be broken.
-				System.out
-						.println("Error! Dictionary "
-								+ cachekey
-								+ " could not be loaded.\n This may cause CFEclipse to work unpredictably or, in some cases, not at all.\n\nTry closing Eclipse and starting it from the command line with -clean as a command line argument.");
-				throw new IllegalArgumentException("Problem loading version node " + cachekey
-						+ " from dictionaryconfig.xml");
-			}
-			// the dictionary is not in the cache, lets try to load it...
-			loadDictionaryByVersion(cachekey);
-			// try again..
-			loadDictionaryFromCache(cachekey, livekey, true);
-		} else if (cachekey != null || cachekey.length() > 0) {
+		if (cachekey == null || cachekey.length() == 0) {
 			return;
-		} else {
-			throw new IllegalArgumentException("Cache key: " + cachekey + " is not in the cache"
-					+ dictionariesCache.keySet().toString());
 		}
+		SyntaxDictionary dic = getDictionaryByVersion(cachekey);
+		if (dic == null) {
+			System.out.println("Error! Dictionary " + cachekey + " could not be loaded.");
+			throw new IllegalArgumentException("Problem loading version node " + cachekey
+					+ " from dictionaryconfig.xml");
+		}
+		dictionaries.put(livekey, dic);
 	}
 	
 	/**
@@ -437,7 +574,7 @@ public class DictionaryManager {
 	 * @param sd
 	 */
 	public static void addDictionaryToCache(String key, SyntaxDictionary sd) {
-		dictionariesCache.put(key, sd);
+		getConfig().loads.put(key, CompletableFuture.completedFuture(sd));
 	}
 	
 	/**
@@ -460,24 +597,224 @@ public class DictionaryManager {
 	 * @return the dictionary
 	 */
 	public static SyntaxDictionary getDictionary(String key) {
-		// System.out.println("Getting dictionary " + key);
-		SyntaxDictionary dict = (SyntaxDictionary) dictionaries.get(key);
-		// System.out.println("GOT: " + dict);
-		return dict;
+		return dictionaries.get(key);
 	}
 	
 	/**
 	 * @return Returns the live dictionaries.
 	 */
-	public static Map getDictionaries() {
+	public static Map<String, SyntaxDictionary> getDictionaries() {
 		return DictionaryManager.dictionaries;
 	}
 	
-	public static Map getDictionariesCache() {
-		return dictionariesCache;
+	/**
+	 * @return the versions that have finished loading, by version key. The map is live: it shows the versions as they
+	 *         finish, and what is put in or removed from it goes to the cache, as with
+	 *         {@link #addDictionaryToCache(String, SyntaxDictionary)}.
+	 */
+	public static Map<String, SyntaxDictionary> getDictionariesCache() {
+		return DictionariesCache.INSTANCE;
+	}
+	
+	/**
+	 * Replaces the version cache with the passed dictionaries, in one go: the loads still running finish for whoever
+	 * waits on them, but do not go into the new cache.
+	 * 
+	 * @param dictionariesCache
+	 *            version key to SyntaxDictionary
+	 */
+	public static void setDictionariesCache(Map<String, SyntaxDictionary> dictionariesCache) {
+		ConcurrentMap<String, CompletableFuture<SyntaxDictionary>> loads;
+		loads = new ConcurrentHashMap<String, CompletableFuture<SyntaxDictionary>>();
+		for (Map.Entry<String, SyntaxDictionary> entry : dictionariesCache.entrySet()) {
+			loads.put(entry.getKey(), CompletableFuture.completedFuture(entry.getValue()));
+		}
+		getConfig().loads = loads;
 	}
 	
-	public static void setDictionariesCache(Map dictionariesCache) {
-		DictionaryManager.dictionariesCache = dictionariesCache;
+	/**
+	 * @return the dictionary of a finished load, or null if there is no load or it is running or failed
+	 */
+	private static SyntaxDictionary loaded(CompletableFuture<SyntaxDictionary> load) {
+		if (load == null || !load.isDone() || load.isCompletedExceptionally()) {
+			return null;
+		}
+		return load.getNow(null);
+	}
+	
+	/**
+	 * The versions of the current config that have finished loading, as a map that writes through to the loads.
+	 */
+	private static final class DictionariesCache extends AbstractMap<String, SyntaxDictionary> {
+		static final DictionariesCache INSTANCE = new DictionariesCache();
+		
+		@Override
+		public SyntaxDictionary get(Object key) {
+			return loaded(getConfig().loads.get(key));
+		}
+		
+		@Override
+		public boolean containsKey(Object key) {
+			return get(key) != null;
+		}
+		
+		@Override
+		public SyntaxDictionary put(String key, SyntaxDictionary value) {
+			return loaded(getConfig().loads.put(key, CompletableFuture.completedFuture(value)));
+		}
+		
+		@Override
+		public SyntaxDictionary remove(Object key) {
+			return loaded(getConfig().loads.remove(key));
+		}
+		
+		@Override
+		public void clear() {
+			getConfig().loads.clear();
+		}
+		
+		@Override
+		public Set<Map.Entry<String, SyntaxDictionary>> entrySet() {
+			return new AbstractSet<Map.Entry<String, SyntaxDictionary>>() {
+				@Override
+				public Iterator<Map.Entry<String, SyntaxDictionary>> iterator() {
+					final ConcurrentMap<String, CompletableFuture<SyntaxDictionary>> loads = getConfig().loads;
+					final Iterator<Map.Entry<String, CompletableFuture<SyntaxDictionary>>> entries = loads.entrySet()
+							.iterator();
+					return new Iterator<Map.Entry<String, SyntaxDictionary>>() {
+						private Map.Entry<String, SyntaxDictionary> next;
+						private Map.Entry<String, SyntaxDictionary> last;
+						
+						public boolean hasNext() {
+							while (next == null && entries.hasNext()) {
+								Map.Entry<String, CompletableFuture<SyntaxDictionary>> entry = entries.next();
+								SyntaxDictionary dic = loaded(entry.getValue());
+								if (dic != null) {
+									next = new SimpleEntry<String, SyntaxDictionary>(entry.getKey(), dic) {
+										private static final long serialVersionUID = 1L;
+										
+										@Override
+										public SyntaxDictionary setValue(SyntaxDictionary value) {
+											put(getKey(), value);
+											return super.setValue(value);
+										}
+									};
+								}
+							}
+							return next != null;
+						}
+						
+						public Map.Entry<String, SyntaxDictionary> next() {
+							if (!hasNext()) {
+								throw new NoSuchElementException();
+							}
+							last = next;
+							next = null;
+							return last;
+						}
+						
+						public void remove() {
+							if (last == null) {
+								throw new IllegalStateException();
+							}
+							loads.remove(last.getKey());
+							last = null;
+						}
+					};
+				}
+				
+				@Override
+				public int size() {
+					int size = 0;
+					for (CompletableFuture<SyntaxDictionary> load : getConfig().loads.values()) {
+						if (loaded(load) != null) {
+							size++;
+						}
+					}
+					return size;
+				}
+			};
+		}
+	}
+	
+	/**
+	 * The threads grammar files are parsed on. Bounded, the work is mostly XML parsing, and daemon threads so that a
+	 * loaded dictionary never keeps a VM alive.
+	 */
+	private static final class LoaderPool {
+		static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(
+				Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors())), new ThreadFactory() {
+					private final AtomicInteger count = new AtomicInteger();
+					
+					public Thread newThread(Runnable runnable) {
+						Thread thread = new Thread(runnable, "cfml-dictionary-loader-" + count.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+	}
+	
+	/**
+	 * Immutable view of a dictionaryconfig.xml, along with the versions loaded from it. A DOM is not safe to read from
+	 * several threads, so everything needed is copied out of it up front.
+	 */
+	private static final class DictionaryConfig {
+		/** the directory the config was read from ("" for the built in dictionaries) */
+		final String dictionaryDir;
+		final String builtInDictionaryPath;
+		/** dictionary id to its {label, key} versions, in file order */
+		final Map<String, List<String[]>> versions;
+		/** version key to the id of the dictionary it belongs to */
+		final Map<String, String> dictionaryTypes;
+		/** version key to its grammar locations, in file order */
+		final Map<String, List<String>> grammars;
+		/** tags, functions and parameters shared between the versions loaded from this config */
+		final DictionaryEntryPool entries = new DictionaryEntryPool();
+		/** built the first time it is asked for, see {@link DictionaryManager#getCompatibilityIndex()} */
+		volatile CompatibilityIndex compatibility;
+		/** version key to the (possibly running) load of that version, replaced as a whole by setDictionariesCache */
+		volatile ConcurrentMap<String, CompletableFuture<SyntaxDictionary>> loads = new ConcurrentHashMap<String, CompletableFuture<SyntaxDictionary>>();
+		
+		DictionaryConfig(String dictionaryDir, String builtInDictionaryPath, Document document) {
+			this.dictionaryDir = dictionaryDir;
+			this.builtInDictionaryPath = builtInDictionaryPath;
+			Map<String, List<String[]>> versions = new LinkedHashMap<String, List<String[]>>();
+			Map<String, String> dictionaryTypes = new HashMap<String, String>();
+			Map<String, List<String>> grammars = new HashMap<String, List<String>>();
+			
+			for (Node dictionary : elements(document.getDocumentElement().getChildNodes())) {
+				String id = attribute(dictionary, "id");
+				List<String[]> dictionaryVersions = new ArrayList<String[]>();
+				for (Node version : elements(dictionary.getChildNodes())) {
+					String key = attribute(version, "key");
+					dictionaryVersions.add(new String[] { attribute(version, "label"), key });
+					dictionaryTypes.put(key, id);
+					List<String> locations = new ArrayList<String>();
+					for (Node grammar : elements(version.getChildNodes())) {
+						locations.add(attribute(grammar, "location").trim());
+					}
+					grammars.put(key, Collections.unmodifiableList(locations));
+				}
+				versions.put(id, Collections.unmodifiableList(dictionaryVersions));
+			}
+			this.versions = Collections.unmodifiableMap(versions);
+			this.dictionaryTypes = Collections.unmodifiableMap(dictionaryTypes);
+			this.grammars = Collections.unmodifiableMap(grammars);
+		}
+		
+		private static List<Node> elements(NodeList nodes) {
+			List<Node> elements = new ArrayList<Node>();
+			for (int i = 0; i < nodes.getLength(); i++) {
+				if (nodes.item(i).getNodeType() == Node.ELEMENT_NODE) {
+					elements.add(nodes.item(i));
+				}
+			}
+			return elements;
+		}
+		
+		private static String attribute(Node node, String name) {
+			Node attr = node.getAttributes().getNamedItem(name);
+			return attr == null ? "" : attr.getNodeValue();
+		}
 	}
 }
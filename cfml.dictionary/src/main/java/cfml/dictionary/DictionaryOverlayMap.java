@@ -0,0 +1,122 @@
+package cfml.dictionary;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Read only map made of a shared base map plus the entries one dictionary version adds, replaces or removes.
+ * 
+ * @see DictionaryEntryPool
+ */
+class DictionaryOverlayMap<V> extends AbstractMap<String, V> {
+	
+	private final Map<String, V> base;
+	private final Map<String, V> overlay;
+	private final Set<String> removed;
+	private final int size;
+	private Set<Map.Entry<String, V>> entrySet;
+	
+	DictionaryOverlayMap(Map<String, V> base, Map<String, V> overlay, Set<String> removed) {
+		this.base = base;
+		this.overlay = overlay;
+		this.removed = removed;
+		int count = overlay.size();
+		for (String key : base.keySet()) {
+			if (!overlay.containsKey(key) && !removed.contains(key)) {
+				count++;
+			}
+		}
+		this.size = count;
+	}
+	
+	@Override
+	public V get(Object key) {
+		V value = overlay.get(key);
+		if (value != null || removed.contains(key)) {
+			return value;
+		}
+		return base.get(key);
+	}
+	
+	@Override
+	public boolean containsKey(Object key) {
+		return overlay.containsKey(key) || (!removed.contains(key) && base.containsKey(key));
+	}
+	
+	@Override
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * @return the number of entries this map does not share with its base
+	 */
+	int overlaySize() {
+		return overlay.size() + removed.size();
+	}
+	
+	@Override
+	public Set<Map.Entry<String, V>> entrySet() {
+		if (entrySet == null) {
+			entrySet = new AbstractSet<Map.Entry<String, V>>() {
+				@Override
+				public Iterator<Map.Entry<String, V>> iterator() {
+					return new EntryIterator();
+				}
+				
+				@Override
+				public int size() {
+					return size;
+				}
+			};
+		}
+		return entrySet;
+	}
+	
+	/**
+	 * Walks the overlay entries and then the base entries that are neither replaced nor removed.
+	 */
+	private class EntryIterator implements Iterator<Map.Entry<String, V>> {
+		private final Iterator<Map.Entry<String, V>> overlayEntries = overlay.entrySet().iterator();
+		private final Iterator<Map.Entry<String, V>> baseEntries = base.entrySet().iterator();
+		private Map.Entry<String, V> next;
+		
+		@Override
+		public boolean hasNext() {
+			if (next != null) {
+				return true;
+			}
+			if (overlayEntries.hasNext()) {
+				next = overlayEntries.next();
+				return true;
+			}
+			while (baseEntries.hasNext()) {
+				Map.Entry<String, V> entry = baseEntries.next();
+				if (!overlay.containsKey(entry.getKey()) && !removed.contains(entry.getKey())) {
+					next = entry;
+					return true;
+				}
+			}
+			return false;
+		}
+		
+		@Override
+		public Map.Entry<String, V> next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			Map.Entry<String, V> entry = next;
+			next = null;
+			return new AbstractMap.SimpleImmutableEntry<String, V>(entry);
+		}
+		
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
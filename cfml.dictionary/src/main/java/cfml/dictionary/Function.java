@@ -56,8 +56,12 @@ public class Function extends Procedure {
 	
 	/**
 	 * Function needs to override because param order is important (makes parameters a LinkedHashSet)
+	 * 
+	 * @throws IllegalStateException
+	 *             if the function is frozen, see {@link #isFrozen()}
 	 */
 	public void addParameter(Parameter param) {
+		checkNotFrozen();
 		if (parameters == null)
 			parameters = new LinkedHashSet();
 			
@@ -25,9 +25,11 @@
 package cfml.dictionary;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -57,30 +59,57 @@ public class Parameter implements Comparable {
 	 * Is this parameter required by default (ignoring any protected boolean paramRequired = false;
 	 */
 	
-	private Trigger activeTrigger = null;
+	/**
+	 * The trigger the last {@link #isTriggered(HashMap)} or {@link #isRequired(HashMap)} on this thread matched, and
+	 * the parameter it was for, see {@link #activeTrigger()}
+	 */
+	private static final ThreadLocal<Object[]> lastTrigger = new ThreadLocal<Object[]>() {
+		@Override
+		protected Object[] initialValue() {
+			return new Object[2];
+		}
+	};
 	
 	/**
-	 * The list of things that triggers this parameter (if not required by default)
+	 * The list of things that triggers this parameter (if not required by default), read only once the parameter is
+	 * frozen
 	 */
-	ArrayList triggers = new ArrayList();
+	List<Trigger> triggers = new ArrayList<Trigger>();
 	
 	/**
 	 * Adds a trigger object that will cause this parameter to be required / presented as optional.
 	 * 
 	 * @param newTriggerSet
 	 *            The new trigger to set
+	 * @throws IllegalStateException
+	 *             if the parameter is frozen, see {@link #isFrozen()}
 	 */
 	public void addTrigger(Trigger newTriggerSet) {
+		checkNotFrozen();
 		// System.out.println("Parameter::addTriger() - Param \' " + this.name +
 		// "\' now has " + this.triggers.size() + "\' triggers");
 		this.triggers.add(newTriggerSet);
 	}
 	
-	public ArrayList getTriggers() {
-		
+	/**
+	 * @return the triggers, which can not be changed once the parameter is frozen
+	 */
+	public List<Trigger> getTriggerList() {
 		return this.triggers;
 	}
 	
+	/**
+	 * @return the triggers, or a copy of them once the parameter is frozen
+	 * @deprecated use {@link #getTriggerList()}, a frozen parameter can not hand out the list it shares
+	 */
+	@Deprecated
+	public ArrayList<Trigger> getTriggers() {
+		if (this.triggers instanceof ArrayList) {
+			return (ArrayList<Trigger>) this.triggers;
+		}
+		return new ArrayList<Trigger>(this.triggers);
+	}
+	
 	/**
 	 * Checks the set of parameters to see whether any of the trigger lists are matched.
 	 * 
@@ -104,11 +133,11 @@ public class Parameter implements Comparable {
 		 */
 		// System.out.print("Parameter::isTriggered() [" + this.name + "] - ");
 		if (this.triggers.size() == 0 && this.required) {
-			activeTrigger = null;
+			setActiveTrigger(null);
 			// System.out.println(" no params, triggered & required");
 			return PARAM_REQUIRED | PARAM_TRIGGERED;
 		} else if (this.triggers.size() == 0) {
-			activeTrigger = null;
+			setActiveTrigger(null);
 			// System.out.println(" no params, triggered.");
 			return PARAM_TRIGGERED;
 		}
@@ -119,13 +148,13 @@ public class Parameter implements Comparable {
 			Trigger currTrigger = (Trigger) trigIter.next();
 			int trigVal = currTrigger.WillTrigger(availParams);
 			if ((trigVal & PARAM_TRIGGERED) == PARAM_TRIGGERED) {
-				activeTrigger = currTrigger;
+				setActiveTrigger(currTrigger);
 				// System.out.println("Param required");
 				return trigVal;
 			}
 		}
 		
-		activeTrigger = null;
+		setActiveTrigger(null);
 		// System.out.println("Param not triggered");
 		return PARAM_NOTTRIGGERED; // Fell through to here, available parameters
 		// didn't match any triggers.
@@ -143,7 +172,7 @@ public class Parameter implements Comparable {
 	public int isRequired(HashMap availParams) {
 		
 		if (this.triggers.size() == 0 && this.required) {
-			activeTrigger = null;
+			setActiveTrigger(null);
 			// System.out.println(" no params, triggered & required");
 			return PARAM_REQUIRED | PARAM_TRIGGERED;
 		}
@@ -155,12 +184,12 @@ public class Parameter implements Comparable {
 			int trigVal = currTrigger.WillTrigger(availParams);
 			
 			if ((trigVal & PARAM_TRIGGERED) == PARAM_TRIGGERED && currTrigger.isRequired) {
-				activeTrigger = currTrigger;
+				setActiveTrigger(currTrigger);
 				return PARAM_REQUIRED | PARAM_TRIGGERED;
 			}
 		}
 		
-		activeTrigger = null;
+		setActiveTrigger(null);
 		// System.out.println("Param not triggered");
 		return PARAM_NOTTRIGGERED; // Fell through to here, available parameters
 		// didn't match any triggers.
@@ -174,6 +203,8 @@ public class Parameter implements Comparable {
 	protected boolean required = false;
 	protected String category = "General";
 	protected String returnVarType;
+	/** Set once this parameter is shared between dictionaries, after which it can not be changed */
+	protected volatile boolean frozen = false;
 	
 	public Parameter(String name) {
 		this.name = name.trim();
@@ -213,12 +244,39 @@ public class Parameter implements Comparable {
 	}
 	
 	/**
-	 * Returns the currently active trigger or null.
+	 * Returns the currently active trigger or null: the one the last {@link #isTriggered(HashMap)} or
+	 * {@link #isRequired(HashMap)} on this parameter matched, as long as it was called on this thread and on no other
+	 * parameter since.
 	 * 
 	 * @return
+	 * @deprecated use {@link #activeTrigger(HashMap)}, a parameter may be shared between dictionaries and threads
 	 */
+	@Deprecated
 	public Trigger activeTrigger() {
-		return activeTrigger;
+		Object[] last = lastTrigger.get();
+		return last[0] == this ? (Trigger) last[1] : null;
+	}
+	
+	private void setActiveTrigger(Trigger trigger) {
+		Object[] last = lastTrigger.get();
+		last[0] = this;
+		last[1] = trigger;
+	}
+	
+	/**
+	 * Returns the trigger that the given parameters activate, the one {@link #isTriggered(HashMap)} goes by.
+	 * 
+	 * @param availParams
+	 *            name/value string pairs of parameters currently entered
+	 * @return the active trigger or null
+	 */
+	public Trigger activeTrigger(HashMap<?, ?> availParams) {
+		for (Trigger currTrigger : triggers) {
+			if ((currTrigger.WillTrigger(availParams) & PARAM_TRIGGERED) == PARAM_TRIGGERED) {
+				return currTrigger;
+			}
+		}
+		return null;
 	}
 	
 	/**
@@ -228,8 +286,11 @@ public class Parameter implements Comparable {
 	 *            the param name
 	 * @param type
 	 *            the param type @see Procedure
+	 * @throws IllegalStateException
+	 *             if the parameter is frozen, see {@link #isFrozen()}
 	 */
 	public void setNameAndType(String name, String type) {
+		checkNotFrozen();
 		this.name = name.trim();
 		this.type = type.toLowerCase();
 	}
@@ -239,8 +300,11 @@ public class Parameter implements Comparable {
 	 * 
 	 * @param value
 	 *            the value to add
+	 * @throws IllegalStateException
+	 *             if the parameter is frozen, see {@link #isFrozen()}
 	 */
 	public void addValue(Value value) {
+		checkNotFrozen();
 		if (this.values == null)
 			values = new HashSet();
 		
@@ -272,10 +336,42 @@ public class Parameter implements Comparable {
 		return help;
 	}
 	
+	/**
+	 * @throws IllegalStateException
+	 *             if the parameter is frozen, see {@link #isFrozen()}
+	 */
 	public void setHelp(String help) {
+		checkNotFrozen();
 		this.help = help;
 	}
 	
+	/**
+	 * Makes this parameter read only. Frozen parameters are shared between the dictionary versions that define them
+	 * identically.
+	 */
+	void freeze() {
+		if (!frozen) {
+			if (values != null) {
+				values = Collections.unmodifiableSet((Set<?>) values);
+			}
+			triggers = Collections.unmodifiableList(triggers);
+		}
+		frozen = true;
+	}
+	
+	/**
+	 * @return true if this parameter is read only, as are those of the dictionaries a {@link DictionaryManager} loads
+	 */
+	public boolean isFrozen() {
+		return frozen;
+	}
+	
+	private void checkNotFrozen() {
+		if (frozen) {
+			throw new IllegalStateException("'" + name + "' is shared between dictionaries and can not be changed");
+		}
+	}
+	
 	public String toString() {
 		StringBuffer sb = new StringBuffer();
 		if (required) {
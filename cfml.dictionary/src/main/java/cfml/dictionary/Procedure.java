@@ -24,6 +24,7 @@
  */
 package cfml.dictionary;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -143,6 +144,9 @@ public class Procedure implements Comparable {
 	/** The parameters that belong to this procedure (if any) */
 	protected Set<Parameter> parameters = null;
 	
+	/** Set once this procedure is shared between dictionaries, after which it can not be changed */
+	protected volatile boolean frozen = false;
+	
 	/**
 	 * Constructs the procedure with a name.
 	 * 
@@ -180,8 +184,11 @@ public class Procedure implements Comparable {
 	 * 
 	 * @param param
 	 *            the parameter to add
+	 * @throws IllegalStateException
+	 *             if the procedure is frozen, see {@link #isFrozen()}
 	 */
 	public void addParameter(Parameter param) {
+		checkNotFrozen();
 		if (parameters == null)
 			parameters = new HashSet<Parameter>();
 		
@@ -222,8 +229,11 @@ public class Procedure implements Comparable {
 	 * Sets the help to be associated with this procedure
 	 * 
 	 * @param help
+	 * @throws IllegalStateException
+	 *             if the procedure is frozen, see {@link #isFrozen()}
 	 */
 	public void setHelp(String help) {
+		checkNotFrozen();
 		this.help = help;
 	}
 	
@@ -236,6 +246,30 @@ public class Procedure implements Comparable {
 		return help;
 	}
 	
+	/**
+	 * Makes this procedure read only. Frozen procedures are shared between the dictionary versions that define them
+	 * identically.
+	 */
+	void freeze() {
+		if (parameters != null && !frozen) {
+			parameters = Collections.unmodifiableSet(parameters);
+		}
+		frozen = true;
+	}
+	
+	/**
+	 * @return true if this procedure is read only, as are those of the dictionaries a {@link DictionaryManager} loads
+	 */
+	public boolean isFrozen() {
+		return frozen;
+	}
+	
+	protected void checkNotFrozen() {
+		if (frozen) {
+			throw new IllegalStateException("'" + name + "' is shared between dictionaries and can not be changed");
+		}
+	}
+	
 	public String toString() {
 		if (parameters != null) {
 			return name + ":" + parameters.size();
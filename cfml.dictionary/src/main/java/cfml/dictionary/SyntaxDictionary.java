@@ -27,6 +27,7 @@ package cfml.dictionary;
 import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.net.URL;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -66,6 +67,9 @@ public abstract class SyntaxDictionary {
 	/** the file name for this dictionary */
 	protected String dictionaryURL = null;
 	
+	/** set once the maps have been made read only, see {@link #freeze()} */
+	private volatile boolean frozen = false;
+	
 	public SyntaxDictionary() {
 		syntaxelements = new HashMap<String, Tag>();
 		functions = new HashMap<String, Function>();
@@ -80,6 +84,9 @@ public abstract class SyntaxDictionary {
 	 * @param url
 	 */
 	public void loadDictionary(String url) {
+		if (frozen) {
+			throw new IllegalStateException("Dictionary is frozen, can not load " + url);
+		}
 		setURL(url);
 		
 		try {
@@ -556,6 +563,45 @@ public abstract class SyntaxDictionary {
 		xmlReader.parse(input);
 	}
 	
+	/**
+	 * Adds everything defined in another dictionary to this one. Entries of the other dictionary replace entries with
+	 * the same name, just as if its file had been loaded into this dictionary after the ones already loaded.
+	 * 
+	 * @param part
+	 *            a dictionary holding a single grammar file
+	 */
+	void merge(SyntaxDictionary part) {
+		if (frozen) {
+			throw new IllegalStateException("Dictionary is frozen, can not merge " + part.dictionaryURL);
+		}
+		syntaxelements.putAll(part.syntaxelements);
+		functions.putAll(part.functions);
+		scopeVars.putAll(part.scopeVars);
+		scopes.putAll(part.scopes);
+	}
+	
+	/**
+	 * Makes the tag, function and scope maps read only. The DictionaryManager freezes a dictionary once it has been
+	 * loaded so that one instance can be shared between threads; no more files can be loaded into it after that.
+	 */
+	void freeze() {
+		if (frozen) {
+			return;
+		}
+		syntaxelements = Collections.unmodifiableMap(syntaxelements);
+		functions = Collections.unmodifiableMap(functions);
+		scopeVars = Collections.unmodifiableMap(scopeVars);
+		scopes = Collections.unmodifiableMap(scopes);
+		frozen = true;
+	}
+	
+	/**
+	 * @return true if this dictionary has been frozen and can no longer be loaded into
+	 */
+	public boolean isFrozen() {
+		return frozen;
+	}
+	
 	public Map<String, Tag> getSyntaxelements() {
 		return syntaxelements;
 	}
@@ -24,6 +24,7 @@
  */
 package cfml.dictionary;
 
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -209,6 +210,35 @@ public class Tag extends Procedure {
 		return name;
 	}
 	
+	/** compiled once the tag is frozen */
+	private volatile AttributeRules attributeRules;
+	
+	@Override
+	void freeze() {
+		if (!frozen) {
+			returns = Collections.unmodifiableSet(returns);
+		}
+		super.freeze();
+		if (attributeRules == null) {
+			attributeRules = compileAttributeRules();
+		}
+	}
+	
+	/**
+	 * Gets the rules for checking the attributes of this tag. They are compiled when the tag is frozen, which the
+	 * DictionaryManager does as it loads a dictionary; a tag that can still change compiles them on every call.
+	 * 
+	 * @return the compiled attribute rules
+	 */
+	public AttributeRules getAttributeRules() {
+		AttributeRules rules = attributeRules;
+		return rules != null ? rules : compileAttributeRules();
+	}
+	
+	private AttributeRules compileAttributeRules() {
+		return parameters == null ? AttributeRules.EMPTY : new AttributeRules(parameters);
+	}
+	
 	public Set<Return> getReturns() {
 		return returns;
 	}
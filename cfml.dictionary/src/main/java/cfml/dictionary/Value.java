@@ -33,6 +33,8 @@ package cfml.dictionary;
 public class Value implements Comparable {
 	protected String value;
 	protected String help;
+	/** Set once this value is shared between dictionaries, after which it can not be changed */
+	protected volatile boolean frozen = false;
 	
 	public Value(String val) {
 		value = val;
@@ -47,7 +49,12 @@ public class Value implements Comparable {
 		return value;
 	}
 	
+	/**
+	 * @throws IllegalStateException
+	 *             if the value is frozen, as the values of the entries a {@link DictionaryManager} hands out are
+	 */
 	public void setValue(String newValue) {
+		checkNotFrozen();
 		value = newValue;
 	}
 	
@@ -55,10 +62,28 @@ public class Value implements Comparable {
 		return help;
 	}
 	
+	/**
+	 * @throws IllegalStateException
+	 *             if the value is frozen
+	 */
 	public void setHelp(String help) {
+		checkNotFrozen();
 		this.help = help;
 	}
 	
+	/**
+	 * Makes this value read only so it can be shared between parameters.
+	 */
+	void freeze() {
+		frozen = true;
+	}
+	
+	private void checkNotFrozen() {
+		if (frozen) {
+			throw new IllegalStateException("'" + value + "' is shared between dictionaries and can not be changed");
+		}
+	}
+	
 	public String toString() {
 		return value;
 	}
@@ -42,8 +42,8 @@ public class CFSyntaxDictionary extends SyntaxDictionary implements ISyntaxDicti
 	protected static Set operators;
 	protected static Set scriptkeywords;
 	
-	public CFSyntaxDictionary() {
-		super();
+	// built once, dictionaries are created from several threads
+	static {
 		operators = new HashSet();
 		buildOperatorSyntax();
 		
@@ -51,6 +51,10 @@ public class CFSyntaxDictionary extends SyntaxDictionary implements ISyntaxDicti
 		buildScriptKeywordSyntax();
 	}
 	
+	public CFSyntaxDictionary() {
+		super();
+	}
+	
 	/**
 	 * gets any operators (eq, or, and) (lowercase only)
 	 * 
@@ -40,10 +40,8 @@ public class JSSyntaxDictionary extends SyntaxDictionary implements ISyntaxDicti
 	protected static Set operators;
 	protected static Set scriptkeywords;
 	
-	public JSSyntaxDictionary() {
-		super();
-		buildFunctionSyntax();
-		
+	// built once, dictionaries are created from several threads
+	static {
 		operators = new HashSet();
 		buildOperatorSyntax();
 		
@@ -51,6 +49,11 @@ public class JSSyntaxDictionary extends SyntaxDictionary implements ISyntaxDicti
 		buildScriptKeywordSyntax();
 	}
 	
+	public JSSyntaxDictionary() {
+		super();
+		buildFunctionSyntax();
+	}
+	
 	/**
 	 * gets any operators (lowercase only)
 	 * 
@@ -30,7 +30,7 @@ import cfml.dictionary.ISyntaxDictionary;
  *         partitions, this class is used for the document and sql partitions now.
  */
 public class SQLSyntaxDictionary extends CFSyntaxDictionary implements ISyntaxDictionary {
-	protected static Set sqlkeywords;
+	protected Set sqlkeywords;
 	
 	/**
 	 * 
@@ -38,8 +38,6 @@ public class SQLSyntaxDictionary extends CFSyntaxDictionary implements ISyntaxDi
 	public SQLSyntaxDictionary() {
 		super();
 		sqlkeywords = new HashSet();
-		operators = new HashSet();
-		buildOperatorSyntax();
 	}
 	
 	/**
@@ -0,0 +1,131 @@
+package cfml.dictionary;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import cfml.dictionary.preferences.DictionaryPreferences;
+import cfml.dictionary.syntax.SQLSyntaxDictionary;
+
+public class TestDictionaryEntryPool {
+	
+	@Before
+	public void setUp() throws Exception {
+		DictionaryManager.initDictionaries(new DictionaryPreferences());
+	}
+	
+	@Test
+	public void testIdenticalVersionsShareEntries() {
+		SyntaxDictionary cf10 = DictionaryManager.getDictionaryByVersion("cf10");
+		SyntaxDictionary railo4 = DictionaryManager.getDictionaryByVersion("railo4");
+		assertNotSame(cf10, railo4);
+		assertSame(cf10.getTag("cfquery"), railo4.getTag("cfquery"));
+		assertSame(cf10.getFunction("arrayappend"), railo4.getFunction("arrayappend"));
+		assertTrue(cf10.getTag("cfquery").isFrozen());
+	}
+	
+	@Test
+	public void testSimilarVersionsShareParameters() {
+		SyntaxDictionary cf11 = DictionaryManager.getDictionaryByVersion("cf11");
+		SyntaxDictionary lucee4 = DictionaryManager.getDictionaryByVersion("lucee4");
+		Set<Parameter> shared = new HashSet<Parameter>(cf11.getTag("cfquery").getParameters());
+		int same = 0;
+		for (Parameter param : lucee4.getTag("cfquery").getParameters()) {
+			for (Parameter other : shared) {
+				if (param == other) {
+					same++;
+				}
+			}
+		}
+		assertTrue("no parameters shared", same > 0);
+	}
+	
+	@Test
+	public void testOverlayMatchesUnsharedLoad() {
+		DictionaryManager.getDictionaryByVersion("cf10");
+		SyntaxDictionary cf9 = DictionaryManager.getDictionaryByVersion("ColdFusion9");
+		
+		SyntaxDictionary plain = new SQLSyntaxDictionary();
+		plain.loadDictionary(DictionaryManager.class.getResource("/org.cfeclipse.cfml/dictionary/cf9.xml").toString());
+		plain.loadDictionary(DictionaryManager.class.getResource("/org.cfeclipse.cfml/dictionary/user.xml").toString());
+		plain.loadDictionary(DictionaryManager.class.getResource("/org.cfeclipse.cfml/dictionary/mxunit.xml").toString());
+		
+		assertEquals(plain.getAllElements(), cf9.getAllElements());
+		assertEquals(plain.getFunctions(), cf9.getFunctions());
+		for (String name : plain.getAllElements()) {
+			Tag tag = cf9.getTag(name);
+			assertNotNull(name, tag);
+			assertEquals(name, plain.getTag(name).getHelp(), tag.getHelp());
+		}
+	}
+	
+	@Test(expected = IllegalStateException.class)
+	public void testSharedEntriesAreReadOnly() {
+		DictionaryManager.getDictionaryByVersion("cf10").getTag("cfquery").setHelp("changed");
+	}
+	
+	@Test
+	public void testFrozenTriggers() {
+		Parameter param = new Parameter("password", "string");
+		Trigger odbc = Trigger.CreateSimpleTrigger("dbtype", "odbc", true);
+		Trigger query = Trigger.CreateSimpleTrigger("dbtype", "query");
+		param.addTrigger(odbc);
+		param.addTrigger(query);
+		param.freeze();
+		
+		HashMap<String, String> attributes = new HashMap<String, String>();
+		attributes.put("dbtype", "query");
+		HashMap<String, String> other = new HashMap<String, String>();
+		other.put("dbtype", "odbc");
+		assertSame(query, param.activeTrigger(attributes));
+		assertSame(odbc, param.activeTrigger(other));
+		assertEquals(Parameter.PARAM_TRIGGERED, param.isTriggered(attributes));
+		// evaluating for other attributes leaves nothing behind
+		assertEquals(Parameter.PARAM_REQUIRED | Parameter.PARAM_TRIGGERED, param.isRequired(other));
+		assertSame(query, param.activeTrigger(attributes));
+		assertNull(param.activeTrigger(new HashMap<String, String>()));
+		
+		try {
+			param.getTriggerList().clear();
+			fail();
+		} catch (UnsupportedOperationException e) {
+			// read only
+		}
+		assertEquals(2, param.getTriggerList().size());
+	}
+	
+	@Test
+	@SuppressWarnings("deprecation")
+	public void testDeprecatedTriggerAccess() {
+		Parameter param = new Parameter("password", "string");
+		Trigger query = Trigger.CreateSimpleTrigger("dbtype", "query");
+		param.getTriggers().add(query);
+		assertEquals(1, param.getTriggerList().size());
+		param.freeze();
+		// a copy, the shared list stays as it is
+		param.getTriggers().clear();
+		assertEquals(1, param.getTriggerList().size());
+		
+		HashMap<String, String> attributes = new HashMap<String, String>();
+		attributes.put("dbtype", "query");
+		assertEquals(Parameter.PARAM_TRIGGERED, param.isTriggered(attributes));
+		assertSame(query, param.activeTrigger());
+		Parameter other = new Parameter("username", "string");
+		other.isTriggered(attributes);
+		// the last trigger is for the last parameter evaluated on this thread
+		assertNull(param.activeTrigger());
+		assertEquals(Parameter.PARAM_NOTTRIGGERED, param.isTriggered(new HashMap<String, String>()));
+		assertNull(param.activeTrigger());
+	}
+}
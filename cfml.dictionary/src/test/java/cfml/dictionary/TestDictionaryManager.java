@@ -1,8 +1,22 @@
 package cfml.dictionary;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.junit.Before;
 import org.junit.Ignore;
@@ -66,4 +80,82 @@ public class TestDictionaryManager {
 		assertNotNull(fun);
 	}
 	
+	@Test
+	public void testGetDictionaryByVersionConcurrently() throws Exception {
+		DictionaryManager.initDictionaries(fPrefs);
+		ExecutorService pool = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<SyntaxDictionary>> results = new ArrayList<Future<SyntaxDictionary>>();
+			for (int i = 0; i < 8; i++) {
+				final String version = i % 2 == 0 ? "cf10" : "lucee5";
+				results.add(pool.submit(new Callable<SyntaxDictionary>() {
+					public SyntaxDictionary call() {
+						return DictionaryManager.getDictionaryByVersion(version);
+					}
+				}));
+			}
+			for (int i = 2; i < results.size(); i++) {
+				assertSame(results.get(i % 2).get(), results.get(i).get());
+			}
+			SyntaxDictionary cf10 = results.get(0).get();
+			assertTrue(cf10.isFrozen());
+			assertNotNull(cf10.getTag("cfquery"));
+		} finally {
+			pool.shutdown();
+		}
+	}
+	
+	@Test
+	public void testDictionariesCacheWritesThrough() {
+		DictionaryManager.initDictionaries(fPrefs);
+		SyntaxDictionary cf10 = DictionaryManager.getDictionaryByVersion("cf10");
+		assertNotNull(cf10);
+		Map<String, SyntaxDictionary> cache = DictionaryManager.getDictionariesCache();
+		assertSame(cf10, cache.get("cf10"));
+		
+		SyntaxDictionary custom = new SyntaxDictionary() {
+		};
+		cache.put("custom", custom);
+		assertSame(custom, DictionaryManager.getDictionariesCache().get("custom"));
+		cache.remove("custom");
+		assertFalse(DictionaryManager.getDictionariesCache().containsKey("custom"));
+		
+		Map<String, SyntaxDictionary> saved = new HashMap<String, SyntaxDictionary>(cache);
+		try {
+			DictionaryManager.setDictionariesCache(Collections.singletonMap("cf10", custom));
+			// the map handed out before shows the replacement
+			assertEquals(1, cache.size());
+			assertSame(custom, cache.get("cf10"));
+			assertSame(custom, DictionaryManager.getDictionaryByVersion("cf10"));
+		} finally {
+			DictionaryManager.setDictionariesCache(saved);
+		}
+		assertSame(cf10, DictionaryManager.getDictionaryByVersion("cf10"));
+	}
+	
+	@Test(expected = UnsupportedOperationException.class)
+	public void testDictionaryByVersionIsReadOnly() {
+		DictionaryManager.initDictionaries(fPrefs);
+		SyntaxDictionary fun = DictionaryManager.getDictionaryByVersion(fPrefs.getCFDictionary());
+		fun.getSyntaxelements().clear();
+	}
+	
+	@Test
+	public void testLaterGrammarFilesOverrideEarlierOnes() {
+		DictionaryPreferences dprefs = new DictionaryPreferences();
+		dprefs.setDictionaryDir("src/test/resources/dictionary");
+		dprefs.setCFDictionary("awesomedic");
+		try {
+			DictionaryManager.initDictionaries(dprefs);
+			SyntaxDictionary base = DictionaryManager.getDictionaryByVersion("awesomedic");
+			SyntaxDictionary user = DictionaryManager.getDictionaryByVersion("awesomeuser");
+			assertEquals("Overridden by useroverride.xml", user.getTag("cfabort").getHelp().trim());
+			assertNotNull(user.getTag("cfuseroverride"));
+			assertEquals(base.getAllElements().size() + 1, user.getAllElements().size());
+			assertNotEquals(base.getTag("cfabort").getHelp(), user.getTag("cfabort").getHelp().trim());
+		} finally {
+			DictionaryManager.initDictionaries(fPrefs);
+		}
+	}
+	
 }
@@ -2,6 +2,19 @@ parser grammar  CFSCRIPTParser;
 
 options { tokenVocab=CFSCRIPTLexer; }
 
+@members {
+	/**
+	 * @return true if a line break comes right after the previous token, which then ends a statement
+	 */
+	protected boolean newlineFollows() {
+		int index = _input.LT(-1).getTokenIndex();
+		if (_input instanceof cfml.parsing.util.SignificantTokenStream) {
+			return ((cfml.parsing.util.SignificantTokenStream) _input).isNewlineAfter(index);
+		}
+		return _input.get(index + 1).getType() == NEWLINE;
+	}
+}
+
 //Note: needs case insensitive stream: http://www.antlr.org/wiki/pages/viewpage.action?pageId=1782
 
 scriptBlock
@@ -150,7 +163,7 @@ statement
   
 endOfStatement
    :
-   {_input.get(_input.LT(-1).getTokenIndex()+1).getType()==NEWLINE}?
+   {newlineFollows()}?
      semicolon = SEMICOLON?
    |
     semicolon = SEMICOLON; 
@@ -10,18 +10,18 @@ import java.util.BitSet;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
-import java.util.Set;
 
 import org.antlr.v4.runtime.ANTLRErrorListener;
 import org.antlr.v4.runtime.ANTLRInputStream;
-import org.antlr.v4.runtime.BailErrorStrategy;
 import org.antlr.v4.runtime.CommonTokenStream;
 import org.antlr.v4.runtime.DefaultErrorStrategy;
 import org.antlr.v4.runtime.IntStream;
+import org.antlr.v4.runtime.Lexer;
 import org.antlr.v4.runtime.Parser;
 import org.antlr.v4.runtime.RecognitionException;
 import org.antlr.v4.runtime.Recognizer;
 import org.antlr.v4.runtime.atn.ATNConfigSet;
+import org.antlr.v4.runtime.atn.ParserATNSimulator;
 import org.antlr.v4.runtime.atn.PredictionMode;
 import org.antlr.v4.runtime.dfa.DFA;
 
@@ -30,8 +30,10 @@ import cfml.CFSCRIPTParser;
 import cfml.CFSCRIPTParser.CfmlExpressionContext;
 import cfml.CFSCRIPTParser.ExpressionContext;
 import cfml.CFSCRIPTParser.ScriptBlockContext;
+import cfml.dictionary.AttributeRules;
 import cfml.dictionary.DictionaryManager;
 import cfml.dictionary.SyntaxDictionary;
+import cfml.dictionary.Tag;
 import cfml.dictionary.preferences.DictionaryPreferences;
 import cfml.parsing.cfml.CFMLVisitor;
 import cfml.parsing.cfscript.CFExpression;
@@ -39,25 +41,54 @@ import cfml.parsing.cfscript.script.CFScriptStatement;
 import cfml.parsing.cfscript.walker.CFExpressionVisitor;
 import cfml.parsing.cfscript.walker.CFScriptStatementVisitor;
 import cfml.parsing.reporting.IErrorReporter;
+import cfml.parsing.reporting.ParseCancelledException;
 import cfml.parsing.reporting.ParseException;
+import cfml.parsing.util.CancellationToken;
+import cfml.parsing.util.CommentTable;
+import cfml.parsing.util.DetachableToken;
+import cfml.parsing.util.ScriptTokenizer;
+import cfml.parsing.util.SignificantTokenStream;
+import cfml.parsing.util.TokenBuffer;
+import net.htmlparser.jericho.Attribute;
+import net.htmlparser.jericho.Attributes;
 import net.htmlparser.jericho.Element;
 import net.htmlparser.jericho.EndTag;
 import net.htmlparser.jericho.StartTag;
 
+/**
+ * Parses CFML tag sources and cfscript.
+ * 
+ * The syntax dictionary is only needed for tag sources and their validation, so it is not loaded until one of those
+ * first asks for it. A parser that only ever sees cfscript or expressions never touches the {@link DictionaryManager}
+ * or the Jericho tag registration.
+ */
 public class CFMLParser {
 	
 	private Map<String, CFMLSource> fCfmlSources = new HashMap<String, CFMLSource>();
 	protected ArrayList<ParseMessage> messages = new ArrayList<ParseMessage>();
 	private boolean hadFatal;
 	private int errCount = 0;
-	/** Syntax dictionary for working out important things for the parser. */
+	/** Syntax dictionary for working out important things for the parser, loaded on first use. */
 	private SyntaxDictionary cfdic;
 	private DictionaryPreferences fDictPrefs = new DictionaryPreferences();
+	/** true if the dictionary comes from somewhere other than the default dictionary directory */
+	private boolean customDictionary = false;
 	IErrorReporter errorReporter = new StdErrReporter();
 	CFExpressionVisitor expressionVisitor = new CFExpressionVisitor();
 	CFScriptStatementVisitor scriptVisitor = new CFScriptStatementVisitor();
 	CFSCRIPTLexer lexer = null;
 	CFSCRIPTParser parser = null;
+	/** see {@link #setDetachedAst(boolean, boolean)} */
+	private boolean detachedAst = false;
+	private boolean keepSource = true;
+	/** made on the first {@link #tokenize(String)} */
+	private ScriptTokenizer tokenizer;
+	/** see {@link #setSignificantTokensOnly(boolean)} */
+	private boolean significantTokensOnly = false;
+	/** see {@link #setGrammarProfile(GrammarProfile)} */
+	private GrammarProfile grammarProfile;
+	/** the token of the parse or visit going on, see {@link #parseScript(String, CancellationToken)} */
+	private CancellationToken cancellation;
 	
 	public void clearDFA() {
 		if (parser != null)
@@ -66,6 +97,26 @@ public class CFMLParser {
 			lexer.getInterpreter().clearDFA();
 	}
 	
+	/**
+	 * Parses an expression, checking a cancellation token as it goes.
+	 * 
+	 * @param cancellation
+	 *            the token, or null
+	 * @throws ParseCancelledException
+	 *             if the token is cancelled before the expression is parsed
+	 * @see #parseScript(String, CancellationToken)
+	 */
+	public CFExpression parseCFExpression(String _infix, ANTLRErrorListener errorReporter,
+			CancellationToken cancellation) throws Exception {
+		CancellationToken previous = this.cancellation;
+		this.cancellation = cancellation;
+		try {
+			return parseCFExpression(_infix, errorReporter);
+		} finally {
+			this.cancellation = previous;
+		}
+	}
+	
 	public CFExpression parseCFExpression(String _infix, ANTLRErrorListener errorReporter) throws Exception {
 		if (errorReporter == null) {
 			errorReporter = this.errorReporter;
@@ -74,6 +125,7 @@ public class CFMLParser {
 		final ANTLRInputStream input = new ANTLRInputStream(_infix);
 		if (lexer == null) {
 			lexer = new CFSCRIPTLexer(input);
+			lexer.setTokenFactory(DetachableToken.FACTORY);
 			lexer.removeErrorListeners();
 		} else {
 			lexer.setInputStream(input);
@@ -99,12 +151,16 @@ public class CFMLParser {
 		}
 		parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
 		parser.reset();
+		ParserATNSimulator interpreter = watch(lexer, parser);
 		ExpressionContext expressionContext = null;
 		try {
 			expressionContext = parser.expression(); // Stage 1
 			// TestUtils.showGUI(expressionContext, CFSCRIPTParser.ruleNames);
 			
 		} catch (Exception e) {
+			if (e instanceof ParseCancelledException) {
+				throw e;
+			}
 			tokens.reset(); // rewind input stream
 			parser.reset();
 			parser.getInterpreter().setPredictionMode(PredictionMode.LL);
@@ -114,9 +170,16 @@ public class CFMLParser {
 				lexer.removeErrorListener(errorReporter);
 				parser.removeErrorListener(errorReporter);
 			}
+			parser.setInterpreter(interpreter);
+			lexer.setTokenFactory(DetachableToken.FACTORY);
 		}
 		if (expressionContext != null) {
-			return expressionVisitor.visit(expressionContext);
+			expressionVisitor.setCancellation(cancellation);
+			CFExpression expression = expressionVisitor.visit(expressionContext);
+			if (detachedAst) {
+				DetachableToken.detachAll(tokens.getTokens(), keepSource ? _infix : null);
+			}
+			return expression;
 		} else
 			return null;
 	}
@@ -129,6 +192,7 @@ public class CFMLParser {
 		final ANTLRInputStream input = new ANTLRInputStream(_infix);
 		if (lexer == null) {
 			lexer = new CFSCRIPTLexer(input);
+			lexer.setTokenFactory(DetachableToken.FACTORY);
 			lexer.removeErrorListeners();
 		} else {
 			lexer.setInputStream(input);
@@ -154,12 +218,16 @@ public class CFMLParser {
 		}
 		parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
 		parser.reset();
+		ParserATNSimulator interpreter = watch(lexer, parser);
 		CfmlExpressionContext expressionContext = null;
 		try {
 			expressionContext = parser.cfmlExpression(); // Stage 1
 			// TestUtils.showGUI(expressionContext, CFSCRIPTParser.ruleNames);
 			
 		} catch (Exception e) {
+			if (e instanceof ParseCancelledException) {
+				throw e;
+			}
 			tokens.reset(); // rewind input stream
 			parser.reset();
 			parser.getInterpreter().setPredictionMode(PredictionMode.LL);
@@ -169,16 +237,61 @@ public class CFMLParser {
 				lexer.removeErrorListener(errorReporter);
 				parser.removeErrorListener(errorReporter);
 			}
+			parser.setInterpreter(interpreter);
+			lexer.setTokenFactory(DetachableToken.FACTORY);
 		}
 		if (expressionContext != null) {
-			return expressionVisitor.visit(expressionContext);
+			expressionVisitor.setCancellation(cancellation);
+			CFExpression expression = expressionVisitor.visit(expressionContext);
+			if (detachedAst) {
+				DetachableToken.detachAll(tokens.getTokens(), keepSource ? _infix : null);
+			}
+			return expression;
 		} else
 			return null;
 	}
 	
+	/**
+	 * Has a lexer and a parser check the cancellation token as they go, if there is one.
+	 * 
+	 * @return the ATN simulator the parser had, to put back when the parse is done
+	 */
+	private ParserATNSimulator watch(Lexer lexer, Parser parser) {
+		ParserATNSimulator interpreter = parser.getInterpreter();
+		if (cancellation != null) {
+			lexer.setTokenFactory(cancellation.watch(lexer.getTokenFactory()));
+			parser.setInterpreter(new CancellableATNSimulator(parser, cancellation));
+		}
+		return interpreter;
+	}
+	
 	int skipToPosition = 0;
 	
+	/**
+	 * Visits an element and the scripts and expressions in it, checking a cancellation token as it goes, at every
+	 * element and in the parses of the scripts and expressions.
+	 * 
+	 * @param cancellation
+	 *            the token, or null
+	 * @throws ParseCancelledException
+	 *             if the token is cancelled before the visit is done
+	 * @see #parseScript(String, CancellationToken)
+	 */
+	public void visit(final Element elem, final int level, CFMLVisitor visitor, CancellationToken cancellation)
+			throws Exception {
+		CancellationToken previous = this.cancellation;
+		this.cancellation = cancellation;
+		try {
+			visit(elem, level, visitor);
+		} finally {
+			this.cancellation = previous;
+		}
+	}
+	
 	public void visit(final Element elem, final int level, CFMLVisitor visitor) throws Exception {
+		if (cancellation != null) {
+			cancellation.check();
+		}
 		if (skipToPosition > elem.getBegin()) {
 			return;
 		}
@@ -267,21 +380,18 @@ public class CFMLParser {
 	}
 	
 	public CFMLParser() {
-		DictionaryManager.initDictionaries();
-		cfdic = DictionaryManager.getDictionaryByVersion(fDictPrefs.getCFDictionary());
-		if (cfdic == null) {
-			throw new IllegalArgumentException("The syntax dictionary could not be loaded!");
-		}
 	}
 	
+	/**
+	 * @param dictionariesPath
+	 *            the directory holding dictionaryconfig.xml
+	 * @param dictionary
+	 *            the version key of the CF dictionary to use
+	 */
 	public CFMLParser(String dictionariesPath, String dictionary) {
 		fDictPrefs.setDictionaryDir(dictionariesPath);
 		fDictPrefs.setCFDictionary(dictionary);
-		DictionaryManager.initDictionaries(fDictPrefs);
-		cfdic = DictionaryManager.getDictionaryByVersion(dictionary);
-		if (cfdic == null) {
-			throw new IllegalArgumentException("The syntax dictionary could not be loaded!");
-		}
+		customDictionary = true;
 	}
 	
 	/**
@@ -295,10 +405,24 @@ public class CFMLParser {
 	}
 	
 	/**
+	 * Gets the syntax dictionary, loading it the first time it is asked for.
 	 * 
-	 * @return
+	 * @return the CF syntax dictionary
+	 * @throws IllegalArgumentException
+	 *             if the dictionary can not be loaded
 	 */
 	public SyntaxDictionary getDictionary() {
+		if (cfdic == null) {
+			if (customDictionary) {
+				DictionaryManager.initDictionaries(fDictPrefs);
+			} else {
+				DictionaryManager.initDictionaries();
+			}
+			cfdic = DictionaryManager.getDictionaryByVersion(fDictPrefs.getCFDictionary());
+			if (cfdic == null) {
+				throw new IllegalArgumentException("The syntax dictionary could not be loaded!");
+			}
+		}
 		return cfdic;
 	}
 	
@@ -306,6 +430,8 @@ public class CFMLParser {
 	}
 	
 	public CFMLSource addCFMLSource(String path, String cfmlsource) {
+		// tag sources register the dictionary's tags, make sure it is the one this parser was set up with
+		getDictionary();
 		CFMLSource source = new CFMLSource(cfmlsource);
 		fCfmlSources.put(path, source);
 		return source;
@@ -316,6 +442,7 @@ public class CFMLParser {
 	}
 	
 	public CFMLSource addCFMLSource(URL url) throws IOException {
+		getDictionary();
 		CFMLSource source = new CFMLSource(url);
 		fCfmlSources.put(url.getPath(), source);
 		return source;
@@ -416,51 +543,63 @@ public class CFMLParser {
 		return messagesText;
 	}
 	
+	/**
+	 * Checks the attributes of the CFML tags of a source against the dictionary: required attributes that are missing,
+	 * and attributes that the other attributes of the tag rule out. Uses the rules compiled into the dictionary's tags,
+	 * so the only things built per tag are the messages for the problems it finds.
+	 * 
+	 * @param cfmlSource
+	 *            the source to check
+	 */
 	public void parseElements(CFMLSource cfmlSource) {
+		SyntaxDictionary dictionary = getDictionary();
+		AttributeRules.Check check = new AttributeRules.Check();
 		for (Element element : cfmlSource.getAllElements()) {
-			HashMap<?, ?> suggestedAttributes = new HashMap<Object, Object>();
-			String attributesFound = "";
-			
-			Set<?> dictAttributes = cfdic.getElementAttributes(element.getName());
-			
-			if (dictAttributes == null) {
+			String name = element.getName();
+			if (!name.startsWith("cf")) {
+				continue;
+			}
+			Tag tag = dictionary.getTag(name);
+			Attributes attributes = element.getAttributes();
+			if (tag == null || attributes == null) {
+				continue;
+			}
+			AttributeRules rules = tag.getAttributeRules();
+			if (rules.size() == 0) {
 				continue;
 			}
 			
-			Object[] params = dictAttributes.toArray();
-			
-			Map<String, String> itemAttributes = new HashMap<String, String>();
-			element.getAttributes().populateMap(itemAttributes, true);
-			
-			if (itemAttributes.size() > 0) {
-				attributesFound = " (Found: " + itemAttributes.toString() + ")";
+			check.reset(rules);
+			boolean collection = false;
+			for (Attribute attribute : attributes) {
+				if (attribute.getKey().equals("attributecollection")) {
+					// the attributes are in a struct, nothing to check
+					collection = true;
+					break;
+				}
+				check.attribute(attribute.getKey(), attribute.getValue());
+			}
+			if (collection) {
+				continue;
 			}
-			int lineNumber = cfmlSource.getRow(element.getBegin());
-			int startPosition = element.getBegin();
-			int endPosition = element.getEnd();
-			String name = element.getName();
-			String itemData = element.getTextExtractor().toString();
 			
-			// TODO
-			// for (int i = 0; i < params.length; i++) {
-			// Parameter currParam = (Parameter) params[i];
-			// if (currParam.isRequired() && !(itemAttributes.containsKey(currParam.getName().toLowerCase()))) {
-			// addMessage(new ParseError(lineNumber, startPosition, endPosition, itemData, "The attribute \'"
-			// + currParam.getName() + "\' is compulsory for the <" + name + "> tag." + attributesFound));
-			// }
-			//
-			// if (!currParam.getTriggers().isEmpty() && currParam.isRequired(suggestedAttributes) == 3
-			// && !itemAttributes.containsKey(currParam.getName())) {
-			// addMessage(new ParseError(lineNumber, startPosition, endPosition, itemData, "The attribute \'"
-			// + currParam.getName() + "\' is required for the <" + name + "> tag." + attributesFound));
-			// } else if (!currParam.getTriggers().isEmpty() && currParam.isTriggered(suggestedAttributes) == 0
-			// && itemAttributes.containsKey(currParam.getName())) {
-			// addMessage(new ParseError(lineNumber, startPosition, endPosition, itemData, "The attribute \'"
-			// + currParam.getName() + "\' is not valid for the <" + name + "> tag." + attributesFound));
-			// }
-			// }
+			BitSet missing = check.missing();
+			for (int i = missing.nextSetBit(0); i >= 0; i = missing.nextSetBit(i + 1)) {
+				addMessage(attributeError(cfmlSource, element, attributes, "The attribute \'" + rules.getName(i) + "\' is "
+						+ (rules.isAlwaysRequired(i) ? "compulsory" : "required") + " for the <" + name + "> tag."));
+			}
+			BitSet notTriggered = check.notTriggered();
+			for (int i = notTriggered.nextSetBit(0); i >= 0; i = notTriggered.nextSetBit(i + 1)) {
+				addMessage(attributeError(cfmlSource, element, attributes, "The attribute \'" + rules.getName(i)
+						+ "\' is not valid for the <" + name + "> tag."));
+			}
 		}
-		
+	}
+	
+	private ParseError attributeError(CFMLSource cfmlSource, Element element, Attributes attributes, String message) {
+		StartTag startTag = element.getStartTag();
+		return new ParseError(cfmlSource.getRow(element.getBegin()), element.getBegin(), element.getEnd(),
+				startTag.toString(), message + " (Found: " + attributes.toString().trim() + ")");
 	}
 	
 	public class StdErrReporter implements IErrorReporter {
@@ -533,21 +672,91 @@ public class CFMLParser {
 		return parseScript(readFileAsString(file));
 	}
 	
+	/**
+	 * Parses a script, checking a cancellation token as it goes: in the lexer at every token, in the parser before
+	 * every prediction and at every token of lookahead within one, and in the visitor that builds the AST at every
+	 * node. A parse stuck on a pathological script so stops soon after the token is cancelled or its deadline passes,
+	 * with a {@link ParseCancelledException} instead of a result.
+	 * 
+	 * @param cancellation
+	 *            the token, or null to not check one
+	 * @throws ParseCancelledException
+	 *             if the token is cancelled before the script is parsed
+	 */
+	public CFScriptStatement parseScript(String cfscript, CancellationToken cancellation)
+			throws ParseException, IOException {
+		CancellationToken previous = this.cancellation;
+		this.cancellation = cancellation;
+		try {
+			return parseScript(cfscript);
+		} finally {
+			this.cancellation = previous;
+		}
+	}
+	
 	public CFScriptStatement parseScript(String cfscript) throws ParseException, IOException {
-		CommonTokenStream tokens = createTokenStream(cfscript);
-		ScriptBlockContext scriptBlockContext = parseScriptBlockContext(tokens);
-		CFScriptStatement result = scriptVisitor.visit(scriptBlockContext);
-		if (result != null)
-			result.setTokens(tokens);
+		CommentTable comments = new CommentTable();
+		CommonTokenStream tokens = createTokenStream(cfscript, comments);
+		CFScriptStatement result;
+		// the doc comments of the declarations come from the comments recorded while lexing
+		scriptVisitor.setComments(comments);
+		scriptVisitor.setCancellation(cancellation);
+		try {
+			ScriptBlockContext scriptBlockContext = parseScriptBlockContext(tokens);
+			result = scriptVisitor.visit(scriptBlockContext);
+		} finally {
+			scriptVisitor.setComments(null);
+			scriptVisitor.setCancellation(null);
+		}
+		if (result != null) {
+			if (detachedAst) {
+				DetachableToken.detachAll(tokens.getTokens(), keepSource ? cfscript : null);
+				comments.detach(keepSource ? cfscript : null);
+			} else {
+				result.setTokens(tokens);
+			}
+		}
 		return result;
 		
 	}
 	
 	public CommonTokenStream createTokenStream(String cfscript) throws ParseException, IOException {
+		return createTokenStream(cfscript, null);
+	}
+	
+	/**
+	 * @param comments
+	 *            the table to record the comments in while lexing, or null
+	 */
+	private CommonTokenStream createTokenStream(String cfscript, CommentTable comments) {
 		final ANTLRInputStream input = new ANTLRInputStream(cfscript);
 		final CFSCRIPTLexer lexer = new CFSCRIPTLexer(input);
+		lexer.setTokenFactory(DetachableToken.FACTORY);
 		lexer.removeErrorListeners();
-		return new CommonTokenStream(lexer);
+		CommonTokenStream tokens = significantTokensOnly ? new SignificantTokenStream(lexer)
+				: new CommonTokenStream(lexer);
+		if (comments != null) {
+			// around the factory of the stream, which may not make the comment tokens
+			lexer.setTokenFactory(comments.record(lexer.getTokenFactory()));
+		}
+		if (cancellation != null) {
+			lexer.setTokenFactory(cancellation.watch(lexer.getTokenFactory()));
+		}
+		return tokens;
+	}
+	
+	/**
+	 * Lexes a script for its token types and spans only, without making token objects.
+	 * 
+	 * @param cfscript
+	 * @return the tokens, packed
+	 * @see ScriptTokenizer
+	 */
+	public TokenBuffer tokenize(String cfscript) {
+		if (tokenizer == null) {
+			tokenizer = new ScriptTokenizer();
+		}
+		return tokenizer.tokenize(cfscript);
 	}
 	
 	public ScriptBlockContext parseScriptBlockContext(String cfscript) throws ParseException, IOException {
@@ -560,6 +769,12 @@ public class CFMLParser {
 		ScriptBlockContext scriptStatement = null;
 		CFSCRIPTParser parser = new CFSCRIPTParser(tokens);
 		parser.removeErrorListeners();
+		if (grammarProfile != null) {
+			parser.setProfile(true);
+		} else if (cancellation != null) {
+			// with a profile the parser does not check, the lexer and the visitor still do
+			parser.setInterpreter(new CancellableATNSimulator(parser, cancellation));
+		}
 		if (tokens.getTokenSource() instanceof CFSCRIPTLexer) {
 			((CFSCRIPTLexer) tokens.getTokenSource()).addErrorListener(errorReporter);
 			((CFSCRIPTLexer) tokens.getTokenSource()).removeErrorListeners();
@@ -567,11 +782,16 @@ public class CFMLParser {
 		parser.reset();
 		// parser.addErrorListener(errorReporter);
 		parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
-		parser.setErrorHandler(new BailErrorStrategy());
+		// elements that fail are parsed again on their own, only failures outside of them reparse everything
+		StagedErrorStrategy stagedErrorStrategy = new StagedErrorStrategy();
+		parser.setErrorHandler(stagedErrorStrategy);
 		try {
 			scriptStatement = parser.scriptBlock();
-			
+			stagedErrorStrategy.reportErrors(errorReporter);
 		} catch (Exception e) {
+			if (e instanceof ParseCancelledException) {
+				throw (ParseCancelledException) e;
+			}
 			/*
 			 * throw new ParseException(e.getOffendingToken(), "Unexpected \'" +
 			 * parser.getTokenErrorDisplay(e.getOffendingToken()) + "\' (" + e.getOffendingToken().getText() + ")");
@@ -583,6 +803,10 @@ public class CFMLParser {
 			parser.setErrorHandler(new DefaultErrorStrategy());
 			parser.getInterpreter().setPredictionMode(PredictionMode.LL);
 			scriptStatement = parser.scriptBlock(); // STAGE 2
+		} finally {
+			if (grammarProfile != null) {
+				grammarProfile.add(parser, tokens);
+			}
 		}
 		// TestUtils.showGUI(scriptStatement, CFSCRIPTParser.ruleNames);
 		return scriptStatement;
@@ -600,6 +824,46 @@ public class CFMLParser {
 		return cfmlSource;
 	}
 	
+	/**
+	 * Sets whether the ASTs this parser builds are detached from the ANTLR objects that made them. A detached AST does
+	 * not get the token stream (see {@link CFScriptStatement#getTokens()}), and its tokens let go of the lexer and the
+	 * input once the AST is built, so holding on to an AST only holds on to the AST. Off by default.
+	 * 
+	 * @param detached
+	 *            true to detach the ASTs
+	 * @param keepSource
+	 *            true to have the tokens and doc comments read their text from the parsed string, which they then
+	 *            share; false to have each keep a copy of its own text, for when the source is not kept around anyway
+	 */
+	public void setDetachedAst(boolean detached, boolean keepSource) {
+		this.detachedAst = detached;
+		this.keepSource = keepSource;
+	}
+	
+	/**
+	 * Sets whether {@link #createTokenStream(String)}, and so {@link #parseScript(String)}, lexes for analysis only:
+	 * the token stream is then a {@link SignificantTokenStream}, which drops line breaks and comments as they are lexed
+	 * and keeps the line breaks that can end statements in a bitmap. The AST is the same, but the stream has no hidden
+	 * tokens to give back the source with, and takes a fraction of the memory. Off by default.
+	 * 
+	 * @param significantTokensOnly
+	 *            true to keep the significant tokens only
+	 */
+	public void setSignificantTokensOnly(boolean significantTokensOnly) {
+		this.significantTokensOnly = significantTokensOnly;
+	}
+	
+	/**
+	 * Sets a profile to add the prediction numbers of every script this parser parses to. The scripts are then parsed
+	 * with ANTLR's profiling ATN simulator, which is slower. Null, the default, to parse without profiling.
+	 * 
+	 * @param grammarProfile
+	 *            the profile, or null
+	 */
+	public void setGrammarProfile(GrammarProfile grammarProfile) {
+		this.grammarProfile = grammarProfile;
+	}
+	
 	public void setErrorReporter(IErrorReporter errorReporter) {
 		this.errorReporter = errorReporter;
 	}
@@ -0,0 +1,686 @@
+package cfml.parsing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import cfml.parsing.ComponentIndex.Component;
+import cfml.parsing.ComponentIndex.Function;
+import cfml.parsing.cfscript.CFAnonymousFunctionExpression;
+import cfml.parsing.cfscript.CFAssignmentExpression;
+import cfml.parsing.cfscript.CFExpression;
+import cfml.parsing.cfscript.CFFullVarExpression;
+import cfml.parsing.cfscript.CFFunctionExpression;
+import cfml.parsing.cfscript.CFIdentifier;
+import cfml.parsing.cfscript.CFNewExpression;
+import cfml.parsing.cfscript.CFVarDeclExpression;
+import cfml.parsing.cfscript.script.CFFuncDeclStatement;
+import cfml.parsing.cfscript.script.CFScriptStatement;
+import cfml.parsing.cfscript.walker.CFAstVisitor;
+import cfml.parsing.cfscript.walker.CFAstWalker;
+
+/**
+ * Which functions of a project call which.
+ *
+ * The functions are those of a {@link ComponentIndex}, numbered 0 to {@link #size()} - 1 in index order, and the calls
+ * are stored as int arrays: the callees of function i are targets[offsets[i]] to targets[offsets[i + 1]], sorted and
+ * without duplicates. Building is done in two steps: {@link #collect(String, CFScriptStatement)} gathers the call
+ * sites of one file and only reads its AST, so files can be collected in parallel, then
+ * {@link #build(ComponentIndex, Collection)} resolves them against the index and merges them into the arrays.
+ *
+ * Calls are resolved as follows:
+ * <ul>
+ * <li>f(), this.f() and variables.f() go to f of the component or the nearest component it extends that has one</li>
+ * <li>super.f() to f of the nearest component above it</li>
+ * <li>new C() to C.init, and new C().f() to C.f</li>
+ * <li>x.f() to C.f if x is assigned new C() or createObject("component", "C") in the function, or as variables.x or
+ * this.x anywhere in the file</li>
+ * <li>other calls on an object go to every function named f, the type of the object is not known</li>
+ * </ul>
+ * Calls that do not resolve, like calls to built in functions, are dropped. Calls made outside of functions, in the
+ * pseudo constructor, are kept as roots, see {@link #getEntryPoints()}. Tag components are part of the graph but their
+ * calls are not collected, a function only called from one looks unreachable.
+ */
+public class CallGraph {
+	
+	/** f(), this.f(), variables.f() */
+	private static final byte OWN = 0;
+	/** super.f() */
+	private static final byte SUPER = 1;
+	/** C.f() */
+	private static final byte TYPED = 2;
+	/** x.f() on an unknown x */
+	private static final byte ANY = 3;
+	/** x.f() on a variable whose type is looked up when the file is done */
+	private static final byte VARIABLE = 4;
+	
+	/**
+	 * The call sites of one file, see {@link CallGraph#collect(String, CFScriptStatement)}.
+	 */
+	public static final class FileCalls {
+		private final String path;
+		/** the lower case names of the functions calls are made from, -1 in from for the pseudo constructor */
+		private final List<String> functions = new ArrayList<String>();
+		private int size;
+		private int[] from = new int[16];
+		private byte[] kinds = new byte[16];
+		/** the component of TYPED calls, the variable of VARIABLE calls */
+		private String[] receivers = new String[16];
+		private String[] names = new String[16];
+		
+		FileCalls(String path) {
+			this.path = path;
+		}
+		
+		public String getPath() {
+			return path;
+		}
+		
+		/**
+		 * @return the number of call sites
+		 */
+		public int size() {
+			return size;
+		}
+		
+		void add(int function, byte kind, String receiver, String name) {
+			if (size == from.length) {
+				int length = size * 2;
+				from = Arrays.copyOf(from, length);
+				kinds = Arrays.copyOf(kinds, length);
+				receivers = Arrays.copyOf(receivers, length);
+				names = Arrays.copyOf(names, length);
+			}
+			from[size] = function;
+			kinds[size] = kind;
+			receivers[size] = receiver;
+			names[size] = name;
+			size++;
+		}
+	}
+	
+	private final ComponentIndex index;
+	private final Function[] functions;
+	/** the number of the first function of each component */
+	private final Map<Component, Integer> firsts;
+	private final int[] offsets;
+	private final int[] targets;
+	private final int[] roots;
+	/** the reverse graph, in the same form as offsets and targets */
+	private final int[] callerOffsets;
+	private final int[] callers;
+	
+	private CallGraph(ComponentIndex index, Function[] functions, Map<Component, Integer> firsts, int[] offsets,
+			int[] targets, int[] roots) {
+		this.index = index;
+		this.functions = functions;
+		this.firsts = firsts;
+		this.offsets = offsets;
+		this.targets = targets;
+		this.roots = roots;
+		
+		int size = functions.length;
+		callerOffsets = new int[size + 1];
+		for (int target : targets) {
+			callerOffsets[target + 1]++;
+		}
+		for (int i = 0; i < size; i++) {
+			callerOffsets[i + 1] += callerOffsets[i];
+		}
+		int[] fill = Arrays.copyOf(callerOffsets, size);
+		callers = new int[targets.length];
+		for (int caller = 0; caller < size; caller++) {
+			for (int j = offsets[caller]; j < offsets[caller + 1]; j++) {
+				callers[fill[targets[j]]++] = caller;
+			}
+		}
+	}
+	
+	/**
+	 * Collects the calls of a parsed script file. Only reads the script, so it can be called for several files at
+	 * once.
+	 *
+	 * @param path
+	 *            the file, as given to the {@link ComponentIndex}
+	 * @param script
+	 * @return the call sites of the file
+	 */
+	public static FileCalls collect(String path, CFScriptStatement script) {
+		final FileCalls calls = new FileCalls(path);
+		// the types of variables: per function, and variables. and this. ones for the whole file
+		final List<Map<String, String>> localTypes = new ArrayList<Map<String, String>>();
+		final Map<String, String> componentTypes = new HashMap<String, String>();
+		CFAstWalker.walk(script, new CFAstVisitor() {
+			private int function = -1;
+			private int depth;
+			private final Set<CFFunctionExpression> memberCalls = Collections
+					.newSetFromMap(new IdentityHashMap<CFFunctionExpression, Boolean>());
+			
+			@Override
+			public boolean enter(CFFuncDeclStatement node) {
+				// closures count as part of the function they are in
+				if (depth++ == 0 && node.getName() != null) {
+					function = calls.functions.size();
+					calls.functions.add(node.getName().getName().toLowerCase(Locale.ENGLISH));
+					localTypes.add(new HashMap<String, String>());
+				}
+				return true;
+			}
+			
+			@Override
+			public void leave(CFFuncDeclStatement node) {
+				if (--depth == 0) {
+					function = -1;
+				}
+			}
+			
+			@Override
+			public boolean enter(CFAnonymousFunctionExpression node) {
+				// a closure outside of a function has no name to count as
+				depth++;
+				return true;
+			}
+			
+			@Override
+			public void leave(CFAnonymousFunctionExpression node) {
+				depth--;
+			}
+			
+			@Override
+			public boolean enter(CFFullVarExpression node) {
+				List<CFExpression> expressions = node.getExpressions();
+				for (int i = 1; i < expressions.size(); i++) {
+					if (expressions.get(i) instanceof CFFunctionExpression) {
+						CFFunctionExpression call = (CFFunctionExpression) expressions.get(i);
+						memberCalls.add(call);
+						memberCall(expressions, i, call.getFunctionName());
+					}
+				}
+				return true;
+			}
+			
+			private void memberCall(List<CFExpression> expressions, int call, String name) {
+				CFExpression first = expressions.get(0);
+				String scope = first.getClass() == CFIdentifier.class
+						? ((CFIdentifier) first).getName().toLowerCase(Locale.ENGLISH) : null;
+				if (call == 1 && ("this".equals(scope) || "variables".equals(scope))) {
+					calls.add(function, OWN, null, name);
+				} else if (call == 1 && "super".equals(scope)) {
+					calls.add(function, SUPER, null, name);
+				} else if (call == 1 && first instanceof CFNewExpression) {
+					calls.add(function, TYPED, type((CFNewExpression) first), name);
+				} else if (call == 1 && scope != null) {
+					calls.add(function, VARIABLE, scope, name);
+				} else if (call == 2 && scope != null && expressions.get(1).getClass() == CFIdentifier.class) {
+					String variable = ((CFIdentifier) expressions.get(1)).getName().toLowerCase(Locale.ENGLISH);
+					if (scope.equals("local") || scope.equals("variables") || scope.equals("this")) {
+						calls.add(function, VARIABLE, scope + "." + variable, name);
+					} else {
+						calls.add(function, ANY, null, name);
+					}
+				} else {
+					calls.add(function, ANY, null, name);
+				}
+			}
+			
+			@Override
+			public boolean enter(CFFunctionExpression node) {
+				if (!memberCalls.contains(node) && node.getNameId() != null) {
+					calls.add(function, OWN, null, node.getFunctionName());
+				}
+				return true;
+			}
+			
+			@Override
+			public boolean enter(CFNewExpression node) {
+				calls.add(function, TYPED, type(node), "init");
+				return true;
+			}
+			
+			@Override
+			public boolean enter(CFAssignmentExpression node) {
+				assign(node.getLeft(), node.getRight());
+				return true;
+			}
+			
+			@Override
+			public boolean enter(CFVarDeclExpression node) {
+				assign(node.getVar(), node.getInit());
+				return true;
+			}
+			
+			private void assign(CFExpression left, CFExpression right) {
+				String type = right instanceof CFNewExpression ? type((CFNewExpression) right) : createObjectType(right);
+				if (type == null || left == null) {
+					return;
+				}
+				if (left.getClass() == CFIdentifier.class) {
+					String variable = ((CFIdentifier) left).getName().toLowerCase(Locale.ENGLISH);
+					if (function >= 0) {
+						localTypes.get(function).put(variable, type);
+					} else {
+						componentTypes.put(variable, type);
+					}
+				} else if (left instanceof CFFullVarExpression) {
+					List<CFExpression> expressions = ((CFFullVarExpression) left).getExpressions();
+					if (expressions.size() == 2 && expressions.get(0).getClass() == CFIdentifier.class
+							&& expressions.get(1).getClass() == CFIdentifier.class) {
+						String scope = ((CFIdentifier) expressions.get(0)).getName().toLowerCase(Locale.ENGLISH);
+						String variable = ((CFIdentifier) expressions.get(1)).getName().toLowerCase(Locale.ENGLISH);
+						if (scope.equals("variables") || scope.equals("this")) {
+							componentTypes.put(variable, type);
+						} else if (scope.equals("local") && function >= 0) {
+							localTypes.get(function).put(variable, type);
+						}
+					}
+				}
+			}
+		});
+		
+		// now that all assignments are known, give the calls on variables a type
+		for (int i = 0; i < calls.size; i++) {
+			if (calls.kinds[i] != VARIABLE) {
+				continue;
+			}
+			String variable = calls.receivers[i];
+			int dot = variable.indexOf('.');
+			String scope = dot < 0 ? null : variable.substring(0, dot);
+			String name = variable.substring(dot + 1);
+			String type = null;
+			if (calls.from[i] >= 0 && (scope == null || scope.equals("local"))) {
+				type = localTypes.get(calls.from[i]).get(name);
+			}
+			if (type == null && (scope == null || !scope.equals("local"))) {
+				type = componentTypes.get(name);
+			}
+			calls.kinds[i] = type == null ? ANY : TYPED;
+			calls.receivers[i] = type;
+		}
+		return calls;
+	}
+	
+	private static String type(CFNewExpression node) {
+		return ComponentIndex.text(node.getComponentPath());
+	}
+	
+	/**
+	 * @return the component of createObject("component", "C") or createObject("C"), null for anything else
+	 */
+	private static String createObjectType(CFExpression expression) {
+		if (!(expression instanceof CFFunctionExpression)) {
+			return null;
+		}
+		CFFunctionExpression call = (CFFunctionExpression) expression;
+		if (call.getNameId() == null || !call.getFunctionName().equals("createobject")) {
+			return null;
+		}
+		List<CFExpression> args = call.getArgs();
+		if (args.size() == 1) {
+			return ComponentIndex.text(args.get(0));
+		}
+		if (args.size() == 2 && "component".equalsIgnoreCase(ComponentIndex.text(args.get(0)))) {
+			return ComponentIndex.text(args.get(1));
+		}
+		return null;
+	}
+	
+	/**
+	 * Collects the calls of the scripts with a number of threads, and builds the graph.
+	 *
+	 * @param index
+	 *            the components of the project
+	 * @param scripts
+	 *            the parsed script files, by path
+	 * @param threads
+	 *            the number of threads to collect with
+	 * @return the graph
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for the threads
+	 */
+	public static CallGraph build(ComponentIndex index, Map<String, CFScriptStatement> scripts, int threads)
+			throws InterruptedException {
+		if (threads < 1) {
+			throw new IllegalArgumentException("Building a call graph needs at least one thread");
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<FileCalls>> futures = new ArrayList<Future<FileCalls>>(scripts.size());
+			for (final Map.Entry<String, CFScriptStatement> script : scripts.entrySet()) {
+				futures.add(executor.submit(new Callable<FileCalls>() {
+					@Override
+					public FileCalls call() {
+						return collect(script.getKey(), script.getValue());
+					}
+				}));
+			}
+			List<FileCalls> files = new ArrayList<FileCalls>(futures.size());
+			for (Future<FileCalls> future : futures) {
+				try {
+					files.add(future.get());
+				} catch (ExecutionException e) {
+					throw new IllegalStateException("Collecting the calls of a file failed", e.getCause());
+				}
+			}
+			return build(index, files);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+	
+	/**
+	 * Resolves the calls of the files against the index and builds the graph. Files that are not in the index are
+	 * skipped.
+	 *
+	 * @param index
+	 *            the components of the project
+	 * @param files
+	 *            the calls of the files, see {@link #collect(String, CFScriptStatement)}
+	 * @return the graph
+	 */
+	public static CallGraph build(ComponentIndex index, Collection<FileCalls> files) {
+		List<Component> components = index.getComponents();
+		List<Function> all = new ArrayList<Function>();
+		// the number of the first function of each component, and of every function by lower case name
+		Map<Component, Integer> firsts = new IdentityHashMap<Component, Integer>();
+		Map<String, int[]> byName = new HashMap<String, int[]>();
+		for (Component component : components) {
+			firsts.put(component, all.size());
+			for (Function function : component.getFunctions()) {
+				if (function.getName() != null) {
+					String key = function.getName().toLowerCase(Locale.ENGLISH);
+					int[] ids = byName.get(key);
+					ids = ids == null ? new int[1] : Arrays.copyOf(ids, ids.length + 1);
+					ids[ids.length - 1] = all.size();
+					byName.put(key, ids);
+				}
+				all.add(function);
+			}
+		}
+		
+		Resolver resolver = new Resolver(index, firsts);
+		IntList from = new IntList();
+		IntList to = new IntList();
+		IntList roots = new IntList();
+		for (FileCalls file : files) {
+			Component component = index.getComponent(file.getPath());
+			if (component == null) {
+				continue;
+			}
+			// the numbers of the functions the calls are made from
+			int[] callers = new int[file.functions.size()];
+			for (int i = 0; i < callers.length; i++) {
+				callers[i] = resolver.own(component, file.functions.get(i));
+			}
+			for (int i = 0; i < file.size; i++) {
+				int caller = file.from[i] < 0 ? -1 : callers[file.from[i]];
+				if (file.from[i] >= 0 && caller < 0) {
+					continue;
+				}
+				String name = file.names[i];
+				switch (file.kinds[i]) {
+				case OWN:
+					edge(from, to, roots, caller, resolver.method(component, name));
+					break;
+				case SUPER:
+					edge(from, to, roots, caller, resolver.method(index.findComponent(component.getExtends()), name));
+					break;
+				case TYPED:
+					edge(from, to, roots, caller, resolver.method(index.findComponent(file.receivers[i]), name));
+					break;
+				default:
+					int[] ids = byName.get(name);
+					if (ids != null) {
+						for (int id : ids) {
+							edge(from, to, roots, caller, id);
+						}
+					}
+				}
+			}
+		}
+		
+		// counting sort into one array per caller, then sort and drop duplicates in place
+		int size = all.size();
+		int[] offsets = new int[size + 1];
+		for (int i = 0; i < from.size; i++) {
+			offsets[from.values[i] + 1]++;
+		}
+		for (int i = 0; i < size; i++) {
+			offsets[i + 1] += offsets[i];
+		}
+		int[] fill = Arrays.copyOf(offsets, size);
+		int[] targets = new int[to.size];
+		for (int i = 0; i < from.size; i++) {
+			targets[fill[from.values[i]]++] = to.values[i];
+		}
+		int write = 0;
+		for (int i = 0; i < size; i++) {
+			int start = offsets[i];
+			int end = offsets[i + 1];
+			Arrays.sort(targets, start, end);
+			offsets[i] = write;
+			for (int j = start; j < end; j++) {
+				if (j == start || targets[j] != targets[j - 1]) {
+					targets[write++] = targets[j];
+				}
+			}
+		}
+		offsets[size] = write;
+		return new CallGraph(index, all.toArray(new Function[size]), firsts, offsets, Arrays.copyOf(targets, write),
+				roots.toArray());
+	}
+	
+	private static void edge(IntList from, IntList to, IntList roots, int caller, int callee) {
+		if (callee < 0) {
+			return;
+		}
+		if (caller < 0) {
+			roots.add(callee);
+		} else {
+			from.add(caller);
+			to.add(callee);
+		}
+	}
+	
+	/**
+	 * Finds the numbers of functions, caching them per component.
+	 */
+	private static final class Resolver {
+		private final ComponentIndex index;
+		private final Map<Component, Integer> firsts;
+		private final Map<Component, Map<String, Integer>> own = new IdentityHashMap<Component, Map<String, Integer>>();
+		
+		Resolver(ComponentIndex index, Map<Component, Integer> firsts) {
+			this.index = index;
+			this.firsts = firsts;
+		}
+		
+		/**
+		 * @return the number of a function the component declares itself, -1 if it has none by that name
+		 */
+		int own(Component component, String name) {
+			Map<String, Integer> functions = own.get(component);
+			if (functions == null) {
+				functions = new HashMap<String, Integer>();
+				int first = firsts.get(component);
+				List<Function> list = component.getFunctions();
+				for (int i = list.size() - 1; i >= 0; i--) {
+					if (list.get(i).getName() != null) {
+						functions.put(list.get(i).getName().toLowerCase(Locale.ENGLISH), first + i);
+					}
+				}
+				own.put(component, functions);
+			}
+			Integer id = functions.get(name);
+			return id == null ? -1 : id.intValue();
+		}
+		
+		/**
+		 * @return the number of the function of the component or the nearest one it extends, -1 if none has it
+		 */
+		int method(Component component, String name) {
+			List<Component> seen = new ArrayList<Component>();
+			while (component != null && !seen.contains(component)) {
+				int id = own(component, name);
+				if (id >= 0) {
+					return id;
+				}
+				seen.add(component);
+				component = component.isInterface() ? null : index.findComponent(component.getExtends());
+			}
+			return -1;
+		}
+	}
+	
+	/**
+	 * A growable int array.
+	 */
+	private static final class IntList {
+		int[] values = new int[64];
+		int size;
+		
+		void add(int value) {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, size * 2);
+			}
+			values[size++] = value;
+		}
+		
+		int[] toArray() {
+			return Arrays.copyOf(values, size);
+		}
+	}
+	
+	public ComponentIndex getIndex() {
+		return index;
+	}
+	
+	/**
+	 * @return the number of functions
+	 */
+	public int size() {
+		return functions.length;
+	}
+	
+	/**
+	 * @param id
+	 * @return the function with that number
+	 */
+	public Function getFunction(int id) {
+		return functions[id];
+	}
+	
+	/**
+	 * @param function
+	 * @return the number of a function of the index, -1 if it is not part of the graph
+	 */
+	public int getId(Function function) {
+		Integer first = firsts.get(function.getComponent());
+		if (first == null) {
+			return -1;
+		}
+		// the functions of a component are numbered together
+		int i = function.getComponent().getFunctions().indexOf(function);
+		return i < 0 ? -1 : first.intValue() + i;
+	}
+	
+	/**
+	 * @param id
+	 * @return the numbers of the functions it calls, ascending
+	 */
+	public int[] getCallees(int id) {
+		return Arrays.copyOfRange(targets, offsets[id], offsets[id + 1]);
+	}
+	
+	/**
+	 * @param id
+	 * @return the numbers of the functions that call it, ascending
+	 */
+	public int[] getCallers(int id) {
+		return Arrays.copyOfRange(callers, callerOffsets[id], callerOffsets[id + 1]);
+	}
+	
+	/**
+	 * @return the functions reachable from outside: remote functions, the functions of Application components, and
+	 *         the functions called from pseudo constructors
+	 */
+	public int[] getEntryPoints() {
+		IntList result = new IntList();
+		BitSet added = new BitSet(functions.length);
+		for (int i = 0; i < functions.length; i++) {
+			if ("remote".equals(functions[i].getAccess())
+					|| "application".equalsIgnoreCase(functions[i].getComponent().getName())) {
+				added.set(i);
+				result.add(i);
+			}
+		}
+		for (int root : roots) {
+			if (!added.get(root)) {
+				added.set(root);
+				result.add(root);
+			}
+		}
+		return result.toArray();
+	}
+	
+	/**
+	 * @param from
+	 *            the numbers of the functions to start from
+	 * @return the functions reachable from them, including themselves
+	 */
+	public BitSet getReachable(int... from) {
+		BitSet reached = new BitSet(functions.length);
+		int[] queue = new int[functions.length];
+		int tail = 0;
+		for (int id : from) {
+			if (!reached.get(id)) {
+				reached.set(id);
+				queue[tail++] = id;
+			}
+		}
+		for (int head = 0; head < tail; head++) {
+			int id = queue[head];
+			for (int j = offsets[id]; j < offsets[id + 1]; j++) {
+				int target = targets[j];
+				if (!reached.get(target)) {
+					reached.set(target);
+					queue[tail++] = target;
+				}
+			}
+		}
+		return reached;
+	}
+	
+	/**
+	 * @return the functions not reachable from the {@link #getEntryPoints()}, in index order
+	 */
+	public List<Function> getUnreachable() {
+		return getUnreachable(getEntryPoints());
+	}
+	
+	/**
+	 * @param entryPoints
+	 *            the numbers of the functions to start from
+	 * @return the functions not reachable from them, in index order
+	 */
+	public List<Function> getUnreachable(int... entryPoints) {
+		BitSet reached = getReachable(entryPoints);
+		List<Function> result = new ArrayList<Function>();
+		for (int i = reached.nextClearBit(0); i < functions.length; i = reached.nextClearBit(i + 1)) {
+			result.add(functions[i]);
+		}
+		return result;
+	}
+}
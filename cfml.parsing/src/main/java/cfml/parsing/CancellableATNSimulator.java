@@ -0,0 +1,41 @@
+package cfml.parsing;
+
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.TokenStream;
+import org.antlr.v4.runtime.atn.ATNConfigSet;
+import org.antlr.v4.runtime.atn.ParserATNSimulator;
+
+import cfml.parsing.util.CancellationToken;
+
+/**
+ * The ATN simulator of a parser, checking a {@link CancellationToken} before every prediction and at every token of
+ * lookahead within one. It shares the DFA cache of the simulator it replaces.
+ */
+class CancellableATNSimulator extends ParserATNSimulator {
+	
+	private final CancellationToken cancellation;
+	
+	/**
+	 * @param parser
+	 *            the parser, whose simulator this one then replaces
+	 */
+	CancellableATNSimulator(Parser parser, CancellationToken cancellation) {
+		super(parser, parser.getATN(), parser.getInterpreter().decisionToDFA,
+				parser.getInterpreter().getSharedContextCache());
+		this.cancellation = cancellation;
+		setPredictionMode(parser.getInterpreter().getPredictionMode());
+	}
+	
+	@Override
+	public int adaptivePredict(TokenStream input, int decision, ParserRuleContext outerContext) {
+		cancellation.check();
+		return super.adaptivePredict(input, decision, outerContext);
+	}
+	
+	@Override
+	protected ATNConfigSet computeReachSet(ATNConfigSet closure, int t, boolean fullCtx) {
+		cancellation.check();
+		return super.computeReachSet(closure, t, fullCtx);
+	}
+}
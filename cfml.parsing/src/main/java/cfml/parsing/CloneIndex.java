@@ -0,0 +1,227 @@
+package cfml.parsing;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import cfml.parsing.cfscript.CFExpression;
+import cfml.parsing.cfscript.HasToken;
+import cfml.parsing.cfscript.script.CFScriptStatement;
+import cfml.parsing.cfscript.walker.CFFingerprint;
+
+/**
+ * Duplicated code across the files of a project, found by the structural hashes of {@link CFFingerprint}.
+ *
+ * Every subtree of at least the minimum size goes into a hash table by its hash, so finding clones takes one pass per
+ * file and a lookup per subtree instead of comparing subtrees pairwise. Files are added with
+ * {@link #update(String, CFScriptStatement)}, which replaces what was indexed for the file before.
+ *
+ * {@link #getCloneGroups()} only reports the largest clones. The subtrees of a clone are clones as well, so a group is
+ * left out when each of its occurrences is a child of an occurrence of the same cloned parent.
+ *
+ * <pre>
+ * CloneIndex clones = new CloneIndex(20, true);
+ * clones.update(path, parser.parseScript(contents));
+ * for (CloneIndex.CloneGroup group : clones.getCloneGroups()) ...
+ * </pre>
+ */
+public class CloneIndex {
+	
+	/**
+	 * A subtree of a file.
+	 */
+	public static final class Occurrence {
+		private final String path;
+		private final HasToken node;
+		private final long hash;
+		private final int size;
+		/** the hash of the parent of the node, 0 for the root */
+		private final long parentHash;
+		
+		Occurrence(String path, HasToken node, long hash, int size, long parentHash) {
+			this.path = path;
+			this.node = node;
+			this.hash = hash;
+			this.size = size;
+			this.parentHash = parentHash;
+		}
+		
+		public String getPath() {
+			return path;
+		}
+		
+		/**
+		 * @return the root of the subtree, a {@link CFExpression} or a {@link CFScriptStatement}
+		 */
+		public HasToken getNode() {
+			return node;
+		}
+		
+		public int getLine() {
+			return node.getToken() == null ? -1 : node.getToken().getLine();
+		}
+		
+		public int getColumn() {
+			return node.getToken() == null ? -1 : node.getToken().getCharPositionInLine();
+		}
+		
+		int getOffset() {
+			return node.getToken() == null ? -1 : node.getToken().getStartIndex();
+		}
+		
+		@Override
+		public String toString() {
+			return path + ":" + getLine() + ":" + getColumn();
+		}
+	}
+	
+	/**
+	 * Subtrees with the same hash.
+	 */
+	public static final class CloneGroup {
+		private final long hash;
+		private final int size;
+		private final List<Occurrence> occurrences;
+		
+		CloneGroup(long hash, int size, List<Occurrence> occurrences) {
+			this.hash = hash;
+			this.size = size;
+			this.occurrences = occurrences;
+		}
+		
+		public long getHash() {
+			return hash;
+		}
+		
+		/**
+		 * @return the number of nodes of each occurrence
+		 */
+		public int getSize() {
+			return size;
+		}
+		
+		public List<Occurrence> getOccurrences() {
+			return Collections.unmodifiableList(occurrences);
+		}
+	}
+	
+	private static final Comparator<Occurrence> BY_POSITION = new Comparator<Occurrence>() {
+		@Override
+		public int compare(Occurrence o1, Occurrence o2) {
+			int result = o1.path.compareTo(o2.path);
+			return result != 0 ? result : o1.getOffset() - o2.getOffset();
+		}
+	};
+	
+	private final int minSize;
+	private final boolean normalized;
+	private final Map<String, List<Occurrence>> files = new HashMap<String, List<Occurrence>>();
+	private final Map<Long, List<Occurrence>> buckets = new HashMap<Long, List<Occurrence>>();
+	
+	/**
+	 * @param minSize
+	 *            the number of nodes a subtree needs to count as a clone
+	 * @param normalized
+	 *            true to match subtrees that only differ in names and literal values
+	 */
+	public CloneIndex(int minSize, boolean normalized) {
+		if (minSize < 1) {
+			throw new IllegalArgumentException("The minimum clone size must be at least 1");
+		}
+		this.minSize = minSize;
+		this.normalized = normalized;
+	}
+	
+	/**
+	 * Indexes the subtrees of a file, replacing those indexed for it before.
+	 *
+	 * @param path
+	 * @param script
+	 */
+	public void update(String path, CFScriptStatement script) {
+		remove(path);
+		CFFingerprint fingerprint = CFFingerprint.compute(script, normalized);
+		List<Occurrence> occurrences = new ArrayList<Occurrence>();
+		for (int i = 0; i < fingerprint.size(); i++) {
+			if (fingerprint.getSize(i) < minSize) {
+				continue;
+			}
+			int parent = fingerprint.getParent(i);
+			Occurrence occurrence = new Occurrence(path, fingerprint.getNode(i), fingerprint.getHash(i),
+					fingerprint.getSize(i), parent < 0 ? 0 : fingerprint.getHash(parent));
+			occurrences.add(occurrence);
+			List<Occurrence> bucket = buckets.get(occurrence.hash);
+			if (bucket == null) {
+				bucket = new ArrayList<Occurrence>(2);
+				buckets.put(occurrence.hash, bucket);
+			}
+			bucket.add(occurrence);
+		}
+		files.put(path, occurrences);
+	}
+	
+	/**
+	 * @param path
+	 * @return true if the file was indexed
+	 */
+	public boolean remove(String path) {
+		List<Occurrence> occurrences = files.remove(path);
+		if (occurrences == null) {
+			return false;
+		}
+		for (Occurrence occurrence : occurrences) {
+			List<Occurrence> bucket = buckets.get(occurrence.hash);
+			bucket.remove(occurrence);
+			if (bucket.isEmpty()) {
+				buckets.remove(occurrence.hash);
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * @return the groups of two or more equal subtrees that are not part of a larger clone, largest first
+	 */
+	public List<CloneGroup> getCloneGroups() {
+		List<CloneGroup> groups = new ArrayList<CloneGroup>();
+		for (Map.Entry<Long, List<Occurrence>> bucket : buckets.entrySet()) {
+			List<Occurrence> occurrences = bucket.getValue();
+			if (occurrences.size() < 2 || isContained(occurrences)) {
+				continue;
+			}
+			List<Occurrence> sorted = new ArrayList<Occurrence>(occurrences);
+			Collections.sort(sorted, BY_POSITION);
+			groups.add(new CloneGroup(bucket.getKey(), sorted.get(0).size, sorted));
+		}
+		Collections.sort(groups, new Comparator<CloneGroup>() {
+			@Override
+			public int compare(CloneGroup g1, CloneGroup g2) {
+				if (g1.size != g2.size) {
+					return g2.size - g1.size;
+				}
+				return BY_POSITION.compare(g1.occurrences.get(0), g2.occurrences.get(0));
+			}
+		});
+		return groups;
+	}
+	
+	/**
+	 * @return true if the occurrences all have the same parent, and it is a clone itself
+	 */
+	private boolean isContained(List<Occurrence> occurrences) {
+		long parentHash = occurrences.get(0).parentHash;
+		if (parentHash == 0) {
+			return false;
+		}
+		for (Occurrence occurrence : occurrences) {
+			if (occurrence.parentHash != parentHash) {
+				return false;
+			}
+		}
+		List<Occurrence> parents = buckets.get(parentHash);
+		return parents != null && parents.size() >= 2;
+	}
+}
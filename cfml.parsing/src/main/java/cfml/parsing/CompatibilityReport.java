@@ -0,0 +1,244 @@
+package cfml.parsing;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import cfml.dictionary.CompatibilityIndex;
+import cfml.parsing.cfml.CFMLVisitor;
+import cfml.parsing.cfscript.CFExpression;
+import cfml.parsing.cfscript.CFFullVarExpression;
+import cfml.parsing.cfscript.CFFunctionExpression;
+import cfml.parsing.cfscript.script.CFScriptStatement;
+import cfml.parsing.cfscript.walker.CFAstVisitor;
+import cfml.parsing.cfscript.walker.CFAstWalker;
+import net.htmlparser.jericho.Attribute;
+import net.htmlparser.jericho.Attributes;
+import net.htmlparser.jericho.Element;
+
+/**
+ * Reports, per file, the tags, tag attributes and functions a project uses that some of the versions of a
+ * {@link CompatibilityIndex} do not support.
+ *
+ * Tag sources are fed through {@link #checkSource(String, CFMLParser, CFMLSource)}, which visits every element and the
+ * expressions and cfscript in them; script files through {@link #checkScript(String, CFScriptStatement)}. Names none of
+ * the versions know, like custom tags and UDFs, are not reported. Function calls on an object (foo.len()) are member
+ * functions or methods, not built in functions, and are not checked either.
+ *
+ * <pre>
+ * CompatibilityReport report = new CompatibilityReport(DictionaryManager.getCompatibilityIndex());
+ * report.checkSource(path, parser, parser.addCFMLSource(path, contents));
+ * for (CompatibilityReport.Issue issue : report.getIssues(path)) ...
+ * </pre>
+ */
+public class CompatibilityReport extends CFMLVisitor {
+	
+	public static final String TAG = "tag";
+	public static final String ATTRIBUTE = "attribute";
+	public static final String FUNCTION = "function";
+	
+	/**
+	 * One construct of a file that some versions do not support.
+	 */
+	public static final class Issue {
+		private final String kind;
+		private final String name;
+		private final long unsupported;
+		private final int line;
+		private int count = 1;
+		
+		Issue(String kind, String name, long unsupported, int line) {
+			this.kind = kind;
+			this.name = name;
+			this.unsupported = unsupported;
+			this.line = line;
+		}
+		
+		/**
+		 * @return {@link CompatibilityReport#TAG}, {@link CompatibilityReport#ATTRIBUTE} or
+		 *         {@link CompatibilityReport#FUNCTION}
+		 */
+		public String getKind() {
+			return kind;
+		}
+		
+		/**
+		 * @return the name, tag.attribute for attributes
+		 */
+		public String getName() {
+			return name;
+		}
+		
+		/**
+		 * @return the bits of the versions that do not support it, see {@link CompatibilityIndex#getLabels(long)}
+		 */
+		public long getUnsupported() {
+			return unsupported;
+		}
+		
+		/**
+		 * @return the line it is first used on
+		 */
+		public int getLine() {
+			return line;
+		}
+		
+		/**
+		 * @return how often the file uses it
+		 */
+		public int getCount() {
+			return count;
+		}
+	}
+	
+	private final CompatibilityIndex index;
+	/** path to the issues of the file, by kind:name */
+	private final Map<String, Map<String, Issue>> issues = new LinkedHashMap<String, Map<String, Issue>>();
+	private Map<String, Issue> fileIssues;
+	/** added to the lines of the expressions and script being visited */
+	private int lineOffset;
+	
+	public CompatibilityReport(CompatibilityIndex index) {
+		this.index = index;
+	}
+	
+	/**
+	 * Checks the tags of a source, and the expressions and cfscript in them.
+	 *
+	 * @param path
+	 *            the file the source comes from
+	 * @param parser
+	 *            the parser to parse expressions and cfscript with
+	 * @param source
+	 *            the tag source
+	 * @throws Exception
+	 *             if an expression or script can not be parsed
+	 */
+	public void checkSource(String path, CFMLParser parser, CFMLSource source) throws Exception {
+		startFile(path);
+		for (Element element : source.getChildElements()) {
+			parser.visit(element, 0, this);
+		}
+	}
+	
+	/**
+	 * Checks a parsed script file.
+	 *
+	 * @param path
+	 *            the file the script comes from
+	 * @param script
+	 *            the parsed script
+	 */
+	public void checkScript(String path, CFScriptStatement script) {
+		startFile(path);
+		lineOffset = 0;
+		visitScript(script);
+	}
+	
+	private void startFile(String path) {
+		fileIssues = issues.get(path);
+		if (fileIssues == null) {
+			fileIssues = new LinkedHashMap<String, Issue>();
+			issues.put(path, fileIssues);
+		}
+	}
+	
+	/**
+	 * @return the files checked so far, in the order they were checked
+	 */
+	public List<String> getFiles() {
+		return new ArrayList<String>(issues.keySet());
+	}
+	
+	/**
+	 * @param path
+	 * @return the issues of a file, in the order they first appear; empty if there are none or the file was not checked
+	 */
+	public List<Issue> getIssues(String path) {
+		Map<String, Issue> fileIssues = issues.get(path);
+		if (fileIssues == null) {
+			return Collections.emptyList();
+		}
+		return Collections.unmodifiableList(new ArrayList<Issue>(fileIssues.values()));
+	}
+	
+	public CompatibilityIndex getIndex() {
+		return index;
+	}
+	
+	private void report(String kind, String name, long versions, int line) {
+		if (versions == 0) {
+			// not a built in one
+			return;
+		}
+		long unsupported = index.getAllVersions() & ~versions;
+		if (unsupported == 0) {
+			return;
+		}
+		String key = kind + ":" + name;
+		Issue issue = fileIssues.get(key);
+		if (issue != null) {
+			issue.count++;
+			return;
+		}
+		fileIssues.put(key, new Issue(kind, name, unsupported, line));
+	}
+	
+	@Override
+	public void visitElementStart(Element elem) {
+		String name = elem.getName();
+		if (!name.startsWith("cf")) {
+			return;
+		}
+		int line = elem.getSource().getRow(elem.getBegin());
+		// expressions and script in the element count their lines from its start tag
+		lineOffset = elem.getSource().getRow(elem.getStartTag().getEnd()) - 1;
+		long tagVersions = index.getTagVersions(name);
+		report(TAG, name, tagVersions, line);
+		
+		Attributes attributes = elem.getAttributes();
+		if (tagVersions == 0 || attributes == null) {
+			return;
+		}
+		for (Attribute attribute : attributes) {
+			long versions = index.getAttributeVersions(name, attribute.getKey());
+			// versions without the tag are reported for the tag
+			report(ATTRIBUTE, name + "." + attribute.getKey(), versions == 0 ? 0 : versions | ~tagVersions, line);
+		}
+	}
+	
+	@Override
+	public void visitElementEnd(Element elem) {
+	}
+	
+	@Override
+	public void visitExpression(String context, CFExpression expression) {
+		CFAstWalker.walk(expression, functions);
+	}
+	
+	@Override
+	public void visitScript(CFScriptStatement scriptStatement) {
+		CFAstWalker.walk(scriptStatement, functions);
+	}
+	
+	private final CFAstVisitor functions = new CFAstVisitor() {
+		@Override
+		public boolean enter(CFFunctionExpression function) {
+			if (!(function.getNameId() instanceof CFFullVarExpression) && !isMember(function)) {
+				report(FUNCTION, function.getFunctionName(), index.getFunctionVersions(function.getFunctionName()),
+						function.getLine() + lineOffset);
+			}
+			return true;
+		}
+	};
+	
+	/**
+	 * @return true if the function is called on something, as in foo.len()
+	 */
+	private static boolean isMember(CFFunctionExpression function) {
+		Object parent = function.getParent();
+		return parent instanceof CFFullVarExpression && ((CFFullVarExpression) parent).getExpressions().indexOf(function) > 0;
+	}
+}
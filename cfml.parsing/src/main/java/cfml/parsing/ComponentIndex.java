@@ -0,0 +1,858 @@
+package cfml.parsing;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import cfml.parsing.cfscript.CFAnonymousFunctionExpression;
+import cfml.parsing.cfscript.CFExpression;
+import cfml.parsing.cfscript.CFIdentifier;
+import cfml.parsing.cfscript.CFLiteral;
+import cfml.parsing.cfscript.CFStringExpression;
+import cfml.parsing.cfscript.script.CFCompDeclStatement;
+import cfml.parsing.cfscript.script.CFFuncDeclStatement;
+import cfml.parsing.cfscript.script.CFFunctionParameter;
+import cfml.parsing.cfscript.script.CFInterfaceDeclStatement;
+import cfml.parsing.cfscript.script.CFPropertyStatement;
+import cfml.parsing.cfscript.script.CFScriptStatement;
+import cfml.parsing.cfscript.script.UserDefinedFunction;
+import cfml.parsing.cfscript.walker.CFAstVisitor;
+import cfml.parsing.cfscript.walker.CFAstWalker;
+import net.htmlparser.jericho.Element;
+
+/**
+ * The components of a project: their names, what they extend and implement, their properties and the signatures of
+ * their functions.
+ *
+ * Files are added with {@link #update(String, long, CFScriptStatement)} for script components and
+ * {@link #update(String, long, CFMLSource)} for tag components, and replace what was indexed for the file before, so a
+ * tool only reparses the files that changed. The stamp passed with a file, usually its modification time, is kept to
+ * tell which files those are, see {@link #getStamp(String)}. The index can be saved to and loaded from a compact binary
+ * form with {@link #save(OutputStream)} and {@link #load(InputStream)}.
+ *
+ * Components are named after their file. References to other components, like extends="a.b.Base", are matched by the
+ * last part of the name, and by the path of the file when that is ambiguous. Lookups are hash lookups, and following
+ * the inheritance of a component costs one per ancestor.
+ *
+ * <pre>
+ * ComponentIndex index = ComponentIndex.load(in);
+ * if (index.getStamp(path) != file.lastModified()) {
+ * 	index.update(path, file.lastModified(), parser.parseScript(contents));
+ * }
+ * for (ComponentIndex.Function function : index.getMethods("a.b.Service")) ...
+ * </pre>
+ */
+public class ComponentIndex {
+	
+	/** the first bytes of a saved index */
+	private static final int MAGIC = 0x43464349;
+	private static final int FORMAT = 1;
+	
+	private static final int INTERFACE = 1;
+	private static final int REQUIRED = 1;
+	private static final int STATIC = 1;
+	private static final int ABSTRACT = 2;
+	private static final int FINAL = 4;
+	
+	/**
+	 * A property of a component.
+	 */
+	public static final class Property {
+		private final String name;
+		private final String type;
+		
+		Property(String name, String type) {
+			this.name = name;
+			this.type = type;
+		}
+		
+		public String getName() {
+			return name;
+		}
+		
+		/**
+		 * @return the type, null if it has none
+		 */
+		public String getType() {
+			return type;
+		}
+	}
+	
+	/**
+	 * An argument of a function.
+	 */
+	public static final class Parameter {
+		private final String name;
+		private final String type;
+		private final boolean required;
+		
+		Parameter(String name, String type, boolean required) {
+			this.name = name;
+			this.type = type;
+			this.required = required;
+		}
+		
+		public String getName() {
+			return name;
+		}
+		
+		/**
+		 * @return the type, null if it has none
+		 */
+		public String getType() {
+			return type;
+		}
+		
+		public boolean isRequired() {
+			return required;
+		}
+	}
+	
+	/**
+	 * The signature of a function of a component.
+	 */
+	public static final class Function {
+		private final String name;
+		private final String access;
+		private final String returnType;
+		private final int modifiers;
+		private final List<Parameter> parameters;
+		private Component component;
+		
+		Function(String name, String access, String returnType, int modifiers, List<Parameter> parameters) {
+			this.name = name;
+			this.access = access;
+			this.returnType = returnType;
+			this.modifiers = modifiers;
+			this.parameters = parameters;
+		}
+		
+		public String getName() {
+			return name;
+		}
+		
+		/**
+		 * @return public, private, package or remote
+		 */
+		public String getAccess() {
+			return access;
+		}
+		
+		/**
+		 * @return the return type, null if it has none
+		 */
+		public String getReturnType() {
+			return returnType;
+		}
+		
+		public boolean isStatic() {
+			return (modifiers & STATIC) != 0;
+		}
+		
+		public boolean isAbstract() {
+			return (modifiers & ABSTRACT) != 0;
+		}
+		
+		public boolean isFinal() {
+			return (modifiers & FINAL) != 0;
+		}
+		
+		public List<Parameter> getParameters() {
+			return Collections.unmodifiableList(parameters);
+		}
+		
+		/**
+		 * @return the component that declares it
+		 */
+		public Component getComponent() {
+			return component;
+		}
+	}
+	
+	/**
+	 * A component or interface, and the file it comes from.
+	 */
+	public static final class Component {
+		private final String path;
+		private final String name;
+		private final long stamp;
+		private final boolean isInterface;
+		private final String extendsName;
+		private final List<String> implementsNames;
+		private final List<Property> properties;
+		private final List<Function> functions;
+		
+		Component(String path, long stamp, boolean isInterface, String extendsName, List<String> implementsNames,
+				List<Property> properties, List<Function> functions) {
+			this.path = path;
+			this.name = nameOf(path);
+			this.stamp = stamp;
+			this.isInterface = isInterface;
+			this.extendsName = extendsName;
+			this.implementsNames = implementsNames;
+			this.properties = properties;
+			this.functions = functions;
+			for (Function function : functions) {
+				function.component = this;
+			}
+		}
+		
+		public String getPath() {
+			return path;
+		}
+		
+		/**
+		 * @return the name of the file, without directories and extension
+		 */
+		public String getName() {
+			return name;
+		}
+		
+		public long getStamp() {
+			return stamp;
+		}
+		
+		public boolean isInterface() {
+			return isInterface;
+		}
+		
+		/**
+		 * @return the extends attribute, null if it has none. Interfaces can extend more than one interface, separated
+		 *         by commas
+		 */
+		public String getExtends() {
+			return extendsName;
+		}
+		
+		/**
+		 * @return the names in the implements attribute
+		 */
+		public List<String> getImplements() {
+			return Collections.unmodifiableList(implementsNames);
+		}
+		
+		public List<Property> getProperties() {
+			return Collections.unmodifiableList(properties);
+		}
+		
+		/**
+		 * @return the functions it declares itself
+		 */
+		public List<Function> getFunctions() {
+			return Collections.unmodifiableList(functions);
+		}
+		
+		/**
+		 * @return the names it extends: the extends attribute split at commas
+		 */
+		List<String> getSupers() {
+			return split(extendsName);
+		}
+	}
+	
+	/** by path */
+	private final Map<String, Component> components = new LinkedHashMap<String, Component>();
+	/** by lower case name */
+	private final Map<String, List<Component>> byName = new HashMap<String, List<Component>>();
+	/** by the lower case last part of the names they extend */
+	private final Map<String, List<Component>> byExtends = new HashMap<String, List<Component>>();
+	/** by the lower case last part of the names they implement */
+	private final Map<String, List<Component>> byImplements = new HashMap<String, List<Component>>();
+	
+	/**
+	 * Indexes a script component or interface, replacing what was indexed for the file before. A script that is
+	 * neither removes the file from the index.
+	 *
+	 * @param path
+	 *            the file the script comes from
+	 * @param stamp
+	 *            a stamp to tell whether the file changed, like its modification time
+	 * @param script
+	 *            the parsed script
+	 */
+	public void update(String path, long stamp, CFScriptStatement script) {
+		remove(path);
+		final CFCompDeclStatement[] declaration = new CFCompDeclStatement[1];
+		final List<Property> properties = new ArrayList<Property>();
+		final List<Function> functions = new ArrayList<Function>();
+		CFAstWalker.walk(script, new CFAstVisitor() {
+			@Override
+			public boolean enter(CFCompDeclStatement node) {
+				return enterComponent(node);
+			}
+			
+			@Override
+			public boolean enter(CFInterfaceDeclStatement node) {
+				return enterComponent(node);
+			}
+			
+			private boolean enterComponent(CFCompDeclStatement node) {
+				if (declaration[0] != null) {
+					return false;
+				}
+				declaration[0] = node;
+				return true;
+			}
+			
+			@Override
+			public boolean enter(CFPropertyStatement node) {
+				if (node.isShortHand()) {
+					properties.add(new Property(text(node.getPropertyName()), text(node.getPropertyType())));
+				} else {
+					properties.add(new Property(attribute(node.getAttributes(), "name"),
+							attribute(node.getAttributes(), "type")));
+				}
+				return false;
+			}
+			
+			@Override
+			public boolean enter(CFFuncDeclStatement node) {
+				functions.add(function(node));
+				// closures in the body are not methods
+				return false;
+			}
+			
+			@Override
+			public boolean enter(CFAnonymousFunctionExpression node) {
+				return false;
+			}
+		});
+		if (declaration[0] == null) {
+			return;
+		}
+		Map<CFExpression, CFExpression> attributes = declaration[0].getAttributes();
+		add(new Component(path, stamp, declaration[0] instanceof CFInterfaceDeclStatement,
+				attribute(attributes, "extends"), split(attribute(attributes, "implements")), properties, functions));
+	}
+	
+	/**
+	 * Indexes a cfcomponent or cfinterface, replacing what was indexed for the file before. A source that is neither
+	 * removes the file from the index. Functions declared in cfscript blocks are not indexed.
+	 *
+	 * @param path
+	 *            the file the source comes from
+	 * @param stamp
+	 *            a stamp to tell whether the file changed, like its modification time
+	 * @param source
+	 *            the tag source
+	 */
+	public void update(String path, long stamp, CFMLSource source) {
+		remove(path);
+		Element declaration = null;
+		for (Element element : source.getAllElements()) {
+			String name = element.getName();
+			if (name.equalsIgnoreCase("cfcomponent") || name.equalsIgnoreCase("cfinterface")) {
+				declaration = element;
+				break;
+			}
+		}
+		if (declaration == null) {
+			return;
+		}
+		List<Property> properties = new ArrayList<Property>();
+		List<Function> functions = new ArrayList<Function>();
+		List<Parameter> parameters = null;
+		// in document order, the arguments of a function follow it
+		for (Element element : declaration.getAllElements()) {
+			String name = element.getName();
+			if (name.equalsIgnoreCase("cfproperty")) {
+				properties.add(new Property(element.getAttributeValue("name"), element.getAttributeValue("type")));
+			} else if (name.equalsIgnoreCase("cffunction")) {
+				parameters = new ArrayList<Parameter>();
+				String access = element.getAttributeValue("access");
+				functions.add(new Function(element.getAttributeValue("name"),
+						access == null ? "public" : access.toLowerCase(Locale.ENGLISH),
+						element.getAttributeValue("returntype"), 0, parameters));
+			} else if (name.equalsIgnoreCase("cfargument") && parameters != null) {
+				String required = element.getAttributeValue("required");
+				parameters.add(new Parameter(element.getAttributeValue("name"), element.getAttributeValue("type"),
+						"true".equalsIgnoreCase(required) || "yes".equalsIgnoreCase(required)));
+			}
+		}
+		add(new Component(path, stamp, declaration.getName().equalsIgnoreCase("cfinterface"),
+				declaration.getAttributeValue("extends"), split(declaration.getAttributeValue("implements")), properties,
+				functions));
+	}
+	
+	/**
+	 * Removes a file from the index.
+	 *
+	 * @param path
+	 * @return true if it was indexed
+	 */
+	public boolean remove(String path) {
+		Component component = components.remove(path);
+		if (component == null) {
+			return false;
+		}
+		unlink(byName, key(component.getName()), component);
+		for (String name : component.getSupers()) {
+			unlink(byExtends, key(name), component);
+		}
+		for (String name : component.getImplements()) {
+			unlink(byImplements, key(name), component);
+		}
+		return true;
+	}
+	
+	private void add(Component component) {
+		components.put(component.getPath(), component);
+		link(byName, key(component.getName()), component);
+		for (String name : component.getSupers()) {
+			link(byExtends, key(name), component);
+		}
+		for (String name : component.getImplements()) {
+			link(byImplements, key(name), component);
+		}
+	}
+	
+	private static void link(Map<String, List<Component>> index, String key, Component component) {
+		List<Component> list = index.get(key);
+		if (list == null) {
+			list = new ArrayList<Component>(1);
+			index.put(key, list);
+		}
+		list.add(component);
+	}
+	
+	private static void unlink(Map<String, List<Component>> index, String key, Component component) {
+		List<Component> list = index.get(key);
+		if (list != null) {
+			list.remove(component);
+			if (list.isEmpty()) {
+				index.remove(key);
+			}
+		}
+	}
+	
+	/**
+	 * @return all indexed components, in the order they were indexed
+	 */
+	public List<Component> getComponents() {
+		return Collections.unmodifiableList(new ArrayList<Component>(components.values()));
+	}
+	
+	/**
+	 * @param path
+	 * @return the component of the file, null if it is not indexed
+	 */
+	public Component getComponent(String path) {
+		return components.get(path);
+	}
+	
+	/**
+	 * @param path
+	 * @return the stamp the file was indexed with, -1 if it is not indexed
+	 */
+	public long getStamp(String path) {
+		Component component = components.get(path);
+		return component == null ? -1 : component.getStamp();
+	}
+	
+	/**
+	 * @param name
+	 *            a component name, plain or dotted like a.b.Service
+	 * @return the component, null if none has that name. For a dotted name the one whose path ends in the same
+	 *         directories is preferred
+	 */
+	public Component findComponent(String name) {
+		if (name == null) {
+			return null;
+		}
+		List<Component> candidates = byName.get(key(name));
+		if (candidates == null) {
+			return null;
+		}
+		if (candidates.size() > 1 && name.indexOf('.') >= 0) {
+			String suffix = "/" + name.trim().replace('.', '/').toLowerCase(Locale.ENGLISH);
+			for (Component candidate : candidates) {
+				String path = candidate.getPath().replace('\\', '/').toLowerCase(Locale.ENGLISH);
+				int dot = path.lastIndexOf('.');
+				if (dot > path.lastIndexOf('/')) {
+					path = path.substring(0, dot);
+				}
+				if (("/" + path).endsWith(suffix)) {
+					return candidate;
+				}
+			}
+		}
+		return candidates.get(0);
+	}
+	
+	/**
+	 * @param name
+	 *            a component name, plain or dotted
+	 * @return the component and the components it extends, nearest first; empty if it is not indexed. Stops at the
+	 *         first ancestor that is not indexed
+	 */
+	public List<Component> getAncestors(String name) {
+		List<Component> result = new ArrayList<Component>();
+		Component component = findComponent(name);
+		while (component != null && !result.contains(component)) {
+			result.add(component);
+			component = component.isInterface() ? null : findComponent(component.getExtends());
+		}
+		return result;
+	}
+	
+	/**
+	 * @param name
+	 *            a component name, plain or dotted
+	 * @return the functions of the component, its own first, then those it inherits and does not override; empty if
+	 *         it is not indexed
+	 */
+	public List<Function> getMethods(String name) {
+		List<Function> result = new ArrayList<Function>();
+		Set<String> seen = new HashSet<String>();
+		for (Component component : getAncestors(name)) {
+			for (Function function : component.functions) {
+				if (function.getName() != null && seen.add(key(function.getName()))) {
+					result.add(function);
+				}
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * @param name
+	 *            an interface name, plain or dotted
+	 * @return the components that implement the interface or an interface extending it, directly or through a
+	 *         component they extend; empty if it is not indexed
+	 */
+	public List<Component> getImplementors(String name) {
+		Component target = findComponent(name);
+		if (target == null) {
+			return Collections.emptyList();
+		}
+		// the interface and the interfaces extending it
+		List<Component> interfaces = new ArrayList<Component>();
+		interfaces.add(target);
+		for (int i = 0; i < interfaces.size(); i++) {
+			for (Component sub : referencing(byExtends, interfaces.get(i), true)) {
+				if (sub.isInterface() && !interfaces.contains(sub)) {
+					interfaces.add(sub);
+				}
+			}
+		}
+		List<Component> result = new ArrayList<Component>();
+		for (Component iface : interfaces) {
+			for (Component implementor : referencing(byImplements, iface, false)) {
+				if (!result.contains(implementor)) {
+					result.add(implementor);
+				}
+			}
+		}
+		// and the components extending those
+		for (int i = 0; i < result.size(); i++) {
+			for (Component sub : referencing(byExtends, result.get(i), true)) {
+				if (!sub.isInterface() && !result.contains(sub)) {
+					result.add(sub);
+				}
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * @param name
+	 *            a component name, plain or dotted
+	 * @return the components that extend it directly; empty if it is not indexed
+	 */
+	public List<Component> getSubcomponents(String name) {
+		Component target = findComponent(name);
+		if (target == null) {
+			return Collections.emptyList();
+		}
+		return referencing(byExtends, target, true);
+	}
+	
+	/**
+	 * @return the components whose extends or implements names resolve to the target
+	 */
+	private List<Component> referencing(Map<String, List<Component>> index, Component target, boolean extendsNames) {
+		List<Component> candidates = index.get(key(target.getName()));
+		if (candidates == null) {
+			return Collections.emptyList();
+		}
+		List<Component> result = new ArrayList<Component>();
+		for (Component candidate : candidates) {
+			for (String name : extendsNames ? candidate.getSupers() : candidate.getImplements()) {
+				if (findComponent(name) == target) {
+					result.add(candidate);
+					break;
+				}
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * @return the lower case last part of a dotted name
+	 */
+	private static String key(String name) {
+		String trimmed = name.trim();
+		return trimmed.substring(trimmed.lastIndexOf('.') + 1).toLowerCase(Locale.ENGLISH);
+	}
+	
+	private static String nameOf(String path) {
+		String name = path.substring(Math.max(path.lastIndexOf('/'), path.lastIndexOf('\\')) + 1);
+		int dot = name.lastIndexOf('.');
+		return dot > 0 ? name.substring(0, dot) : name;
+	}
+	
+	private static List<String> split(String names) {
+		if (names == null || names.trim().length() == 0) {
+			return Collections.emptyList();
+		}
+		List<String> result = new ArrayList<String>();
+		for (String name : names.split(",")) {
+			if (name.trim().length() > 0) {
+				result.add(name.trim());
+			}
+		}
+		return result;
+	}
+	
+	private static Function function(CFFuncDeclStatement node) {
+		List<Parameter> parameters = new ArrayList<Parameter>();
+		if (node.getFormals() != null) {
+			for (CFFunctionParameter formal : node.getFormals()) {
+				parameters.add(new Parameter(formal.getName(), formal.getType(), formal.isRequired()));
+			}
+		}
+		String access;
+		switch (node.getAccess()) {
+		case UserDefinedFunction.ACCESS_PRIVATE:
+			access = "private";
+			break;
+		case UserDefinedFunction.ACCESS_PACKAGE:
+			access = "package";
+			break;
+		case UserDefinedFunction.ACCESS_REMOTE:
+			access = "remote";
+			break;
+		default:
+			access = "public";
+		}
+		int modifiers = (node.isStatic() ? STATIC : 0) | (node.isAbstract() ? ABSTRACT : 0)
+				| (node.isFinal() ? FINAL : 0);
+		return new Function(node.getName() == null ? null : node.getName().getName(), access,
+				node.getReturnType() == null ? null : node.getReturnType().getFullName(), modifiers, parameters);
+	}
+	
+	private static String attribute(Map<? extends CFExpression, CFExpression> attributes, String name) {
+		for (Map.Entry<? extends CFExpression, CFExpression> attribute : attributes.entrySet()) {
+			if (attribute.getKey() instanceof CFIdentifier
+					&& name.equalsIgnoreCase(((CFIdentifier) attribute.getKey()).getName())) {
+				return text(attribute.getValue());
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * @return the value of a name or constant, without quotes
+	 */
+	static String text(CFExpression expression) {
+		if (expression == null) {
+			return null;
+		}
+		if (expression instanceof CFStringExpression) {
+			StringBuilder sb = new StringBuilder();
+			for (CFExpression part : ((CFStringExpression) expression).getSubExpressions()) {
+				sb.append(text(part));
+			}
+			return sb.toString();
+		}
+		if (expression instanceof CFLiteral) {
+			String val = ((CFLiteral) expression).getVal();
+			if (val != null && val.length() >= 2 && (val.charAt(0) == '\'' || val.charAt(0) == '"')
+					&& val.charAt(val.length() - 1) == val.charAt(0)) {
+				return val.substring(1, val.length() - 1);
+			}
+			return val;
+		}
+		return expression.Decompile(0);
+	}
+	
+	/**
+	 * Writes the index. Strings are written once and referenced by number.
+	 *
+	 * @param out
+	 *            where to write to, not closed
+	 * @throws IOException
+	 */
+	public void save(OutputStream out) throws IOException {
+		Map<String, Integer> strings = new LinkedHashMap<String, Integer>();
+		for (Component component : components.values()) {
+			intern(strings, component.path);
+			intern(strings, component.extendsName);
+			for (String name : component.implementsNames) {
+				intern(strings, name);
+			}
+			for (Property property : component.properties) {
+				intern(strings, property.name);
+				intern(strings, property.type);
+			}
+			for (Function function : component.functions) {
+				intern(strings, function.name);
+				intern(strings, function.access);
+				intern(strings, function.returnType);
+				for (Parameter parameter : function.parameters) {
+					intern(strings, parameter.name);
+					intern(strings, parameter.type);
+				}
+			}
+		}
+		
+		DataOutputStream data = new DataOutputStream(out);
+		data.writeInt(MAGIC);
+		writeNumber(data, FORMAT);
+		writeNumber(data, strings.size());
+		for (String string : strings.keySet()) {
+			data.writeUTF(string);
+		}
+		writeNumber(data, components.size());
+		for (Component component : components.values()) {
+			writeString(data, strings, component.path);
+			data.writeLong(component.stamp);
+			writeNumber(data, component.isInterface ? INTERFACE : 0);
+			writeString(data, strings, component.extendsName);
+			writeNumber(data, component.implementsNames.size());
+			for (String name : component.implementsNames) {
+				writeString(data, strings, name);
+			}
+			writeNumber(data, component.properties.size());
+			for (Property property : component.properties) {
+				writeString(data, strings, property.name);
+				writeString(data, strings, property.type);
+			}
+			writeNumber(data, component.functions.size());
+			for (Function function : component.functions) {
+				writeString(data, strings, function.name);
+				writeString(data, strings, function.access);
+				writeString(data, strings, function.returnType);
+				writeNumber(data, function.modifiers);
+				writeNumber(data, function.parameters.size());
+				for (Parameter parameter : function.parameters) {
+					writeString(data, strings, parameter.name);
+					writeString(data, strings, parameter.type);
+					writeNumber(data, parameter.required ? REQUIRED : 0);
+				}
+			}
+		}
+		data.flush();
+	}
+	
+	/**
+	 * Reads an index written by {@link #save(OutputStream)}.
+	 *
+	 * @param in
+	 *            where to read from, not closed
+	 * @return the index
+	 * @throws IOException
+	 *             if it can not be read, or is not an index
+	 */
+	public static ComponentIndex load(InputStream in) throws IOException {
+		DataInputStream data = new DataInputStream(in);
+		if (data.readInt() != MAGIC) {
+			throw new IOException("Not a component index");
+		}
+		int format = readNumber(data);
+		if (format != FORMAT) {
+			throw new IOException("Unsupported component index format " + format);
+		}
+		String[] strings = new String[readNumber(data)];
+		for (int i = 0; i < strings.length; i++) {
+			strings[i] = data.readUTF();
+		}
+		ComponentIndex index = new ComponentIndex();
+		int count = readNumber(data);
+		for (int c = 0; c < count; c++) {
+			String path = readString(data, strings);
+			long stamp = data.readLong();
+			boolean isInterface = (readNumber(data) & INTERFACE) != 0;
+			String extendsName = readString(data, strings);
+			List<String> implementsNames = new ArrayList<String>();
+			for (int i = readNumber(data); i > 0; i--) {
+				implementsNames.add(readString(data, strings));
+			}
+			List<Property> properties = new ArrayList<Property>();
+			for (int i = readNumber(data); i > 0; i--) {
+				properties.add(new Property(readString(data, strings), readString(data, strings)));
+			}
+			List<Function> functions = new ArrayList<Function>();
+			for (int i = readNumber(data); i > 0; i--) {
+				String name = readString(data, strings);
+				String access = readString(data, strings);
+				String returnType = readString(data, strings);
+				int modifiers = readNumber(data);
+				List<Parameter> parameters = new ArrayList<Parameter>();
+				for (int p = readNumber(data); p > 0; p--) {
+					parameters.add(new Parameter(readString(data, strings), readString(data, strings),
+							(readNumber(data) & REQUIRED) != 0));
+				}
+				functions.add(new Function(name, access, returnType, modifiers, parameters));
+			}
+			index.add(new Component(path, stamp, isInterface, extendsName, implementsNames, properties, functions));
+		}
+		return index;
+	}
+	
+	private static void intern(Map<String, Integer> strings, String string) {
+		if (string != null && !strings.containsKey(string)) {
+			strings.put(string, strings.size());
+		}
+	}
+	
+	/**
+	 * Writes the number of a string, plus one so null is 0.
+	 */
+	private static void writeString(DataOutputStream data, Map<String, Integer> strings, String string)
+			throws IOException {
+		writeNumber(data, string == null ? 0 : strings.get(string).intValue() + 1);
+	}
+	
+	private static String readString(DataInputStream data, String[] strings) throws IOException {
+		int number = readNumber(data);
+		if (number > strings.length) {
+			throw new IOException("Corrupt component index");
+		}
+		return number == 0 ? null : strings[number - 1];
+	}
+	
+	/**
+	 * Writes a non negative number 7 bits a byte, low bits first; most take a single byte.
+	 */
+	private static void writeNumber(DataOutputStream data, int number) throws IOException {
+		while ((number & ~0x7F) != 0) {
+			data.writeByte((number & 0x7F) | 0x80);
+			number >>>= 7;
+		}
+		data.writeByte(number);
+	}
+	
+	private static int readNumber(DataInputStream data) throws IOException {
+		int number = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			int b = data.readUnsignedByte();
+			number |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return number;
+			}
+		}
+		throw new IOException("Corrupt component index");
+	}
+}
@@ -0,0 +1,363 @@
+package cfml.parsing;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.TokenStream;
+import org.antlr.v4.runtime.atn.DecisionEventInfo;
+import org.antlr.v4.runtime.atn.DecisionInfo;
+import org.antlr.v4.runtime.atn.LookaheadEventInfo;
+import org.antlr.v4.runtime.atn.ParseInfo;
+
+/**
+ * What the prediction of each decision of the CFScript grammar costs over a corpus of scripts, from ANTLR's profiling
+ * ATN simulator.
+ *
+ * A parser given a profile with {@link CFMLParser#setGrammarProfile(GrammarProfile)} parses with profiling on, the
+ * same way it otherwise would (SLL first, LL again on failure), and adds the numbers of every script it parses.
+ * {@link #profile(String, String)} does that for one file. Per decision of the grammar, mapped to the rule it is in,
+ * the profile sums the invocations, the time spent predicting, the tokens of lookahead, the fallbacks from SLL to full
+ * context LL prediction and the ambiguities. It also keeps, per file, where the ambiguities, the context sensitivities
+ * and the deepest lookahead of each decision were, so that the constructs that are expensive to parse can be found in
+ * the code.
+ *
+ * <pre>
+ * GrammarProfile profile = new GrammarProfile();
+ * for (File file : files) {
+ * 	profile.profile(file.getPath(), contents(file));
+ * }
+ * profile.write(System.out, 20);
+ * </pre>
+ */
+public class GrammarProfile {
+	
+	/** a site where LL prediction found the input ambiguous */
+	public static final int AMBIGUITY = 1;
+	/** a site where SLL prediction had a conflict that full context LL prediction resolved */
+	public static final int CONTEXT_SENSITIVITY = 2;
+	/** the site of the deepest lookahead of a decision in a file */
+	public static final int LOOKAHEAD = 3;
+	
+	/**
+	 * The numbers of one decision of the grammar.
+	 */
+	public static final class Decision {
+		private final int decision;
+		private final String rule;
+		private long invocations;
+		private long time;
+		private long sllLook;
+		private long sllMaxLook;
+		private long llLook;
+		private long llMaxLook;
+		private long llFallbacks;
+		private long ambiguities;
+		private long contextSensitivities;
+		private long predicateEvaluations;
+		private long errors;
+		
+		Decision(int decision, String rule) {
+			this.decision = decision;
+			this.rule = rule;
+		}
+		
+		/**
+		 * @return the number of the decision in the grammar
+		 */
+		public int getDecision() {
+			return decision;
+		}
+		
+		/**
+		 * @return the name of the rule the decision is in
+		 */
+		public String getRule() {
+			return rule;
+		}
+		
+		public long getInvocations() {
+			return invocations;
+		}
+		
+		/**
+		 * @return nanoseconds spent predicting
+		 */
+		public long getTime() {
+			return time;
+		}
+		
+		/**
+		 * @return the tokens of lookahead of SLL prediction, summed over the invocations
+		 */
+		public long getSllLookahead() {
+			return sllLook;
+		}
+		
+		public long getSllMaxLookahead() {
+			return sllMaxLook;
+		}
+		
+		/**
+		 * @return the tokens of lookahead of full context LL prediction, summed over the fallbacks
+		 */
+		public long getLlLookahead() {
+			return llLook;
+		}
+		
+		public long getLlMaxLookahead() {
+			return llMaxLook;
+		}
+		
+		/**
+		 * @return the number of times SLL prediction fell back to full context LL prediction
+		 */
+		public long getLlFallbacks() {
+			return llFallbacks;
+		}
+		
+		public long getAmbiguities() {
+			return ambiguities;
+		}
+		
+		public long getContextSensitivities() {
+			return contextSensitivities;
+		}
+		
+		/**
+		 * @return the number of semantic predicates evaluated while predicting
+		 */
+		public long getPredicateEvaluations() {
+			return predicateEvaluations;
+		}
+		
+		/**
+		 * @return the number of syntax errors prediction ran into
+		 */
+		public long getErrors() {
+			return errors;
+		}
+		
+		/**
+		 * @return the average tokens of SLL lookahead per invocation
+		 */
+		public double getAverageSllLookahead() {
+			return invocations == 0 ? 0 : (double) sllLook / invocations;
+		}
+		
+		void add(DecisionInfo info) {
+			invocations += info.invocations;
+			time += info.timeInPrediction;
+			sllLook += info.SLL_TotalLook;
+			sllMaxLook = Math.max(sllMaxLook, info.SLL_MaxLook);
+			llLook += info.LL_TotalLook;
+			llMaxLook = Math.max(llMaxLook, info.LL_MaxLook);
+			llFallbacks += info.LL_Fallback;
+			ambiguities += info.ambiguities.size();
+			contextSensitivities += info.contextSensitivities.size();
+			predicateEvaluations += info.predicateEvals.size();
+			errors += info.errors.size();
+		}
+	}
+	
+	/**
+	 * A place in a file where prediction was expensive.
+	 */
+	public static final class Site {
+		private final int kind;
+		private final Decision decision;
+		private final int line;
+		private final int column;
+		private final int lookahead;
+		
+		Site(int kind, Decision decision, int line, int column, int lookahead) {
+			this.kind = kind;
+			this.decision = decision;
+			this.line = line;
+			this.column = column;
+			this.lookahead = lookahead;
+		}
+		
+		/**
+		 * @return {@link GrammarProfile#AMBIGUITY}, {@link GrammarProfile#CONTEXT_SENSITIVITY} or
+		 *         {@link GrammarProfile#LOOKAHEAD}
+		 */
+		public int getKind() {
+			return kind;
+		}
+		
+		public Decision getDecision() {
+			return decision;
+		}
+		
+		/**
+		 * @return the line of the token prediction started at
+		 */
+		public int getLine() {
+			return line;
+		}
+		
+		public int getColumn() {
+			return column;
+		}
+		
+		/**
+		 * @return the number of tokens prediction looked at
+		 */
+		public int getLookahead() {
+			return lookahead;
+		}
+	}
+	
+	private final Map<Integer, Decision> decisions = new LinkedHashMap<Integer, Decision>();
+	private final Map<String, List<Site>> sites = new LinkedHashMap<String, List<Site>>();
+	private int files;
+	/** the file being profiled, see {@link #profile(String, String)} */
+	private String file;
+	private CFMLParser parser;
+	
+	/**
+	 * Parses a script with profiling on and adds its numbers.
+	 *
+	 * @param path
+	 *            the name of the file the script is from, for its sites
+	 * @param cfscript
+	 * @throws Exception
+	 */
+	public void profile(String path, String cfscript) throws Exception {
+		if (parser == null) {
+			parser = new CFMLParser();
+			parser.setGrammarProfile(this);
+		}
+		file = path;
+		try {
+			parser.parseScriptBlockContext(cfscript);
+		} finally {
+			file = null;
+		}
+	}
+	
+	/**
+	 * Adds the numbers of a parser that parsed with profiling on.
+	 */
+	void add(Parser parser, TokenStream tokens) {
+		ParseInfo info = parser.getParseInfo();
+		if (info == null) {
+			return;
+		}
+		files++;
+		String path = file != null ? file : tokens.getSourceName();
+		List<Site> fileSites = sites.get(path);
+		if (fileSites == null) {
+			fileSites = new ArrayList<Site>();
+			sites.put(path, fileSites);
+		}
+		for (DecisionInfo decisionInfo : info.getDecisionInfo()) {
+			if (decisionInfo.invocations == 0) {
+				continue;
+			}
+			Decision decision = decisions.get(decisionInfo.decision);
+			if (decision == null) {
+				int rule = parser.getATN().getDecisionState(decisionInfo.decision).ruleIndex;
+				decision = new Decision(decisionInfo.decision, parser.getRuleNames()[rule]);
+				decisions.put(decisionInfo.decision, decision);
+			}
+			decision.add(decisionInfo);
+			for (DecisionEventInfo event : decisionInfo.ambiguities) {
+				fileSites.add(site(AMBIGUITY, decision, event, tokens));
+			}
+			for (DecisionEventInfo event : decisionInfo.contextSensitivities) {
+				fileSites.add(site(CONTEXT_SENSITIVITY, decision, event, tokens));
+			}
+			LookaheadEventInfo deepest = decisionInfo.LL_MaxLook > decisionInfo.SLL_MaxLook
+					? decisionInfo.LL_MaxLookEvent : decisionInfo.SLL_MaxLookEvent;
+			if (deepest != null) {
+				fileSites.add(site(LOOKAHEAD, decision, deepest, tokens));
+			}
+		}
+	}
+	
+	private static Site site(int kind, Decision decision, DecisionEventInfo event, TokenStream tokens) {
+		int start = Math.max(event.startIndex, 0);
+		int line = -1;
+		int column = -1;
+		if (start < tokens.size()) {
+			line = tokens.get(start).getLine();
+			column = tokens.get(start).getCharPositionInLine();
+		}
+		return new Site(kind, decision, line, column, event.stopIndex - event.startIndex + 1);
+	}
+	
+	/**
+	 * @return the number of scripts profiled
+	 */
+	public int getFileCount() {
+		return files;
+	}
+	
+	/**
+	 * @return the decisions that were predicted at least once, the most time spent first
+	 */
+	public List<Decision> getDecisions() {
+		List<Decision> result = new ArrayList<Decision>(decisions.values());
+		Collections.sort(result, new Comparator<Decision>() {
+			@Override
+			public int compare(Decision d1, Decision d2) {
+				return d1.time != d2.time ? (d1.time < d2.time ? 1 : -1) : d1.decision - d2.decision;
+			}
+		});
+		return result;
+	}
+	
+	/**
+	 * @return the files profiled, in the order they were
+	 */
+	public List<String> getFiles() {
+		return new ArrayList<String>(sites.keySet());
+	}
+	
+	/**
+	 * @param path
+	 * @return the expensive sites of the file, the deepest lookahead first
+	 */
+	public List<Site> getSites(String path) {
+		List<Site> fileSites = sites.get(path);
+		if (fileSites == null) {
+			return Collections.emptyList();
+		}
+		List<Site> result = new ArrayList<Site>(fileSites);
+		Collections.sort(result, new Comparator<Site>() {
+			@Override
+			public int compare(Site s1, Site s2) {
+				return s1.lookahead != s2.lookahead ? s2.lookahead - s1.lookahead : s1.line - s2.line;
+			}
+		});
+		return result;
+	}
+	
+	/**
+	 * Writes a table of the decisions that took the most time.
+	 *
+	 * @param out
+	 * @param limit
+	 *            the number of decisions to write
+	 * @throws IOException
+	 */
+	public void write(Appendable out, int limit) throws IOException {
+		out.append(String.format(Locale.ENGLISH, "%d files%n", files));
+		out.append(String.format(Locale.ENGLISH, "%-8s %-28s %10s %10s %8s %6s %8s %6s %6s %6s %8s%n", "decision",
+				"rule", "calls", "time ms", "sll avg", "max", "ll falls", "ll max", "ambig", "ctx", "preds"));
+		List<Decision> sorted = getDecisions();
+		for (Decision d : sorted.subList(0, Math.min(limit, sorted.size()))) {
+			out.append(String.format(Locale.ENGLISH, "%-8d %-28s %10d %10.2f %8.2f %6d %8d %6d %6d %6d %8d%n",
+					d.decision, d.rule, d.invocations, d.time / 1e6, d.getAverageSllLookahead(), d.sllMaxLook,
+					d.llFallbacks, d.llMaxLook, d.ambiguities, d.contextSensitivities, d.predicateEvaluations));
+		}
+	}
+}
@@ -0,0 +1,152 @@
+package cfml.parsing;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.antlr.v4.runtime.ANTLRErrorListener;
+import org.antlr.v4.runtime.BailErrorStrategy;
+import org.antlr.v4.runtime.BaseErrorListener;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
+import org.antlr.v4.runtime.InputMismatchException;
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.RecognitionException;
+import org.antlr.v4.runtime.Recognizer;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+
+import cfml.CFSCRIPTParser;
+import cfml.CFSCRIPTParser.ElementContext;
+
+/**
+ * The error strategy of the first, SLL, stage of parsing a script, which does the second stage per element instead of
+ * for the whole script.
+ *
+ * Like {@link BailErrorStrategy} it gives up on the first error, but only up to the top level element, a function or
+ * a statement of a component or a script, the error is in. That element is parsed again on its own: in LL mode, and if
+ * that fails too, with the default error strategy, which reports the errors and recovers. Its tree replaces what SLL
+ * made of it and the rest of the script goes on in SLL mode, so a script with one unusual or broken function is not
+ * parsed twice. An error outside of an element is thrown out of the parse, for the caller to parse everything again;
+ * the errors of the elements recovered up to then are only reported by {@link #reportErrors(ANTLRErrorListener)}, so
+ * that they are not reported twice when that happens.
+ */
+class StagedErrorStrategy extends BailErrorStrategy {
+	
+	/**
+	 * Holds on to syntax errors until the first stage is known to have succeeded.
+	 */
+	private static final class ErrorBuffer extends BaseErrorListener {
+		final List<Object[]> errors = new ArrayList<Object[]>();
+		
+		@Override
+		public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line, int charPositionInLine,
+				String msg, RecognitionException e) {
+			errors.add(new Object[] { recognizer, offendingSymbol, line, charPositionInLine, msg, e });
+		}
+	}
+	
+	private final ErrorBuffer errors = new ErrorBuffer();
+	/** true while an element is parsed again */
+	private boolean reparsing;
+	private int reparsedElements;
+	
+	@Override
+	public void reportError(Parser recognizer, RecognitionException e) {
+		// the first stage has no error listeners, the errors of an element are reported when it is parsed again
+	}
+	
+	/**
+	 * Passes the error on to the rule above, up to the top level element, which is then parsed again.
+	 */
+	@Override
+	public void recover(Parser recognizer, RecognitionException e) {
+		if (reparsing) {
+			throw new ParseCancellationException(e);
+		}
+		ParserRuleContext ctx = recognizer.getContext();
+		if (!(ctx instanceof ElementContext) || isNested(ctx)) {
+			throw e;
+		}
+		reparse((CFSCRIPTParser) recognizer, (ElementContext) ctx);
+	}
+	
+	@Override
+	public Token recoverInline(Parser recognizer) throws RecognitionException {
+		InputMismatchException e = new InputMismatchException(recognizer);
+		if (reparsing) {
+			throw new ParseCancellationException(e);
+		}
+		// unlike BailErrorStrategy, thrown as a RecognitionException so that the rules above see it
+		throw e;
+	}
+	
+	private static boolean isNested(ParserRuleContext ctx) {
+		for (ParserRuleContext parent = ctx.getParent(); parent != null; parent = parent.getParent()) {
+			if (parent instanceof ElementContext) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Parses a failed element again, as the last child of its parent instead of it, and leaves the parser in the failed
+	 * element for its rule to exit.
+	 */
+	private void reparse(CFSCRIPTParser parser, ElementContext failed) {
+		reparsedElements++;
+		ParserRuleContext parent = failed.getParent();
+		int children = parent.getChildCount() - 1;
+		reparsing = true;
+		parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+		try {
+			try {
+				parseAgain(parser, failed, children);
+				return;
+			} catch (ParseCancellationException e) {
+				// a syntax error, not just something SLL cannot tell apart
+			}
+			parser.setErrorHandler(new DefaultErrorStrategy());
+			parser.addErrorListener(errors);
+			parseAgain(parser, failed, children);
+		} finally {
+			parser.removeErrorListener(errors);
+			parser.setErrorHandler(this);
+			parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+			reparsing = false;
+			parser.setContext(failed);
+		}
+	}
+	
+	private static void parseAgain(CFSCRIPTParser parser, ElementContext failed, int children) {
+		ParserRuleContext parent = failed.getParent();
+		while (parent.getChildCount() > children) {
+			parent.removeLastChild();
+		}
+		parser.getInputStream().seek(failed.getStart().getTokenIndex());
+		parser.setContext(parent);
+		parser.setState(failed.invokingState);
+		parser.element();
+	}
+	
+	/**
+	 * Reports the syntax errors of the elements that were recovered.
+	 *
+	 * @param listener
+	 */
+	void reportErrors(ANTLRErrorListener listener) {
+		for (Object[] error : errors.errors) {
+			listener.syntaxError((Recognizer<?, ?>) error[0], error[1], (Integer) error[2], (Integer) error[3],
+					(String) error[4], (RecognitionException) error[5]);
+		}
+		errors.errors.clear();
+	}
+	
+	/**
+	 * @return the number of elements that failed in SLL mode and were parsed again
+	 */
+	int getReparsedElements() {
+		return reparsedElements;
+	}
+}
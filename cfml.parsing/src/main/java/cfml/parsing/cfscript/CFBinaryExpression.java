@@ -7,11 +7,22 @@ import org.antlr.v4.runtime.Token;
 import cfml.CFSCRIPTLexer;
 import cfml.parsing.cfscript.script.CFScriptStatement;
 import cfml.parsing.util.ArrayBuilder;
+import cfml.parsing.util.ArrayStack;
 
+/**
+ * An operator and its two operands. Generated code has chains of thousands of &amp; or +, and the AST of a chain is as
+ * deep as it is long, so what goes through the binary expressions of a chain, {@link #Decompile(int)} as well as the
+ * AST walker, the printer and the visitor that builds them, keeps an {@link ArrayStack} of the operands still to do
+ * rather than recursing into them.
+ */
 public class CFBinaryExpression extends CFExpression implements java.io.Serializable {
 	
 	private static final long serialVersionUID = 1L;
 	
+	/** pushed by {@link #Decompile(int)} over a binary expression, to write its operator or its end */
+	private static final Object OPERATOR = new Object();
+	private static final Object END = new Object();
+	
 	// instance vars
 	private int _kind;
 	protected final CFExpression _left;
@@ -44,11 +55,45 @@ public class CFBinaryExpression extends CFExpression implements java.io.Serializ
 	
 	@Override
 	public String Decompile(int indent) {
-		String endChar = "";
-		if (_kind == CFSCRIPTLexer.LEFTBRACKET) {
-			endChar = "]";
+		if (!isChained(_left) && !isChained(_right)) {
+			return "" + _left.Decompile(indent) + " " + operatorImage + " " + _right.Decompile(indent) + getEnd();
+		}
+		StringBuilder sb = new StringBuilder();
+		// the expressions still to write, the next on top
+		ArrayStack<Object> parts = new ArrayStack<Object>();
+		parts.push(this);
+		while (parts.size() > 0) {
+			Object part = parts.pop();
+			if (part == OPERATOR) {
+				sb.append(' ').append(((CFBinaryExpression) parts.pop()).operatorImage).append(' ');
+			} else if (part == END) {
+				sb.append(((CFBinaryExpression) parts.pop()).getEnd());
+			} else if (part == this || isChained((CFExpression) part)) {
+				CFBinaryExpression binary = (CFBinaryExpression) part;
+				parts.push(binary);
+				parts.push(END);
+				parts.push(binary._right);
+				parts.push(binary);
+				parts.push(OPERATOR);
+				parts.push(binary._left);
+			} else {
+				sb.append(((CFExpression) part).Decompile(indent));
+			}
 		}
-		return "" + _left.Decompile(indent) + " " + operatorImage + " " + _right.Decompile(indent) + endChar;
+		return sb.toString();
+	}
+	
+	/**
+	 * @return true for the binary and elvis expressions that {@link #Decompile(int)} writes itself
+	 */
+	private static boolean isChained(CFExpression expression) {
+		Class<?> type = expression == null ? null : expression.getClass();
+		return type == CFBinaryExpression.class || type == CFElvisExpression.class;
+	}
+	
+	private String getEnd() {
+		// the kind of an elvis expression is the one of its first token, not of its operator
+		return _kind == CFSCRIPTLexer.LEFTBRACKET && !(this instanceof CFElvisExpression) ? "]" : "";
 	}
 	
 	public CFExpression getLeft() {
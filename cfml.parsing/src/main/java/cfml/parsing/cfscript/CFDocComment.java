@@ -0,0 +1,142 @@
+package cfml.parsing.cfscript;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import cfml.parsing.util.CommentTable;
+
+/**
+ * The /** comment before a component, function, property or parameter declaration.
+ *
+ * It points into the {@link CommentTable} of the script, and reads its text from the source the first time it is
+ * asked for. {@link #getHint()} and {@link #getAnnotations()} split the text the way CFML does: the text before the
+ * first line starting with an @ is the hint, and every such line, with the lines after it up to the next, is an
+ * annotation.
+ */
+public class CFDocComment implements java.io.Serializable {
+	
+	private static final long serialVersionUID = 1L;
+	
+	private transient CommentTable comments;
+	private final int index;
+	private final int start;
+	private final int stop;
+	private final int line;
+	private String text;
+	
+	public CFDocComment(CommentTable comments, int index) {
+		this.comments = comments;
+		this.index = index;
+		this.start = comments.getStart(index);
+		this.stop = comments.getStop(index);
+		this.line = comments.getLine(index);
+	}
+	
+	/**
+	 * @return the offset of the first character of the comment
+	 */
+	public int getStart() {
+		return start;
+	}
+	
+	/**
+	 * @return the offset of the last character of the comment
+	 */
+	public int getStop() {
+		return stop;
+	}
+	
+	public int getLine() {
+		return line;
+	}
+	
+	/**
+	 * @return the text of the comment, with the /** and the closing *&#47;
+	 */
+	public String getText() {
+		if (text == null) {
+			text = comments.getText(index);
+			comments = null;
+		}
+		return text;
+	}
+	
+	/**
+	 * @return the lines of the comment without the /**, the *&#47; and the * at the start of each line
+	 */
+	private String[] getLines() {
+		String body = getText();
+		body = body.substring(3, body.length() - 2);
+		String[] lines = body.split("\r\n|\r|\n");
+		for (int i = 0; i < lines.length; i++) {
+			String trimmed = lines[i].trim();
+			lines[i] = trimmed.startsWith("*") ? trimmed.substring(1).trim() : trimmed;
+		}
+		return lines;
+	}
+	
+	/**
+	 * @return the text before the first annotation, with the lines joined by spaces
+	 */
+	public String getHint() {
+		StringBuilder sb = new StringBuilder();
+		for (String line : getLines()) {
+			if (line.startsWith("@")) {
+				break;
+			}
+			if (line.length() > 0) {
+				if (sb.length() > 0) {
+					sb.append(' ');
+				}
+				sb.append(line);
+			}
+		}
+		return sb.toString();
+	}
+	
+	/**
+	 * @return the annotations by name, without the @, in the order of the comment; the value of an annotation without
+	 *         one is the empty string
+	 */
+	public Map<String, String> getAnnotations() {
+		Map<String, String> annotations = new LinkedHashMap<String, String>();
+		String name = null;
+		StringBuilder value = new StringBuilder();
+		for (String line : getLines()) {
+			if (line.startsWith("@")) {
+				if (name != null) {
+					annotations.put(name, value.toString());
+				}
+				int end = 1;
+				while (end < line.length() && !Character.isWhitespace(line.charAt(end))) {
+					end++;
+				}
+				name = line.substring(1, end);
+				value.setLength(0);
+				value.append(line.substring(end).trim());
+			} else if (name != null && line.length() > 0) {
+				if (value.length() > 0) {
+					value.append(' ');
+				}
+				value.append(line);
+			}
+		}
+		if (name != null) {
+			annotations.put(name, value.toString());
+		}
+		return annotations;
+	}
+	
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		// the comment table is not serialized, so the text goes instead
+		getText();
+		out.defaultWriteObject();
+	}
+	
+	@Override
+	public String toString() {
+		return getText();
+	}
+}
@@ -11,9 +11,4 @@ public class CFElvisExpression extends CFBinaryExpression {
 		operatorImage = "?:";
 	}
 	
-	@Override
-	public String Decompile(int indent) {
-		return "" + _left.Decompile(indent) + " " + operatorImage + " " + _right.Decompile(indent);
-	}
-	
 }
@@ -17,8 +17,6 @@ public class CFIdentifier extends CFVarExpression implements java.io.Serializabl
 		return scope;
 	}
 	
-	protected Token token;
-	
 	public CFIdentifier(Token _t) {
 		this(_t, null, null);
 	}
@@ -30,7 +28,6 @@ public class CFIdentifier extends CFVarExpression implements java.io.Serializabl
 	public CFIdentifier(Token _t, String scope, String _img) {
 		super(_t);
 		name = _img;
-		token = _t;
 		this.scope = scope;
 	}
 	
@@ -47,11 +44,6 @@ public class CFIdentifier extends CFVarExpression implements java.io.Serializabl
 		return (scope != null && scope.trim().length() > 0 ? scope.trim() : "") + name;
 	}
 	
-	@Override
-	public Token getToken() {
-		return token;
-	}
-	
 	@Override
 	public String Decompile(int indent) {
 		return getFullName();
@@ -10,13 +10,10 @@ import cfml.parsing.util.ArrayBuilder;
 public class CFMember extends CFExpression implements java.io.Serializable {
 	private static final long serialVersionUID = 1L;
 	
-	protected Token token;
-	
 	private CFExpression expression;
 	
 	public CFMember(Token _t, CFExpression expr) {
 		super(_t);
-		token = _t;
 		expression = expr;
 		if (expression != null) {
 			expression.setParent(this);
@@ -28,11 +25,6 @@ public class CFMember extends CFExpression implements java.io.Serializable {
 		return CFExpression.ARRAYMEMBER;
 	}
 	
-	@Override
-	public Token getToken() {
-		return token;
-	}
-	
 	@Override
 	public String Decompile(int indent) {
 		return "[" + expression.Decompile(0) + "]";
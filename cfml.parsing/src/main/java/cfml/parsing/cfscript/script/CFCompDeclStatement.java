@@ -8,6 +8,7 @@ import java.util.Map.Entry;
 import org.antlr.v4.runtime.Token;
 
 import cfml.parsing.cfscript.CFContext;
+import cfml.parsing.cfscript.CFDocComment;
 import cfml.parsing.cfscript.CFExpression;
 import cfml.parsing.util.ArrayBuilder;
 
@@ -17,6 +18,7 @@ public class CFCompDeclStatement extends CFParsedStatement {
 	
 	private Map<CFExpression, CFExpression> attributes;
 	private CFScriptStatement body;
+	private CFDocComment docComment;
 	
 	private byte access;
 	
@@ -102,4 +104,15 @@ public class CFCompDeclStatement extends CFParsedStatement {
 	public List<CFScriptStatement> decomposeScript() {
 		return ArrayBuilder.createCFScriptStatement(body);
 	}
+	
+	/**
+	 * @return the /** comment before the component, or null
+	 */
+	public CFDocComment getDocComment() {
+		return docComment;
+	}
+	
+	public void setDocComment(CFDocComment docComment) {
+		this.docComment = docComment;
+	}
 }
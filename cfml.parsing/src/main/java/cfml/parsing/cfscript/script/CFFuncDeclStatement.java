@@ -9,6 +9,7 @@ import java.util.Map.Entry;
 import org.antlr.v4.runtime.Token;
 
 import cfml.parsing.cfscript.CFContext;
+import cfml.parsing.cfscript.CFDocComment;
 import cfml.parsing.cfscript.CFExpression;
 import cfml.parsing.cfscript.CFIdentifier;
 import cfml.parsing.reporting.ParseException;
@@ -29,6 +30,7 @@ public class CFFuncDeclStatement extends CFParsedStatement {
 	private boolean abstractMod;
 	private boolean finalMod;
 	private boolean staticMod;
+	private CFDocComment docComment;
 	
 	// TODO: prevent function declared inside function. May want to do this elsewhere
 	public CFFuncDeclStatement(Token _t, CFIdentifier _name, String _access, CFIdentifier _returnType,
@@ -204,4 +206,15 @@ public class CFFuncDeclStatement extends CFParsedStatement {
 	public List<CFScriptStatement> decomposeScript() {
 		return ArrayBuilder.createCFScriptStatement(body);
 	}
+	
+	/**
+	 * @return the /** comment before the function, or null
+	 */
+	public CFDocComment getDocComment() {
+		return docComment;
+	}
+	
+	public void setDocComment(CFDocComment docComment) {
+		this.docComment = docComment;
+	}
 }
@@ -2,6 +2,7 @@ package cfml.parsing.cfscript.script;
 
 import org.antlr.v4.runtime.Token;
 
+import cfml.parsing.cfscript.CFDocComment;
 import cfml.parsing.cfscript.CFExpression;
 import cfml.parsing.cfscript.CFIdentifier;
 import cfml.parsing.cfscript.HasToken;
@@ -15,6 +16,7 @@ public class CFFunctionParameter implements HasToken {
 	private CFExpression defaultExp; // the default value to give the parameter
 	private CFIdentifier token;
 	private HasToken parent;
+	private CFDocComment docComment;
 	
 	public CFFunctionParameter(CFIdentifier t, boolean _required, String _type, CFExpression _default) {
 		name = t.getName();
@@ -81,4 +83,15 @@ public class CFFunctionParameter implements HasToken {
 	public void setParent(HasToken parent) {
 		this.parent = parent;
 	}
+	
+	/**
+	 * @return the /** comment before the parameter, or null
+	 */
+	public CFDocComment getDocComment() {
+		return docComment;
+	}
+	
+	public void setDocComment(CFDocComment docComment) {
+		this.docComment = docComment;
+	}
 }
@@ -4,6 +4,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 
+import cfml.parsing.cfscript.CFDocComment;
 import cfml.parsing.cfscript.CFExpression;
 import cfml.parsing.cfscript.CFIdentifier;
 
@@ -15,6 +16,7 @@ public class CFPropertyStatement extends CFParsedAttributeStatement implements j
 	private boolean shorthand = false;
 	private CFExpression propertyName;
 	private CFExpression propertyType;
+	private CFDocComment docComment;
 	
 	static {
 		validAttributes = new HashSet<String>();
@@ -56,6 +58,10 @@ public class CFPropertyStatement extends CFParsedAttributeStatement implements j
 		shorthand = b;
 	}
 	
+	public boolean isShortHand() {
+		return shorthand;
+	}
+	
 	public void setPropertyName(CFExpression cfExpression) {
 		propertyName = cfExpression;
 	}
@@ -82,4 +88,15 @@ public class CFPropertyStatement extends CFParsedAttributeStatement implements j
 	public CFExpression getPropertyType() {
 		return propertyType;
 	}
+	
+	/**
+	 * @return the /** comment before the property, or null
+	 */
+	public CFDocComment getDocComment() {
+		return docComment;
+	}
+	
+	public void setDocComment(CFDocComment docComment) {
+		this.docComment = docComment;
+	}
 }
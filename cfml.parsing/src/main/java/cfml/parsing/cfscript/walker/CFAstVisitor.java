@@ -0,0 +1,541 @@
+package cfml.parsing.cfscript.walker;
+
+import cfml.parsing.cfscript.CFAnonymousFunctionExpression;
+import cfml.parsing.cfscript.CFArrayExpression;
+import cfml.parsing.cfscript.CFAssignmentExpression;
+import cfml.parsing.cfscript.CFBinaryExpression;
+import cfml.parsing.cfscript.CFElvisExpression;
+import cfml.parsing.cfscript.CFExpression;
+import cfml.parsing.cfscript.CFFullVarExpression;
+import cfml.parsing.cfscript.CFFunctionExpression;
+import cfml.parsing.cfscript.CFIdentifier;
+import cfml.parsing.cfscript.CFJavaMethodExpression;
+import cfml.parsing.cfscript.CFLiteral;
+import cfml.parsing.cfscript.CFMember;
+import cfml.parsing.cfscript.CFMultipartIdentifier;
+import cfml.parsing.cfscript.CFNestedExpression;
+import cfml.parsing.cfscript.CFNewExpression;
+import cfml.parsing.cfscript.CFStringExpression;
+import cfml.parsing.cfscript.CFStructElementExpression;
+import cfml.parsing.cfscript.CFStructExpression;
+import cfml.parsing.cfscript.CFTernaryExpression;
+import cfml.parsing.cfscript.CFUnaryExpression;
+import cfml.parsing.cfscript.CFVarDeclExpression;
+import cfml.parsing.cfscript.script.CFAbortStatement;
+import cfml.parsing.cfscript.script.CFAdminStatement;
+import cfml.parsing.cfscript.script.CFBreakStatement;
+import cfml.parsing.cfscript.script.CFCase;
+import cfml.parsing.cfscript.script.CFCatchStatement;
+import cfml.parsing.cfscript.script.CFCompDeclStatement;
+import cfml.parsing.cfscript.script.CFCompoundStatement;
+import cfml.parsing.cfscript.script.CFContinueStatement;
+import cfml.parsing.cfscript.script.CFDoWhileStatement;
+import cfml.parsing.cfscript.script.CFEmptyStatement;
+import cfml.parsing.cfscript.script.CFExitStatement;
+import cfml.parsing.cfscript.script.CFExpressionStatement;
+import cfml.parsing.cfscript.script.CFForInStatement;
+import cfml.parsing.cfscript.script.CFForStatement;
+import cfml.parsing.cfscript.script.CFFuncDeclStatement;
+import cfml.parsing.cfscript.script.CFFunctionParameter;
+import cfml.parsing.cfscript.script.CFIfStatement;
+import cfml.parsing.cfscript.script.CFImportStatement;
+import cfml.parsing.cfscript.script.CFIncludeStatement;
+import cfml.parsing.cfscript.script.CFInterfaceDeclStatement;
+import cfml.parsing.cfscript.script.CFLockStatement;
+import cfml.parsing.cfscript.script.CFMLFunctionStatement;
+import cfml.parsing.cfscript.script.CFParamStatement;
+import cfml.parsing.cfscript.script.CFPropertyStatement;
+import cfml.parsing.cfscript.script.CFReThrowStatement;
+import cfml.parsing.cfscript.script.CFReturnStatement;
+import cfml.parsing.cfscript.script.CFScriptStatement;
+import cfml.parsing.cfscript.script.CFSwitchStatement;
+import cfml.parsing.cfscript.script.CFTagStatement;
+import cfml.parsing.cfscript.script.CFTagThrowStatement;
+import cfml.parsing.cfscript.script.CFThreadStatement;
+import cfml.parsing.cfscript.script.CFThrowStatement;
+import cfml.parsing.cfscript.script.CFTransactionStatement;
+import cfml.parsing.cfscript.script.CFTryCatchStatement;
+import cfml.parsing.cfscript.script.CFWhileStatement;
+import cfml.parsing.cfscript.script.IncludeStatement;
+
+/**
+ * Visits the nodes of a CFScript AST as {@link CFAstWalker} walks it.
+ *
+ * Every node type has an enter and a leave method. enter is called before the children of the node are walked and
+ * returns whether they should be, leave after them, also when they were skipped. The typed methods all default to
+ * {@link #enterExpression(CFExpression)} and {@link #leaveExpression(CFExpression)}, or to
+ * {@link #enterStatement(CFScriptStatement)} and {@link #leaveStatement(CFScriptStatement)}, so a visitor overrides
+ * those to see every node and the typed methods for the nodes it is interested in. The typed methods do not fall back
+ * on the one of their super class: a {@link CFElvisExpression} goes to enter(CFElvisExpression), not to
+ * enter(CFBinaryExpression).
+ *
+ * <pre>
+ * CFAstWalker.walk(script, new CFAstVisitor() {
+ * 	&#64;Override
+ * 	public boolean enter(CFFunctionExpression node) {
+ * 		calls.add(node.getFunctionName());
+ * 		return true;
+ * 	}
+ * });
+ * </pre>
+ */
+public abstract class CFAstVisitor {
+	
+	public boolean enterExpression(CFExpression node) {
+		return true;
+	}
+	
+	public void leaveExpression(CFExpression node) {
+	}
+	
+	public boolean enterStatement(CFScriptStatement node) {
+		return true;
+	}
+	
+	public void leaveStatement(CFScriptStatement node) {
+	}
+	
+	/**
+	 * Function parameters are neither expressions nor statements; their child is the default value.
+	 */
+	public boolean enter(CFFunctionParameter node) {
+		return true;
+	}
+	
+	public void leave(CFFunctionParameter node) {
+	}
+	
+	public boolean enter(CFAnonymousFunctionExpression node) {
+		return enterExpression(node);
+	}
+	
+	public void leave(CFAnonymousFunctionExpression node) {
+		leaveExpression(node);
+	}
+	
+	public boolean enter(CFArrayExpression node) {
+		return enterExpression(node);
+	}
+	
+	public void leave(CFArrayExpression node) {
+		leaveExpression(node);
+	}
+	
+	public boolean enter(CFAssignmentExpression node) {
+		return enterExpression(node);
+	}
+	
+	public void leave(CFAssignmentExpression node) {
+		leaveExpression(node);
+	}
+	
+	public boolean enter(CFBinaryExpression node) {
+		return enterExpression(node);
+	}
+	
+	public void leave(CFBinaryExpression node) {
+		leaveExpression(node);
+	}
+	
+	public boolean enter(CFElvisExpression node) {
+		return enterExpression(node);
+	}
+	
+	public void leave(CFElvisExpression node) {
+		leaveExpression(node);
+	}
+	
+	public boolean enter(CFFullVarExpression node) {
+		return enterExpression(node);
+	}
+	
+	public void leave(CFFullVarExpression node) {
+		leaveExpression(node);
+	}
+	
+	public boolean enter(CFFunctionExpression node) {
+		return enterExpression(node);
+	}
+	
+	public void leave(CFFunctionExpression node) {
+		leaveExpression(node);
+	}
+	
+	public boolean enter(CFIdentifier node) {
+		return enterExpression(node);
+	}
+	
+	public void leave(CFIdentifier node) {
+		leaveExpression(node);
+	}
+	
+	public boolean enter(CFJavaMethodExpression node) {
+		return enterExpression(node);
+	}
+	
+	public void leave(CFJavaMethodExpression node) {
+		leaveExpression(node);
+	}
+	
+	public boolean enter(CFLiteral node) {
+		return enterExpression(node);
+	}
+	
+	public void leave(CFLiteral node) {
+		leaveExpression(node);
+	}
+	
+	public boolean enter(CFMember node) {
+		return enterExpression(node);
+	}
+	
+	public void leave(CFMember node) {
+		leaveExpression(node);
+	}
+	
+	public boolean enter(CFMultipartIdentifier node) {
+		return enterExpression(node);
+	}
+	
+	public void leave(CFMultipartIdentifier node) {
+		leaveExpression(node);
+	}
+	
+	public boolean enter(CFNestedExpression node) {
+		return enterExpression(node);
+	}
+	
+	public void leave(CFNestedExpression node) {
+		leaveExpression(node);
+	}
+	
+	public boolean enter(CFNewExpression node) {
+		return enterExpression(node);
+	}
+	
+	public void leave(CFNewExpression node) {
+		leaveExpression(node);
+	}
+	
+	public boolean enter(CFStringExpression node) {
+		return enterExpression(node);
+	}
+	
+	public void leave(CFStringExpression node) {
+		leaveExpression(node);
+	}
+	
+	public boolean enter(CFStructElementExpression node) {
+		return enterExpression(node);
+	}
+	
+	public void leave(CFStructElementExpression node) {
+		leaveExpression(node);
+	}
+	
+	public boolean enter(CFStructExpression node) {
+		return enterExpression(node);
+	}
+	
+	public void leave(CFStructExpression node) {
+		leaveExpression(node);
+	}
+	
+	public boolean enter(CFTernaryExpression node) {
+		return enterExpression(node);
+	}
+	
+	public void leave(CFTernaryExpression node) {
+		leaveExpression(node);
+	}
+	
+	public boolean enter(CFUnaryExpression node) {
+		return enterExpression(node);
+	}
+	
+	public void leave(CFUnaryExpression node) {
+		leaveExpression(node);
+	}
+	
+	public boolean enter(CFVarDeclExpression node) {
+		return enterExpression(node);
+	}
+	
+	public void leave(CFVarDeclExpression node) {
+		leaveExpression(node);
+	}
+	
+	public boolean enter(CFAbortStatement node) {
+		return enterStatement(node);
+	}
+	
+	public void leave(CFAbortStatement node) {
+		leaveStatement(node);
+	}
+	
+	public boolean enter(CFAdminStatement node) {
+		return enterStatement(node);
+	}
+	
+	public void leave(CFAdminStatement node) {
+		leaveStatement(node);
+	}
+	
+	public boolean enter(CFBreakStatement node) {
+		return enterStatement(node);
+	}
+	
+	public void leave(CFBreakStatement node) {
+		leaveStatement(node);
+	}
+	
+	public boolean enter(CFCase node) {
+		return enterStatement(node);
+	}
+	
+	public void leave(CFCase node) {
+		leaveStatement(node);
+	}
+	
+	public boolean enter(CFCatchStatement node) {
+		return enterStatement(node);
+	}
+	
+	public void leave(CFCatchStatement node) {
+		leaveStatement(node);
+	}
+	
+	public boolean enter(CFCompDeclStatement node) {
+		return enterStatement(node);
+	}
+	
+	public void leave(CFCompDeclStatement node) {
+		leaveStatement(node);
+	}
+	
+	public boolean enter(CFCompoundStatement node) {
+		return enterStatement(node);
+	}
+	
+	public void leave(CFCompoundStatement node) {
+		leaveStatement(node);
+	}
+	
+	public boolean enter(CFContinueStatement node) {
+		return enterStatement(node);
+	}
+	
+	public void leave(CFContinueStatement node) {
+		leaveStatement(node);
+	}
+	
+	public boolean enter(CFDoWhileStatement node) {
+		return enterStatement(node);
+	}
+	
+	public void leave(CFDoWhileStatement node) {
+		leaveStatement(node);
+	}
+	
+	public boolean enter(CFEmptyStatement node) {
+		return enterStatement(node);
+	}
+	
+	public void leave(CFEmptyStatement node) {
+		leaveStatement(node);
+	}
+	
+	public boolean enter(CFExitStatement node) {
+		return enterStatement(node);
+	}
+	
+	public void leave(CFExitStatement node) {
+		leaveStatement(node);
+	}
+	
+	public boolean enter(CFExpressionStatement node) {
+		return enterStatement(node);
+	}
+	
+	public void leave(CFExpressionStatement node) {
+		leaveStatement(node);
+	}
+	
+	public boolean enter(CFForInStatement node) {
+		return enterStatement(node);
+	}
+	
+	public void leave(CFForInStatement node) {
+		leaveStatement(node);
+	}
+	
+	public boolean enter(CFForStatement node) {
+		return enterStatement(node);
+	}
+	
+	public void leave(CFForStatement node) {
+		leaveStatement(node);
+	}
+	
+	public boolean enter(CFFuncDeclStatement node) {
+		return enterStatement(node);
+	}
+	
+	public void leave(CFFuncDeclStatement node) {
+		leaveStatement(node);
+	}
+	
+	public boolean enter(CFIfStatement node) {
+		return enterStatement(node);
+	}
+	
+	public void leave(CFIfStatement node) {
+		leaveStatement(node);
+	}
+	
+	public boolean enter(CFImportStatement node) {
+		return enterStatement(node);
+	}
+	
+	public void leave(CFImportStatement node) {
+		leaveStatement(node);
+	}
+	
+	public boolean enter(CFIncludeStatement node) {
+		return enterStatement(node);
+	}
+	
+	public void leave(CFIncludeStatement node) {
+		leaveStatement(node);
+	}
+	
+	public boolean enter(CFInterfaceDeclStatement node) {
+		return enterStatement(node);
+	}
+	
+	public void leave(CFInterfaceDeclStatement node) {
+		leaveStatement(node);
+	}
+	
+	public boolean enter(CFLockStatement node) {
+		return enterStatement(node);
+	}
+	
+	public void leave(CFLockStatement node) {
+		leaveStatement(node);
+	}
+	
+	public boolean enter(CFMLFunctionStatement node) {
+		return enterStatement(node);
+	}
+	
+	public void leave(CFMLFunctionStatement node) {
+		leaveStatement(node);
+	}
+	
+	public boolean enter(CFParamStatement node) {
+		return enterStatement(node);
+	}
+	
+	public void leave(CFParamStatement node) {
+		leaveStatement(node);
+	}
+	
+	public boolean enter(CFPropertyStatement node) {
+		return enterStatement(node);
+	}
+	
+	public void leave(CFPropertyStatement node) {
+		leaveStatement(node);
+	}
+	
+	public boolean enter(CFReThrowStatement node) {
+		return enterStatement(node);
+	}
+	
+	public void leave(CFReThrowStatement node) {
+		leaveStatement(node);
+	}
+	
+	public boolean enter(CFReturnStatement node) {
+		return enterStatement(node);
+	}
+	
+	public void leave(CFReturnStatement node) {
+		leaveStatement(node);
+	}
+	
+	public boolean enter(CFSwitchStatement node) {
+		return enterStatement(node);
+	}
+	
+	public void leave(CFSwitchStatement node) {
+		leaveStatement(node);
+	}
+	
+	public boolean enter(CFTagStatement node) {
+		return enterStatement(node);
+	}
+	
+	public void leave(CFTagStatement node) {
+		leaveStatement(node);
+	}
+	
+	public boolean enter(CFTagThrowStatement node) {
+		return enterStatement(node);
+	}
+	
+	public void leave(CFTagThrowStatement node) {
+		leaveStatement(node);
+	}
+	
+	public boolean enter(CFThreadStatement node) {
+		return enterStatement(node);
+	}
+	
+	public void leave(CFThreadStatement node) {
+		leaveStatement(node);
+	}
+	
+	@SuppressWarnings("deprecation")
+	public boolean enter(CFThrowStatement node) {
+		return enterStatement(node);
+	}
+	
+	@SuppressWarnings("deprecation")
+	public void leave(CFThrowStatement node) {
+		leaveStatement(node);
+	}
+	
+	public boolean enter(CFTransactionStatement node) {
+		return enterStatement(node);
+	}
+	
+	public void leave(CFTransactionStatement node) {
+		leaveStatement(node);
+	}
+	
+	public boolean enter(CFTryCatchStatement node) {
+		return enterStatement(node);
+	}
+	
+	public void leave(CFTryCatchStatement node) {
+		leaveStatement(node);
+	}
+	
+	public boolean enter(CFWhileStatement node) {
+		return enterStatement(node);
+	}
+	
+	public void leave(CFWhileStatement node) {
+		leaveStatement(node);
+	}
+	
+	public boolean enter(IncludeStatement node) {
+		return enterStatement(node);
+	}
+	
+	public void leave(IncludeStatement node) {
+		leaveStatement(node);
+	}
+}
@@ -0,0 +1,808 @@
+package cfml.parsing.cfscript.walker;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import cfml.parsing.cfscript.CFAnonymousFunctionExpression;
+import cfml.parsing.cfscript.CFArrayExpression;
+import cfml.parsing.cfscript.CFAssignmentExpression;
+import cfml.parsing.cfscript.CFBinaryExpression;
+import cfml.parsing.cfscript.CFElvisExpression;
+import cfml.parsing.cfscript.CFExpression;
+import cfml.parsing.cfscript.CFFullVarExpression;
+import cfml.parsing.cfscript.CFFunctionExpression;
+import cfml.parsing.cfscript.CFIdentifier;
+import cfml.parsing.cfscript.CFJavaMethodExpression;
+import cfml.parsing.cfscript.CFLiteral;
+import cfml.parsing.cfscript.CFMember;
+import cfml.parsing.cfscript.CFMultipartIdentifier;
+import cfml.parsing.cfscript.CFNestedExpression;
+import cfml.parsing.cfscript.CFNewExpression;
+import cfml.parsing.cfscript.CFStringExpression;
+import cfml.parsing.cfscript.CFStructElementExpression;
+import cfml.parsing.cfscript.CFStructExpression;
+import cfml.parsing.cfscript.CFTernaryExpression;
+import cfml.parsing.cfscript.CFUnaryExpression;
+import cfml.parsing.cfscript.CFVarDeclExpression;
+import cfml.parsing.cfscript.script.CFAbortStatement;
+import cfml.parsing.cfscript.script.CFAdminStatement;
+import cfml.parsing.cfscript.script.CFBreakStatement;
+import cfml.parsing.cfscript.script.CFCase;
+import cfml.parsing.cfscript.script.CFCatchStatement;
+import cfml.parsing.cfscript.script.CFCompDeclStatement;
+import cfml.parsing.cfscript.script.CFCompoundStatement;
+import cfml.parsing.cfscript.script.CFContinueStatement;
+import cfml.parsing.cfscript.script.CFDoWhileStatement;
+import cfml.parsing.cfscript.script.CFEmptyStatement;
+import cfml.parsing.cfscript.script.CFExitStatement;
+import cfml.parsing.cfscript.script.CFExpressionStatement;
+import cfml.parsing.cfscript.script.CFForInStatement;
+import cfml.parsing.cfscript.script.CFForStatement;
+import cfml.parsing.cfscript.script.CFFuncDeclStatement;
+import cfml.parsing.cfscript.script.CFFunctionParameter;
+import cfml.parsing.cfscript.script.CFIfStatement;
+import cfml.parsing.cfscript.script.CFImportStatement;
+import cfml.parsing.cfscript.script.CFIncludeStatement;
+import cfml.parsing.cfscript.script.CFInterfaceDeclStatement;
+import cfml.parsing.cfscript.script.CFLockStatement;
+import cfml.parsing.cfscript.script.CFMLFunctionStatement;
+import cfml.parsing.cfscript.script.CFParamStatement;
+import cfml.parsing.cfscript.script.CFPropertyStatement;
+import cfml.parsing.cfscript.script.CFReThrowStatement;
+import cfml.parsing.cfscript.script.CFReturnStatement;
+import cfml.parsing.cfscript.script.CFScriptStatement;
+import cfml.parsing.cfscript.script.CFSwitchStatement;
+import cfml.parsing.cfscript.script.CFTagStatement;
+import cfml.parsing.cfscript.script.CFTagThrowStatement;
+import cfml.parsing.cfscript.script.CFThreadStatement;
+import cfml.parsing.cfscript.script.CFThrowStatement;
+import cfml.parsing.cfscript.script.CFTransactionStatement;
+import cfml.parsing.cfscript.script.CFTryCatchStatement;
+import cfml.parsing.cfscript.script.CFWhileStatement;
+import cfml.parsing.cfscript.script.IncludeStatement;
+import cfml.parsing.util.ArrayStack;
+
+/**
+ * Walks a CFScript AST depth first, calling a {@link CFAstVisitor} on the way in and out of every node.
+ *
+ * Unlike decomposeExpression() and decomposeScript(), the walker reads the children of a node straight from its fields,
+ * so a walk does not build any lists. The children come in the order of the decompose methods: the expressions of a
+ * node, then its statements. Nodes of a class the walker does not know are walked as their closest known super class,
+ * or through their decompose methods if there is none.
+ */
+public final class CFAstWalker {
+	
+	static final int ANONYMOUS_FUNCTION_EXPRESSION = 1;
+	static final int ARRAY_EXPRESSION = 2;
+	static final int ASSIGNMENT_EXPRESSION = 3;
+	static final int BINARY_EXPRESSION = 4;
+	static final int ELVIS_EXPRESSION = 5;
+	static final int FULL_VAR_EXPRESSION = 6;
+	static final int FUNCTION_EXPRESSION = 7;
+	static final int IDENTIFIER = 8;
+	static final int JAVA_METHOD_EXPRESSION = 9;
+	static final int LITERAL = 10;
+	static final int MEMBER = 11;
+	static final int MULTIPART_IDENTIFIER = 12;
+	static final int NESTED_EXPRESSION = 13;
+	static final int NEW_EXPRESSION = 14;
+	static final int STRING_EXPRESSION = 15;
+	static final int STRUCT_ELEMENT_EXPRESSION = 16;
+	static final int STRUCT_EXPRESSION = 17;
+	static final int TERNARY_EXPRESSION = 18;
+	static final int UNARY_EXPRESSION = 19;
+	static final int VAR_DECL_EXPRESSION = 20;
+	static final int ABORT_STATEMENT = 21;
+	static final int ADMIN_STATEMENT = 22;
+	static final int BREAK_STATEMENT = 23;
+	static final int CASE = 24;
+	static final int CATCH_STATEMENT = 25;
+	static final int COMP_DECL_STATEMENT = 26;
+	static final int COMPOUND_STATEMENT = 27;
+	static final int CONTINUE_STATEMENT = 28;
+	static final int DO_WHILE_STATEMENT = 29;
+	static final int EMPTY_STATEMENT = 30;
+	static final int EXIT_STATEMENT = 31;
+	static final int EXPRESSION_STATEMENT = 32;
+	static final int FOR_IN_STATEMENT = 33;
+	static final int FOR_STATEMENT = 34;
+	static final int FUNC_DECL_STATEMENT = 35;
+	static final int IF_STATEMENT = 36;
+	static final int IMPORT_STATEMENT = 37;
+	static final int CF_INCLUDE_STATEMENT = 38;
+	static final int INTERFACE_DECL_STATEMENT = 39;
+	static final int LOCK_STATEMENT = 40;
+	static final int CFML_FUNCTION_STATEMENT = 41;
+	static final int PARAM_STATEMENT = 42;
+	static final int PROPERTY_STATEMENT = 43;
+	static final int RETHROW_STATEMENT = 44;
+	static final int RETURN_STATEMENT = 45;
+	static final int SWITCH_STATEMENT = 46;
+	static final int TAG_STATEMENT = 47;
+	static final int TAG_THROW_STATEMENT = 48;
+	static final int THREAD_STATEMENT = 49;
+	static final int THROW_STATEMENT = 50;
+	static final int TRANSACTION_STATEMENT = 51;
+	static final int TRY_CATCH_STATEMENT = 52;
+	static final int WHILE_STATEMENT = 53;
+	static final int INCLUDE_STATEMENT = 54;
+	
+	/** the kind of every node class the walker knows */
+	static final Map<Class<?>, Integer> KINDS = new HashMap<Class<?>, Integer>();
+	static {
+		KINDS.put(CFAnonymousFunctionExpression.class, ANONYMOUS_FUNCTION_EXPRESSION);
+		KINDS.put(CFArrayExpression.class, ARRAY_EXPRESSION);
+		KINDS.put(CFAssignmentExpression.class, ASSIGNMENT_EXPRESSION);
+		KINDS.put(CFBinaryExpression.class, BINARY_EXPRESSION);
+		KINDS.put(CFElvisExpression.class, ELVIS_EXPRESSION);
+		KINDS.put(CFFullVarExpression.class, FULL_VAR_EXPRESSION);
+		KINDS.put(CFFunctionExpression.class, FUNCTION_EXPRESSION);
+		KINDS.put(CFIdentifier.class, IDENTIFIER);
+		KINDS.put(CFJavaMethodExpression.class, JAVA_METHOD_EXPRESSION);
+		KINDS.put(CFLiteral.class, LITERAL);
+		KINDS.put(CFMember.class, MEMBER);
+		KINDS.put(CFMultipartIdentifier.class, MULTIPART_IDENTIFIER);
+		KINDS.put(CFNestedExpression.class, NESTED_EXPRESSION);
+		KINDS.put(CFNewExpression.class, NEW_EXPRESSION);
+		KINDS.put(CFStringExpression.class, STRING_EXPRESSION);
+		KINDS.put(CFStructElementExpression.class, STRUCT_ELEMENT_EXPRESSION);
+		KINDS.put(CFStructExpression.class, STRUCT_EXPRESSION);
+		KINDS.put(CFTernaryExpression.class, TERNARY_EXPRESSION);
+		KINDS.put(CFUnaryExpression.class, UNARY_EXPRESSION);
+		KINDS.put(CFVarDeclExpression.class, VAR_DECL_EXPRESSION);
+		KINDS.put(CFAbortStatement.class, ABORT_STATEMENT);
+		KINDS.put(CFAdminStatement.class, ADMIN_STATEMENT);
+		KINDS.put(CFBreakStatement.class, BREAK_STATEMENT);
+		KINDS.put(CFCase.class, CASE);
+		KINDS.put(CFCatchStatement.class, CATCH_STATEMENT);
+		KINDS.put(CFCompDeclStatement.class, COMP_DECL_STATEMENT);
+		KINDS.put(CFCompoundStatement.class, COMPOUND_STATEMENT);
+		KINDS.put(CFContinueStatement.class, CONTINUE_STATEMENT);
+		KINDS.put(CFDoWhileStatement.class, DO_WHILE_STATEMENT);
+		KINDS.put(CFEmptyStatement.class, EMPTY_STATEMENT);
+		KINDS.put(CFExitStatement.class, EXIT_STATEMENT);
+		KINDS.put(CFExpressionStatement.class, EXPRESSION_STATEMENT);
+		KINDS.put(CFForInStatement.class, FOR_IN_STATEMENT);
+		KINDS.put(CFForStatement.class, FOR_STATEMENT);
+		KINDS.put(CFFuncDeclStatement.class, FUNC_DECL_STATEMENT);
+		KINDS.put(CFIfStatement.class, IF_STATEMENT);
+		KINDS.put(CFImportStatement.class, IMPORT_STATEMENT);
+		KINDS.put(CFIncludeStatement.class, CF_INCLUDE_STATEMENT);
+		KINDS.put(CFInterfaceDeclStatement.class, INTERFACE_DECL_STATEMENT);
+		KINDS.put(CFLockStatement.class, LOCK_STATEMENT);
+		KINDS.put(CFMLFunctionStatement.class, CFML_FUNCTION_STATEMENT);
+		KINDS.put(CFParamStatement.class, PARAM_STATEMENT);
+		KINDS.put(CFPropertyStatement.class, PROPERTY_STATEMENT);
+		KINDS.put(CFReThrowStatement.class, RETHROW_STATEMENT);
+		KINDS.put(CFReturnStatement.class, RETURN_STATEMENT);
+		KINDS.put(CFSwitchStatement.class, SWITCH_STATEMENT);
+		KINDS.put(CFTagStatement.class, TAG_STATEMENT);
+		KINDS.put(CFTagThrowStatement.class, TAG_THROW_STATEMENT);
+		KINDS.put(CFThreadStatement.class, THREAD_STATEMENT);
+		// deprecated, but the parser still makes it
+		@SuppressWarnings("deprecation")
+		Class<?> throwStatement = CFThrowStatement.class;
+		KINDS.put(throwStatement, THROW_STATEMENT);
+		KINDS.put(CFTransactionStatement.class, TRANSACTION_STATEMENT);
+		KINDS.put(CFTryCatchStatement.class, TRY_CATCH_STATEMENT);
+		KINDS.put(CFWhileStatement.class, WHILE_STATEMENT);
+		KINDS.put(IncludeStatement.class, INCLUDE_STATEMENT);
+	}
+	
+	/** pushed by {@link #binary(CFBinaryExpression)} over a binary expression, to leave it */
+	private static final Object LEAVE = new Object();
+	
+	/** the kind of every node class, the one of its closest known super class for classes the walker does not know */
+	private static final ClassValue<Integer> KIND = new ClassValue<Integer>() {
+		@Override
+		protected Integer computeValue(Class<?> type) {
+			for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+				Integer kind = KINDS.get(c);
+				if (kind != null) {
+					return kind;
+				}
+			}
+			return 0;
+		}
+	};
+	
+	private final CFAstVisitor visitor;
+	/** the expressions {@link #binary(CFBinaryExpression)} has still to walk, the next on top; made on first use */
+	private ArrayStack<Object> pending;
+	
+	private CFAstWalker(CFAstVisitor visitor) {
+		this.visitor = visitor;
+	}
+	
+	/**
+	 * Walks a statement and everything in it.
+	 *
+	 * @param node
+	 *            the statement to start at, may be null
+	 * @param visitor
+	 */
+	public static void walk(CFScriptStatement node, CFAstVisitor visitor) {
+		new CFAstWalker(visitor).statement(node);
+	}
+	
+	/**
+	 * Walks an expression and everything in it.
+	 *
+	 * @param node
+	 *            the expression to start at, may be null
+	 * @param visitor
+	 */
+	public static void walk(CFExpression node, CFAstVisitor visitor) {
+		new CFAstWalker(visitor).expression(node);
+	}
+	
+	private void expression(CFExpression node) {
+		if (node == null) {
+			return;
+		}
+		switch (KIND.get(node.getClass())) {
+		case ANONYMOUS_FUNCTION_EXPRESSION: {
+			CFAnonymousFunctionExpression n = (CFAnonymousFunctionExpression) node;
+			if (visitor.enter(n)) {
+				statement(n.getFuncDeclStatement());
+			}
+			visitor.leave(n);
+			break;
+		}
+		case ARRAY_EXPRESSION: {
+			CFArrayExpression n = (CFArrayExpression) node;
+			if (visitor.enter(n)) {
+				expressions(n.getElements());
+			}
+			visitor.leave(n);
+			break;
+		}
+		case ASSIGNMENT_EXPRESSION: {
+			CFAssignmentExpression n = (CFAssignmentExpression) node;
+			if (visitor.enter(n)) {
+				expression(n.getLeft());
+				expression(n.getRight());
+				expressions(n.getOtherIds());
+			}
+			visitor.leave(n);
+			break;
+		}
+		case BINARY_EXPRESSION:
+			binary((CFBinaryExpression) node);
+			break;
+		case ELVIS_EXPRESSION: {
+			CFElvisExpression n = (CFElvisExpression) node;
+			if (visitor.enter(n)) {
+				expression(n.getLeft());
+				expression(n.getRight());
+			}
+			visitor.leave(n);
+			break;
+		}
+		case FULL_VAR_EXPRESSION: {
+			CFFullVarExpression n = (CFFullVarExpression) node;
+			if (visitor.enter(n)) {
+				expressions(n.getExpressions());
+			}
+			visitor.leave(n);
+			break;
+		}
+		case FUNCTION_EXPRESSION: {
+			CFFunctionExpression n = (CFFunctionExpression) node;
+			if (visitor.enter(n)) {
+				expressions(n.getArgs());
+				statement(n.getBody());
+			}
+			visitor.leave(n);
+			break;
+		}
+		case IDENTIFIER: {
+			CFIdentifier n = (CFIdentifier) node;
+			visitor.enter(n);
+			visitor.leave(n);
+			break;
+		}
+		case JAVA_METHOD_EXPRESSION: {
+			CFJavaMethodExpression n = (CFJavaMethodExpression) node;
+			if (visitor.enter(n)) {
+				expression(n.getName());
+				expressions(n.getArgs());
+			}
+			visitor.leave(n);
+			break;
+		}
+		case LITERAL: {
+			CFLiteral n = (CFLiteral) node;
+			visitor.enter(n);
+			visitor.leave(n);
+			break;
+		}
+		case MEMBER: {
+			CFMember n = (CFMember) node;
+			if (visitor.enter(n)) {
+				expression(n.getExpression());
+			}
+			visitor.leave(n);
+			break;
+		}
+		case MULTIPART_IDENTIFIER: {
+			CFMultipartIdentifier n = (CFMultipartIdentifier) node;
+			if (visitor.enter(n)) {
+				expressions(n.getIds());
+			}
+			visitor.leave(n);
+			break;
+		}
+		case NESTED_EXPRESSION: {
+			CFNestedExpression n = (CFNestedExpression) node;
+			if (visitor.enter(n)) {
+				expression(n.getSub());
+			}
+			visitor.leave(n);
+			break;
+		}
+		case NEW_EXPRESSION: {
+			CFNewExpression n = (CFNewExpression) node;
+			if (visitor.enter(n)) {
+				expression(n.getComponentPath());
+				expressions(args(n));
+			}
+			visitor.leave(n);
+			break;
+		}
+		case STRING_EXPRESSION: {
+			CFStringExpression n = (CFStringExpression) node;
+			if (visitor.enter(n)) {
+				expressions(n.getSubExpressions());
+			}
+			visitor.leave(n);
+			break;
+		}
+		case STRUCT_ELEMENT_EXPRESSION: {
+			CFStructElementExpression n = (CFStructElementExpression) node;
+			if (visitor.enter(n)) {
+				expression(n.getKey());
+				expression(n.getValue());
+			}
+			visitor.leave(n);
+			break;
+		}
+		case STRUCT_EXPRESSION: {
+			CFStructExpression n = (CFStructExpression) node;
+			if (visitor.enter(n)) {
+				expressions(n.getElements());
+			}
+			visitor.leave(n);
+			break;
+		}
+		case TERNARY_EXPRESSION: {
+			CFTernaryExpression n = (CFTernaryExpression) node;
+			if (visitor.enter(n)) {
+				expression(n.getCond());
+				expression(n.getLeft());
+				expression(n.getRight());
+			}
+			visitor.leave(n);
+			break;
+		}
+		case UNARY_EXPRESSION: {
+			CFUnaryExpression n = (CFUnaryExpression) node;
+			if (visitor.enter(n)) {
+				expression(n.getSub());
+			}
+			visitor.leave(n);
+			break;
+		}
+		case VAR_DECL_EXPRESSION: {
+			CFVarDeclExpression n = (CFVarDeclExpression) node;
+			if (visitor.enter(n)) {
+				expression(n.getVar());
+				expression(n.getInit());
+				expressions(n.getOtherIds());
+				expressions(n.getOtherVars());
+			}
+			visitor.leave(n);
+			break;
+		}
+		default:
+			if (visitor.enterExpression(node)) {
+				expressions(node.decomposeExpression());
+				statements(node.decomposeScript());
+			}
+			visitor.leaveExpression(node);
+		}
+	}
+	
+	/**
+	 * Walks a binary expression and the binary expressions in its operands without recursing into them, see
+	 * {@link CFBinaryExpression}.
+	 */
+	private void binary(CFBinaryExpression node) {
+		if (pending == null) {
+			pending = new ArrayStack<Object>();
+		}
+		// an operand that is not a binary expression may have binary expressions of its own, walked above base
+		int base = pending.size();
+		pending.push(node);
+		while (pending.size() > base) {
+			Object next = pending.pop();
+			if (next == LEAVE) {
+				visitor.leave((CFBinaryExpression) pending.pop());
+			} else if (next != null && KIND.get(next.getClass()) == BINARY_EXPRESSION) {
+				CFBinaryExpression n = (CFBinaryExpression) next;
+				if (visitor.enter(n)) {
+					pending.push(n);
+					pending.push(LEAVE);
+					pending.push(n.getRight());
+					pending.push(n.getLeft());
+				} else {
+					visitor.leave(n);
+				}
+			} else {
+				expression((CFExpression) next);
+			}
+		}
+	}
+	
+	private void statement(CFScriptStatement node) {
+		if (node == null) {
+			return;
+		}
+		switch (KIND.get(node.getClass())) {
+		case ABORT_STATEMENT: {
+			CFAbortStatement n = (CFAbortStatement) node;
+			if (visitor.enter(n)) {
+				expression(n.getMessage());
+			}
+			visitor.leave(n);
+			break;
+		}
+		case ADMIN_STATEMENT: {
+			CFAdminStatement n = (CFAdminStatement) node;
+			if (visitor.enter(n)) {
+				attributes(n.getAttributes());
+			}
+			visitor.leave(n);
+			break;
+		}
+		case BREAK_STATEMENT: {
+			CFBreakStatement n = (CFBreakStatement) node;
+			visitor.enter(n);
+			visitor.leave(n);
+			break;
+		}
+		case CASE: {
+			CFCase n = (CFCase) node;
+			if (visitor.enter(n)) {
+				expression(n.getConstant());
+				statements(n.getStatements());
+			}
+			visitor.leave(n);
+			break;
+		}
+		case CATCH_STATEMENT: {
+			CFCatchStatement n = (CFCatchStatement) node;
+			if (visitor.enter(n)) {
+				expression(n.getVariable());
+				statement(n.getCatchBody());
+			}
+			visitor.leave(n);
+			break;
+		}
+		case COMP_DECL_STATEMENT: {
+			CFCompDeclStatement n = (CFCompDeclStatement) node;
+			if (visitor.enter(n)) {
+				attributes(n.getAttributes());
+				statement(n.getBody());
+			}
+			visitor.leave(n);
+			break;
+		}
+		case COMPOUND_STATEMENT: {
+			CFCompoundStatement n = (CFCompoundStatement) node;
+			if (visitor.enter(n)) {
+				statements(n.getStatements());
+			}
+			visitor.leave(n);
+			break;
+		}
+		case CONTINUE_STATEMENT: {
+			CFContinueStatement n = (CFContinueStatement) node;
+			visitor.enter(n);
+			visitor.leave(n);
+			break;
+		}
+		case DO_WHILE_STATEMENT: {
+			CFDoWhileStatement n = (CFDoWhileStatement) node;
+			if (visitor.enter(n)) {
+				expression(n.getCondition());
+				statement(n.getBody());
+			}
+			visitor.leave(n);
+			break;
+		}
+		case EMPTY_STATEMENT: {
+			CFEmptyStatement n = (CFEmptyStatement) node;
+			visitor.enter(n);
+			visitor.leave(n);
+			break;
+		}
+		case EXIT_STATEMENT: {
+			CFExitStatement n = (CFExitStatement) node;
+			if (visitor.enter(n)) {
+				expression(n.getMethod());
+			}
+			visitor.leave(n);
+			break;
+		}
+		case EXPRESSION_STATEMENT: {
+			CFExpressionStatement n = (CFExpressionStatement) node;
+			if (visitor.enter(n)) {
+				expression(n.getExpression());
+			}
+			visitor.leave(n);
+			break;
+		}
+		case FOR_IN_STATEMENT: {
+			CFForInStatement n = (CFForInStatement) node;
+			if (visitor.enter(n)) {
+				expression(n.getVariable());
+				expression(n.getStructure());
+				statement(n.getBody());
+			}
+			visitor.leave(n);
+			break;
+		}
+		case FOR_STATEMENT: {
+			CFForStatement n = (CFForStatement) node;
+			if (visitor.enter(n)) {
+				expression(n.getInit());
+				expression(n.getCond());
+				expression(n.getNext());
+				statement(n.getBody());
+			}
+			visitor.leave(n);
+			break;
+		}
+		case FUNC_DECL_STATEMENT: {
+			CFFuncDeclStatement n = (CFFuncDeclStatement) node;
+			if (visitor.enter(n)) {
+				expression(n.getName());
+				attributes(n.getAttributes());
+				parameters(n.getFormals());
+				statement(n.getBody());
+			}
+			visitor.leave(n);
+			break;
+		}
+		case IF_STATEMENT: {
+			CFIfStatement n = (CFIfStatement) node;
+			if (visitor.enter(n)) {
+				expression(n.getCond());
+				statement(n.getThenStatement());
+				statement(n.getElseStatement());
+			}
+			visitor.leave(n);
+			break;
+		}
+		case IMPORT_STATEMENT: {
+			CFImportStatement n = (CFImportStatement) node;
+			if (visitor.enter(n)) {
+				expression(n.getPath());
+			}
+			visitor.leave(n);
+			break;
+		}
+		case CF_INCLUDE_STATEMENT: {
+			CFIncludeStatement n = (CFIncludeStatement) node;
+			if (visitor.enter(n)) {
+				expression(n.getTemplate());
+			}
+			visitor.leave(n);
+			break;
+		}
+		case INTERFACE_DECL_STATEMENT: {
+			CFInterfaceDeclStatement n = (CFInterfaceDeclStatement) node;
+			if (visitor.enter(n)) {
+				attributes(n.getAttributes());
+				statement(n.getBody());
+			}
+			visitor.leave(n);
+			break;
+		}
+		case LOCK_STATEMENT: {
+			CFLockStatement n = (CFLockStatement) node;
+			if (visitor.enter(n)) {
+				attributes(n.getAttributes());
+				statement(n.getBody());
+			}
+			visitor.leave(n);
+			break;
+		}
+		case CFML_FUNCTION_STATEMENT: {
+			CFMLFunctionStatement n = (CFMLFunctionStatement) node;
+			if (visitor.enter(n)) {
+				attributes(n.getAttributes());
+				statement(n.getBody());
+			}
+			visitor.leave(n);
+			break;
+		}
+		case PARAM_STATEMENT: {
+			CFParamStatement n = (CFParamStatement) node;
+			if (visitor.enter(n)) {
+				attributes(n.getAttributes());
+			}
+			visitor.leave(n);
+			break;
+		}
+		case PROPERTY_STATEMENT: {
+			CFPropertyStatement n = (CFPropertyStatement) node;
+			if (visitor.enter(n)) {
+				attributes(n.getAttributes());
+				expression(n.getPropertyName());
+				expression(n.getPropertyType());
+			}
+			visitor.leave(n);
+			break;
+		}
+		case RETHROW_STATEMENT: {
+			CFReThrowStatement n = (CFReThrowStatement) node;
+			visitor.enter(n);
+			visitor.leave(n);
+			break;
+		}
+		case RETURN_STATEMENT: {
+			CFReturnStatement n = (CFReturnStatement) node;
+			if (visitor.enter(n)) {
+				expression(n.getExpression());
+			}
+			visitor.leave(n);
+			break;
+		}
+		case SWITCH_STATEMENT: {
+			CFSwitchStatement n = (CFSwitchStatement) node;
+			if (visitor.enter(n)) {
+				expression(n.getVariable());
+				statements(n.getCases());
+			}
+			visitor.leave(n);
+			break;
+		}
+		case TAG_STATEMENT: {
+			CFTagStatement n = (CFTagStatement) node;
+			if (visitor.enter(n)) {
+				attributes(n.getAttributes());
+			}
+			visitor.leave(n);
+			break;
+		}
+		case TAG_THROW_STATEMENT: {
+			CFTagThrowStatement n = (CFTagThrowStatement) node;
+			if (visitor.enter(n)) {
+				attributes(n.getAttributes());
+			}
+			visitor.leave(n);
+			break;
+		}
+		case THREAD_STATEMENT: {
+			CFThreadStatement n = (CFThreadStatement) node;
+			if (visitor.enter(n)) {
+				attributes(n.getAttributes());
+				statement(n.getBody());
+			}
+			visitor.leave(n);
+			break;
+		}
+		case THROW_STATEMENT:
+			throwStatement(node);
+			break;
+		case TRANSACTION_STATEMENT: {
+			CFTransactionStatement n = (CFTransactionStatement) node;
+			if (visitor.enter(n)) {
+				attributes(n.getAttributes());
+				statement(n.getBody());
+			}
+			visitor.leave(n);
+			break;
+		}
+		case TRY_CATCH_STATEMENT: {
+			CFTryCatchStatement n = (CFTryCatchStatement) node;
+			if (visitor.enter(n)) {
+				statement(n.getBody());
+				statements(n.getCatchStatements());
+				statement(n.getFinallyStatement());
+			}
+			visitor.leave(n);
+			break;
+		}
+		case WHILE_STATEMENT: {
+			CFWhileStatement n = (CFWhileStatement) node;
+			if (visitor.enter(n)) {
+				expression(n.getCond());
+				statement(n.getBody());
+			}
+			visitor.leave(n);
+			break;
+		}
+		case INCLUDE_STATEMENT: {
+			IncludeStatement n = (IncludeStatement) node;
+			if (visitor.enter(n)) {
+				expression(n.getTemplate());
+			}
+			visitor.leave(n);
+			break;
+		}
+		default:
+			if (visitor.enterStatement(node)) {
+				expressions(node.decomposeExpression());
+				statements(node.decomposeScript());
+			}
+			visitor.leaveStatement(node);
+		}
+	}
+	
+	/**
+	 * {@link CFThrowStatement} is deprecated, but the parser still makes it.
+	 */
+	@SuppressWarnings("deprecation")
+	private void throwStatement(CFScriptStatement node) {
+		CFThrowStatement n = (CFThrowStatement) node;
+		if (visitor.enter(n)) {
+			expression(n.getMessage());
+		}
+		visitor.leave(n);
+	}
+	
+	/**
+	 * @return the arguments of n, which {@link CFNewExpression#getArgs()} returns as a raw list
+	 */
+	@SuppressWarnings("unchecked")
+	private static List<CFExpression> args(CFNewExpression n) {
+		return n.getArgs();
+	}
+	
+	// indexed loops, the lists are array lists and an iterator per list is what the walker is meant to save
+	
+	private void expressions(List<? extends CFExpression> nodes) {
+		if (nodes == null) {
+			return;
+		}
+		for (int i = 0; i < nodes.size(); i++) {
+			expression(nodes.get(i));
+		}
+	}
+	
+	private void statements(List<? extends CFScriptStatement> nodes) {
+		if (nodes == null) {
+			return;
+		}
+		for (int i = 0; i < nodes.size(); i++) {
+			statement(nodes.get(i));
+		}
+	}
+	
+	private void attributes(Map<? extends CFExpression, ? extends CFExpression> attributes) {
+		if (attributes == null) {
+			return;
+		}
+		for (Map.Entry<? extends CFExpression, ? extends CFExpression> attribute : attributes.entrySet()) {
+			expression(attribute.getKey());
+			expression(attribute.getValue());
+		}
+	}
+	
+	private void parameters(List<CFFunctionParameter> parameters) {
+		if (parameters == null) {
+			return;
+		}
+		for (int i = 0; i < parameters.size(); i++) {
+			CFFunctionParameter parameter = parameters.get(i);
+			if (visitor.enter(parameter)) {
+				expression(parameter.getDefaultExpression());
+			}
+			visitor.leave(parameter);
+		}
+	}
+}
@@ -0,0 +1,566 @@
+package cfml.parsing.cfscript.walker;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import cfml.parsing.cfscript.CFExpression;
+import cfml.parsing.cfscript.script.CFBreakStatement;
+import cfml.parsing.cfscript.script.CFCase;
+import cfml.parsing.cfscript.script.CFCatchStatement;
+import cfml.parsing.cfscript.script.CFCompoundStatement;
+import cfml.parsing.cfscript.script.CFContinueStatement;
+import cfml.parsing.cfscript.script.CFDoWhileStatement;
+import cfml.parsing.cfscript.script.CFEmptyStatement;
+import cfml.parsing.cfscript.script.CFExpressionStatement;
+import cfml.parsing.cfscript.script.CFForInStatement;
+import cfml.parsing.cfscript.script.CFForStatement;
+import cfml.parsing.cfscript.script.CFFuncDeclStatement;
+import cfml.parsing.cfscript.script.CFIfStatement;
+import cfml.parsing.cfscript.script.CFLockStatement;
+import cfml.parsing.cfscript.script.CFMLFunctionStatement;
+import cfml.parsing.cfscript.script.CFParsedAttributeStatement;
+import cfml.parsing.cfscript.script.CFReThrowStatement;
+import cfml.parsing.cfscript.script.CFReturnStatement;
+import cfml.parsing.cfscript.script.CFScriptStatement;
+import cfml.parsing.cfscript.script.CFSwitchStatement;
+import cfml.parsing.cfscript.script.CFThreadStatement;
+import cfml.parsing.cfscript.script.CFThrowStatement;
+import cfml.parsing.cfscript.script.CFTransactionStatement;
+import cfml.parsing.cfscript.script.CFTryCatchStatement;
+import cfml.parsing.cfscript.script.CFWhileStatement;
+
+/**
+ * The control flow graph of the body of a function.
+ *
+ * Blocks are numbered from 0, {@link #getEntry()} is 0 and {@link #getExit()} is 1. A block holds the elements that
+ * are evaluated one after the other without branching: expressions, like the condition of an if or the expression of
+ * an expression statement, and statements without a body the graph does not know. Successors and predecessors are kept
+ * as int arrays.
+ *
+ * Return, throw and rethrow go to the exit, break and continue to their loop or switch. Every block of a try body, and
+ * the block before it, has an edge to each catch, and to the finally block, which goes on to the statement after the
+ * try and to the exit. A return in a try body goes straight to the exit, without the finally. Statements after a
+ * return, break, continue or throw get blocks without predecessors. Closures and nested functions are not part of the
+ * graph; they are elements of the block they are declared in.
+ */
+public final class CFControlFlowGraph {
+	
+	private final CFFuncDeclStatement function;
+	private final Object[] elements;
+	/** the elements of block i are elements[elementStarts[i]] to elements[elementStarts[i + 1]] */
+	private final int[] elementStarts;
+	/** the elements that bind a variable, the variable of a for in or a catch */
+	private final BitSet bindings;
+	private final int[] successorStarts;
+	private final int[] successors;
+	private final int[] predecessorStarts;
+	private final int[] predecessors;
+	
+	private CFControlFlowGraph(Builder builder) {
+		function = builder.function;
+		int size = builder.blocks.size();
+		elementStarts = new int[size + 1];
+		for (int i = 0; i < size; i++) {
+			elementStarts[i + 1] = elementStarts[i] + builder.blocks.get(i).size();
+		}
+		elements = new Object[elementStarts[size]];
+		bindings = new BitSet();
+		for (int i = 0; i < size; i++) {
+			List<Object> block = builder.blocks.get(i);
+			for (int j = 0; j < block.size(); j++) {
+				Object element = block.get(j);
+				if (element instanceof Binding) {
+					bindings.set(elementStarts[i] + j);
+					element = ((Binding) element).variable;
+				}
+				elements[elementStarts[i] + j] = element;
+			}
+		}
+		
+		// edges, by source and by target
+		int[] from = builder.from.toArray();
+		int[] to = builder.to.toArray();
+		successorStarts = new int[size + 1];
+		successors = new int[from.length];
+		group(from, to, size, successorStarts, successors);
+		predecessorStarts = new int[size + 1];
+		predecessors = new int[from.length];
+		group(to, from, size, predecessorStarts, predecessors);
+	}
+	
+	/**
+	 * Counting sort of the edges by their key.
+	 */
+	private static void group(int[] keys, int[] values, int size, int[] starts, int[] grouped) {
+		for (int key : keys) {
+			starts[key + 1]++;
+		}
+		for (int i = 0; i < size; i++) {
+			starts[i + 1] += starts[i];
+		}
+		int[] fill = Arrays.copyOf(starts, size);
+		for (int i = 0; i < keys.length; i++) {
+			grouped[fill[keys[i]]++] = values[i];
+		}
+	}
+	
+	/**
+	 * @param function
+	 * @return the control flow graph of the body of the function
+	 */
+	public static CFControlFlowGraph build(CFFuncDeclStatement function) {
+		if (function == null) {
+			throw new IllegalArgumentException("A control flow graph needs a function");
+		}
+		Builder builder = new Builder(function);
+		int end = builder.statement(function.getBody(), ENTRY);
+		builder.edge(end, EXIT);
+		return new CFControlFlowGraph(builder);
+	}
+	
+	public CFFuncDeclStatement getFunction() {
+		return function;
+	}
+	
+	/**
+	 * @return the number of blocks
+	 */
+	public int size() {
+		return elementStarts.length - 1;
+	}
+	
+	public int getEntry() {
+		return ENTRY;
+	}
+	
+	public int getExit() {
+		return EXIT;
+	}
+	
+	/**
+	 * @param block
+	 * @return the number of elements in the block
+	 */
+	public int getElementCount(int block) {
+		return elementStarts[block + 1] - elementStarts[block];
+	}
+	
+	/**
+	 * @param block
+	 * @param i
+	 * @return the ith element of the block, a {@link CFExpression} or a {@link CFScriptStatement}
+	 */
+	public Object getElement(int block, int i) {
+		return elements[elementStarts[block] + i];
+	}
+	
+	/**
+	 * @param block
+	 * @param i
+	 * @return true if the ith element of the block is the variable of a for in or a catch, which binds the variable
+	 *         rather than storing a value the function computed
+	 */
+	public boolean isBinding(int block, int i) {
+		return bindings.get(elementStarts[block] + i);
+	}
+	
+	/**
+	 * @param block
+	 * @return the blocks that can follow it
+	 */
+	public int[] getSuccessors(int block) {
+		return Arrays.copyOfRange(successors, successorStarts[block], successorStarts[block + 1]);
+	}
+	
+	/**
+	 * @param block
+	 * @return the blocks that can come before it
+	 */
+	public int[] getPredecessors(int block) {
+		return Arrays.copyOfRange(predecessors, predecessorStarts[block], predecessorStarts[block + 1]);
+	}
+	
+	int successorStart(int block) {
+		return successorStarts[block];
+	}
+	
+	int successorEnd(int block) {
+		return successorStarts[block + 1];
+	}
+	
+	int successor(int i) {
+		return successors[i];
+	}
+	
+	int predecessorStart(int block) {
+		return predecessorStarts[block];
+	}
+	
+	int predecessorEnd(int block) {
+		return predecessorStarts[block + 1];
+	}
+	
+	int predecessor(int i) {
+		return predecessors[i];
+	}
+	
+	/**
+	 * @return the blocks reachable from the entry in reverse postorder, followed by the unreachable ones
+	 */
+	int[] getReversePostorder() {
+		int size = size();
+		int[] order = new int[size];
+		int position = size;
+		BitSet visited = new BitSet(size);
+		// iterative depth first search: a stack of blocks and of the next successor to look at
+		int[] stack = new int[size];
+		int[] next = new int[size];
+		int top = 0;
+		stack[top] = ENTRY;
+		next[top] = successorStarts[ENTRY];
+		visited.set(ENTRY);
+		while (top >= 0) {
+			int block = stack[top];
+			if (next[top] < successorStarts[block + 1]) {
+				int successor = successors[next[top]++];
+				if (!visited.get(successor)) {
+					visited.set(successor);
+					top++;
+					stack[top] = successor;
+					next[top] = successorStarts[successor];
+				}
+			} else {
+				order[--position] = block;
+				top--;
+			}
+		}
+		// the unreachable blocks go after the reachable ones
+		int reachable = size - position;
+		System.arraycopy(order, position, order, 0, reachable);
+		int i = reachable;
+		for (int block = visited.nextClearBit(0); block < size; block = visited.nextClearBit(block + 1)) {
+			order[i++] = block;
+		}
+		return order;
+	}
+	
+	private static final int ENTRY = 0;
+	private static final int EXIT = 1;
+	/** no block: after a return, break, continue or throw nothing follows until a new block is started */
+	private static final int NONE = -1;
+	
+	/**
+	 * The variable of a for in or catch, while building.
+	 */
+	private static final class Binding {
+		final Object variable;
+		
+		Binding(Object variable) {
+			this.variable = variable;
+		}
+	}
+	
+	/**
+	 * A growable int array.
+	 */
+	private static final class IntList {
+		int[] values = new int[16];
+		int size;
+		
+		void add(int value) {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, size * 2);
+			}
+			values[size++] = value;
+		}
+		
+		int[] toArray() {
+			return Arrays.copyOf(values, size);
+		}
+	}
+	
+	private static final class Builder {
+		final CFFuncDeclStatement function;
+		final List<List<Object>> blocks = new ArrayList<List<Object>>();
+		final IntList from = new IntList();
+		final IntList to = new IntList();
+		/** the blocks break and continue go to, innermost last; continue is NONE for a switch */
+		final IntList breakTargets = new IntList();
+		final IntList continueTargets = new IntList();
+		
+		Builder(CFFuncDeclStatement function) {
+			this.function = function;
+			block();
+			block();
+		}
+		
+		int block() {
+			blocks.add(new ArrayList<Object>());
+			return blocks.size() - 1;
+		}
+		
+		void edge(int source, int target) {
+			if (source != NONE) {
+				from.add(source);
+				to.add(target);
+			}
+		}
+		
+		/**
+		 * Adds an element to the current block, starting a block without predecessors if there is none.
+		 *
+		 * @return the current block
+		 */
+		int element(Object element, int current) {
+			if (element == null) {
+				return current;
+			}
+			if (current == NONE) {
+				current = block();
+			}
+			blocks.get(current).add(element);
+			return current;
+		}
+		
+		/**
+		 * @return a new block that follows the current one
+		 */
+		int follow(int current) {
+			int block = block();
+			edge(current, block);
+			return block;
+		}
+		
+		/**
+		 * Adds a statement to the graph.
+		 *
+		 * @param statement
+		 * @param current
+		 *            the block the statement starts in, NONE if nothing leads there
+		 * @return the block the statement ends in, NONE if it does not end normally
+		 */
+		@SuppressWarnings("deprecation")
+		int statement(CFScriptStatement statement, int current) {
+			if (statement == null || statement instanceof CFEmptyStatement) {
+				return current;
+			}
+			if (statement instanceof CFCompoundStatement) {
+				for (CFScriptStatement child : ((CFCompoundStatement) statement).getStatements()) {
+					if (child != statement) {
+						current = statement(child, current);
+					}
+				}
+				return current;
+			}
+			if (statement instanceof CFExpressionStatement) {
+				return element(((CFExpressionStatement) statement).getExpression(), current);
+			}
+			if (statement instanceof CFIfStatement) {
+				CFIfStatement n = (CFIfStatement) statement;
+				current = element(n.getCond(), current);
+				int after = block();
+				edge(statement(n.getThenStatement(), follow(current)), after);
+				if (n.getElseStatement() != null) {
+					edge(statement(n.getElseStatement(), follow(current)), after);
+				} else {
+					edge(current, after);
+				}
+				return after;
+			}
+			if (statement instanceof CFWhileStatement) {
+				CFWhileStatement n = (CFWhileStatement) statement;
+				int condition = element(n.getCond(), follow(current));
+				int after = block();
+				edge(condition, after);
+				loop(n.getBody(), follow(condition), condition, condition, after);
+				return after;
+			}
+			if (statement instanceof CFDoWhileStatement) {
+				CFDoWhileStatement n = (CFDoWhileStatement) statement;
+				int body = follow(current);
+				int condition = block();
+				int after = block();
+				loop(n.getBody(), body, condition, condition, after);
+				element(n.getCondition(), condition);
+				edge(condition, body);
+				edge(condition, after);
+				return after;
+			}
+			if (statement instanceof CFForStatement) {
+				CFForStatement n = (CFForStatement) statement;
+				current = element(n.getInit(), current);
+				int condition = element(n.getCond(), follow(current));
+				int next = block();
+				int after = block();
+				if (n.getCond() != null) {
+					edge(condition, after);
+				}
+				loop(n.getBody(), follow(condition), next, next, after);
+				element(n.getNext(), next);
+				edge(next, condition);
+				return after;
+			}
+			if (statement instanceof CFForInStatement) {
+				CFForInStatement n = (CFForInStatement) statement;
+				current = element(n.getStructure(), current);
+				int header = element(new Binding(n.getVariable()), follow(current));
+				int after = block();
+				edge(header, after);
+				loop(n.getBody(), follow(header), header, header, after);
+				return after;
+			}
+			if (statement instanceof CFSwitchStatement) {
+				CFSwitchStatement n = (CFSwitchStatement) statement;
+				current = element(n.getVariable(), current);
+				boolean hasDefault = false;
+				for (CFCase c : n.getCases()) {
+					current = element(c.getConstant(), current);
+					hasDefault |= c.isDefault();
+				}
+				int after = block();
+				breakTargets.add(after);
+				continueTargets.add(NONE);
+				int previous = NONE;
+				for (CFCase c : n.getCases()) {
+					// a case is entered from the switch, or falls through from the case before it
+					int entry = follow(current);
+					edge(previous, entry);
+					for (CFScriptStatement child : c.getStatements()) {
+						entry = statement(child, entry);
+					}
+					previous = entry;
+				}
+				edge(previous, after);
+				if (!hasDefault) {
+					edge(current, after);
+				}
+				breakTargets.size--;
+				continueTargets.size--;
+				return after;
+			}
+			if (statement instanceof CFTryCatchStatement) {
+				return tryCatch((CFTryCatchStatement) statement, current);
+			}
+			if (statement instanceof CFReturnStatement) {
+				current = element(((CFReturnStatement) statement).getExpression(), current);
+				edge(current, EXIT);
+				return NONE;
+			}
+			if (statement instanceof CFThrowStatement) {
+				current = element(((CFThrowStatement) statement).getMessage(), current);
+				if (current == NONE) {
+					current = block();
+				}
+				edge(current, EXIT);
+				return NONE;
+			}
+			if (statement instanceof CFReThrowStatement) {
+				edge(current, EXIT);
+				return NONE;
+			}
+			if (statement instanceof CFBreakStatement) {
+				if (breakTargets.size > 0) {
+					edge(current, breakTargets.values[breakTargets.size - 1]);
+				}
+				return NONE;
+			}
+			if (statement instanceof CFContinueStatement) {
+				// the innermost loop, skipping switches
+				for (int i = continueTargets.size - 1; i >= 0; i--) {
+					if (continueTargets.values[i] != NONE) {
+						edge(current, continueTargets.values[i]);
+						break;
+					}
+				}
+				return NONE;
+			}
+			if (statement instanceof CFFuncDeclStatement) {
+				// a nested function is declared, not run
+				return element(statement, current);
+			}
+			CFScriptStatement body = body(statement);
+			if (body != null) {
+				// lock, transaction, thread and the like: the attributes, then the body
+				for (CFExpression value : ((CFParsedAttributeStatement) statement).getAttributes().values()) {
+					current = element(value, current);
+				}
+				return statement(body, current);
+			}
+			return element(statement, current);
+		}
+		
+		private static CFScriptStatement body(CFScriptStatement statement) {
+			if (statement instanceof CFLockStatement) {
+				return ((CFLockStatement) statement).getBody();
+			}
+			if (statement instanceof CFTransactionStatement) {
+				return ((CFTransactionStatement) statement).getBody();
+			}
+			if (statement instanceof CFThreadStatement) {
+				return ((CFThreadStatement) statement).getBody();
+			}
+			if (statement instanceof CFMLFunctionStatement) {
+				return ((CFMLFunctionStatement) statement).getBody();
+			}
+			return null;
+		}
+		
+		/**
+		 * Adds the body of a loop.
+		 */
+		private void loop(CFScriptStatement body, int start, int back, int continueTarget, int breakTarget) {
+			breakTargets.add(breakTarget);
+			continueTargets.add(continueTarget);
+			edge(statement(body, start), back);
+			breakTargets.size--;
+			continueTargets.size--;
+		}
+		
+		private int tryCatch(CFTryCatchStatement n, int current) {
+			if (current == NONE) {
+				current = block();
+			}
+			int firstTryBlock = blocks.size();
+			int end = statement(n.getBody(), follow(current));
+			int lastTryBlock = blocks.size();
+			int after = block();
+			List<Integer> handlers = new ArrayList<Integer>();
+			List<Integer> ends = new ArrayList<Integer>();
+			ends.add(end);
+			for (CFCatchStatement c : n.getCatchStatements()) {
+				int entry = element(new Binding(c.getVariable()), block());
+				handlers.add(entry);
+				ends.add(statement(c.getCatchBody(), entry));
+			}
+			int finallyEntry = NONE;
+			if (n.getFinallyStatement() != null) {
+				finallyEntry = block();
+				// an exception no catch handles
+				handlers.add(finallyEntry);
+			}
+			// an exception can come from anywhere in the try body, or before anything in it ran
+			for (int handler : handlers) {
+				edge(current, handler);
+				for (int block = firstTryBlock; block < lastTryBlock; block++) {
+					edge(block, handler);
+				}
+			}
+			if (finallyEntry == NONE) {
+				for (int e : ends) {
+					edge(e, after);
+				}
+				return after;
+			}
+			for (int e : ends) {
+				edge(e, finallyEntry);
+			}
+			int finallyEnd = statement(n.getFinallyStatement(), finallyEntry);
+			edge(finallyEnd, after);
+			// and the exception goes on after the finally
+			edge(finallyEnd, EXIT);
+			return after;
+		}
+	}
+}
@@ -0,0 +1,602 @@
+package cfml.parsing.cfscript.walker;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import cfml.CFSCRIPTLexer;
+import cfml.parsing.cfscript.CFAssignmentExpression;
+import cfml.parsing.cfscript.CFExpression;
+import cfml.parsing.cfscript.CFFullVarExpression;
+import cfml.parsing.cfscript.CFIdentifier;
+import cfml.parsing.cfscript.CFUnaryExpression;
+import cfml.parsing.cfscript.CFVarDeclExpression;
+import cfml.parsing.cfscript.HasToken;
+import cfml.parsing.cfscript.script.CFFunctionParameter;
+import cfml.parsing.cfscript.script.CFScriptStatement;
+import cfml.parsing.cfscript.walker.CFSymbolTable.FunctionScope;
+import cfml.parsing.cfscript.walker.CFSymbolTable.Resolution;
+import cfml.parsing.cfscript.walker.CFSymbolTable.Symbol;
+
+/**
+ * Reaching definitions, liveness and definite assignment of the local variables and arguments of a function, over its
+ * {@link CFControlFlowGraph}.
+ *
+ * The variables are numbered in {@link #getVariables()} and the facts of a block are bit sets, solved with
+ * {@link #solve(CFControlFlowGraph, boolean, boolean, BitSet[], BitSet[], BitSet, int)}: a worklist visiting the
+ * blocks in reverse postorder, so that a function without loops is done in one pass. Within an element of a block the
+ * variables read come before those written, so x = x + 1 reads the old x. A var x; without a value declares x but does
+ * not assign it.
+ *
+ * A variable read in a closure counts as read where the closure is declared and is captured: it is not reported as a
+ * dead store, since the closure may run after any later assignment.
+ *
+ * <pre>
+ * CFDataflow flow = CFDataflow.analyze(CFControlFlowGraph.build(function), symbols);
+ * for (CFIdentifier id : flow.getDeadStores()) ...
+ * </pre>
+ */
+public final class CFDataflow {
+	
+	private static final int USE = 1;
+	private static final int DEF = 2;
+	/** a use in a closure */
+	private static final int CAPTURED = 4;
+	/** a def by the variable of a for in or catch */
+	private static final int BINDING = 8;
+	
+	private final CFControlFlowGraph graph;
+	private final FunctionScope scope;
+	private final List<Symbol> variables = new ArrayList<Symbol>();
+	private final Map<Symbol, Integer> variableIds = new IdentityHashMap<Symbol, Integer>();
+	private final BitSet captured = new BitSet();
+	/** true if the local scope itself is used, as in local[name] or structKeyExists(local, name) */
+	private boolean localScopeUsed;
+	
+	// the variable references of each block in order, uses before defs within an element
+	private CFIdentifier[] occurrences = new CFIdentifier[64];
+	private int[] occurrenceVariables = new int[64];
+	private int[] occurrenceFlags = new int[64];
+	/** the def number of a def occurrence */
+	private int[] occurrenceDefs = new int[64];
+	private int occurrenceCount;
+	private final int[] occurrenceStarts;
+	private final Map<CFIdentifier, Integer> useOccurrences = new IdentityHashMap<CFIdentifier, Integer>();
+	
+	// the defs: the arguments at the entry, then the def occurrences
+	private final List<HasToken> definitions = new ArrayList<HasToken>();
+	private final IntArray definitionVariables = new IntArray();
+	private int argumentDefinitions;
+	private BitSet[] variableDefinitions;
+	
+	private final BitSet[] reachingIn;
+	private final BitSet[] liveOut;
+	private final BitSet[] assignedIn;
+	
+	private CFDataflow(CFControlFlowGraph graph, CFSymbolTable symbols) {
+		this.graph = graph;
+		scope = symbols.getScope(graph.getFunction());
+		if (scope == null) {
+			throw new IllegalArgumentException("The symbol table does not contain the function of the graph");
+		}
+		for (CFFunctionParameter parameter : graph.getFunction().getFormals()) {
+			Symbol symbol = scope.getArgument(parameter.getName());
+			if (symbol != null && !variableIds.containsKey(symbol)) {
+				variable(symbol);
+				definitions.add(symbol.getDeclaration());
+				definitionVariables.add(variableIds.get(symbol));
+			}
+		}
+		argumentDefinitions = definitions.size();
+		for (Symbol symbol : scope.getLocals()) {
+			variable(symbol);
+		}
+		
+		int size = graph.size();
+		occurrenceStarts = new int[size + 1];
+		References references = new References(symbols);
+		for (int block = 0; block < size; block++) {
+			occurrenceStarts[block] = occurrenceCount;
+			for (int i = 0; i < graph.getElementCount(block); i++) {
+				references.collect(graph.getElement(block, i), graph.isBinding(block, i));
+			}
+		}
+		occurrenceStarts[size] = occurrenceCount;
+		
+		variableDefinitions = new BitSet[variables.size()];
+		for (int v = 0; v < variables.size(); v++) {
+			variableDefinitions[v] = new BitSet();
+		}
+		for (int d = 0; d < definitions.size(); d++) {
+			variableDefinitions[definitionVariables.get(d)].set(d);
+		}
+		
+		reachingIn = reachingDefinitions();
+		liveOut = liveness();
+		assignedIn = definiteAssignment();
+	}
+	
+	/**
+	 * @param graph
+	 * @param symbols
+	 *            the symbol table of the script the function is in, null to build one for the function
+	 * @return the dataflow facts of the function of the graph
+	 */
+	public static CFDataflow analyze(CFControlFlowGraph graph, CFSymbolTable symbols) {
+		if (graph == null) {
+			throw new IllegalArgumentException("A dataflow analysis needs a control flow graph");
+		}
+		return new CFDataflow(graph, symbols != null ? symbols : CFSymbolTable.build(graph.getFunction()));
+	}
+	
+	public CFControlFlowGraph getGraph() {
+		return graph;
+	}
+	
+	/**
+	 * @return the arguments and local variables of the function; the bit sets are indexed by their position here
+	 */
+	public List<Symbol> getVariables() {
+		return Collections.unmodifiableList(variables);
+	}
+	
+	/**
+	 * @param symbol
+	 * @return the position of the variable in {@link #getVariables()}, -1 if it is not a variable of the function
+	 */
+	public int getVariableId(Symbol symbol) {
+		Integer id = variableIds.get(symbol);
+		return id == null ? -1 : id;
+	}
+	
+	/**
+	 * @param block
+	 * @return the variables that may be read after the block before they are assigned
+	 */
+	public BitSet getLiveOut(int block) {
+		return (BitSet) liveOut[block].clone();
+	}
+	
+	/**
+	 * @param block
+	 * @return the variables assigned on every path to the block
+	 */
+	public BitSet getAssignedIn(int block) {
+		return (BitSet) assignedIn[block].clone();
+	}
+	
+	/**
+	 * @param use
+	 *            a variable read in the function
+	 * @return the assignments whose value it may read: identifiers of the function, or the declaration of an argument
+	 *         for the value it was called with; empty if it is not a read of a variable of the function
+	 */
+	public List<HasToken> getReachingDefinitions(CFIdentifier use) {
+		Integer occurrence = useOccurrences.get(use);
+		if (occurrence == null) {
+			return Collections.emptyList();
+		}
+		int block = blockOf(occurrence);
+		BitSet reaching = (BitSet) reachingIn[block].clone();
+		for (int o = occurrenceStarts[block]; o < occurrence; o++) {
+			if ((occurrenceFlags[o] & DEF) != 0) {
+				reaching.andNot(variableDefinitions[occurrenceVariables[o]]);
+				reaching.set(occurrenceDefs[o]);
+			}
+		}
+		reaching.and(variableDefinitions[occurrenceVariables[occurrence]]);
+		List<HasToken> result = new ArrayList<HasToken>();
+		for (int d = reaching.nextSetBit(0); d >= 0; d = reaching.nextSetBit(d + 1)) {
+			result.add(definitions.get(d));
+		}
+		return result;
+	}
+	
+	/**
+	 * @return the reads of local variables that are not assigned on every path to them, in block order
+	 */
+	public List<CFIdentifier> getUseBeforeAssign() {
+		List<CFIdentifier> result = new ArrayList<CFIdentifier>();
+		for (int block = 0; block < graph.size(); block++) {
+			BitSet assigned = (BitSet) assignedIn[block].clone();
+			for (int o = occurrenceStarts[block]; o < occurrenceStarts[block + 1]; o++) {
+				int v = occurrenceVariables[o];
+				if ((occurrenceFlags[o] & (USE | CAPTURED)) == USE && !assigned.get(v)
+						&& variables.get(v).getKind() == CFSymbolTable.LOCAL) {
+					result.add(occurrences[o]);
+				}
+				if ((occurrenceFlags[o] & DEF) != 0) {
+					assigned.set(v);
+				}
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * @return the assignments to local variables that are never read afterwards, in block order; none if the local
+	 *         scope is used as a whole
+	 */
+	public List<CFIdentifier> getDeadStores() {
+		List<CFIdentifier> result = new ArrayList<CFIdentifier>();
+		if (localScopeUsed) {
+			return result;
+		}
+		for (int block = 0; block < graph.size(); block++) {
+			BitSet live = (BitSet) liveOut[block].clone();
+			int dead = result.size();
+			for (int o = occurrenceStarts[block + 1] - 1; o >= occurrenceStarts[block]; o--) {
+				int v = occurrenceVariables[o];
+				if ((occurrenceFlags[o] & DEF) != 0) {
+					if ((occurrenceFlags[o] & BINDING) == 0 && !live.get(v) && !captured.get(v)
+							&& variables.get(v).getKind() == CFSymbolTable.LOCAL) {
+						result.add(occurrences[o]);
+					}
+					live.clear(v);
+				}
+				if ((occurrenceFlags[o] & USE) != 0) {
+					live.set(v);
+				}
+			}
+			Collections.reverse(result.subList(dead, result.size()));
+		}
+		return result;
+	}
+	
+	/**
+	 * Solves a dataflow problem whose transfer function is out = gen | (in &amp; ~kill).
+	 *
+	 * @param graph
+	 * @param forward
+	 *            true to flow from the entry along the edges, false to flow from the exit against them
+	 * @param intersect
+	 *            true to meet with intersection (must problems), false with union (may problems)
+	 * @param gen
+	 *            per block
+	 * @param kill
+	 *            per block
+	 * @param boundary
+	 *            the facts at the entry, or at the exit when flowing backward
+	 * @param width
+	 *            the number of bits of the facts
+	 * @return per block the facts flowing into it: before its first element when flowing forward, after its last one
+	 *         when flowing backward
+	 */
+	public static BitSet[] solve(CFControlFlowGraph graph, boolean forward, boolean intersect, BitSet[] gen,
+			BitSet[] kill, BitSet boundary, int width) {
+		int size = graph.size();
+		int start = forward ? graph.getEntry() : graph.getExit();
+		BitSet[] in = new BitSet[size];
+		BitSet[] out = new BitSet[size];
+		for (int block = 0; block < size; block++) {
+			in[block] = new BitSet(width);
+			if (block == start) {
+				in[block].or(boundary);
+			} else if (intersect) {
+				in[block].set(0, width);
+			}
+			out[block] = transfer(in[block], gen[block], kill[block]);
+		}
+		
+		int[] order = graph.getReversePostorder();
+		if (!forward) {
+			reverse(order);
+		}
+		// the worklist is a queue of blocks, started in (reverse) postorder
+		int[] queue = new int[size];
+		int head = 0;
+		int count = size;
+		System.arraycopy(order, 0, queue, 0, size);
+		BitSet queued = new BitSet(size);
+		queued.set(0, size);
+		BitSet merged = new BitSet(width);
+		while (count > 0) {
+			int block = queue[head];
+			head = (head + 1) % size;
+			count--;
+			queued.clear(block);
+			if (block != start) {
+				merged.clear();
+				boolean first = true;
+				int from = forward ? graph.predecessorStart(block) : graph.successorStart(block);
+				int to = forward ? graph.predecessorEnd(block) : graph.successorEnd(block);
+				for (int i = from; i < to; i++) {
+					BitSet other = out[forward ? graph.predecessor(i) : graph.successor(i)];
+					if (first || !intersect) {
+						merged.or(other);
+					} else {
+						merged.and(other);
+					}
+					first = false;
+				}
+				if (first && intersect) {
+					// nothing flows in: unreachable, everything holds
+					merged.set(0, width);
+				}
+				if (merged.equals(in[block])) {
+					continue;
+				}
+				in[block].clear();
+				in[block].or(merged);
+			}
+			BitSet result = transfer(in[block], gen[block], kill[block]);
+			if (result.equals(out[block])) {
+				continue;
+			}
+			out[block] = result;
+			int from = forward ? graph.successorStart(block) : graph.predecessorStart(block);
+			int to = forward ? graph.successorEnd(block) : graph.predecessorEnd(block);
+			for (int i = from; i < to; i++) {
+				int next = forward ? graph.successor(i) : graph.predecessor(i);
+				if (!queued.get(next)) {
+					queued.set(next);
+					queue[(head + count) % size] = next;
+					count++;
+				}
+			}
+		}
+		return in;
+	}
+	
+	private static BitSet transfer(BitSet in, BitSet gen, BitSet kill) {
+		BitSet out = (BitSet) in.clone();
+		out.andNot(kill);
+		out.or(gen);
+		return out;
+	}
+	
+	private static void reverse(int[] values) {
+		for (int i = 0, j = values.length - 1; i < j; i++, j--) {
+			int value = values[i];
+			values[i] = values[j];
+			values[j] = value;
+		}
+	}
+	
+	private BitSet[] reachingDefinitions() {
+		int size = graph.size();
+		BitSet[] gen = new BitSet[size];
+		BitSet[] kill = new BitSet[size];
+		for (int block = 0; block < size; block++) {
+			gen[block] = new BitSet();
+			kill[block] = new BitSet();
+			for (int o = occurrenceStarts[block]; o < occurrenceStarts[block + 1]; o++) {
+				if ((occurrenceFlags[o] & DEF) != 0) {
+					BitSet same = variableDefinitions[occurrenceVariables[o]];
+					gen[block].andNot(same);
+					gen[block].set(occurrenceDefs[o]);
+					kill[block].or(same);
+				}
+			}
+		}
+		// the arguments are assigned by the call
+		BitSet arguments = new BitSet();
+		arguments.set(0, argumentDefinitions);
+		return solve(graph, true, false, gen, kill, arguments, definitions.size());
+	}
+	
+	private BitSet[] liveness() {
+		int size = graph.size();
+		BitSet[] gen = new BitSet[size];
+		BitSet[] kill = new BitSet[size];
+		for (int block = 0; block < size; block++) {
+			gen[block] = new BitSet();
+			kill[block] = new BitSet();
+			for (int o = occurrenceStarts[block + 1] - 1; o >= occurrenceStarts[block]; o--) {
+				int v = occurrenceVariables[o];
+				if ((occurrenceFlags[o] & DEF) != 0) {
+					gen[block].clear(v);
+					kill[block].set(v);
+				}
+				if ((occurrenceFlags[o] & USE) != 0) {
+					gen[block].set(v);
+				}
+			}
+		}
+		return solve(graph, false, false, gen, kill, new BitSet(), variables.size());
+	}
+	
+	private BitSet[] definiteAssignment() {
+		int size = graph.size();
+		BitSet[] gen = new BitSet[size];
+		BitSet[] kill = new BitSet[size];
+		for (int block = 0; block < size; block++) {
+			gen[block] = new BitSet();
+			kill[block] = new BitSet();
+			for (int o = occurrenceStarts[block]; o < occurrenceStarts[block + 1]; o++) {
+				if ((occurrenceFlags[o] & DEF) != 0) {
+					gen[block].set(occurrenceVariables[o]);
+				}
+			}
+		}
+		// arguments that always have a value
+		BitSet boundary = new BitSet();
+		for (CFFunctionParameter parameter : graph.getFunction().getFormals()) {
+			Symbol symbol = scope.getArgument(parameter.getName());
+			if (symbol != null && (parameter.isRequired() || parameter.getDefaultExpression() != null)) {
+				boundary.set(variableIds.get(symbol));
+			}
+		}
+		return solve(graph, true, true, gen, kill, boundary, variables.size());
+	}
+	
+	private int blockOf(int occurrence) {
+		int block = Arrays.binarySearch(occurrenceStarts, occurrence);
+		if (block < 0) {
+			return -block - 2;
+		}
+		// empty blocks share their start with the next one
+		while (occurrenceStarts[block + 1] == occurrence) {
+			block++;
+		}
+		return block;
+	}
+	
+	private void variable(Symbol symbol) {
+		variableIds.put(symbol, variables.size());
+		variables.add(symbol);
+	}
+	
+	private void occurrence(CFIdentifier identifier, int variable, int flags) {
+		if (occurrenceCount == occurrences.length) {
+			int length = occurrenceCount * 2;
+			occurrences = Arrays.copyOf(occurrences, length);
+			occurrenceVariables = Arrays.copyOf(occurrenceVariables, length);
+			occurrenceFlags = Arrays.copyOf(occurrenceFlags, length);
+			occurrenceDefs = Arrays.copyOf(occurrenceDefs, length);
+		}
+		occurrences[occurrenceCount] = identifier;
+		occurrenceVariables[occurrenceCount] = variable;
+		occurrenceFlags[occurrenceCount] = flags;
+		if ((flags & DEF) != 0) {
+			occurrenceDefs[occurrenceCount] = definitions.size();
+			definitions.add(identifier);
+			definitionVariables.add(variable);
+		}
+		if ((flags & USE) != 0) {
+			useOccurrences.put(identifier, occurrenceCount);
+		}
+		occurrenceCount++;
+	}
+	
+	/**
+	 * Collects the references to the variables of the function in an element of a block.
+	 */
+	private final class References extends CFAstVisitor {
+		private final CFSymbolTable symbols;
+		/** the variables of the element that are read and written, as in x += 1 or x++ */
+		private final Set<CFExpression> readWrite = Collections
+				.newSetFromMap(new IdentityHashMap<CFExpression, Boolean>());
+		/** the variables of var x; which declare x without assigning it */
+		private final Set<CFExpression> declarations = Collections
+				.newSetFromMap(new IdentityHashMap<CFExpression, Boolean>());
+		/** the scopes of scope.x, which are not a use of the scope as a whole */
+		private final Set<CFExpression> qualifiers = Collections
+				.newSetFromMap(new IdentityHashMap<CFExpression, Boolean>());
+		private final List<CFIdentifier> uses = new ArrayList<CFIdentifier>();
+		private final List<CFIdentifier> defs = new ArrayList<CFIdentifier>();
+		private final IntArray useFlags = new IntArray();
+		
+		References(CFSymbolTable symbols) {
+			this.symbols = symbols;
+		}
+		
+		void collect(Object element, boolean binding) {
+			uses.clear();
+			defs.clear();
+			useFlags.size = 0;
+			readWrite.clear();
+			qualifiers.clear();
+			declarations.clear();
+			if (element instanceof CFExpression) {
+				CFAstWalker.walk((CFExpression) element, this);
+			} else {
+				CFAstWalker.walk((CFScriptStatement) element, this);
+			}
+			for (int i = 0; i < uses.size(); i++) {
+				CFIdentifier use = uses.get(i);
+				occurrence(use, variableIds.get(symbols.resolve(use).getSymbol()), useFlags.get(i));
+			}
+			for (CFIdentifier def : defs) {
+				occurrence(def, variableIds.get(symbols.resolve(def).getSymbol()), binding ? DEF | BINDING : DEF);
+			}
+		}
+		
+		private void readWrite(CFExpression variable) {
+			readWrite.add(variable);
+			if (variable instanceof CFFullVarExpression) {
+				readWrite.addAll(((CFFullVarExpression) variable).getExpressions());
+			}
+		}
+		
+		@Override
+		public boolean enter(CFAssignmentExpression node) {
+			if (!"=".equals(node.getOperatorImage())) {
+				readWrite(node.getLeft());
+			}
+			return true;
+		}
+		
+		@Override
+		public boolean enter(CFUnaryExpression node) {
+			if (node.getKind() == CFSCRIPTLexer.PLUSPLUS || node.getKind() == CFSCRIPTLexer.MINUSMINUS) {
+				readWrite(node.getSub());
+			}
+			return true;
+		}
+		
+		@Override
+		public boolean enter(CFVarDeclExpression node) {
+			if (node.getInit() == null) {
+				declarations.add(node.getVar());
+			}
+			return true;
+		}
+		
+		@Override
+		public boolean enter(CFFullVarExpression node) {
+			List<CFExpression> expressions = node.getExpressions();
+			if (expressions.size() > 1 && expressions.get(1).getClass() == CFIdentifier.class) {
+				qualifiers.add(expressions.get(0));
+			}
+			return true;
+		}
+		
+		@Override
+		public boolean enter(CFIdentifier node) {
+			Resolution resolution = symbols.resolve(node);
+			if (resolution == null) {
+				return true;
+			}
+			if (resolution.getKind() == CFSymbolTable.SCOPE && resolution.getScope() == scope
+					&& !qualifiers.contains(node) && node.getName().toLowerCase(Locale.ENGLISH).equals("local")) {
+				localScopeUsed = true;
+			}
+			Integer variable = resolution.getSymbol() == null ? null : variableIds.get(resolution.getSymbol());
+			if (variable == null) {
+				return true;
+			}
+			if (resolution.getScope() != scope) {
+				// in a closure
+				captured.set(variable);
+				uses.add(node);
+				useFlags.add(USE | CAPTURED);
+			} else if (!resolution.isWrite()) {
+				uses.add(node);
+				useFlags.add(USE);
+			} else if (!declarations.contains(node)) {
+				if (readWrite.contains(node)) {
+					uses.add(node);
+					useFlags.add(USE);
+				}
+				defs.add(node);
+			}
+			return true;
+		}
+	}
+	
+	/**
+	 * A growable int array.
+	 */
+	private static final class IntArray {
+		int[] values = new int[16];
+		int size;
+		
+		void add(int value) {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, size * 2);
+			}
+			values[size++] = value;
+		}
+		
+		int get(int i) {
+			return values[i];
+		}
+	}
+}
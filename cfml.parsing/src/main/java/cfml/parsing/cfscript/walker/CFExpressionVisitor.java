@@ -4,6 +4,7 @@ import java.util.Stack;
 
 import org.antlr.v4.runtime.Token;
 import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.RuleNode;
 import org.antlr.v4.runtime.tree.TerminalNode;
 
 import cfml.CFSCRIPTLexer;
@@ -74,11 +75,19 @@ import cfml.parsing.cfscript.CFTernaryExpression;
 import cfml.parsing.cfscript.CFUnaryExpression;
 import cfml.parsing.cfscript.CFVarDeclExpression;
 import cfml.parsing.cfscript.script.CFFuncDeclStatement;
+import cfml.parsing.util.ArrayStack;
+import cfml.parsing.util.CancellationToken;
 
 public class CFExpressionVisitor extends CFSCRIPTParserBaseVisitor<CFExpression> {
 	
 	private Stack<CFExpression> aggregator = new Stack<CFExpression>();
 	private CFScriptStatementVisitor scriptStatementVisitor = null;
+	/** see {@link #setCancellation(CancellationToken)} */
+	private CancellationToken cancellation;
+	/** kept for {@link #visitBinaryExpression(BaseExpressionContext)} */
+	private final ArrayStack<ParseTree> pending = new ArrayStack<ParseTree>();
+	private final ArrayStack<ParseTree> order = new ArrayStack<ParseTree>();
+	private final ArrayStack<CFExpression> operands = new ArrayStack<CFExpression>();
 	
 	public CFExpressionVisitor() {
 		super();
@@ -203,18 +212,73 @@ public class CFExpressionVisitor extends CFSCRIPTParserBaseVisitor<CFExpression>
 		}
 	}
 	
+	/**
+	 * @return true if the context is one of the binary operator alternatives of baseExpression, other than the elvis
+	 *         operator
+	 */
+	private static boolean isBinary(BaseExpressionContext ctx) {
+		if (ctx.unaryOperator != null || ctx.elvisOperator() != null) {
+			return false;
+		}
+		return ctx.compareExpressionOperator() != null || ctx.notExpression() == null && ctx.notNotExpression() == null
+				&& ctx.unaryExpression() == null && ctx.ternaryExpression() == null && ctx.getChildCount() == 3;
+	}
+	
+	/**
+	 * Builds a binary expression and the binary expressions in its operands without recursing into them, see
+	 * {@link CFBinaryExpression}. The other operands are visited as usual, from left to right.
+	 */
+	private CFExpression visitBinaryExpression(BaseExpressionContext ctx) {
+		// visiting an operand that is not a binary expression can come back here, and works above these sizes
+		int pendingBase = pending.size();
+		int orderBase = order.size();
+		int operandBase = operands.size();
+		try {
+			// the binary expressions and their other operands, parents before their right and then left operands
+			pending.push(ctx);
+			while (pending.size() > pendingBase) {
+				ParseTree node = pending.pop();
+				order.push(node);
+				if (node instanceof BaseExpressionContext && isBinary((BaseExpressionContext) node)) {
+					pending.push(((BaseExpressionContext) node).left);
+					pending.push(((BaseExpressionContext) node).right);
+				}
+			}
+			// backwards, every operand comes before its parent
+			for (int i = order.size() - 1; i >= orderBase; i--) {
+				ParseTree node = order.get(i);
+				if (node instanceof BaseExpressionContext && isBinary((BaseExpressionContext) node)) {
+					BaseExpressionContext binary = (BaseExpressionContext) node;
+					Token operator = getTerminalToken(binary.compareExpressionOperator() != null ? binary.operator
+							: binary.getChild(1));
+					CFExpression right = operands.pop();
+					CFExpression left = operands.pop();
+					operands.push(new CFBinaryExpression(operator, left, right));
+				} else {
+					operands.push(visit(node));
+				}
+			}
+			return operands.pop();
+		} finally {
+			pending.truncate(pendingBase);
+			order.truncate(orderBase);
+			operands.truncate(operandBase);
+		}
+	}
+	
 	@Override
 	public CFExpression visitBaseExpression(BaseExpressionContext ctx) {
 		if (ctx.getChildCount() == 0) {
 			return null;
 		}
+		if (isBinary(ctx)) {
+			return visitBinaryExpression(ctx);
+		}
 		if (ctx.unaryOperator != null) {
 			return new CFUnaryExpression(ctx.unaryOperator, visit(ctx.right));
 		} else if (ctx.elvisOperator() != null) {
 			CFElvisExpression expr = new CFElvisExpression(ctx.getStart(), visit(ctx.left), visit(ctx.right));
 			return expr;
-		} else if (ctx.compareExpressionOperator() != null) {
-			return new CFBinaryExpression(getTerminalToken(ctx.operator), visit(ctx.left), visit(ctx.right));
 		} else if (ctx.notExpression() != null) {
 			if (ctx.notExpression().baseExpression() != null)
 				return new CFUnaryExpression(getTerminalToken(ctx.notExpression().getChild(0)),
@@ -232,8 +296,6 @@ public class CFExpressionVisitor extends CFSCRIPTParserBaseVisitor<CFExpression>
 			CFTernaryExpression ternaryExpression = new CFTernaryExpression(tex.getStart(), visit(ctx.left),
 					visit(tex.ternaryExpression1), visit(tex.ternaryExpression2));
 			return ternaryExpression;
-		} else if (ctx.getChildCount() == 3) {
-			return new CFBinaryExpression(getTerminalToken(ctx.getChild(1)), visit(ctx.left), visit(ctx.right));
 		} else
 		
 		{
@@ -535,10 +597,33 @@ public class CFExpressionVisitor extends CFSCRIPTParserBaseVisitor<CFExpression>
 	public synchronized CFScriptStatementVisitor getCFScriptStatementVisitor() {
 		if (scriptStatementVisitor == null) {
 			scriptStatementVisitor = new CFScriptStatementVisitor();
+			scriptStatementVisitor.setCancellation(cancellation);
 		}
 		return scriptStatementVisitor;
 	}
 	
+	/**
+	 * Sets the token to check while visiting, which stops the visit with a
+	 * {@link cfml.parsing.reporting.ParseCancelledException} once it is cancelled. Null, the default, to not check.
+	 * 
+	 * @param cancellation
+	 *            the token, or null
+	 */
+	public void setCancellation(CancellationToken cancellation) {
+		this.cancellation = cancellation;
+		if (scriptStatementVisitor != null) {
+			scriptStatementVisitor.setCancellation(cancellation);
+		}
+	}
+	
+	@Override
+	protected boolean shouldVisitNextChild(RuleNode node, CFExpression currentResult) {
+		if (cancellation != null) {
+			cancellation.check();
+		}
+		return true;
+	}
+	
 	@Override
 	protected CFExpression aggregateResult(CFExpression aggregate, CFExpression nextResult) {
 		if (nextResult == null) {
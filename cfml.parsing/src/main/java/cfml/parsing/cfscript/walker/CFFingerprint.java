@@ -0,0 +1,254 @@
+package cfml.parsing.cfscript.walker;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import cfml.parsing.cfscript.CFAssignmentExpression;
+import cfml.parsing.cfscript.CFBinaryExpression;
+import cfml.parsing.cfscript.CFExpression;
+import cfml.parsing.cfscript.CFFunctionExpression;
+import cfml.parsing.cfscript.CFIdentifier;
+import cfml.parsing.cfscript.CFLiteral;
+import cfml.parsing.cfscript.CFUnaryExpression;
+import cfml.parsing.cfscript.HasToken;
+import cfml.parsing.cfscript.script.CFFunctionParameter;
+import cfml.parsing.cfscript.script.CFScriptStatement;
+
+/**
+ * Structural hashes of every expression and statement of a script, for finding duplicated code.
+ *
+ * The hash of a node combines its class, its operator if it has one, and the hashes of its children in order, so equal
+ * subtrees get equal hashes wherever they are. They are computed bottom up in one walk: the hash of a node is finished
+ * when the walker leaves it. When normalized, the names of identifiers and called functions and the values of literals
+ * are left out, so that a copy with renamed variables or other constants still matches.
+ *
+ * The nodes are numbered in the order they are finished, children before their parents.
+ */
+public final class CFFingerprint {
+	
+	private final boolean normalized;
+	private HasToken[] nodes = new HasToken[64];
+	private long[] hashes = new long[64];
+	private int[] sizes = new int[64];
+	private int[] parents = new int[64];
+	private int count;
+	private final Map<HasToken, Integer> indices = new IdentityHashMap<HasToken, Integer>();
+	
+	private CFFingerprint(boolean normalized) {
+		this.normalized = normalized;
+	}
+	
+	/**
+	 * @param script
+	 * @param normalized
+	 *            true to leave names and literal values out of the hashes
+	 * @return the hashes of every node of the script
+	 */
+	public static CFFingerprint compute(CFScriptStatement script, boolean normalized) {
+		CFFingerprint fingerprint = new CFFingerprint(normalized);
+		Hasher hasher = fingerprint.new Hasher();
+		CFAstWalker.walk(script, hasher);
+		return fingerprint;
+	}
+	
+	public boolean isNormalized() {
+		return normalized;
+	}
+	
+	/**
+	 * @return the number of nodes
+	 */
+	public int size() {
+		return count;
+	}
+	
+	/**
+	 * @param i
+	 * @return the node, a {@link CFExpression} or a {@link CFScriptStatement}
+	 */
+	public HasToken getNode(int i) {
+		return nodes[i];
+	}
+	
+	public long getHash(int i) {
+		return hashes[i];
+	}
+	
+	/**
+	 * @param i
+	 * @return the number of nodes in the subtree of the node, itself included
+	 */
+	public int getSize(int i) {
+		return sizes[i];
+	}
+	
+	/**
+	 * @param i
+	 * @return the number of the parent of the node, -1 for the root
+	 */
+	public int getParent(int i) {
+		return parents[i];
+	}
+	
+	/**
+	 * @param node
+	 * @return the number of the node, -1 if it is not part of the script
+	 */
+	public int indexOf(HasToken node) {
+		Integer index = indices.get(node);
+		return index == null ? -1 : index;
+	}
+	
+	private static long combine(long hash, long value) {
+		return (Long.rotateLeft(hash, 23) ^ value) * 0x9E3779B97F4A7C15L;
+	}
+	
+	/**
+	 * The finalizer of MurmurHash3, so that the bits of nearby values spread.
+	 */
+	private static long mix(long hash) {
+		hash ^= hash >>> 33;
+		hash *= 0xFF51AFD7ED558CCDL;
+		hash ^= hash >>> 33;
+		hash *= 0xC4CEB9FE1A85EC53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+	
+	private static long string(String value) {
+		return value == null ? 0 : value.toLowerCase(Locale.ENGLISH).hashCode();
+	}
+	
+	/**
+	 * @return the hash of the node itself, without its children
+	 */
+	private long label(Object node) {
+		long label = node.getClass().getName().hashCode();
+		if (node instanceof CFBinaryExpression) {
+			label = combine(label, ((CFBinaryExpression) node).getKind());
+		} else if (node instanceof CFUnaryExpression) {
+			label = combine(label, ((CFUnaryExpression) node).getKind());
+		} else if (node instanceof CFAssignmentExpression) {
+			label = combine(label, string(((CFAssignmentExpression) node).getOperatorImage()));
+		} else if (node instanceof CFFunctionParameter) {
+			CFFunctionParameter parameter = (CFFunctionParameter) node;
+			label = combine(label, parameter.isRequired() ? 1 : 0);
+			if (!normalized) {
+				label = combine(combine(label, string(parameter.getName())), string(parameter.getType()));
+			}
+		}
+		if (normalized) {
+			return label;
+		}
+		if (node.getClass() == CFIdentifier.class) {
+			label = combine(label, string(((CFIdentifier) node).getName()));
+		} else if (node instanceof CFLiteral) {
+			// the case of a string matters
+			String value = ((CFLiteral) node).getVal();
+			label = combine(label, value == null ? 0 : value.hashCode());
+		} else if (node instanceof CFFunctionExpression) {
+			label = combine(label, string(((CFFunctionExpression) node).getFunctionName()));
+		}
+		return label;
+	}
+	
+	private void add(HasToken node, long hash, int size, int[] children, int from, int to) {
+		if (count == nodes.length) {
+			int length = count * 2;
+			nodes = Arrays.copyOf(nodes, length);
+			hashes = Arrays.copyOf(hashes, length);
+			sizes = Arrays.copyOf(sizes, length);
+			parents = Arrays.copyOf(parents, length);
+		}
+		nodes[count] = node;
+		hashes[count] = hash;
+		sizes[count] = size;
+		parents[count] = -1;
+		for (int i = from; i < to; i++) {
+			parents[children[i]] = count;
+		}
+		indices.put(node, count);
+		count++;
+	}
+	
+	/**
+	 * Keeps a frame per node being walked. The numbers of the finished children of the open nodes are on one stack;
+	 * a function parameter is not a node of its own, its children become those of the function.
+	 */
+	private final class Hasher extends CFAstVisitor {
+		private long[] frameHashes = new long[32];
+		private int[] frameSizes = new int[32];
+		/** where the children of a frame start on the children stack */
+		private int[] frameChildren = new int[32];
+		private int depth;
+		private int[] children = new int[64];
+		private int childCount;
+		
+		private void open(Object node) {
+			if (depth == frameHashes.length) {
+				int length = depth * 2;
+				frameHashes = Arrays.copyOf(frameHashes, length);
+				frameSizes = Arrays.copyOf(frameSizes, length);
+				frameChildren = Arrays.copyOf(frameChildren, length);
+			}
+			frameHashes[depth] = label(node);
+			frameSizes[depth] = 1;
+			frameChildren[depth] = childCount;
+			depth++;
+		}
+		
+		private void close(HasToken node) {
+			depth--;
+			long hash = mix(frameHashes[depth]);
+			int size = frameSizes[depth];
+			int from = frameChildren[depth];
+			if (node != null) {
+				add(node, hash, size, children, from, childCount);
+				childCount = from;
+				if (childCount == children.length) {
+					children = Arrays.copyOf(children, childCount * 2);
+				}
+				children[childCount++] = count - 1;
+			}
+			if (depth > 0) {
+				frameHashes[depth - 1] = combine(frameHashes[depth - 1], hash);
+				frameSizes[depth - 1] += size;
+			}
+		}
+		
+		@Override
+		public boolean enterExpression(CFExpression node) {
+			open(node);
+			return true;
+		}
+		
+		@Override
+		public void leaveExpression(CFExpression node) {
+			close(node);
+		}
+		
+		@Override
+		public boolean enterStatement(CFScriptStatement node) {
+			open(node);
+			return true;
+		}
+		
+		@Override
+		public void leaveStatement(CFScriptStatement node) {
+			close(node);
+		}
+		
+		@Override
+		public boolean enter(CFFunctionParameter node) {
+			open(node);
+			return true;
+		}
+		
+		@Override
+		public void leave(CFFunctionParameter node) {
+			close(null);
+		}
+	}
+}
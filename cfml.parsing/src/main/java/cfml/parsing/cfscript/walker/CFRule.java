@@ -0,0 +1,37 @@
+package cfml.parsing.cfscript.walker;
+
+/**
+ * A check run by a {@link CFRuleEngine}. Instead of walking the AST itself, a rule tells the engine which node types it
+ * wants to see, and the engine calls it for those while it walks the AST for all its rules at once.
+ *
+ * <pre>
+ * public class EvaluateRule implements CFRule {
+ * 	public String getName() {
+ * 		return "evaluate";
+ * 	}
+ * 	
+ * 	public void register(CFRuleEngine.Registrar registrar) {
+ * 		registrar.onEnter(CFFunctionExpression.class, new CFRuleEngine.NodeHandler&lt;CFFunctionExpression&gt;() {
+ * 			public void handle(CFFunctionExpression node) {
+ * 				if ("evaluate".equals(node.getFunctionName())) ...
+ * 			}
+ * 		});
+ * 	}
+ * }
+ * </pre>
+ */
+public interface CFRule {
+	
+	/**
+	 * @return the name the engine reports the time of the rule under
+	 */
+	public String getName();
+	
+	/**
+	 * Registers the handlers of the rule. Called once, when the rule is added to an engine.
+	 * 
+	 * @param registrar
+	 */
+	public void register(CFRuleEngine.Registrar registrar);
+
+}
@@ -0,0 +1,252 @@
+package cfml.parsing.cfscript.walker;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import cfml.parsing.cfscript.CFExpression;
+import cfml.parsing.cfscript.script.CFFunctionParameter;
+import cfml.parsing.cfscript.script.CFScriptStatement;
+
+/**
+ * Runs any number of {@link CFRule}s over an AST in a single walk.
+ *
+ * Rules register handlers for the node types they are interested in, and the engine works out once per node class
+ * which handlers apply to it, so a node costs one map lookup and a call per interested handler however many rules
+ * there are. A handler registered for a class also gets its subclasses: one for {@link CFExpression} sees every
+ * expression. Handlers are called in the order the rules were added, enter handlers before the children of a node are
+ * walked and leave handlers after them. Rules can not skip subtrees, the other rules may need them.
+ *
+ * With timing on, the engine measures the time spent in the handlers of every rule, see {@link #getTimings()}.
+ *
+ * An engine and its rules are not thread safe; use one engine per thread.
+ */
+public final class CFRuleEngine {
+	
+	/**
+	 * Called for the nodes of a type.
+	 */
+	public interface NodeHandler<T> {
+		public void handle(T node);
+	}
+	
+	/**
+	 * What a rule registers its handlers with, see {@link CFRule#register(Registrar)}.
+	 */
+	public final class Registrar {
+		private final int rule;
+		
+		private Registrar(int rule) {
+			this.rule = rule;
+		}
+		
+		/**
+		 * @param type
+		 *            the node class, an expression, statement or {@link CFFunctionParameter} class
+		 * @param handler
+		 *            called for every node of that class, or a subclass, before its children
+		 */
+		public <T> void onEnter(Class<T> type, NodeHandler<? super T> handler) {
+			add(enterBindings, type, handler);
+		}
+		
+		/**
+		 * @param type
+		 *            the node class, an expression, statement or {@link CFFunctionParameter} class
+		 * @param handler
+		 *            called for every node of that class, or a subclass, after its children
+		 */
+		public <T> void onLeave(Class<T> type, NodeHandler<? super T> handler) {
+			add(leaveBindings, type, handler);
+		}
+		
+		private void add(List<Binding> bindings, Class<?> type, NodeHandler<?> handler) {
+			if (type == null || handler == null) {
+				throw new IllegalArgumentException("A rule handler needs a node type and a handler");
+			}
+			bindings.add(new Binding(rule, type, handler));
+			// the handlers of the classes seen so far may have changed
+			enterHandlers.clear();
+			leaveHandlers.clear();
+		}
+	}
+	
+	private static final class Binding {
+		final int rule;
+		final Class<?> type;
+		final NodeHandler<Object> handler;
+		
+		@SuppressWarnings("unchecked")
+		Binding(int rule, Class<?> type, NodeHandler<?> handler) {
+			this.rule = rule;
+			this.type = type;
+			this.handler = (NodeHandler<Object>) handler;
+		}
+	}
+	
+	private static final Binding[] NONE = new Binding[0];
+	
+	private final List<CFRule> rules = new ArrayList<CFRule>();
+	private final List<Binding> enterBindings = new ArrayList<Binding>();
+	private final List<Binding> leaveBindings = new ArrayList<Binding>();
+	/** the bindings that apply to a node class, worked out the first time the class is seen */
+	private final Map<Class<?>, Binding[]> enterHandlers = new HashMap<Class<?>, Binding[]>();
+	private final Map<Class<?>, Binding[]> leaveHandlers = new HashMap<Class<?>, Binding[]>();
+	/** nanoseconds spent in the handlers of each rule */
+	private long[] nanos = new long[0];
+	private boolean timing = false;
+	
+	private final CFAstVisitor dispatcher = new CFAstVisitor() {
+		@Override
+		public boolean enterExpression(CFExpression node) {
+			dispatch(enterHandlers, enterBindings, node);
+			return true;
+		}
+		
+		@Override
+		public void leaveExpression(CFExpression node) {
+			dispatch(leaveHandlers, leaveBindings, node);
+		}
+		
+		@Override
+		public boolean enterStatement(CFScriptStatement node) {
+			dispatch(enterHandlers, enterBindings, node);
+			return true;
+		}
+		
+		@Override
+		public void leaveStatement(CFScriptStatement node) {
+			dispatch(leaveHandlers, leaveBindings, node);
+		}
+		
+		@Override
+		public boolean enter(CFFunctionParameter node) {
+			dispatch(enterHandlers, enterBindings, node);
+			return true;
+		}
+		
+		@Override
+		public void leave(CFFunctionParameter node) {
+			dispatch(leaveHandlers, leaveBindings, node);
+		}
+	};
+	
+	public CFRuleEngine() {
+	}
+	
+	/**
+	 * @param rules
+	 *            the rules to add, in order
+	 */
+	public CFRuleEngine(List<? extends CFRule> rules) {
+		for (CFRule rule : rules) {
+			addRule(rule);
+		}
+	}
+	
+	/**
+	 * Adds a rule and has it register its handlers.
+	 * 
+	 * @param rule
+	 */
+	public void addRule(CFRule rule) {
+		if (rule == null) {
+			throw new IllegalArgumentException("The rule can not be null");
+		}
+		int index = rules.size();
+		rules.add(rule);
+		long[] grown = new long[index + 1];
+		System.arraycopy(nanos, 0, grown, 0, index);
+		nanos = grown;
+		rule.register(new Registrar(index));
+	}
+	
+	public List<CFRule> getRules() {
+		return Collections.unmodifiableList(rules);
+	}
+	
+	/**
+	 * @param timing
+	 *            true to measure the time spent in the handlers of every rule. Off by default, as it reads the clock
+	 *            around every handler call
+	 */
+	public void setTiming(boolean timing) {
+		this.timing = timing;
+	}
+	
+	/**
+	 * @return the nanoseconds spent in the handlers of every rule since the engine was created or the timings were
+	 *         reset, by rule name in the order the rules were added
+	 */
+	public Map<String, Long> getTimings() {
+		Map<String, Long> timings = new LinkedHashMap<String, Long>();
+		for (int i = 0; i < rules.size(); i++) {
+			String name = rules.get(i).getName();
+			Long before = timings.get(name);
+			timings.put(name, before == null ? nanos[i] : before.longValue() + nanos[i]);
+		}
+		return timings;
+	}
+	
+	public void resetTimings() {
+		for (int i = 0; i < nanos.length; i++) {
+			nanos[i] = 0;
+		}
+	}
+	
+	/**
+	 * Runs all rules over a script.
+	 * 
+	 * @param script
+	 */
+	public void run(CFScriptStatement script) {
+		CFAstWalker.walk(script, dispatcher);
+	}
+	
+	/**
+	 * Runs all rules over an expression.
+	 * 
+	 * @param expression
+	 */
+	public void run(CFExpression expression) {
+		CFAstWalker.walk(expression, dispatcher);
+	}
+	
+	private void dispatch(Map<Class<?>, Binding[]> handlers, List<Binding> bindings, Object node) {
+		Binding[] applicable = handlers.get(node.getClass());
+		if (applicable == null) {
+			applicable = applicable(bindings, node.getClass());
+			handlers.put(node.getClass(), applicable);
+		}
+		if (!timing) {
+			for (Binding binding : applicable) {
+				binding.handler.handle(node);
+			}
+			return;
+		}
+		for (Binding binding : applicable) {
+			long start = System.nanoTime();
+			try {
+				binding.handler.handle(node);
+			} finally {
+				nanos[binding.rule] += System.nanoTime() - start;
+			}
+		}
+	}
+	
+	private static Binding[] applicable(List<Binding> bindings, Class<?> type) {
+		List<Binding> applicable = null;
+		for (Binding binding : bindings) {
+			if (binding.type.isAssignableFrom(type)) {
+				if (applicable == null) {
+					applicable = new ArrayList<Binding>();
+				}
+				applicable.add(binding);
+			}
+		}
+		return applicable == null ? NONE : applicable.toArray(new Binding[applicable.size()]);
+	}
+}
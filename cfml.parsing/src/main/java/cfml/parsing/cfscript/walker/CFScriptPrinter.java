@@ -0,0 +1,872 @@
+package cfml.parsing.cfscript.walker;
+
+import static cfml.parsing.cfscript.walker.CFAstWalker.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import cfml.CFSCRIPTLexer;
+import cfml.parsing.cfscript.CFAnonymousFunctionExpression;
+import cfml.parsing.cfscript.CFArrayExpression;
+import cfml.parsing.cfscript.CFAssignmentExpression;
+import cfml.parsing.cfscript.CFBinaryExpression;
+import cfml.parsing.cfscript.CFExpression;
+import cfml.parsing.cfscript.CFFullVarExpression;
+import cfml.parsing.cfscript.CFFunctionExpression;
+import cfml.parsing.cfscript.CFIdentifier;
+import cfml.parsing.cfscript.CFJavaMethodExpression;
+import cfml.parsing.cfscript.CFLiteral;
+import cfml.parsing.cfscript.CFMember;
+import cfml.parsing.cfscript.CFMultipartIdentifier;
+import cfml.parsing.cfscript.CFNestedExpression;
+import cfml.parsing.cfscript.CFNewExpression;
+import cfml.parsing.cfscript.CFStringExpression;
+import cfml.parsing.cfscript.CFStructElementExpression;
+import cfml.parsing.cfscript.CFStructExpression;
+import cfml.parsing.cfscript.CFTernaryExpression;
+import cfml.parsing.cfscript.CFUnaryExpression;
+import cfml.parsing.cfscript.CFVarDeclExpression;
+import cfml.parsing.cfscript.script.CFAbortStatement;
+import cfml.parsing.cfscript.script.CFCase;
+import cfml.parsing.cfscript.script.CFCatchStatement;
+import cfml.parsing.cfscript.script.CFCompDeclStatement;
+import cfml.parsing.cfscript.script.CFCompoundStatement;
+import cfml.parsing.cfscript.script.CFDoWhileStatement;
+import cfml.parsing.cfscript.script.CFExitStatement;
+import cfml.parsing.cfscript.script.CFExpressionStatement;
+import cfml.parsing.cfscript.script.CFForInStatement;
+import cfml.parsing.cfscript.script.CFForStatement;
+import cfml.parsing.cfscript.script.CFFuncDeclStatement;
+import cfml.parsing.cfscript.script.CFFunctionParameter;
+import cfml.parsing.cfscript.script.CFIfStatement;
+import cfml.parsing.cfscript.script.CFImportStatement;
+import cfml.parsing.cfscript.script.CFIncludeStatement;
+import cfml.parsing.cfscript.script.CFLockStatement;
+import cfml.parsing.cfscript.script.CFMLFunctionStatement;
+import cfml.parsing.cfscript.script.CFParsedAttributeStatement;
+import cfml.parsing.cfscript.script.CFPropertyStatement;
+import cfml.parsing.cfscript.script.CFReturnStatement;
+import cfml.parsing.cfscript.script.CFScriptStatement;
+import cfml.parsing.cfscript.script.CFSwitchStatement;
+import cfml.parsing.cfscript.script.CFThreadStatement;
+import cfml.parsing.cfscript.script.CFThrowStatement;
+import cfml.parsing.cfscript.script.CFTransactionStatement;
+import cfml.parsing.cfscript.script.CFTryCatchStatement;
+import cfml.parsing.cfscript.script.CFWhileStatement;
+import cfml.parsing.cfscript.script.UserDefinedFunction;
+import cfml.parsing.cfscript.script.IncludeStatement;
+import cfml.parsing.util.ArrayStack;
+
+/**
+ * Writes a CFScript AST to an {@link Appendable} in one pass.
+ *
+ * Decompile(int) returns a new string for every node, which its parent copies into its own, so a deep tree copies the
+ * same text over and over. The printer writes every piece of text once, straight to the output, so printing is linear
+ * in the size of the tree. The output is the same as the one of Decompile(int), with these exceptions:
+ * <ul>
+ * <li>the indentation step, tabs and the line separator can be set, see {@link #setIndentStep(int)},
+ * {@link #setUseTabs(boolean)} and {@link #setNewline(String)}</li>
+ * <li>try statements keep their finally block</li>
+ * <li>where Decompile(int) prints a node with its toString(), the printer prints the node</li>
+ * <li>lock and try statements are not validated</li>
+ * </ul>
+ * Nodes of classes the printer does not know, like subclasses of the AST classes, are printed with their
+ * Decompile(int).
+ *
+ * <pre>
+ * Writer out = new BufferedWriter(new FileWriter(file));
+ * new CFScriptPrinter(out).print(script);
+ * </pre>
+ */
+public class CFScriptPrinter {
+	
+	/** pushed by {@link #binary(CFBinaryExpression, int)} over a binary expression, to print its operator or its end */
+	private static final Object OPERATOR = new Object();
+	private static final Object END = new Object();
+	
+	private static final Comparator<CFIdentifier> BY_NAME = new Comparator<CFIdentifier>() {
+		@Override
+		public int compare(CFIdentifier o1, CFIdentifier o2) {
+			return o1.toString().compareTo(o2.toString());
+		}
+	};
+	
+	private final Appendable out;
+	/** the expressions {@link #binary(CFBinaryExpression, int)} has still to print, the next on top */
+	private final ArrayStack<Object> parts = new ArrayStack<Object>();
+	private int indentStep = 2;
+	private boolean useTabs = false;
+	private String newline = "\n";
+	
+	/**
+	 * @param out
+	 *            where to write to. The printer does not buffer, give it a buffered writer to print to a file
+	 */
+	public CFScriptPrinter(Appendable out) {
+		if (out == null) {
+			throw new IllegalArgumentException("The printer needs something to print to");
+		}
+		this.out = out;
+	}
+	
+	/**
+	 * @param node
+	 * @return the node printed with the default options
+	 */
+	public static String toString(CFScriptStatement node) {
+		StringBuilder sb = new StringBuilder();
+		try {
+			new CFScriptPrinter(sb).print(node);
+		} catch (IOException e) {
+			// a StringBuilder does not throw
+			throw new IllegalStateException(e);
+		}
+		return sb.toString();
+	}
+	
+	/**
+	 * @param node
+	 * @return the node printed with the default options
+	 */
+	public static String toString(CFExpression node) {
+		StringBuilder sb = new StringBuilder();
+		try {
+			new CFScriptPrinter(sb).print(node);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		return sb.toString();
+	}
+	
+	/**
+	 * @param indentStep
+	 *            how much nested blocks are indented, 2 by default
+	 */
+	public void setIndentStep(int indentStep) {
+		if (indentStep < 0) {
+			throw new IllegalArgumentException("The indent step can not be negative");
+		}
+		this.indentStep = indentStep;
+	}
+	
+	/**
+	 * @param useTabs
+	 *            true to indent with a tab per step instead of spaces
+	 */
+	public void setUseTabs(boolean useTabs) {
+		this.useTabs = useTabs;
+	}
+	
+	/**
+	 * @param newline
+	 *            the line separator, \n by default
+	 */
+	public void setNewline(String newline) {
+		if (newline == null) {
+			throw new IllegalArgumentException("The line separator can not be null");
+		}
+		this.newline = newline;
+	}
+	
+	public void print(CFScriptStatement node) throws IOException {
+		statement(node, 0);
+	}
+	
+	public void print(CFExpression node) throws IOException {
+		expression(node, 0);
+	}
+	
+	/**
+	 * Writes the indentation of a nesting depth; depth counts steps of 2, like the indent of Decompile(int).
+	 */
+	private void indent(int depth) throws IOException {
+		int steps = depth / 2;
+		if (useTabs) {
+			for (int i = 0; i < steps; i++) {
+				out.append('\t');
+			}
+			return;
+		}
+		int spaces = steps * indentStep + depth % 2;
+		for (int i = 0; i < spaces; i++) {
+			out.append(' ');
+		}
+	}
+	
+	private static int kindOf(Object node) {
+		// only the exact classes, subclasses may print themselves differently
+		Integer kind = KINDS.get(node.getClass());
+		return kind == null ? 0 : kind.intValue();
+	}
+	
+	/**
+	 * Prints a binary expression and the binary expressions in its operands without recursing into them, see
+	 * {@link CFBinaryExpression}.
+	 */
+	private void binary(CFBinaryExpression node, int indent) throws IOException {
+		// an operand that is not a binary expression may have binary expressions of its own, printed above base
+		int base = parts.size();
+		try {
+			parts.push(node);
+			while (parts.size() > base) {
+				Object part = parts.pop();
+				if (part == OPERATOR) {
+					out.append(' ').append(((CFBinaryExpression) parts.pop()).getOperatorImage()).append(' ');
+				} else if (part == END) {
+					CFBinaryExpression n = (CFBinaryExpression) parts.pop();
+					if (kindOf(n) == BINARY_EXPRESSION && n.getKind() == CFSCRIPTLexer.LEFTBRACKET) {
+						out.append(']');
+					}
+				} else if (kindOf(part) == BINARY_EXPRESSION || kindOf(part) == ELVIS_EXPRESSION) {
+					CFBinaryExpression n = (CFBinaryExpression) part;
+					parts.push(n);
+					parts.push(END);
+					parts.push(n.getRight());
+					parts.push(n);
+					parts.push(OPERATOR);
+					parts.push(n.getLeft());
+				} else {
+					expression((CFExpression) part, indent);
+				}
+			}
+		} finally {
+			parts.truncate(base);
+		}
+	}
+	
+	private void expression(CFExpression node, int indent) throws IOException {
+		switch (kindOf(node)) {
+		case ANONYMOUS_FUNCTION_EXPRESSION:
+			statement(((CFAnonymousFunctionExpression) node).getFuncDeclStatement(), 0);
+			break;
+		case ARRAY_EXPRESSION: {
+			List<CFExpression> elements = ((CFArrayExpression) node).getElements();
+			out.append('[');
+			for (int i = 0; i < elements.size(); i++) {
+				if (i > 0) {
+					out.append(',');
+				}
+				expression(elements.get(i), 0);
+			}
+			out.append(']');
+			break;
+		}
+		case ASSIGNMENT_EXPRESSION: {
+			CFAssignmentExpression n = (CFAssignmentExpression) node;
+			if (n.getLeft() != null) {
+				expression(n.getLeft(), indent);
+			}
+			out.append(' ').append(n.getOperatorImage()).append(' ');
+			for (CFIdentifier id : n.getOtherIds()) {
+				expression(id, indent);
+				out.append(" = ");
+			}
+			if (n.getRight() != null) {
+				expression(n.getRight(), indent);
+			}
+			break;
+		}
+		case BINARY_EXPRESSION:
+		case ELVIS_EXPRESSION:
+			binary((CFBinaryExpression) node, indent);
+			break;
+		case FULL_VAR_EXPRESSION: {
+			List<CFExpression> expressions = ((CFFullVarExpression) node).getExpressions();
+			for (int i = 0; i < expressions.size(); i++) {
+				CFExpression expression = expressions.get(i);
+				if (i > 0) {
+					if (expression.getType() == CFExpression.IDENTIFIER
+							&& expression.getToken().getType() == CFSCRIPTLexer.LEFTBRACKET) {
+						// Array notation []
+					} else if (expression.getType() == CFExpression.IDENTIFIER
+							|| expression.getType() == CFExpression.LITERAL) {
+						out.append('.');
+					} else if (expression instanceof CFFunctionExpression
+							&& ((CFFunctionExpression) expression).getIdentifier() != null) {
+						out.append('.');
+					}
+				}
+				expression(expression, 0);
+			}
+			break;
+		}
+		case FUNCTION_EXPRESSION: {
+			CFFunctionExpression n = (CFFunctionExpression) node;
+			if (n.getNameId() != null) {
+				expression(n.getNameId(), indent);
+			}
+			out.append('(');
+			arguments(n.getArgs(), indent);
+			out.append(')');
+			if (n.getBody() != null) {
+				statement(n.getBody(), indent + 2);
+			}
+			break;
+		}
+		case IDENTIFIER:
+			out.append(((CFIdentifier) node).getFullName());
+			break;
+		case JAVA_METHOD_EXPRESSION: {
+			CFJavaMethodExpression n = (CFJavaMethodExpression) node;
+			expression(n.getName(), indent);
+			out.append('(');
+			arguments(n.getArgs(), 0);
+			out.append(')');
+			break;
+		}
+		case LITERAL:
+			out.append(literal((CFLiteral) node));
+			break;
+		case MEMBER:
+			out.append('[');
+			expression(((CFMember) node).getExpression(), 0);
+			out.append(']');
+			break;
+		case MULTIPART_IDENTIFIER: {
+			List<CFIdentifier> ids = ((CFMultipartIdentifier) node).getIds();
+			out.append(((CFIdentifier) node).getFullName());
+			for (int i = 1; i < ids.size(); i++) {
+				out.append('.');
+				expression(ids.get(i), 0);
+			}
+			break;
+		}
+		case NESTED_EXPRESSION:
+			out.append('#');
+			expression(((CFNestedExpression) node).getSub(), 0);
+			out.append('#');
+			break;
+		case NEW_EXPRESSION: {
+			CFNewExpression n = (CFNewExpression) node;
+			out.append("new ");
+			expression(n.getComponentPath(), 0);
+			out.append('(');
+			arguments(n.getArgs(), 0);
+			out.append(')');
+			break;
+		}
+		case STRING_EXPRESSION:
+			out.append('\'');
+			for (CFExpression expression : ((CFStringExpression) node).getSubExpressions()) {
+				if (expression instanceof CFLiteral) {
+					String text = literal((CFLiteral) expression);
+					if (text.length() > 0) {
+						out.append(text, 1, text.length() - 1);
+					}
+				} else {
+					out.append('#');
+					expression(expression, 0);
+					out.append('#');
+				}
+			}
+			out.append('\'');
+			break;
+		case STRUCT_ELEMENT_EXPRESSION: {
+			CFStructElementExpression n = (CFStructElementExpression) node;
+			expression(n.getKey(), 0);
+			out.append(':');
+			expression(n.getValue(), 0);
+			break;
+		}
+		case STRUCT_EXPRESSION: {
+			CFStructExpression n = (CFStructExpression) node;
+			out.append(n.isOrdered() ? '[' : '{');
+			List<CFExpression> elements = n.getElements();
+			for (int i = 0; i < elements.size(); i++) {
+				if (i > 0) {
+					out.append(',');
+				}
+				expression(elements.get(i), 0);
+			}
+			out.append(n.isOrdered() ? ']' : '}');
+			break;
+		}
+		case TERNARY_EXPRESSION: {
+			CFTernaryExpression n = (CFTernaryExpression) node;
+			expression(n.getCond(), indent);
+			out.append('?');
+			expression(n.getLeft(), indent);
+			out.append(':');
+			expression(n.getRight(), indent);
+			break;
+		}
+		case UNARY_EXPRESSION:
+			unary((CFUnaryExpression) node);
+			break;
+		case VAR_DECL_EXPRESSION: {
+			CFVarDeclExpression n = (CFVarDeclExpression) node;
+			indent(indent);
+			out.append("var ");
+			expression(n.getVar(), 0);
+			for (CFIdentifier id : n.getOtherVars()) {
+				out.append(" = var ");
+				expression(id, indent);
+			}
+			for (CFIdentifier id : n.getOtherIds()) {
+				out.append(" = ");
+				expression(id, indent);
+			}
+			if (n.getInit() != null) {
+				out.append(" = ");
+				expression(n.getInit(), indent + 2);
+			}
+			break;
+		}
+		default:
+			out.append(node.Decompile(indent));
+		}
+	}
+	
+	private void arguments(List<?> args, int indent) throws IOException {
+		for (int i = 0; i < args.size(); i++) {
+			if (i > 0) {
+				out.append(", ");
+			}
+			expression((CFExpression) args.get(i), indent);
+		}
+	}
+	
+	private static String literal(CFLiteral literal) {
+		String val = literal.getVal();
+		if (CFSCRIPTLexer.STRING_LITERAL == literal.getKind() && val != null) {
+			return "'" + val + "'";
+		}
+		return val == null ? "" : val;
+	}
+	
+	private void unary(CFUnaryExpression n) throws IOException {
+		switch (n.getKind()) {
+		case CFSCRIPTLexer.LEFTPAREN:
+			out.append('(');
+			expression(n.getSub(), 0);
+			out.append(')');
+			return;
+		case CFSCRIPTLexer.MINUS:
+			out.append('-');
+			break;
+		case CFSCRIPTLexer.NOT:
+			out.append("NOT ");
+			break;
+		case CFSCRIPTLexer.NOTOP:
+			out.append('!');
+			break;
+		case CFSCRIPTLexer.NOTNOTOP:
+			out.append("!!");
+			break;
+		case CFSCRIPTLexer.PLUS:
+			out.append('+');
+			break;
+		case CFSCRIPTLexer.PLUSPLUS:
+		case CFSCRIPTLexer.MINUSMINUS:
+			String op = n.getKind() == CFSCRIPTLexer.PLUSPLUS ? "++" : "--";
+			if (n.isPrefixop()) {
+				out.append(op);
+			}
+			expression(n.getSub(), 0);
+			if (!n.isPrefixop()) {
+				out.append(op);
+			}
+			return;
+		default:
+			break;
+		}
+		expression(n.getSub(), 0);
+	}
+	
+	private void statement(CFScriptStatement node, int indent) throws IOException {
+		switch (kindOf(node)) {
+		case ABORT_STATEMENT: {
+			CFExpression message = ((CFAbortStatement) node).getMessage();
+			out.append("abort");
+			if (message != null) {
+				out.append(" \"");
+				expression(message, 0);
+				out.append('"');
+			}
+			break;
+		}
+		case ADMIN_STATEMENT:
+			out.append("admin");
+			attributes((CFParsedAttributeStatement) node);
+			break;
+		case BREAK_STATEMENT:
+			indent(indent);
+			out.append("break");
+			break;
+		case CASE: {
+			CFCase n = (CFCase) node;
+			if (n.isDefault()) {
+				out.append("default:");
+			} else if (n.getConstant() != null) {
+				out.append("case ");
+				expression(n.getConstant(), 0);
+				out.append(':');
+			}
+			for (CFScriptStatement statement : n.getStatements()) {
+				statement(statement, 0);
+				out.append(';');
+			}
+			break;
+		}
+		case CATCH_STATEMENT: {
+			CFCatchStatement n = (CFCatchStatement) node;
+			out.append("catch(");
+			if (n.getType() != null) {
+				out.append(n.getType()).append(' ');
+			}
+			out.append(String.valueOf(n.getVariable()));
+			out.append(')').append(newline);
+			statement(n.getCatchBody(), 0);
+			break;
+		}
+		case COMP_DECL_STATEMENT:
+			component((CFCompDeclStatement) node, "component ", indent);
+			break;
+		case INTERFACE_DECL_STATEMENT:
+			component((CFCompDeclStatement) node, "interface ", 0);
+			break;
+		case COMPOUND_STATEMENT: {
+			List<CFScriptStatement> statements = ((CFCompoundStatement) node).getStatements();
+			indent(indent);
+			out.append('{').append(newline);
+			for (int i = 0; i < statements.size(); i++) {
+				CFScriptStatement statement = statements.get(i);
+				// prevent endless loop
+				if (statement != node) {
+					statement(statement, indent + 2);
+					out.append(';').append(newline);
+				}
+			}
+			out.append(newline);
+			indent(indent);
+			out.append('}');
+			break;
+		}
+		case CONTINUE_STATEMENT:
+			indent(indent);
+			out.append("continue");
+			break;
+		case DO_WHILE_STATEMENT: {
+			CFDoWhileStatement n = (CFDoWhileStatement) node;
+			indent(indent);
+			out.append("do");
+			statement(n.getBody(), indent + 2);
+			out.append("while(");
+			expression(n.getCondition(), indent);
+			out.append(" ) ");
+			break;
+		}
+		case EMPTY_STATEMENT:
+			indent(indent);
+			out.append(';');
+			break;
+		case EXIT_STATEMENT: {
+			CFExpression method = ((CFExitStatement) node).getMethod();
+			out.append("exit");
+			if (method != null) {
+				out.append(" \"");
+				expression(method, 0);
+				out.append('"');
+			}
+			break;
+		}
+		case EXPRESSION_STATEMENT:
+			expression(((CFExpressionStatement) node).getExpression(), indent);
+			break;
+		case FOR_IN_STATEMENT: {
+			CFForInStatement n = (CFForInStatement) node;
+			indent(indent);
+			out.append("for( ");
+			expression(n.getVariable(), 0);
+			out.append(" in ");
+			expression(n.getStructure(), indent);
+			out.append(" ) ");
+			statement(n.getBody(), indent + 2);
+			break;
+		}
+		case FOR_STATEMENT: {
+			CFForStatement n = (CFForStatement) node;
+			indent(indent);
+			out.append("for(");
+			if (n.getInit() != null) {
+				expression(n.getInit(), indent);
+			}
+			out.append(';');
+			if (n.getCond() != null) {
+				expression(n.getCond(), indent);
+			}
+			out.append(';');
+			if (n.getNext() != null) {
+				expression(n.getNext(), indent);
+			}
+			out.append(')');
+			statement(n.getBody(), indent + 2);
+			break;
+		}
+		case FUNC_DECL_STATEMENT:
+			function((CFFuncDeclStatement) node, indent);
+			break;
+		case IF_STATEMENT: {
+			CFIfStatement n = (CFIfStatement) node;
+			indent(indent);
+			out.append("if(");
+			expression(n.getCond(), indent);
+			out.append(" ) ");
+			if (n.getThenStatement() != null) {
+				statement(n.getThenStatement(), indent + 2);
+			}
+			if (n.getElseStatement() != null) {
+				out.append(newline);
+				indent(indent);
+				out.append("else ");
+				statement(n.getElseStatement(), indent + 2);
+			}
+			break;
+		}
+		case IMPORT_STATEMENT: {
+			CFImportStatement n = (CFImportStatement) node;
+			out.append("import ");
+			expression(n.getPath(), 0);
+			if (n.isAll()) {
+				out.append(".*");
+			}
+			break;
+		}
+		case CF_INCLUDE_STATEMENT:
+			out.append("include ");
+			expression(((CFIncludeStatement) node).getTemplate(), 0);
+			break;
+		case INCLUDE_STATEMENT:
+			out.append("include ");
+			expression(((IncludeStatement) node).getTemplate(), 0);
+			break;
+		case LOCK_STATEMENT:
+			indent(indent);
+			out.append("lock ");
+			attributes((CFParsedAttributeStatement) node);
+			statement(((CFLockStatement) node).getBody(), 0);
+			break;
+		case CFML_FUNCTION_STATEMENT: {
+			CFMLFunctionStatement n = (CFMLFunctionStatement) node;
+			out.append(n.getType().getText());
+			attributes(n);
+			body(n.getBody());
+			break;
+		}
+		case PARAM_STATEMENT:
+			out.append("param");
+			attributes((CFParsedAttributeStatement) node);
+			break;
+		case PROPERTY_STATEMENT: {
+			CFPropertyStatement n = (CFPropertyStatement) node;
+			out.append("property");
+			if (!n.isShortHand()) {
+				attributes(n);
+			} else {
+				out.append(' ');
+				if (n.getPropertyType() != null) {
+					expression(n.getPropertyType(), 0);
+					out.append(' ');
+				}
+				expression(n.getPropertyName(), 0);
+			}
+			break;
+		}
+		case RETHROW_STATEMENT:
+			out.append("rethrow");
+			break;
+		case RETURN_STATEMENT: {
+			CFReturnStatement n = (CFReturnStatement) node;
+			indent(indent);
+			out.append("return ");
+			if (n.getExpression() != null) {
+				expression(n.getExpression(), indent);
+			}
+			break;
+		}
+		case SWITCH_STATEMENT: {
+			CFSwitchStatement n = (CFSwitchStatement) node;
+			out.append("switch (");
+			expression(n.getVariable(), 0);
+			out.append("){").append(newline);
+			for (CFCase c : n.getCases()) {
+				statement(c, 0);
+			}
+			out.append(newline).append('}');
+			break;
+		}
+		case TAG_STATEMENT:
+			indent(indent);
+			out.append(((CFParsedAttributeStatement) node).getToken().getText()).append(' ');
+			attributes((CFParsedAttributeStatement) node);
+			break;
+		case TAG_THROW_STATEMENT:
+			indent(indent);
+			out.append("throw ");
+			attributes((CFParsedAttributeStatement) node);
+			break;
+		case THREAD_STATEMENT:
+			out.append("thread ");
+			attributes((CFParsedAttributeStatement) node);
+			body(((CFThreadStatement) node).getBody());
+			break;
+		case THROW_STATEMENT:
+			throwStatement(node);
+			break;
+		case TRANSACTION_STATEMENT:
+			out.append("transaction ");
+			attributes((CFParsedAttributeStatement) node);
+			body(((CFTransactionStatement) node).getBody());
+			break;
+		case TRY_CATCH_STATEMENT: {
+			CFTryCatchStatement n = (CFTryCatchStatement) node;
+			out.append("try");
+			statement(n.getBody(), 0);
+			for (CFCatchStatement c : n.getCatchStatements()) {
+				statement(c, indent);
+			}
+			if (n.getFinallyStatement() != null) {
+				out.append("finally");
+				statement(n.getFinallyStatement(), 0);
+			}
+			break;
+		}
+		case WHILE_STATEMENT: {
+			CFWhileStatement n = (CFWhileStatement) node;
+			indent(indent);
+			out.append("while(");
+			expression(n.getCond(), indent);
+			out.append(" ) ");
+			statement(n.getBody(), indent + 2);
+			break;
+		}
+		default:
+			out.append(node.Decompile(indent));
+		}
+	}
+	
+	@SuppressWarnings("deprecation")
+	private void throwStatement(CFScriptStatement node) throws IOException {
+		CFExpression message = ((CFThrowStatement) node).getMessage();
+		out.append("throw");
+		if (message != null) {
+			out.append(' ');
+			expression(message, 0);
+		}
+	}
+	
+	private void body(CFScriptStatement body) throws IOException {
+		if (body == null) {
+			out.append(';');
+		} else {
+			statement(body, 0);
+		}
+	}
+	
+	private void attributes(CFParsedAttributeStatement node) throws IOException {
+		Map<CFIdentifier, CFExpression> attributes = node.getAttributes();
+		List<CFIdentifier> sorted = new ArrayList<CFIdentifier>(attributes.keySet());
+		Collections.sort(sorted, BY_NAME);
+		for (CFIdentifier key : sorted) {
+			out.append(' ');
+			expression(key, 0);
+			out.append('=');
+			expression(attributes.get(key), 0);
+		}
+	}
+	
+	private void component(CFCompDeclStatement node, String keyword, int indent) throws IOException {
+		indent(indent);
+		out.append(keyword);
+		for (Map.Entry<CFExpression, CFExpression> entry : node.getAttributes().entrySet()) {
+			expression(entry.getKey(), 0);
+			if (entry.getValue() != null) {
+				out.append('=');
+				expression(entry.getValue(), 0);
+			}
+			out.append(' ');
+		}
+		out.append('{').append(newline);
+		if (node.getBody() != null) {
+			statement(node.getBody(), indent + 2);
+			out.append(newline);
+		}
+		out.append('}');
+	}
+	
+	private void function(CFFuncDeclStatement node, int indent) throws IOException {
+		indent(indent);
+		if (node.isFinal()) {
+			out.append("final ");
+		}
+		if (node.isAbstract()) {
+			out.append("abstract ");
+		}
+		if (node.isStatic()) {
+			out.append("static ");
+		}
+		if (node.getName() != null) {
+			switch (node.getAccess()) {
+			case UserDefinedFunction.ACCESS_PUBLIC:
+				out.append("public");
+				break;
+			case UserDefinedFunction.ACCESS_PRIVATE:
+				out.append("private");
+				break;
+			case UserDefinedFunction.ACCESS_REMOTE:
+				out.append("remote");
+				break;
+			case UserDefinedFunction.ACCESS_PACKAGE:
+				out.append("package");
+				break;
+			}
+		}
+		if (node.getReturnType() != null) {
+			out.append(' ');
+			expression(node.getReturnType(), indent);
+		}
+		out.append(" function ");
+		if (node.getName() != null) {
+			expression(node.getName(), 0);
+		}
+		out.append('(');
+		List<CFFunctionParameter> formals = node.getFormals();
+		for (int i = 0; i < formals.size(); i++) {
+			if (i > 0) {
+				out.append(", ");
+			}
+			CFFunctionParameter formal = formals.get(i);
+			if (formal.isRequired()) {
+				out.append("required ");
+			}
+			out.append(formal.getName());
+			if (formal.getDefaultExpression() != null) {
+				out.append('=');
+				expression(formal.getDefaultExpression(), 0);
+			}
+		}
+		out.append(") ");
+		boolean first = true;
+		for (Map.Entry<CFExpression, CFExpression> attribute : node.getAttributes().entrySet()) {
+			if (!first) {
+				out.append(' ');
+			}
+			first = false;
+			// attribute names are short, and a.b is written a:b
+			out.append(attribute.getKey().Decompile(0).replace('.', ':'));
+			if (attribute.getValue() != null) {
+				out.append('=');
+				expression(attribute.getValue(), 0);
+			}
+		}
+		if (node.getBody() == null) {
+			out.append(';');
+		} else {
+			statement(node.getBody(), indent + 2);
+		}
+	}
+}
@@ -9,6 +9,7 @@ import java.util.Stack;
 
 import org.antlr.v4.runtime.ParserRuleContext;
 import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.RuleNode;
 
 import cfml.CFSCRIPTParser.AbortStatementContext;
 import cfml.CFSCRIPTParser.AdminStatementContext;
@@ -60,6 +61,7 @@ import cfml.CFSCRIPTParser.TryCatchStatementContext;
 import cfml.CFSCRIPTParser.TypeSpecContext;
 import cfml.CFSCRIPTParser.WhileStatementContext;
 import cfml.CFSCRIPTParserBaseVisitor;
+import cfml.parsing.cfscript.CFDocComment;
 import cfml.parsing.cfscript.CFExpression;
 import cfml.parsing.cfscript.CFFullVarExpression;
 import cfml.parsing.cfscript.CFFunctionExpression;
@@ -98,12 +100,18 @@ import cfml.parsing.cfscript.script.CFThrowStatement;
 import cfml.parsing.cfscript.script.CFTransactionStatement;
 import cfml.parsing.cfscript.script.CFTryCatchStatement;
 import cfml.parsing.cfscript.script.CFWhileStatement;
+import cfml.parsing.util.CancellationToken;
+import cfml.parsing.util.CommentTable;
 import cfml.parsing.util.ExpressionUtils;
 
 public class CFScriptStatementVisitor extends CFSCRIPTParserBaseVisitor<CFScriptStatement> {
 	
 	Stack<Object> aggregator = new Stack<Object>();
 	CFExpressionVisitor cfExpressionVisitor = new CFExpressionVisitor();
+	/** see {@link #setComments(CommentTable)} */
+	private CommentTable comments;
+	/** see {@link #setCancellation(CancellationToken)} */
+	private CancellationToken cancellation;
 	
 	@Override
 	public CFScriptStatement visitScriptBlock(ScriptBlockContext ctx) {
@@ -126,6 +134,7 @@ public class CFScriptStatementVisitor extends CFSCRIPTParserBaseVisitor<CFScript
 				_attr.put(name, visitExpression(attr.startExpression()));
 			}
 		}
+		compDeclStatement.setDocComment(getDocComment(ctx));
 		return compDeclStatement;
 	}
 	
@@ -144,6 +153,7 @@ public class CFScriptStatementVisitor extends CFSCRIPTParserBaseVisitor<CFScript
 				_attr.put(name, visitExpression(attr.startExpression()));
 			}
 		}
+		compDeclStatement.setDocComment(getDocComment(ctx));
 		return compDeclStatement;
 	}
 	
@@ -195,6 +205,7 @@ public class CFScriptStatementVisitor extends CFSCRIPTParserBaseVisitor<CFScript
 				(CFIdentifier) visitExpression(ctx.identifier()), getText(ctx.accessType()),
 				(CFIdentifier) visitExpression(ctx.typeSpec()), parameters, attributes,
 				ctx.body == null ? null : visit(ctx.body), isAbstract, isFinal, isStatic);
+		funcDeclStatement.setDocComment(getDocComment(ctx));
 		return funcDeclStatement;
 	}
 	
@@ -242,6 +253,7 @@ public class CFScriptStatementVisitor extends CFSCRIPTParserBaseVisitor<CFScript
 		CFFunctionParameter functionParameter = new CFFunctionParameter(
 				(CFIdentifier) cfExpressionVisitor.visitIdentifier(ctx.identifier()), ctx.REQUIRED() != null,
 				getText(ctx.parameterType()), defaultExpr);
+		functionParameter.setDocComment(getDocComment(ctx));
 		if (!aggregator.isEmpty() && aggregator.peek() instanceof List<?>) {
 			((List<CFFunctionParameter>) aggregator.peek()).add(functionParameter);
 		}
@@ -565,6 +577,7 @@ public class CFScriptStatementVisitor extends CFSCRIPTParserBaseVisitor<CFScript
 		// System.out.println("visitPropertyStatement");
 		Map<CFIdentifier, CFExpression> _attributes = new HashMap<CFIdentifier, CFExpression>();
 		CFPropertyStatement propertyStatement = new CFPropertyStatement(ctx.PROPERTY().getSymbol(), _attributes);
+		propertyStatement.setDocComment(getDocComment(ctx));
 		aggregator.push(propertyStatement);
 		if (ctx.paramStatementAttributes() != null) {
 			visitChildren(ctx.paramStatementAttributes());
@@ -717,6 +730,48 @@ public class CFScriptStatementVisitor extends CFSCRIPTParserBaseVisitor<CFScript
 		cfExpressionVisitor.clear();
 	}
 	
+	/**
+	 * Sets the comments of the script being visited, to give declarations their doc comments from. Null, the default,
+	 * for declarations without doc comments.
+	 * 
+	 * @param comments
+	 *            the comments, or null
+	 */
+	public void setComments(CommentTable comments) {
+		this.comments = comments;
+	}
+	
+	/**
+	 * Sets the token to check while visiting, which stops the visit with a
+	 * {@link cfml.parsing.reporting.ParseCancelledException} once it is cancelled. Null, the default, to not check.
+	 * 
+	 * @param cancellation
+	 *            the token, or null
+	 */
+	public void setCancellation(CancellationToken cancellation) {
+		this.cancellation = cancellation;
+		cfExpressionVisitor.setCancellation(cancellation);
+	}
+	
+	@Override
+	protected boolean shouldVisitNextChild(RuleNode node, CFScriptStatement currentResult) {
+		if (cancellation != null) {
+			cancellation.check();
+		}
+		return true;
+	}
+	
+	/**
+	 * @return the doc comment right before the declaration, or null
+	 */
+	private CFDocComment getDocComment(ParserRuleContext ctx) {
+		if (comments == null) {
+			return null;
+		}
+		int index = comments.getDocBefore(ctx.getStart().getStartIndex());
+		return index < 0 ? null : new CFDocComment(comments, index);
+	}
+	
 	@Override
 	public CFScriptStatement visitTagThrowStatement(TagThrowStatementContext ctx) {
 		// System.out.println("visitLockStatement");
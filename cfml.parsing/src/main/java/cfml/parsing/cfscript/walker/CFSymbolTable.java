@@ -0,0 +1,619 @@
+package cfml.parsing.cfscript.walker;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import cfml.CFSCRIPTLexer;
+import cfml.parsing.cfscript.CFAssignmentExpression;
+import cfml.parsing.cfscript.CFExpression;
+import cfml.parsing.cfscript.CFFullVarExpression;
+import cfml.parsing.cfscript.CFFunctionExpression;
+import cfml.parsing.cfscript.CFIdentifier;
+import cfml.parsing.cfscript.CFJavaMethodExpression;
+import cfml.parsing.cfscript.CFMultipartIdentifier;
+import cfml.parsing.cfscript.CFNewExpression;
+import cfml.parsing.cfscript.CFStructElementExpression;
+import cfml.parsing.cfscript.CFUnaryExpression;
+import cfml.parsing.cfscript.CFVarDeclExpression;
+import cfml.parsing.cfscript.HasToken;
+import cfml.parsing.cfscript.script.CFCatchStatement;
+import cfml.parsing.cfscript.script.CFCompDeclStatement;
+import cfml.parsing.cfscript.script.CFForInStatement;
+import cfml.parsing.cfscript.script.CFFuncDeclStatement;
+import cfml.parsing.cfscript.script.CFFunctionParameter;
+import cfml.parsing.cfscript.script.CFParsedAttributeStatement;
+import cfml.parsing.cfscript.script.CFPropertyStatement;
+import cfml.parsing.cfscript.script.CFScriptStatement;
+
+/**
+ * The local variables and arguments of every function of a script, and what every variable reference in it resolves
+ * to.
+ *
+ * {@link #build(CFScriptStatement)} walks the script twice: once to collect the var declarations, local.x assignments,
+ * catch variables and arguments of each function into hashed scopes, and once to resolve every identifier that
+ * references a variable against them. Afterwards {@link #resolve(CFIdentifier)} and
+ * {@link #getScope(CFFuncDeclStatement)} are map lookups.
+ *
+ * Unscoped names are looked up the way CFML does in a function: local variables first, then arguments, then those of
+ * the enclosing functions of a closure. A declaration counts for the whole function, wherever it is. Names that are
+ * not found are {@link #UNSCOPED}, they end up in the variables scope when assigned. Names of functions, struct keys,
+ * attributes, named arguments and members (the y of x.y) are not variable references and do not resolve.
+ *
+ * <pre>
+ * CFSymbolTable symbols = CFSymbolTable.build(script);
+ * for (CFIdentifier id : symbols.getReferences()) {
+ * 	CFSymbolTable.Resolution resolution = symbols.resolve(id);
+ * 	// assigned in a function without var: a var leak
+ * 	if (resolution.getKind() == CFSymbolTable.UNSCOPED &amp;&amp; resolution.isWrite() &amp;&amp; resolution.getScope() != null) ...
+ * }
+ * </pre>
+ */
+public final class CFSymbolTable {
+	
+	/** a var declared or local. variable */
+	public static final int LOCAL = 1;
+	/** an argument of the function */
+	public static final int ARGUMENT = 2;
+	/** a variables. variable */
+	public static final int VARIABLES = 3;
+	/** a this. variable */
+	public static final int THIS = 4;
+	/** a variable of another scope, like session.x or url.x */
+	public static final int SCOPED = 5;
+	/** the name of a scope itself, like the arguments of structKeyExists(arguments, 'x') */
+	public static final int SCOPE = 6;
+	/** a name that is not declared in any enclosing function */
+	public static final int UNSCOPED = 7;
+	
+	private static final Set<String> SCOPES = new HashSet<String>(Arrays.asList("local", "arguments", "variables",
+			"this", "super", "request", "session", "application", "server", "url", "form", "cgi", "cookie", "client"));
+	
+	/**
+	 * A local variable or an argument of a function.
+	 */
+	public static final class Symbol {
+		private final String name;
+		private final int kind;
+		private final FunctionScope scope;
+		private final HasToken declaration;
+		private final List<CFIdentifier> references = new ArrayList<CFIdentifier>();
+		
+		Symbol(String name, int kind, FunctionScope scope, HasToken declaration) {
+			this.name = name;
+			this.kind = kind;
+			this.scope = scope;
+			this.declaration = declaration;
+		}
+		
+		/**
+		 * @return the name as first declared
+		 */
+		public String getName() {
+			return name;
+		}
+		
+		/**
+		 * @return {@link CFSymbolTable#LOCAL} or {@link CFSymbolTable#ARGUMENT}
+		 */
+		public int getKind() {
+			return kind;
+		}
+		
+		/**
+		 * @return the function it belongs to
+		 */
+		public FunctionScope getScope() {
+			return scope;
+		}
+		
+		/**
+		 * @return the first declaration, the identifier of a local variable or the {@link CFFunctionParameter} of an
+		 *         argument
+		 */
+		public HasToken getDeclaration() {
+			return declaration;
+		}
+		
+		/**
+		 * @return the identifiers that resolve to it, in source order
+		 */
+		public List<CFIdentifier> getReferences() {
+			return Collections.unmodifiableList(references);
+		}
+		
+		@Override
+		public String toString() {
+			return (kind == LOCAL ? "local." : "arguments.") + name;
+		}
+	}
+	
+	/**
+	 * The local variables and arguments of one function.
+	 */
+	public static final class FunctionScope {
+		private final CFFuncDeclStatement function;
+		private final FunctionScope parent;
+		/** keyed by lower case name */
+		private final Map<String, Symbol> locals = new HashMap<String, Symbol>();
+		private final Map<String, Symbol> arguments = new HashMap<String, Symbol>();
+		
+		FunctionScope(CFFuncDeclStatement function, FunctionScope parent) {
+			this.function = function;
+			this.parent = parent;
+		}
+		
+		public CFFuncDeclStatement getFunction() {
+			return function;
+		}
+		
+		/**
+		 * @return the scope of the function a closure is declared in, null for other functions
+		 */
+		public FunctionScope getParent() {
+			return parent;
+		}
+		
+		/**
+		 * @param name
+		 * @return the local variable, null if the function has none by that name
+		 */
+		public Symbol getLocal(String name) {
+			return locals.get(name.toLowerCase(Locale.ENGLISH));
+		}
+		
+		/**
+		 * @param name
+		 * @return the argument, null if the function has none by that name
+		 */
+		public Symbol getArgument(String name) {
+			return arguments.get(name.toLowerCase(Locale.ENGLISH));
+		}
+		
+		public Collection<Symbol> getLocals() {
+			return Collections.unmodifiableCollection(locals.values());
+		}
+		
+		public Collection<Symbol> getArguments() {
+			return Collections.unmodifiableCollection(arguments.values());
+		}
+		
+		private void declare(Map<String, Symbol> symbols, int kind, String name, HasToken declaration) {
+			String key = name.toLowerCase(Locale.ENGLISH);
+			if (!symbols.containsKey(key)) {
+				symbols.put(key, new Symbol(name, kind, this, declaration));
+			}
+		}
+	}
+	
+	/**
+	 * What a variable reference resolves to.
+	 */
+	public static final class Resolution {
+		private final int kind;
+		private final Symbol symbol;
+		private final FunctionScope scope;
+		private final boolean write;
+		
+		Resolution(int kind, Symbol symbol, FunctionScope scope, boolean write) {
+			this.kind = kind;
+			this.symbol = symbol;
+			this.scope = scope;
+			this.write = write;
+		}
+		
+		/**
+		 * @return {@link CFSymbolTable#LOCAL}, {@link CFSymbolTable#ARGUMENT}, {@link CFSymbolTable#VARIABLES},
+		 *         {@link CFSymbolTable#THIS}, {@link CFSymbolTable#SCOPED}, {@link CFSymbolTable#SCOPE} or
+		 *         {@link CFSymbolTable#UNSCOPED}
+		 */
+		public int getKind() {
+			return kind;
+		}
+		
+		/**
+		 * @return the local variable or argument, null for other kinds and for local. and arguments. references to
+		 *         names that are not declared
+		 */
+		public Symbol getSymbol() {
+			return symbol;
+		}
+		
+		/**
+		 * @return the function the reference is in, null outside of functions
+		 */
+		public FunctionScope getScope() {
+			return scope;
+		}
+		
+		/**
+		 * @return true if the reference is assigned to, as in x = 1, var x, x++ or for (x in y)
+		 */
+		public boolean isWrite() {
+			return write;
+		}
+		
+		/**
+		 * @return true if the reference is to a variable of an enclosing function of a closure
+		 */
+		public boolean isCaptured() {
+			return symbol != null && symbol.getScope() != scope;
+		}
+	}
+	
+	private final Map<CFFuncDeclStatement, FunctionScope> scopes = new IdentityHashMap<CFFuncDeclStatement, FunctionScope>();
+	private final List<FunctionScope> scopeList = new ArrayList<FunctionScope>();
+	private final Map<CFIdentifier, Resolution> resolutions = new IdentityHashMap<CFIdentifier, Resolution>();
+	private final List<CFIdentifier> references = new ArrayList<CFIdentifier>();
+	
+	private CFSymbolTable() {
+	}
+	
+	/**
+	 * @param script
+	 *            a parsed script
+	 * @return the symbol table of the script
+	 */
+	public static CFSymbolTable build(CFScriptStatement script) {
+		CFSymbolTable table = new CFSymbolTable();
+		CFAstWalker.walk(script, table.new Declarations());
+		CFAstWalker.walk(script, table.new References());
+		return table;
+	}
+	
+	/**
+	 * @return the scopes of all functions and closures, in the order they appear
+	 */
+	public List<FunctionScope> getScopes() {
+		return Collections.unmodifiableList(scopeList);
+	}
+	
+	/**
+	 * @param function
+	 * @return the scope of the function, null if it is not part of the script
+	 */
+	public FunctionScope getScope(CFFuncDeclStatement function) {
+		return scopes.get(function);
+	}
+	
+	/**
+	 * @param identifier
+	 * @return what the identifier resolves to, null if it is not a variable reference of the script
+	 */
+	public Resolution resolve(CFIdentifier identifier) {
+		return resolutions.get(identifier);
+	}
+	
+	/**
+	 * @return every variable reference of the script, in source order
+	 */
+	public List<CFIdentifier> getReferences() {
+		return Collections.unmodifiableList(references);
+	}
+	
+	private static boolean isScope(CFExpression expression) {
+		return expression != null && expression.getClass() == CFIdentifier.class
+				&& SCOPES.contains(((CFIdentifier) expression).getName().toLowerCase(Locale.ENGLISH));
+	}
+	
+	private static String scopeName(CFExpression expression) {
+		return ((CFIdentifier) expression).getName().toLowerCase(Locale.ENGLISH);
+	}
+	
+	/**
+	 * @return the identifier of x or scope.x, null for anything else
+	 */
+	private static CFIdentifier variable(CFExpression expression) {
+		if (expression != null && expression.getClass() == CFIdentifier.class) {
+			return (CFIdentifier) expression;
+		}
+		if (expression instanceof CFFullVarExpression) {
+			List<CFExpression> expressions = ((CFFullVarExpression) expression).getExpressions();
+			if (expressions.size() == 2 && isScope(expressions.get(0))
+					&& expressions.get(1).getClass() == CFIdentifier.class) {
+				return (CFIdentifier) expressions.get(1);
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * First walk: fills the function scopes.
+	 */
+	private final class Declarations extends CFAstVisitor {
+		private final List<FunctionScope> stack = new ArrayList<FunctionScope>();
+		
+		private FunctionScope current() {
+			return stack.isEmpty() ? null : stack.get(stack.size() - 1);
+		}
+		
+		@Override
+		public boolean enter(CFFuncDeclStatement node) {
+			FunctionScope scope = new FunctionScope(node, current());
+			scopes.put(node, scope);
+			scopeList.add(scope);
+			if (node.getFormals() != null) {
+				for (CFFunctionParameter parameter : node.getFormals()) {
+					scope.declare(scope.arguments, ARGUMENT, parameter.getName(), parameter);
+				}
+			}
+			stack.add(scope);
+			return true;
+		}
+		
+		@Override
+		public void leave(CFFuncDeclStatement node) {
+			stack.remove(stack.size() - 1);
+		}
+		
+		@Override
+		public boolean enter(CFVarDeclExpression node) {
+			declareLocal(node.getVar());
+			for (CFIdentifier id : node.getOtherVars()) {
+				declareLocal(id);
+			}
+			return true;
+		}
+		
+		@Override
+		public boolean enter(CFAssignmentExpression node) {
+			if (node.getLeft() instanceof CFFullVarExpression) {
+				List<CFExpression> expressions = ((CFFullVarExpression) node.getLeft()).getExpressions();
+				if (isScope(expressions.get(0)) && scopeName(expressions.get(0)).equals("local")) {
+					declareLocal(node.getLeft());
+				}
+			}
+			return true;
+		}
+		
+		@Override
+		public boolean enter(CFCatchStatement node) {
+			// the catch variable only lives in the catch block, as far as references go it is local
+			declareLocal(node.getVariable());
+			return true;
+		}
+		
+		private void declareLocal(CFExpression expression) {
+			FunctionScope scope = current();
+			CFIdentifier id = variable(expression);
+			if (scope != null && id != null) {
+				scope.declare(scope.locals, LOCAL, id.getName(), id);
+			}
+		}
+	}
+	
+	/**
+	 * Second walk: resolves the references. Containers are entered before their children, so they mark the
+	 * identifiers in them that are not references, are scoped or are assigned to before those are visited.
+	 */
+	private final class References extends CFAstVisitor {
+		private final List<FunctionScope> stack = new ArrayList<FunctionScope>();
+		private final Set<CFIdentifier> ignored = Collections.newSetFromMap(new IdentityHashMap<CFIdentifier, Boolean>());
+		private final Set<CFIdentifier> written = Collections.newSetFromMap(new IdentityHashMap<CFIdentifier, Boolean>());
+		/** identifiers after a scope, to the lower case scope name */
+		private final Map<CFIdentifier, String> scoped = new IdentityHashMap<CFIdentifier, String>();
+		
+		private FunctionScope current() {
+			return stack.isEmpty() ? null : stack.get(stack.size() - 1);
+		}
+		
+		private void ignore(Object expression) {
+			if (expression instanceof CFIdentifier) {
+				ignored.add((CFIdentifier) expression);
+			}
+		}
+		
+		private void write(CFExpression expression) {
+			CFIdentifier id = variable(expression);
+			if (id != null && !ignored.contains(id)) {
+				written.add(id);
+			}
+		}
+		
+		/**
+		 * Named arguments are assignments to a name that is not a variable.
+		 */
+		private void arguments(List<? extends CFExpression> args) {
+			for (CFExpression arg : args) {
+				if (arg instanceof CFAssignmentExpression) {
+					ignore(((CFAssignmentExpression) arg).getLeft());
+				}
+			}
+		}
+		
+		@Override
+		public boolean enter(CFFuncDeclStatement node) {
+			ignore(node.getName());
+			if (node.getAttributes() != null) {
+				for (CFExpression key : node.getAttributes().keySet()) {
+					ignore(key);
+				}
+			}
+			stack.add(scopes.get(node));
+			return true;
+		}
+		
+		@Override
+		public void leave(CFFuncDeclStatement node) {
+			stack.remove(stack.size() - 1);
+		}
+		
+		@Override
+		public boolean enterStatement(CFScriptStatement node) {
+			if (node instanceof CFParsedAttributeStatement) {
+				Map<CFIdentifier, CFExpression> attributes = ((CFParsedAttributeStatement) node).getAttributes();
+				if (attributes != null) {
+					for (CFIdentifier key : attributes.keySet()) {
+						ignore(key);
+					}
+				}
+			}
+			return true;
+		}
+		
+		@Override
+		public boolean enter(CFCompDeclStatement node) {
+			for (CFExpression key : node.getAttributes().keySet()) {
+				ignore(key);
+			}
+			return true;
+		}
+		
+		@Override
+		public boolean enter(CFPropertyStatement node) {
+			enterStatement(node);
+			ignore(node.getPropertyName());
+			ignore(node.getPropertyType());
+			return true;
+		}
+		
+		@Override
+		public boolean enter(CFCatchStatement node) {
+			write(node.getVariable());
+			return true;
+		}
+		
+		@Override
+		public boolean enter(CFForInStatement node) {
+			write(node.getVariable());
+			return true;
+		}
+		
+		@Override
+		public boolean enter(CFVarDeclExpression node) {
+			write(node.getVar());
+			for (CFIdentifier id : node.getOtherVars()) {
+				write(id);
+			}
+			for (CFIdentifier id : node.getOtherIds()) {
+				write(id);
+			}
+			return true;
+		}
+		
+		@Override
+		public boolean enter(CFAssignmentExpression node) {
+			write(node.getLeft());
+			for (CFIdentifier id : node.getOtherIds()) {
+				write(id);
+			}
+			return true;
+		}
+		
+		@Override
+		public boolean enter(CFUnaryExpression node) {
+			if (node.getKind() == CFSCRIPTLexer.PLUSPLUS || node.getKind() == CFSCRIPTLexer.MINUSMINUS) {
+				write(node.getSub());
+			}
+			return true;
+		}
+		
+		@Override
+		public boolean enter(CFFunctionExpression node) {
+			arguments(node.getArgs());
+			return true;
+		}
+		
+		@Override
+		public boolean enter(CFJavaMethodExpression node) {
+			ignore(node.getName());
+			arguments(node.getArgs());
+			return true;
+		}
+		
+		@Override
+		public boolean enter(CFNewExpression node) {
+			// a component path, not variables
+			ignore(node.getComponentPath());
+			if (node.getComponentPath() instanceof CFFullVarExpression) {
+				for (CFExpression expression : ((CFFullVarExpression) node.getComponentPath()).getExpressions()) {
+					ignore(expression);
+				}
+			}
+			// a raw list of the arguments
+			@SuppressWarnings("unchecked")
+			List<CFExpression> args = node.getArgs();
+			arguments(args);
+			return true;
+		}
+		
+		@Override
+		public boolean enter(CFStructElementExpression node) {
+			ignore(node.getKey());
+			return true;
+		}
+		
+		@Override
+		public boolean enter(CFMultipartIdentifier node) {
+			// dotted names, like import paths
+			return false;
+		}
+		
+		@Override
+		public boolean enter(CFFullVarExpression node) {
+			List<CFExpression> expressions = node.getExpressions();
+			int first = 1;
+			if (isScope(expressions.get(0)) && expressions.size() > 1
+					&& expressions.get(1).getClass() == CFIdentifier.class) {
+				scoped.put((CFIdentifier) expressions.get(1), scopeName(expressions.get(0)));
+				first = 2;
+			}
+			for (int i = first; i < expressions.size(); i++) {
+				// members, the y of x.y
+				ignore(expressions.get(i));
+			}
+			return true;
+		}
+		
+		@Override
+		public boolean enter(CFIdentifier node) {
+			if (node.getClass() != CFIdentifier.class || ignored.contains(node)) {
+				return true;
+			}
+			FunctionScope scope = current();
+			String scopeName = scoped.get(node);
+			int kind;
+			Symbol symbol = null;
+			if (scopeName == null && isScope(node)) {
+				kind = SCOPE;
+			} else if (scopeName == null) {
+				kind = UNSCOPED;
+				for (FunctionScope s = scope; s != null && symbol == null; s = s.getParent()) {
+					symbol = s.getLocal(node.getName());
+					if (symbol == null) {
+						symbol = s.getArgument(node.getName());
+					}
+				}
+				if (symbol != null) {
+					kind = symbol.getKind();
+				}
+			} else if (scopeName.equals("local")) {
+				kind = LOCAL;
+				symbol = scope == null ? null : scope.getLocal(node.getName());
+			} else if (scopeName.equals("arguments")) {
+				kind = ARGUMENT;
+				symbol = scope == null ? null : scope.getArgument(node.getName());
+			} else if (scopeName.equals("variables")) {
+				kind = VARIABLES;
+			} else if (scopeName.equals("this")) {
+				kind = THIS;
+			} else {
+				kind = SCOPED;
+			}
+			resolutions.put(node, new Resolution(kind, symbol, scope, written.contains(node)));
+			references.add(node);
+			if (symbol != null) {
+				symbol.references.add(node);
+			}
+			return true;
+		}
+	}
+}
@@ -0,0 +1,34 @@
+package cfml.parsing.reporting;
+
+import cfml.parsing.util.CancellationToken;
+
+/**
+ * Thrown out of a parse whose {@link CancellationToken} was cancelled or ran past its deadline. The parse has no
+ * result, not even a partial one.
+ */
+public class ParseCancelledException extends RuntimeException {
+	private static final long serialVersionUID = 1;
+	
+	private final boolean timedOut;
+	
+	public ParseCancelledException(boolean timedOut) {
+		super(timedOut ? "The parse ran past its deadline" : "The parse was cancelled");
+		this.timedOut = timedOut;
+	}
+	
+	/**
+	 * @return true if the parse ran past its deadline, false if it was cancelled
+	 */
+	public boolean isTimedOut() {
+		return timedOut;
+	}
+	
+	/**
+	 * Overrides java.lang.Throwable. Where in the parser the check was does not matter, so save the effort of filling
+	 * in the stack trace.
+	 */
+	@Override
+	public Throwable fillInStackTrace() {
+		return this;
+	}
+}
@@ -0,0 +1,63 @@
+package cfml.parsing.util;
+
+import java.util.Arrays;
+
+/**
+ * A stack on an array, kept and reused between uses. Unlike {@link java.util.Stack} it is not synchronized, and unlike
+ * {@link java.util.ArrayDeque} it takes null.
+ *
+ * A method that can be called again while it uses the stack, for a nested expression or from a callback, works above
+ * the {@link #size()} it started with and leaves the stack at that size when it is done.
+ */
+public final class ArrayStack<E> {
+	
+	private Object[] elements = new Object[16];
+	private int size;
+	
+	public void push(E element) {
+		if (size == elements.length) {
+			elements = Arrays.copyOf(elements, size * 2);
+		}
+		elements[size++] = element;
+	}
+	
+	/**
+	 * @return the element on top, which is removed
+	 */
+	@SuppressWarnings("unchecked")
+	public E pop() {
+		if (size == 0) {
+			throw new IllegalStateException("The stack is empty");
+		}
+		E element = (E) elements[--size];
+		elements[size] = null;
+		return element;
+	}
+	
+	/**
+	 * @param index
+	 *            counted from the bottom
+	 */
+	@SuppressWarnings("unchecked")
+	public E get(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index " + index + " of a stack of " + size);
+		}
+		return (E) elements[index];
+	}
+	
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * Removes the elements above the given size.
+	 */
+	public void truncate(int size) {
+		if (size < 0 || size > this.size) {
+			throw new IllegalArgumentException("Size " + size + " of a stack of " + this.size);
+		}
+		Arrays.fill(elements, size, this.size, null);
+		this.size = size;
+	}
+}
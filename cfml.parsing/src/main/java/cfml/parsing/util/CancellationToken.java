@@ -0,0 +1,132 @@
+package cfml.parsing.util;
+
+import java.util.concurrent.TimeUnit;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenFactory;
+import org.antlr.v4.runtime.TokenSource;
+import org.antlr.v4.runtime.misc.Pair;
+
+import cfml.parsing.reporting.ParseCancelledException;
+
+/**
+ * Stops a parse that takes too long: one that is cancelled from another thread with {@link #cancel()}, or that runs
+ * past a deadline.
+ *
+ * The lexer, the parser and the visitors that turn its tree into the AST call {@link #check()} as they go, which
+ * throws a {@link ParseCancelledException} out of the parse once the token is cancelled. The parser checks before
+ * every prediction and at every token of lookahead within one, so a parse stuck in a long LL prediction stops too.
+ * The clock is only read every so many checks.
+ *
+ * <pre>
+ * CancellationToken cancellation = new CancellationToken(5000);
+ * try {
+ * 	statement = parser.parseScript(script, cancellation);
+ * } catch (ParseCancelledException e) {
+ * 	// e.isTimedOut()
+ * }
+ * </pre>
+ */
+public final class CancellationToken {
+	
+	/** checks between two reads of the clock */
+	private static final int CLOCK_INTERVAL = 64;
+	
+	/**
+	 * Makes the tokens of the factory it had, checking the cancellation token for every one.
+	 */
+	private final class Watcher implements TokenFactory<Token> {
+		private final TokenFactory<?> factory;
+		
+		Watcher(TokenFactory<?> factory) {
+			this.factory = factory;
+		}
+		
+		@Override
+		public Token create(Pair<TokenSource, CharStream> source, int type, String text, int channel, int start,
+				int stop, int line, int charPositionInLine) {
+			check();
+			return factory.create(source, type, text, channel, start, stop, line, charPositionInLine);
+		}
+		
+		@Override
+		public Token create(int type, String text) {
+			return factory.create(type, text);
+		}
+	}
+	
+	private volatile boolean cancelled;
+	private volatile boolean timedOut;
+	/** System.nanoTime() of the deadline, see hasDeadline */
+	private final long deadline;
+	private final boolean hasDeadline;
+	private int checks;
+	
+	/**
+	 * A token without a deadline, cancelled by {@link #cancel()} only.
+	 */
+	public CancellationToken() {
+		this.deadline = 0;
+		this.hasDeadline = false;
+	}
+	
+	/**
+	 * @param timeout
+	 *            the milliseconds from now after which the token is cancelled
+	 */
+	public CancellationToken(long timeout) {
+		if (timeout < 0) {
+			throw new IllegalArgumentException("The timeout must not be negative: " + timeout);
+		}
+		this.deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+		this.hasDeadline = true;
+	}
+	
+	/**
+	 * Cancels the parses that check this token, from any thread.
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+	
+	/**
+	 * @return true if the token was cancelled, or its deadline has passed
+	 */
+	public boolean isCancelled() {
+		if (!cancelled && hasDeadline && System.nanoTime() - deadline >= 0) {
+			timedOut = true;
+			cancelled = true;
+		}
+		return cancelled;
+	}
+	
+	/**
+	 * @return true if the token was cancelled because its deadline passed, rather than by {@link #cancel()}
+	 */
+	public boolean isTimedOut() {
+		return timedOut;
+	}
+	
+	/**
+	 * Throws if the token is cancelled. Cheap enough to call for every token and every prediction: the clock is only
+	 * read every {@value #CLOCK_INTERVAL} calls.
+	 *
+	 * @throws ParseCancelledException
+	 *             if the token is cancelled
+	 */
+	public void check() {
+		if (cancelled || (hasDeadline && ++checks % CLOCK_INTERVAL == 0 && isCancelled())) {
+			throw new ParseCancelledException(timedOut);
+		}
+	}
+	
+	/**
+	 * @param factory
+	 *            the token factory of a lexer
+	 * @return a token factory to give the lexer instead, which makes the same tokens and checks this token for each
+	 */
+	public TokenFactory<Token> watch(TokenFactory<?> factory) {
+		return new Watcher(factory);
+	}
+}
@@ -0,0 +1,227 @@
+package cfml.parsing.util;
+
+import java.util.Arrays;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenFactory;
+import org.antlr.v4.runtime.TokenSource;
+import org.antlr.v4.runtime.misc.Interval;
+import org.antlr.v4.runtime.misc.Pair;
+
+import cfml.CFSCRIPTLexer;
+
+/**
+ * The comments of a script, recorded while it is lexed: their spans, lines and kinds in parallel int arrays, in the
+ * order of the source. Their text is only read from the input when asked for.
+ *
+ * A table records the comments of a lexer whose token factory it wraps with {@link #record(TokenFactory)}. It does so
+ * whether or not the token stream keeps the comment tokens, so it works with a {@link SignificantTokenStream} too. The
+ * parser uses it to find the doc comments of declarations with {@link #getDocBefore(int)}.
+ *
+ * <pre>
+ * CommentTable comments = new CommentTable();
+ * lexer.setTokenFactory(comments.record(lexer.getTokenFactory()));
+ * </pre>
+ */
+public final class CommentTable {
+	
+	/** a // comment */
+	public static final int LINE = 1;
+	/** a /* comment */
+	public static final int BLOCK = 2;
+	/** a /** comment */
+	public static final int DOC = 3;
+	/** a &lt;!--- comment */
+	public static final int TAG = 4;
+	
+	/**
+	 * Notes the comments among the tokens a factory makes.
+	 */
+	private final class Recorder implements TokenFactory<Token> {
+		private final TokenFactory<?> factory;
+		
+		Recorder(TokenFactory<?> factory) {
+			this.factory = factory;
+		}
+		
+		@Override
+		public Token create(Pair<TokenSource, CharStream> source, int type, String text, int channel, int start,
+				int stop, int line, int charPositionInLine) {
+			switch (type) {
+				case CFSCRIPTLexer.LINE_COMMENT:
+					add(source.b, LINE, start, stop, line);
+					break;
+				case CFSCRIPTLexer.JAVADOC:
+				case CFSCRIPTLexer.ML_COMMENT:
+					// /**/ is not a doc comment
+					boolean doc = stop - start >= 4 && "/**".equals(source.b.getText(Interval.of(start, start + 2)));
+					add(source.b, doc ? DOC : BLOCK, start, stop, line);
+					break;
+				case CFSCRIPTLexer.TAG_COMMENT:
+					add(source.b, TAG, start, stop, line);
+					break;
+				default:
+					break;
+			}
+			return factory.create(source, type, text, channel, start, stop, line, charPositionInLine);
+		}
+		
+		@Override
+		public Token create(int type, String text) {
+			return factory.create(type, text);
+		}
+	}
+	
+	private int[] starts = new int[16];
+	private int[] stops = new int[16];
+	private int[] lines = new int[16];
+	private int[] kinds = new int[16];
+	private int size;
+	private CharStream input;
+	/** see {@link #detach(CharSequence)} */
+	private CharSequence source;
+	/** the text of the doc comments, by index, once the table is detached without the source */
+	private String[] docs;
+	
+	/**
+	 * @param factory
+	 *            the token factory of a CFScript lexer
+	 * @return a token factory to give the lexer instead, which makes the same tokens and records the comments in this
+	 *         table
+	 */
+	public TokenFactory<Token> record(TokenFactory<?> factory) {
+		return new Recorder(factory);
+	}
+	
+	void add(CharStream input, int kind, int start, int stop, int line) {
+		if (size == starts.length) {
+			int length = size * 2;
+			starts = Arrays.copyOf(starts, length);
+			stops = Arrays.copyOf(stops, length);
+			lines = Arrays.copyOf(lines, length);
+			kinds = Arrays.copyOf(kinds, length);
+		}
+		this.input = input;
+		starts[size] = start;
+		stops[size] = stop;
+		lines[size] = line;
+		kinds[size] = kind;
+		size++;
+	}
+	
+	/**
+	 * @return the number of comments
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * @return the offset of the first character of comment i
+	 */
+	public int getStart(int i) {
+		return starts[i];
+	}
+	
+	/**
+	 * @return the offset of the last character of comment i
+	 */
+	public int getStop(int i) {
+		return stops[i];
+	}
+	
+	public int getLine(int i) {
+		return lines[i];
+	}
+	
+	/**
+	 * @return {@link #LINE}, {@link #BLOCK}, {@link #DOC} or {@link #TAG}
+	 */
+	public int getKind(int i) {
+		return kinds[i];
+	}
+	
+	/**
+	 * @return the text of comment i, read from the input
+	 * @throws IllegalStateException
+	 *             if the table was detached without the source and comment i is not a doc comment
+	 */
+	public String getText(int i) {
+		if (docs != null && docs[i] != null) {
+			return docs[i];
+		}
+		return getText(starts[i], stops[i] + 1);
+	}
+	
+	private String getText(int start, int end) {
+		if (source != null) {
+			return source.subSequence(start, end).toString();
+		}
+		if (input == null) {
+			throw new IllegalStateException("The table was detached without the source");
+		}
+		return input.getText(Interval.of(start, end - 1));
+	}
+	
+	/**
+	 * Lets go of the input of the lexer, to read the text of the comments from the source instead. Without the source,
+	 * the text of the doc comments is copied, and that of the other comments is gone.
+	 * 
+	 * @param source
+	 *            the text the lexer lexed, or null to not hold on to it
+	 */
+	public void detach(CharSequence source) {
+		if (source == null && input != null) {
+			docs = new String[size];
+			for (int i = 0; i < size; i++) {
+				if (kinds[i] == DOC) {
+					docs[i] = getText(i);
+				}
+			}
+		}
+		this.source = source;
+		this.input = null;
+	}
+	
+	/**
+	 * Finds the doc comment of a declaration: the last doc comment before it, with only white space and other comments
+	 * in between.
+	 *
+	 * @param offset
+	 *            the offset of the first character of the declaration
+	 * @return the index of the doc comment, or -1 if there is none
+	 */
+	public int getDocBefore(int offset) {
+		int i = Arrays.binarySearch(stops, 0, size, offset);
+		// the last comment that ends before the offset
+		i = (i >= 0 ? i : -i - 1) - 1;
+		int end = offset;
+		for (; i >= 0; i--) {
+			if (!isWhiteSpace(stops[i] + 1, end)) {
+				return -1;
+			}
+			if (kinds[i] == DOC) {
+				return i;
+			}
+			end = starts[i];
+		}
+		return -1;
+	}
+	
+	/**
+	 * @return true if the input from start up to end (exclusive) is white space
+	 */
+	private boolean isWhiteSpace(int start, int end) {
+		if (start >= end) {
+			return true;
+		}
+		String text = getText(start, end);
+		for (int i = 0; i < text.length(); i++) {
+			if (!Character.isWhitespace(text.charAt(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
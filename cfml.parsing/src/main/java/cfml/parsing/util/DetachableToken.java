@@ -0,0 +1,115 @@
+package cfml.parsing.util;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CommonToken;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenFactory;
+import org.antlr.v4.runtime.TokenSource;
+import org.antlr.v4.runtime.misc.Pair;
+
+/**
+ * A token that can let go of the lexer and input it came from.
+ * 
+ * A {@link CommonToken} points at its lexer and char stream, so anything holding on to one of them, like an AST node,
+ * keeps the whole input and lexer alive. Once parsing is done, {@link #detach(String)} drops those references. The
+ * token then keeps its int span (start, stop, line, column) and reads its text from the source string it was given,
+ * or, without one, from a copy of just its own text.
+ * 
+ * The lexers of {@link cfml.parsing.CFMLParser} make these tokens through {@link #FACTORY}.
+ */
+public class DetachableToken extends CommonToken {
+	
+	private static final long serialVersionUID = 1L;
+	
+	/** makes detachable tokens, for {@link org.antlr.v4.runtime.Lexer#setTokenFactory(TokenFactory)} */
+	public static final TokenFactory<DetachableToken> FACTORY = new TokenFactory<DetachableToken>() {
+		@Override
+		public DetachableToken create(Pair<TokenSource, CharStream> source, int type, String text, int channel,
+				int start, int stop, int line, int charPositionInLine) {
+			DetachableToken token = new DetachableToken(source, type, channel, start, stop);
+			token.setLine(line);
+			token.setCharPositionInLine(charPositionInLine);
+			if (text != null) {
+				token.setText(text);
+			}
+			return token;
+		}
+		
+		@Override
+		public DetachableToken create(int type, String text) {
+			return new DetachableToken(type, text);
+		}
+	};
+	
+	/** the whole source the token came from, once detached with one */
+	private String sourceText;
+	
+	public DetachableToken(Pair<TokenSource, CharStream> source, int type, int channel, int start, int stop) {
+		super(source, type, channel, start, stop);
+	}
+	
+	public DetachableToken(int type, String text) {
+		super(type, text);
+	}
+	
+	/**
+	 * Drops the references to the lexer and input of this token.
+	 * 
+	 * @param source
+	 *            the text the token was lexed from, to read the token text from later; null to keep a copy of the
+	 *            token text instead
+	 */
+	public void detach(String source) {
+		if (this.source == EMPTY_SOURCE) {
+			return;
+		}
+		if (text == null) {
+			String current = super.getText();
+			String span = source == null ? null : spanText(source);
+			if (span != null && span.equals(current)) {
+				sourceText = source;
+			} else {
+				text = current;
+			}
+		}
+		this.source = EMPTY_SOURCE;
+	}
+	
+	/**
+	 * @return true once {@link #detach(String)} has been called
+	 */
+	public boolean isDetached() {
+		return source == EMPTY_SOURCE;
+	}
+	
+	private String spanText(String source) {
+		if (start < 0 || stop < start || stop >= source.length()) {
+			return null;
+		}
+		return source.substring(start, stop + 1);
+	}
+	
+	@Override
+	public String getText() {
+		if (text == null && sourceText != null) {
+			return spanText(sourceText);
+		}
+		return super.getText();
+	}
+	
+	/**
+	 * Detaches all the tokens of a stream.
+	 * 
+	 * @param tokens
+	 *            the tokens, as from {@link org.antlr.v4.runtime.BufferedTokenStream#getTokens()}
+	 * @param source
+	 *            see {@link #detach(String)}
+	 */
+	public static void detachAll(Iterable<? extends Token> tokens, String source) {
+		for (Token token : tokens) {
+			if (token instanceof DetachableToken) {
+				((DetachableToken) token).detach(source);
+			}
+		}
+	}
+}
@@ -0,0 +1,282 @@
+package cfml.parsing.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.misc.IntegerStack;
+
+import cfml.CFSCRIPTLexer;
+
+/**
+ * The tokens of a script being edited, kept up to date by relexing only around each edit.
+ *
+ * The CFScript lexer keeps a mode stack for strings and #...# expressions, so where a token ends depends on everything
+ * before it. The tokenizer therefore keeps a checkpoint at the first token of every line: where the lexer was, the
+ * index of the token, and the lexer mode and mode stack. An edit restarts the lexer at the checkpoint of the line
+ * before the edit, one line back because the lexer may have looked past the end of the token before a checkpoint. It
+ * stops as soon as it reaches a checkpoint after the edit in the same state as before; the tokens from there on are
+ * the old ones, moved. An edit inside a line of plain code relexes two lines, one that opens a string relexes up to
+ * where the string closes.
+ *
+ * The tokens are in a {@link TokenBuffer}, as {@link ScriptTokenizer} makes them. A tokenizer is not thread safe.
+ *
+ * <pre>
+ * IncrementalTokenizer tokenizer = new IncrementalTokenizer(source);
+ * tokenizer.edit(offset, 3, "abc");
+ * repaint(tokenizer.getDamageStart(), tokenizer.getDamageEnd());
+ * </pre>
+ */
+public final class IncrementalTokenizer {
+	
+	/**
+	 * Lexer states at line starts, in parallel arrays.
+	 */
+	private static final class Checkpoints {
+		int[] offsets = new int[64];
+		int[] tokens = new int[64];
+		/** an index into the states of the tokenizer */
+		int[] states = new int[64];
+		int[] lines = new int[64];
+		int size;
+		
+		void add(int offset, int token, int state, int line) {
+			if (size == offsets.length) {
+				int length = size * 2;
+				offsets = Arrays.copyOf(offsets, length);
+				tokens = Arrays.copyOf(tokens, length);
+				states = Arrays.copyOf(states, length);
+				lines = Arrays.copyOf(lines, length);
+			}
+			offsets[size] = offset;
+			tokens[size] = token;
+			states[size] = state;
+			lines[size] = line;
+			size++;
+		}
+		
+		/**
+		 * Replaces the checkpoints from from to to (exclusive) with those of replacement, and moves the ones after
+		 * them.
+		 */
+		void replace(int from, int to, Checkpoints replacement, int offsetShift, int tokenShift, int lineShift) {
+			int newSize = size - (to - from) + replacement.size;
+			if (newSize > offsets.length) {
+				int length = Math.max(newSize, offsets.length * 2);
+				offsets = Arrays.copyOf(offsets, length);
+				tokens = Arrays.copyOf(tokens, length);
+				states = Arrays.copyOf(states, length);
+				lines = Arrays.copyOf(lines, length);
+			}
+			int tail = from + replacement.size;
+			int count = size - to;
+			System.arraycopy(offsets, to, offsets, tail, count);
+			System.arraycopy(tokens, to, tokens, tail, count);
+			System.arraycopy(states, to, states, tail, count);
+			System.arraycopy(lines, to, lines, tail, count);
+			System.arraycopy(replacement.offsets, 0, offsets, from, replacement.size);
+			System.arraycopy(replacement.tokens, 0, tokens, from, replacement.size);
+			System.arraycopy(replacement.states, 0, states, from, replacement.size);
+			System.arraycopy(replacement.lines, 0, lines, from, replacement.size);
+			size = newSize;
+			for (int i = tail; i < size; i++) {
+				offsets[i] += offsetShift;
+				tokens[i] += tokenShift;
+				lines[i] += lineShift;
+			}
+		}
+		
+		/**
+		 * @return the index of the checkpoint at the offset, or -(insertion point) - 1
+		 */
+		int find(int offset) {
+			return Arrays.binarySearch(offsets, 0, size, offset);
+		}
+	}
+	
+	private final ReusableInputStream input = new ReusableInputStream();
+	private final CFSCRIPTLexer lexer = new CFSCRIPTLexer(input);
+	private final TokenBuffer tokens = new TokenBuffer();
+	private final Checkpoints checkpoints = new Checkpoints();
+	/** the lexer states seen so far, each the mode followed by the mode stack */
+	private final List<int[]> states = new ArrayList<int[]>();
+	private int lastState = -1;
+	
+	// what a relex made, spliced in when it is done
+	private final TokenBuffer relexed = new TokenBuffer(64);
+	private final Checkpoints relexedCheckpoints = new Checkpoints();
+	
+	private int damageStart;
+	private int damageEnd;
+	
+	/**
+	 * @param script
+	 *            the text to start with
+	 */
+	public IncrementalTokenizer(CharSequence script) {
+		lexer.setTokenFactory(new ReusedTokenFactory());
+		lexer.removeErrorListeners();
+		input.reset(script);
+		lexer.reset();
+		checkpoints.add(0, 0, state(), lexer.getLine());
+		relex(0, Integer.MAX_VALUE, 0);
+	}
+	
+	/**
+	 * Replaces part of the text and updates the tokens.
+	 *
+	 * @param offset
+	 *            where the edit starts
+	 * @param removed
+	 *            the number of characters removed there
+	 * @param inserted
+	 *            the text inserted in their place
+	 */
+	public void edit(int offset, int removed, CharSequence inserted) {
+		if (offset < 0 || removed < 0 || offset + removed > input.size()) {
+			throw new IllegalArgumentException(
+					"Edit of " + removed + " at " + offset + " outside of the text of length " + input.size());
+		}
+		input.replace(offset, removed, inserted);
+		int start = checkpoints.find(offset);
+		// the last checkpoint before the edit, then one more
+		start = start >= 0 ? start - 1 : -start - 2;
+		start = Math.max(start - 1, 0);
+		relex(start, offset + inserted.length(), inserted.length() - removed);
+	}
+	
+	/**
+	 * Lexes from a checkpoint until the lexer is back in step with the old tokens, at a checkpoint at or after
+	 * syncFrom, or at the end.
+	 *
+	 * @param start
+	 *            the checkpoint to start at
+	 * @param syncFrom
+	 *            the first offset, in the new text, the old tokens can be picked up again at
+	 * @param shift
+	 *            how much the text after the edit moved
+	 */
+	private void relex(int start, int syncFrom, int shift) {
+		restore(start);
+		relexed.clear();
+		relexedCheckpoints.size = 0;
+		relexedCheckpoints.add(checkpoints.offsets[start], checkpoints.tokens[start], checkpoints.states[start],
+				checkpoints.lines[start]);
+		int firstToken = checkpoints.tokens[start];
+		damageStart = checkpoints.offsets[start];
+		int previousLine = -1;
+		while (true) {
+			int position = input.index();
+			int line = lexer.getLine();
+			int state = state();
+			Token token = lexer.nextToken();
+			if (token.getType() == Token.EOF) {
+				tokens.replace(firstToken, tokens.size(), relexed, 0);
+				checkpoints.replace(start, checkpoints.size, relexedCheckpoints, 0, 0, 0);
+				damageEnd = input.size();
+				return;
+			}
+			if (previousLine >= 0 && token.getLine() > previousLine) {
+				// the first token of a line
+				int old = position >= syncFrom ? checkpoints.find(position - shift) : -1;
+				if (old > start && checkpoints.states[old] == state) {
+					int oldToken = checkpoints.tokens[old];
+					int tokenShift = firstToken + relexed.size() - oldToken;
+					tokens.replace(firstToken, oldToken, relexed, shift);
+					checkpoints.replace(start, old, relexedCheckpoints, shift, tokenShift,
+							line - checkpoints.lines[old]);
+					damageEnd = position;
+					return;
+				}
+				relexedCheckpoints.add(position, firstToken + relexed.size(), state, line);
+			}
+			previousLine = token.getLine();
+			relexed.add(token.getType(), token.getStartIndex(), token.getStopIndex(), token.getChannel());
+		}
+	}
+	
+	/**
+	 * Puts the lexer where it was at a checkpoint.
+	 */
+	private void restore(int checkpoint) {
+		lexer.reset();
+		input.seek(checkpoints.offsets[checkpoint]);
+		int[] state = states.get(checkpoints.states[checkpoint]);
+		lexer._mode = state[0];
+		for (int i = 1; i < state.length; i++) {
+			lexer._modeStack.push(state[i]);
+		}
+		lexer.setLine(checkpoints.lines[checkpoint]);
+		lexer.setCharPositionInLine(0);
+	}
+	
+	/**
+	 * @return the index of the current state of the lexer in the states seen so far
+	 */
+	private int state() {
+		if (lastState >= 0 && isState(states.get(lastState))) {
+			return lastState;
+		}
+		for (int i = 0; i < states.size(); i++) {
+			if (isState(states.get(i))) {
+				lastState = i;
+				return i;
+			}
+		}
+		IntegerStack stack = lexer._modeStack;
+		int[] state = new int[stack.size() + 1];
+		state[0] = lexer._mode;
+		for (int i = 0; i < stack.size(); i++) {
+			state[i + 1] = stack.get(i);
+		}
+		states.add(state);
+		lastState = states.size() - 1;
+		return lastState;
+	}
+	
+	private boolean isState(int[] state) {
+		IntegerStack stack = lexer._modeStack;
+		if (state[0] != lexer._mode || state.length != stack.size() + 1) {
+			return false;
+		}
+		for (int i = 0; i < stack.size(); i++) {
+			if (state[i + 1] != stack.get(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * @return the tokens of the current text; the same buffer after every edit
+	 */
+	public TokenBuffer getTokens() {
+		return tokens;
+	}
+	
+	public String getText() {
+		return input.text();
+	}
+	
+	/**
+	 * @return the number of line checkpoints
+	 */
+	public int getCheckpointCount() {
+		return checkpoints.size;
+	}
+	
+	/**
+	 * @return the offset the last edit started relexing at
+	 */
+	public int getDamageStart() {
+		return damageStart;
+	}
+	
+	/**
+	 * @return the offset the last edit stopped relexing at; the tokens from there on are the ones from before the edit
+	 */
+	public int getDamageEnd() {
+		return damageEnd;
+	}
+}
@@ -1,24 +1,48 @@
 package cfml.parsing.util;
 
-import java.io.CharArrayWriter;
-
-/**
- * This class filters out strings containing pound signs replacing them with
- * concatenation. 
- *
- * Also removes the quotes from a string with only one 
- */
-
 import java.io.FilterReader;
 import java.io.IOException;
 import java.io.Reader;
+import java.util.Arrays;
 
+/**
+ * This class filters out strings containing pound signs replacing them with concatenation.
+ *
+ * Also removes the quotes from a string with only one pound sign expression in it.
+ *
+ * The input is read in blocks, runs of plain code are copied straight from them, and strings and comments are
+ * filtered into one buffer that is reused for all of them. Like a {@link java.lang.StringBuilder}, the filter is not
+ * synchronized; a reader is meant for one thread. {@link #getInputOffset(int)} maps an offset of the output back to
+ * the input.
+ */
 public class PoundSignFilterStream extends FilterReader {
 	
-	char[] buffer = null;
-	int bufferAt;
-	int nextChar;
-	boolean temp = false;
+	private static final int BLOCK = 8192;
+	
+	/** the block of input being filtered */
+	private final char[] input = new char[BLOCK];
+	private int inputAt;
+	private int inputLength;
+	/** the character after the ones filtered so far, and its offset in the input */
+	private int nextChar;
+	private int position = -1;
+	
+	/** a filtered string or comment, with the input offset of each of its characters */
+	private char[] text = new char[256];
+	private int[] sources = new int[256];
+	private int textLength;
+	private int textAt;
+	
+	/**
+	 * The offset map, from the output back to the input: runs that start at outputs[i] in the output and at inputs[i]
+	 * in the input.
+	 */
+	private int[] outputs = new int[16];
+	private int[] inputs = new int[16];
+	private int runs;
+	private int outputOffset;
+	private int lastSource = -2;
+	
 	int added; // keeps a count of the adjustment in length of the input vs
 	// output
 	private boolean isClosed;
@@ -30,85 +54,170 @@ public class PoundSignFilterStream extends FilterReader {
 	}
 	
 	@Override
-	synchronized public int read() throws IOException {
-		// if the buffer is empty then
-		if (buffer == null) {
-			int returnChar;
-			// if it's the start of a comment then read it into the buffer
-			if (nextChar == '/') {
-				readChar();
-				if (nextChar == '*') {
-					buffer = readComment();
-					bufferAt = 0;
-				} else if (nextChar == '/') {
-					buffer = readLineComment();
-					bufferAt = 0;
-				}
-				returnChar = '/'; // in all cases
-				// if it's the start of a string then read the string into the
-				// buffer
-			} else if (nextChar == '"' || nextChar == '\'') {
-				buffer = readString(true);
-				bufferAt = 1;
-				returnChar = buffer[0];
-				if (buffer.length == 1)
-					buffer = null;
-			} else { // else return the next char in the stream
-				returnChar = nextChar;
-				readChar();
-			}
-			
-			return returnChar;
-			
-		} else { /* buffer isn't empty so return next char from it */
-			int bufferChar = buffer[bufferAt];
-			bufferAt++;
-			if (bufferAt >= buffer.length)
-				buffer = null;
-			
-			return bufferChar;
+	public int read() throws IOException {
+		if (textAt < textLength) {
+			return emit(textAt++);
 		}
-		
+		return filter();
 	}
 	
 	@Override
-	synchronized public int read(char[] cbuf, int off, int len) throws IOException {
-		int offset = off;
+	public int read(char[] cbuf, int off, int len) throws IOException {
 		int actualLen = 0;
-		int nextChar = -1;// = read();
-		
-		// note that read() is used as opposed to readChar() so that the #
-		// filtering
-		// is performed at that level
-		
-		while (actualLen < len && ((nextChar = read()) != -1)) {
-			cbuf[offset] = (char) nextChar;
-			actualLen++;
-			offset++;
+		while (actualLen < len) {
+			if (textAt < textLength) {
+				// the rest of a string or comment
+				int count = Math.min(len - actualLen, textLength - textAt);
+				System.arraycopy(text, textAt, cbuf, off + actualLen, count);
+				for (int i = 0; i < count; i++) {
+					map(sources[textAt + i]);
+				}
+				textAt += count;
+				actualLen += count;
+			} else if (nextChar == -1) {
+				break;
+			} else if (isPlain(nextChar)) {
+				// a run of plain code, copied from the input as it is
+				map(position);
+				cbuf[off + actualLen++] = (char) nextChar;
+				int count = 0;
+				int max = Math.min(len - actualLen, inputLength - inputAt);
+				while (count < max && isPlain(input[inputAt + count])) {
+					count++;
+				}
+				System.arraycopy(input, inputAt, cbuf, off + actualLen, count);
+				actualLen += count;
+				inputAt += count;
+				position += count;
+				lastSource += count;
+				outputOffset += count;
+				readChar();
+			} else {
+				cbuf[off + actualLen++] = (char) filter();
+			}
 		}
 		
-		if (nextChar == -1 && actualLen == 0) {
+		if (actualLen == 0 && len > 0) {
 			return -1;
 		}
 		
 		return actualLen;
 	}
 	
+	private static boolean isPlain(int c) {
+		return c != '/' && c != '"' && c != '\'';
+	}
+	
+	/**
+	 * @return the next character of the output, reading a string or comment into the text buffer if one starts there
+	 */
+	private int filter() throws IOException {
+		textAt = 0;
+		textLength = 0;
+		int returnChar;
+		// if it's the start of a comment then read it into the buffer
+		if (nextChar == '/') {
+			int slash = position;
+			readChar();
+			if (nextChar == '*') {
+				readComment();
+			} else if (nextChar == '/') {
+				readLineComment();
+			}
+			map(slash);
+			returnChar = '/'; // in all cases
+			// if it's the start of a string then read the string into the
+			// buffer
+		} else if (nextChar == '"' || nextChar == '\'') {
+			readString(true);
+			textAt = 1;
+			returnChar = emit(0);
+		} else if (nextChar == -1) {
+			return -1;
+		} else { // else return the next char in the stream
+			map(position);
+			returnChar = nextChar;
+			readChar();
+		}
+		return returnChar;
+	}
+	
+	/**
+	 * @return character i of the text buffer, noted in the offset map
+	 */
+	private int emit(int i) {
+		map(sources[i]);
+		return text[i];
+	}
+	
 	/**
-	 * reads in the whole string from the input stream and does the following before putting it in the buffer: - removes
-	 * escaped single and double quotes, and pound signs - replaces embedded pound sign expression within the string
-	 * with a string concatentation with the function/variable
-	 * 
+	 * Notes that the next character of the output comes from the given offset of the input.
+	 */
+	private void map(int source) {
+		if (source != lastSource + 1) {
+			if (runs == outputs.length) {
+				outputs = Arrays.copyOf(outputs, runs * 2);
+				inputs = Arrays.copyOf(inputs, runs * 2);
+			}
+			outputs[runs] = outputOffset;
+			inputs[runs] = source;
+			runs++;
+		}
+		lastSource = source;
+		outputOffset++;
+	}
+	
+	/**
+	 * Maps an offset of the output back to the input. The characters of a pound sign expression map to where they were
+	 * in the string; the quotes and &amp; the filter puts around it map to the pound signs.
+	 *
+	 * @param outputOffset
+	 *            the offset of a character read from this stream
+	 * @return the offset in the input of the character it came from
+	 */
+	public int getInputOffset(int outputOffset) {
+		int i = Arrays.binarySearch(outputs, 0, runs, outputOffset);
+		if (i < 0) {
+			i = -i - 2;
+		}
+		if (i < 0) {
+			return outputOffset;
+		}
+		return inputs[i] + outputOffset - outputs[i];
+	}
+	
+	private void append(int c, int source) {
+		if (textLength == text.length) {
+			text = Arrays.copyOf(text, textLength * 2);
+			sources = Arrays.copyOf(sources, textLength * 2);
+		}
+		text[textLength] = (char) c;
+		sources[textLength] = source;
+		textLength++;
+	}
+	
+	/**
+	 * Moves the characters of the text buffer from one place to another, over the ones there.
+	 */
+	private void move(int from, int to, int length) {
+		System.arraycopy(text, from, text, to, length);
+		System.arraycopy(sources, from, sources, to, length);
+	}
+	
+	/**
+	 * reads in the whole string from the input stream and does the following before putting it at the end of the text
+	 * buffer: - removes escaped single and double quotes, and pound signs - replaces embedded pound sign expression
+	 * within the string with a string concatentation with the function/variable
+	 *
 	 * @param _withinExpression
 	 *            if true then this indicates that the string is within an expression so in the case "#poundsignexpr#",
 	 *            it will be reduced to poundsignexpr as opposed to #poundsignexpr# as it would do normally
 	 */
 	
-	private char[] readString(boolean _withinExpression) throws IOException {
-		CharArrayWriter cout = new CharArrayWriter(); // might want to share
-		// this
+	private void readString(boolean _withinExpression) throws IOException {
+		int start = textLength;
 		int endMarker = nextChar;
-		cout.write(endMarker); // write the " or ' surrounding the string
+		append(endMarker, position); // write the " or ' surrounding the string
 		
 		readChar();
 		
@@ -116,109 +225,93 @@ public class PoundSignFilterStream extends FilterReader {
 			
 			// if next character is start of a pound sign expression
 			if (nextChar == '#') {
+				int pound = position;
 				readChar(); // skip the pound sign
 				// is it an escape char
 				if (nextChar == '#') {
 					// escape it - i.e. don't add it onto the stream
 					added--;
-					cout.write('#');
+					append('#', pound);
 					readChar();
 					continue;
-				} else { // # followed by non-#
-					cout.write(endMarker);
-					cout.write('&'); // instead of the pound sign
-					
-					// copy these and write them to a new buffer with pound
-					// signs if the
-					// next char is
-					// a # and the char after that is a endMarker and the one
-					// after that
-					// isn't an end marker
-					CharArrayWriter expression = new CharArrayWriter();
-					while (nextChar != '#' && nextChar != -1) {
-						if (nextChar == '\'' || nextChar == '"') {
-							expression.write(readString(true));
-						} else {
-							expression.write(nextChar);
-							readChar();
-						}
-						
+				}
+				// # followed by non-#
+				append(endMarker, pound);
+				append('&', pound); // instead of the pound sign
+				
+				// the expression follows in the buffer, so that a string within it is read right after it
+				int expression = textLength;
+				while (nextChar != '#' && nextChar != -1) {
+					if (nextChar == '\'' || nextChar == '"') {
+						readString(true);
+					} else {
+						append(nextChar, position);
+						readChar();
 					}
+				}
+				
+				// now add the appropriate &" or whatever
+				if (nextChar != '#') {
+					throw new PoundSignFilterStreamException("Invalid string expression - unclosed '#' expression");
+				}
+				int closing = position;
+				readChar(); // skip it
+				
+				if (nextChar != endMarker) {
+					append('&', closing);
+					append(endMarker, closing);
+					added += 2;
+				} else {
+					int quote = position;
+					readChar();
 					
-					// now add the appropriate &" or whatever
-					if (nextChar == '#') {
-						readChar(); // skip it
-						
-						if (nextChar != endMarker) {
-							expression.writeTo(cout);
-							cout.write('&');
-							cout.write(endMarker);
-							added += 2;
-						} else {
-							readChar();
-							
-							if (nextChar != endMarker) {
-								if (cout.size() == 3) {
-									if (!_withinExpression) {
-										cout.reset();
-										cout.write('#');
-										expression.writeTo(cout);
-										cout.write('#');
-										added++;
-										return cout.toCharArray();
-										
-									} else { // nextChar != endMarker &&
-										// cout.size() == 3 &&
-										// withinExpression
-										cout.reset();
-										expression.writeTo(cout);
-										added -= 4;
-										return cout.toCharArray();
-									}
-								} else { // nextChar != endMarker
-									
-									// end of string found
-									added--;
-									expression.writeTo(cout);
-									return cout.toCharArray();
-								}
+					if (nextChar != endMarker) {
+						int length = textLength - expression;
+						if (expression - start == 3) {
+							if (!_withinExpression) {
+								text[start] = '#';
+								sources[start] = pound;
+								move(expression, start + 1, length);
+								textLength = start + 1 + length;
+								append('#', closing);
+								added++;
 							} else {
-								expression.writeTo(cout);
-								cout.write('&');
-								cout.write(endMarker);
-								cout.write(endMarker); // want to write the
-								// escaped end marker
-								// here
-								cout.write(endMarker); // else won't be escaped
-								// properly if
-								// allow it to pass thru
-								added += 2;
-								readChar();
+								move(expression, start, length);
+								textLength = start + length;
+								added -= 4;
 							}
+						} else {
+							// end of string found
+							added--;
 						}
-					} else {
-						// throw an exception
-						throw new PoundSignFilterStreamException("Invalid string expression - unclosed '#' expression");
+						return;
 					}
-					
+					append('&', closing);
+					// want to write the escaped end marker here, else it won't be escaped properly if allowed to
+					// pass thru
+					append(endMarker, closing);
+					append(endMarker, quote);
+					append(endMarker, position);
+					added += 2;
+					readChar();
 				}
 				
 				// else if reached endmarker - could be quote or double quote
 			} else if (nextChar == endMarker) {
+				int quote = position;
 				readChar();
 				// is it an escape char; if so carry on
 				if (nextChar == endMarker) {
-					cout.write(endMarker);
-					cout.write(endMarker);
+					append(endMarker, quote);
+					append(endMarker, position);
 					readChar();
 				} else { // else return the read string
-					cout.write(endMarker);
-					
-					return cout.toCharArray();
+					append(endMarker, quote);
+					return;
 				}
 				// else, just a regular char; add it to the string being read
 			} else {
-				cout.write(nextChar);
+				append(nextChar, position);
 				readChar();
 			}
 		}
@@ -236,38 +329,43 @@ public class PoundSignFilterStream extends FilterReader {
 		if (this.isClosed) {
 			return -1;
 		}
-		nextChar = in.read();
+		if (inputAt == inputLength) {
+			int read = in.read(input, 0, BLOCK);
+			if (read <= 0) {
+				nextChar = -1;
+				return -1;
+			}
+			inputAt = 0;
+			inputLength = read;
+		}
+		position++;
+		nextChar = input[inputAt++];
 		return nextChar;
 	}
 	
-	private char[] readComment() throws IOException {
-		CharArrayWriter cout = new CharArrayWriter();
-		boolean endComment = false;
-		cout.write('*');
+	private void readComment() throws IOException {
+		append('*', position);
 		readChar(); // read in the '*'
-		while (!endComment && nextChar != -1) {
-			cout.write(nextChar);
+		while (nextChar != -1) {
+			append(nextChar, position);
 			if (nextChar == '*') {
 				readChar();
 				if (nextChar == '/') {
-					cout.write('/');
+					append('/', position);
 					readChar();
-					endComment = true;
+					return;
 				}
 			} else {
 				readChar();
 			}
 		}
-		return cout.toCharArray();
 	}
 	
-	private char[] readLineComment() throws IOException {
-		CharArrayWriter cout = new CharArrayWriter();
+	private void readLineComment() throws IOException {
 		while (nextChar != '\r' && nextChar != '\n' && nextChar != -1) {
-			cout.write(nextChar);
+			append(nextChar, position);
 			readChar();
 		}
-		return cout.toCharArray();
 	}
 	
 	public int getAdded() {
@@ -309,9 +407,9 @@ public class PoundSignFilterStream extends FilterReader {
 				// TODO Auto-generated catch block
 				e.printStackTrace();
 			}
-			
-		}
 		
-	}
+		}
 	
+	}
+
 }
@@ -0,0 +1,119 @@
+package cfml.parsing.util;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.IntStream;
+import org.antlr.v4.runtime.misc.Interval;
+
+/**
+ * An input stream whose characters can be replaced or edited, without making a new stream and copying the whole text.
+ */
+class ReusableInputStream implements CharStream {
+	
+	private char[] data = new char[1024];
+	/** the number of characters in data */
+	private int n;
+	/** the index of the next character to read */
+	private int p;
+	
+	/**
+	 * Replaces the whole text and rewinds.
+	 */
+	void reset(CharSequence input) {
+		n = 0;
+		replace(0, 0, input);
+		p = 0;
+	}
+	
+	/**
+	 * Replaces removed characters at offset with inserted.
+	 */
+	void replace(int offset, int removed, CharSequence inserted) {
+		int length = inserted.length();
+		int size = n - removed + length;
+		if (data.length < size) {
+			char[] grown = new char[Math.max(size, data.length * 2)];
+			System.arraycopy(data, 0, grown, 0, n);
+			data = grown;
+		}
+		System.arraycopy(data, offset + removed, data, offset + length, n - offset - removed);
+		if (inserted instanceof String) {
+			((String) inserted).getChars(0, length, data, offset);
+		} else {
+			for (int i = 0; i < length; i++) {
+				data[offset + i] = inserted.charAt(i);
+			}
+		}
+		n = size;
+	}
+	
+	String text() {
+		return new String(data, 0, n);
+	}
+	
+	@Override
+	public void consume() {
+		if (p >= n) {
+			throw new IllegalStateException("cannot consume EOF");
+		}
+		p++;
+	}
+	
+	@Override
+	public int LA(int i) {
+		if (i == 0) {
+			return 0; // undefined
+		}
+		int index = i < 0 ? p + i : p + i - 1;
+		if (index < 0 || index >= n) {
+			return IntStream.EOF;
+		}
+		return data[index];
+	}
+	
+	/**
+	 * The whole text stays in the buffer, so there is nothing to mark.
+	 */
+	@Override
+	public int mark() {
+		return -1;
+	}
+	
+	@Override
+	public void release(int marker) {
+	}
+	
+	@Override
+	public int index() {
+		return p;
+	}
+	
+	@Override
+	public void seek(int index) {
+		p = Math.min(index, n);
+	}
+	
+	@Override
+	public int size() {
+		return n;
+	}
+	
+	@Override
+	public String getSourceName() {
+		return IntStream.UNKNOWN_SOURCE_NAME;
+	}
+	
+	@Override
+	public String getText(Interval interval) {
+		int start = interval.a;
+		int stop = Math.min(interval.b, n - 1);
+		if (start >= n || stop < start) {
+			return "";
+		}
+		return new String(data, start, stop - start + 1);
+	}
+	
+	@Override
+	public String toString() {
+		return text();
+	}
+}
@@ -0,0 +1,38 @@
+package cfml.parsing.util;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CommonToken;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenFactory;
+import org.antlr.v4.runtime.TokenSource;
+import org.antlr.v4.runtime.misc.Pair;
+
+/**
+ * Hands out the same token every time, for lexers whose tokens are copied into a {@link TokenBuffer} right away. The
+ * token has no text, only the ints of a token.
+ */
+class ReusedTokenFactory implements TokenFactory<Token> {
+	
+	private final CommonToken token = new CommonToken(Token.INVALID_TYPE);
+	
+	@Override
+	public Token create(Pair<TokenSource, CharStream> source, int type, String text, int channel, int start, int stop,
+			int line, int charPositionInLine) {
+		token.setType(type);
+		token.setChannel(channel);
+		token.setStartIndex(start);
+		token.setStopIndex(stop);
+		token.setLine(line);
+		token.setCharPositionInLine(charPositionInLine);
+		return token;
+	}
+	
+	@Override
+	public Token create(int type, String text) {
+		token.setType(type);
+		token.setChannel(Token.DEFAULT_CHANNEL);
+		token.setStartIndex(-1);
+		token.setStopIndex(-1);
+		return token;
+	}
+}
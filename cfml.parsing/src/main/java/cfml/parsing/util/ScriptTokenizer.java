@@ -0,0 +1,61 @@
+package cfml.parsing.util;
+
+import org.antlr.v4.runtime.Token;
+
+import cfml.CFSCRIPTLexer;
+
+/**
+ * Runs the CFScript lexer for token types and spans only, for highlighting and other uses that do not need a parse.
+ *
+ * {@link cfml.parsing.CFMLParser#createTokenStream(String)} makes a token object per token. This lexer instead hands
+ * out one token it reuses, and {@link #tokenize(CharSequence, TokenBuffer)} copies each into a {@link TokenBuffer}.
+ * The input characters go into a buffer kept between calls too, so once the lexer has seen the kinds of input it is
+ * given and its buffers are large enough, tokenizing allocates next to nothing. Skipped tokens, like white space, are
+ * not in the buffer; hidden ones, like comments, are, with their channel.
+ *
+ * A tokenizer is not thread safe, use one per thread.
+ *
+ * <pre>
+ * ScriptTokenizer tokenizer = new ScriptTokenizer();
+ * TokenBuffer tokens = new TokenBuffer();
+ * tokenizer.tokenize(source, tokens);
+ * for (int i = 0; i &lt; tokens.size(); i++) {
+ * 	highlight(tokens.getType(i), tokens.getStart(i), tokens.getStop(i) + 1);
+ * }
+ * </pre>
+ */
+public final class ScriptTokenizer {
+	
+	private final ReusableInputStream input = new ReusableInputStream();
+	private final CFSCRIPTLexer lexer = new CFSCRIPTLexer(input);
+	
+	public ScriptTokenizer() {
+		lexer.setTokenFactory(new ReusedTokenFactory());
+		lexer.removeErrorListeners();
+	}
+	
+	/**
+	 * @param script
+	 * @return the tokens of the script
+	 */
+	public TokenBuffer tokenize(CharSequence script) {
+		return tokenize(script, new TokenBuffer(Math.max(script.length() / 4, 16)));
+	}
+	
+	/**
+	 * Clears the buffer and fills it with the tokens of the script, without the end of file token.
+	 *
+	 * @param script
+	 * @param buffer
+	 * @return the buffer
+	 */
+	public TokenBuffer tokenize(CharSequence script, TokenBuffer buffer) {
+		input.reset(script);
+		lexer.reset();
+		buffer.clear();
+		for (Token token = lexer.nextToken(); token.getType() != Token.EOF; token = lexer.nextToken()) {
+			buffer.add(token.getType(), token.getStartIndex(), token.getStopIndex(), token.getChannel());
+		}
+		return buffer;
+	}
+}
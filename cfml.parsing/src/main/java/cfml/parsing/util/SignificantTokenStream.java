@@ -0,0 +1,135 @@
+package cfml.parsing.util;
+
+import java.util.BitSet;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.Lexer;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenFactory;
+import org.antlr.v4.runtime.TokenSource;
+import org.antlr.v4.runtime.misc.Pair;
+
+import cfml.CFSCRIPTLexer;
+
+/**
+ * A token stream of the significant tokens of a script only, for analysis that does not need to give back the source.
+ *
+ * The CFScript lexer puts line breaks and comments on hidden channels, and a {@link CommonTokenStream} keeps them all,
+ * which for well formatted code is most of its tokens. This stream drops them as they are lexed, and does not even
+ * make objects of them. The parser only needs them to tell whether a line break ends a statement without a semicolon,
+ * which it asks {@link #isNewlineAfter(int)} instead: a bitmap, by token index, of the tokens a line break directly
+ * follows. The parse is the same as of a {@link CommonTokenStream}; what is missing are the hidden tokens, for
+ * instance to {@link #getHiddenTokensToLeft(int)}, and the token indexes, which count significant tokens only.
+ *
+ * <pre>
+ * CFSCRIPTLexer lexer = new CFSCRIPTLexer(new ANTLRInputStream(source));
+ * CFSCRIPTParser parser = new CFSCRIPTParser(new SignificantTokenStream(lexer));
+ * </pre>
+ */
+public class SignificantTokenStream extends CommonTokenStream {
+	
+	/**
+	 * Makes the tokens of the lexer it had, but only one reused token for all of the hidden ones.
+	 */
+	private static final class HiddenTokenFactory implements TokenFactory<Token> {
+		private final TokenFactory<?> factory;
+		private final ReusedTokenFactory hidden = new ReusedTokenFactory();
+		
+		HiddenTokenFactory(TokenFactory<?> factory) {
+			this.factory = factory;
+		}
+		
+		@Override
+		public Token create(Pair<TokenSource, CharStream> source, int type, String text, int channel, int start,
+				int stop, int line, int charPositionInLine) {
+			if (channel == Token.DEFAULT_CHANNEL) {
+				return factory.create(source, type, text, channel, start, stop, line, charPositionInLine);
+			}
+			return hidden.create(source, type, text, channel, start, stop, line, charPositionInLine);
+		}
+		
+		@Override
+		public Token create(int type, String text) {
+			return factory.create(type, text);
+		}
+	}
+	
+	/**
+	 * The tokens of the default channel of a lexer, noting the line breaks after them.
+	 */
+	private static final class SignificantTokenSource implements TokenSource {
+		private final Lexer lexer;
+		private final BitSet newlines = new BitSet();
+		private int count;
+		private boolean afterSignificant;
+		
+		SignificantTokenSource(Lexer lexer) {
+			this.lexer = lexer;
+			lexer.setTokenFactory(new HiddenTokenFactory(lexer.getTokenFactory()));
+		}
+		
+		@Override
+		public Token nextToken() {
+			while (true) {
+				Token token = lexer.nextToken();
+				if (token.getChannel() == Token.DEFAULT_CHANNEL) {
+					count++;
+					afterSignificant = true;
+					return token;
+				}
+				if (afterSignificant && token.getType() == CFSCRIPTLexer.NEWLINE) {
+					newlines.set(count - 1);
+				}
+				afterSignificant = false;
+			}
+		}
+		
+		@Override
+		public int getLine() {
+			return lexer.getLine();
+		}
+		
+		@Override
+		public int getCharPositionInLine() {
+			return lexer.getCharPositionInLine();
+		}
+		
+		@Override
+		public CharStream getInputStream() {
+			return lexer.getInputStream();
+		}
+		
+		@Override
+		public String getSourceName() {
+			return lexer.getSourceName();
+		}
+		
+		@Override
+		public void setTokenFactory(TokenFactory<?> factory) {
+			lexer.setTokenFactory(new HiddenTokenFactory(factory));
+		}
+		
+		@Override
+		public TokenFactory<?> getTokenFactory() {
+			return lexer.getTokenFactory();
+		}
+	}
+	
+	/**
+	 * @param lexer
+	 *            a CFScript lexer, whose token factory is then wrapped to not make the hidden tokens
+	 */
+	public SignificantTokenStream(Lexer lexer) {
+		super(new SignificantTokenSource(lexer));
+	}
+	
+	/**
+	 * @param index
+	 *            the index of a token of this stream
+	 * @return true if a line break directly follows the token, with no comment in between
+	 */
+	public boolean isNewlineAfter(int index) {
+		return index >= 0 && ((SignificantTokenSource) tokenSource).newlines.get(index);
+	}
+}
@@ -0,0 +1,117 @@
+package cfml.parsing.util;
+
+import java.util.Arrays;
+
+/**
+ * Tokens packed into an int array, four ints per token: type, start index, stop index (inclusive) and channel, as
+ * {@link org.antlr.v4.runtime.Token} has them. There are no objects per token, and a buffer can be cleared and filled
+ * again without allocating once it is large enough.
+ *
+ * @see ScriptTokenizer
+ */
+public final class TokenBuffer {
+	
+	/** the number of ints per token */
+	public static final int STRIDE = 4;
+	public static final int TYPE = 0;
+	public static final int START = 1;
+	public static final int STOP = 2;
+	public static final int CHANNEL = 3;
+	
+	private int[] data;
+	private int size;
+	
+	public TokenBuffer() {
+		this(256);
+	}
+	
+	/**
+	 * @param capacity
+	 *            the number of tokens there is room for before the buffer grows
+	 */
+	public TokenBuffer(int capacity) {
+		data = new int[Math.max(capacity, 1) * STRIDE];
+	}
+	
+	/**
+	 * @return the number of tokens
+	 */
+	public int size() {
+		return size;
+	}
+	
+	public void clear() {
+		size = 0;
+	}
+	
+	public void add(int type, int start, int stop, int channel) {
+		int at = size * STRIDE;
+		if (at == data.length) {
+			data = Arrays.copyOf(data, data.length * 2);
+		}
+		data[at + TYPE] = type;
+		data[at + START] = start;
+		data[at + STOP] = stop;
+		data[at + CHANNEL] = channel;
+		size++;
+	}
+	
+	/**
+	 * Replaces the tokens from from to to (exclusive) with those of replacement, and moves the tokens after them by
+	 * shift characters.
+	 */
+	void replace(int from, int to, TokenBuffer replacement, int shift) {
+		int newSize = size - (to - from) + replacement.size;
+		if (newSize * STRIDE > data.length) {
+			data = Arrays.copyOf(data, Math.max(newSize * STRIDE, data.length * 2));
+		}
+		int tail = (from + replacement.size) * STRIDE;
+		System.arraycopy(data, to * STRIDE, data, tail, (size - to) * STRIDE);
+		System.arraycopy(replacement.data, 0, data, from * STRIDE, replacement.size * STRIDE);
+		size = newSize;
+		if (shift != 0) {
+			for (int at = tail; at < size * STRIDE; at += STRIDE) {
+				data[at + START] += shift;
+				data[at + STOP] += shift;
+			}
+		}
+	}
+	
+	public int getType(int i) {
+		return get(i, TYPE);
+	}
+	
+	public int getStart(int i) {
+		return get(i, START);
+	}
+	
+	public int getStop(int i) {
+		return get(i, STOP);
+	}
+	
+	public int getChannel(int i) {
+		return get(i, CHANNEL);
+	}
+	
+	private int get(int i, int field) {
+		if (i < 0 || i >= size) {
+			throw new IndexOutOfBoundsException("Token " + i + " of " + size);
+		}
+		return data[i * STRIDE + field];
+	}
+	
+	/**
+	 * @return the backing array, token i at i * {@link #STRIDE}; only the first {@link #size()} tokens are valid, and
+	 *         the array is replaced when the buffer grows
+	 */
+	public int[] getData() {
+		return data;
+	}
+	
+	/**
+	 * @return a copy of the packed tokens, exactly {@link #size()} * {@link #STRIDE} long
+	 */
+	public int[] toArray() {
+		return Arrays.copyOf(data, size * STRIDE);
+	}
+}
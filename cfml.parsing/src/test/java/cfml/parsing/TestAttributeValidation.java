@@ -0,0 +1,68 @@
+package cfml.parsing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestAttributeValidation {
+	
+	private CFMLParser fCfmlParser;
+	
+	@Before
+	public void setUp() throws Exception {
+		fCfmlParser = new CFMLParser();
+	}
+	
+	private void validate(String cfml) {
+		fCfmlParser.parseElements(fCfmlParser.addCFMLSource("test.cfm", cfml));
+	}
+	
+	@Test
+	public void testValidTag() {
+		validate("<cffile action=\"read\" file=\"x.txt\" variable=\"content\">");
+		assertEquals(fCfmlParser.printMessages(), 0, fCfmlParser.getMessages().size());
+	}
+	
+	@Test
+	public void testCompulsoryAttribute() {
+		validate("<cfparam default=\"1\">");
+		assertEquals(1, fCfmlParser.getMessages().size());
+		assertTrue(fCfmlParser.printMessages(), fCfmlParser.printMessages().contains("'name' is compulsory for the <cfparam>"));
+	}
+	
+	@Test
+	public void testTriggeredAttribute() {
+		validate("<cffile action=\"move\" source=\"a.txt\">");
+		assertEquals(1, fCfmlParser.getMessages().size());
+		assertTrue(fCfmlParser.printMessages(), fCfmlParser.printMessages().contains("'destination' is required for the <cffile>"));
+	}
+	
+	@Test
+	public void testAttributeNotTriggered() {
+		validate("<cffile action=\"move\" source=\"a.txt\" destination=\"b.txt\" variable=\"content\">");
+		assertEquals(1, fCfmlParser.getMessages().size());
+		assertTrue(fCfmlParser.printMessages(), fCfmlParser.printMessages().contains("'variable' is not valid for the <cffile>"));
+	}
+	
+	@Test
+	public void testExpressionValueIsNotChecked() {
+		validate("<cffile action=\"#fileAction#\" source=\"a.txt\" variable=\"content\">");
+		assertEquals(fCfmlParser.printMessages(), 0, fCfmlParser.getMessages().size());
+	}
+	
+	@Test
+	public void testAttributeCollectionIsNotChecked() {
+		validate("<cfparam attributecollection=\"#attrs#\">");
+		assertEquals(fCfmlParser.printMessages(), 0, fCfmlParser.getMessages().size());
+	}
+	
+	@Test
+	public void testMessagePosition() {
+		validate("<cfset x = 1>\n<cfparam default=\"1\">");
+		ParseMessage message = fCfmlParser.getMessages().get(0);
+		assertEquals(2, message.getLineNumber());
+		assertEquals(14, message.getDocStartOffset());
+	}
+}
@@ -0,0 +1,119 @@
+package cfml.parsing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import cfml.parsing.cfscript.CFExpression;
+import cfml.parsing.cfscript.CFFunctionExpression;
+import cfml.parsing.cfscript.CFIdentifier;
+import cfml.parsing.cfscript.script.CFFuncDeclStatement;
+import cfml.parsing.cfscript.script.CFScriptStatement;
+import cfml.parsing.cfscript.walker.CFAstVisitor;
+import cfml.parsing.cfscript.walker.CFAstWalker;
+
+public class TestCFAstWalker {
+	
+	private CFMLParser fCfmlParser;
+	
+	@Before
+	public void setUp() throws Exception {
+		fCfmlParser = new CFMLParser();
+	}
+	
+	private static class FunctionCalls extends CFAstVisitor {
+		final List<String> calls = new ArrayList<String>();
+		
+		@Override
+		public boolean enter(CFFunctionExpression node) {
+			calls.add(node.getFunctionName());
+			return true;
+		}
+	}
+	
+	@Test
+	public void testTypedEnter() throws Exception {
+		CFScriptStatement script = fCfmlParser.parseScript(
+				"switch (a()) { case 1: b(); break; default: c(d()); } try { e(); } catch (any x) { f(); } finally { g(); }");
+		FunctionCalls visitor = new FunctionCalls();
+		CFAstWalker.walk(script, visitor);
+		assertEquals(Arrays.asList("a", "b", "c", "d", "e", "f", "g"), visitor.calls);
+	}
+	
+	@Test
+	public void testEnterAndLeaveNest() throws Exception {
+		CFScriptStatement script = fCfmlParser.parseScript(
+				"component { function f(a = 1) { var x = [1, {b : a.c[2]}]; while (x) { x = new Foo(x ?: 2, -x); } } }");
+		final List<Object> open = new ArrayList<Object>();
+		final int[] count = new int[1];
+		CFAstWalker.walk(script, new CFAstVisitor() {
+			@Override
+			public boolean enterExpression(CFExpression node) {
+				open.add(node);
+				count[0]++;
+				return true;
+			}
+			
+			@Override
+			public void leaveExpression(CFExpression node) {
+				assertTrue(open.remove(open.size() - 1) == node);
+			}
+			
+			@Override
+			public boolean enterStatement(CFScriptStatement node) {
+				open.add(node);
+				count[0]++;
+				return true;
+			}
+			
+			@Override
+			public void leaveStatement(CFScriptStatement node) {
+				assertTrue(open.remove(open.size() - 1) == node);
+			}
+		});
+		assertTrue(open.isEmpty());
+		assertTrue(count[0] > 20);
+	}
+	
+	@Test
+	public void testSkipSubtree() throws Exception {
+		CFScriptStatement script = fCfmlParser.parseScript("a(); function f() { b(); } c(x);");
+		final int[] left = new int[1];
+		final List<String> names = new ArrayList<String>();
+		FunctionCalls visitor = new FunctionCalls() {
+			@Override
+			public boolean enter(CFFuncDeclStatement node) {
+				return false;
+			}
+			
+			@Override
+			public void leave(CFFuncDeclStatement node) {
+				left[0]++;
+			}
+			
+			@Override
+			public boolean enter(CFIdentifier node) {
+				names.add(node.getName());
+				return true;
+			}
+		};
+		CFAstWalker.walk(script, visitor);
+		assertEquals(1, left[0]);
+		assertEquals(Arrays.asList("a", "c"), visitor.calls);
+		assertEquals(Arrays.asList("x"), names);
+	}
+	
+	@Test
+	public void testExpression() throws Exception {
+		CFExpression expression = fCfmlParser.parseCFExpression("a(b(1), c & d())", null);
+		FunctionCalls visitor = new FunctionCalls();
+		CFAstWalker.walk(expression, visitor);
+		assertEquals(Arrays.asList("a", "b", "d"), visitor.calls);
+	}
+}
@@ -0,0 +1,128 @@
+package cfml.parsing;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import cfml.parsing.cfscript.CFIdentifier;
+import cfml.parsing.cfscript.HasToken;
+import cfml.parsing.cfscript.script.CFFuncDeclStatement;
+import cfml.parsing.cfscript.script.CFFunctionParameter;
+import cfml.parsing.cfscript.script.CFScriptStatement;
+import cfml.parsing.cfscript.walker.CFControlFlowGraph;
+import cfml.parsing.cfscript.walker.CFDataflow;
+import cfml.parsing.cfscript.walker.CFSymbolTable;
+
+public class TestCFDataflow {
+	
+	private CFMLParser fCfmlParser;
+	
+	@Before
+	public void setUp() throws Exception {
+		fCfmlParser = new CFMLParser();
+	}
+	
+	private CFDataflow analyze(String body) throws Exception {
+		CFScriptStatement script = fCfmlParser.parseScript("component { function f(required a, b) {" + body + "} }");
+		CFSymbolTable symbols = CFSymbolTable.build(script);
+		CFFuncDeclStatement function = symbols.getScopes().get(0).getFunction();
+		return CFDataflow.analyze(CFControlFlowGraph.build(function), symbols);
+	}
+	
+	private static List<String> names(List<CFIdentifier> ids) {
+		List<String> result = new ArrayList<String>();
+		for (CFIdentifier id : ids) {
+			result.add(id.getName() + "@" + id.getToken().getLine() + ":" + id.getToken().getCharPositionInLine());
+		}
+		return result;
+	}
+	
+	@Test
+	public void testGraph() throws Exception {
+		CFControlFlowGraph graph = analyze("var x = 1; if (a) { x = 2; } else { return x; } while (x) { x--; }")
+				.getGraph();
+		// entry, exit, after if, then, else, while condition, after while, body
+		assertEquals(8, graph.size());
+		int entry = graph.getEntry();
+		assertEquals(2, graph.getElementCount(entry));
+		assertEquals(2, graph.getSuccessors(entry).length);
+		int[] exit = graph.getPredecessors(graph.getExit());
+		assertEquals(2, exit.length);
+		for (int block = 0; block < graph.size(); block++) {
+			for (int successor : graph.getSuccessors(block)) {
+				boolean found = false;
+				for (int predecessor : graph.getPredecessors(successor)) {
+					found |= predecessor == block;
+				}
+				assertTrue(found);
+			}
+		}
+	}
+	
+	@Test
+	public void testUseBeforeAssign() throws Exception {
+		CFDataflow flow = analyze("var x = 0; var y; if (a) { y = 1; } z = y + x + b;\n"
+				+ "var w; try { w = a; } catch (any e) { } return w & e;");
+		List<String> expected = new ArrayList<String>();
+		expected.add("y@1:79");
+		expected.add("w@2:47");
+		// not assigned when nothing is thrown
+		expected.add("e@2:51");
+		assertEquals(expected, names(flow.getUseBeforeAssign()));
+		
+		flow = analyze("var i; for (i = 0; i < 10; i++) { var s = i; } do { var t = 1; } while (t);"
+				+ " var f = function() { return u; }; var u = 1; return f;");
+		assertTrue(flow.getUseBeforeAssign().isEmpty());
+	}
+	
+	@Test
+	public void testDeadStores() throws Exception {
+		CFDataflow flow = analyze("var x = 1; x = 2; var y = x;\n"
+				+ "var n = 0; while (a) { n++; } n = 1;"
+				+ " var c = 0; var g = function() { return c; }; c = 3; return g;");
+		List<String> expected = new ArrayList<String>();
+		expected.add("x@1:43");
+		expected.add("y@1:61");
+		// n++ is read by itself in the next iteration, n = 1 is not read
+		expected.add("n@2:30");
+		assertEquals(expected, names(flow.getDeadStores()));
+		
+		flow = analyze("var x = 1; x = 2; return local;");
+		assertTrue(flow.getDeadStores().isEmpty());
+		flow = analyze("for (var k in a) {} try { var r = a; } catch (any e) { r = e; }"
+				+ " var q = r; switch (a) { case 1: q = 2; break; default: return q; } return q;");
+		assertTrue(flow.getDeadStores().isEmpty());
+	}
+	
+	@Test
+	public void testReachingDefinitions() throws Exception {
+		CFScriptStatement script = fCfmlParser.parseScript(
+				"component { function f(a) { var x = a; if (a) { x = 2; } return x + a; } }");
+		CFSymbolTable symbols = CFSymbolTable.build(script);
+		CFFuncDeclStatement function = symbols.getScopes().get(0).getFunction();
+		CFDataflow flow = CFDataflow.analyze(CFControlFlowGraph.build(function), symbols);
+		List<CFIdentifier> x = new ArrayList<CFIdentifier>();
+		List<CFIdentifier> a = new ArrayList<CFIdentifier>();
+		for (CFIdentifier id : symbols.getReferences()) {
+			(id.getName().equals("x") ? x : a).add(id);
+		}
+		List<HasToken> reaching = flow.getReachingDefinitions(x.get(2));
+		assertEquals(2, reaching.size());
+		assertTrue(reaching.contains(x.get(0)));
+		assertTrue(reaching.contains(x.get(1)));
+		reaching = flow.getReachingDefinitions(a.get(2));
+		assertEquals(1, reaching.size());
+		assertTrue(reaching.get(0) instanceof CFFunctionParameter);
+		assertTrue(flow.getReachingDefinitions(x.get(0)).isEmpty());
+		
+		int xId = flow.getVariableId(symbols.getScopes().get(0).getLocal("x"));
+		assertTrue(flow.getAssignedIn(flow.getGraph().getExit()).get(xId));
+		assertArrayEquals(new long[0], flow.getLiveOut(flow.getGraph().getExit()).toLongArray());
+	}
+}
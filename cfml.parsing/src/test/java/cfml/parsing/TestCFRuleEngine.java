@@ -0,0 +1,138 @@
+package cfml.parsing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import cfml.parsing.cfscript.CFAssignmentExpression;
+import cfml.parsing.cfscript.CFExpression;
+import cfml.parsing.cfscript.CFFunctionExpression;
+import cfml.parsing.cfscript.CFVarDeclExpression;
+import cfml.parsing.cfscript.script.CFFuncDeclStatement;
+import cfml.parsing.cfscript.script.CFScriptStatement;
+import cfml.parsing.cfscript.walker.CFRule;
+import cfml.parsing.cfscript.walker.CFRuleEngine;
+import cfml.parsing.cfscript.walker.CFRuleEngine.NodeHandler;
+import cfml.parsing.cfscript.walker.CFRuleEngine.Registrar;
+
+public class TestCFRuleEngine {
+	
+	private static final String SCRIPT = "function f() { var a = 1; b = evaluate('a'); c = a + 2; } function g() { d = 1; }";
+	
+	/**
+	 * Reports assignments in functions without a var.
+	 */
+	private static class UnscopedRule implements CFRule {
+		final List<String> found = new ArrayList<String>();
+		String function;
+		
+		public String getName() {
+			return "unscoped";
+		}
+		
+		public void register(Registrar registrar) {
+			registrar.onEnter(CFFuncDeclStatement.class, new NodeHandler<CFFuncDeclStatement>() {
+				public void handle(CFFuncDeclStatement node) {
+					function = node.getName().getName();
+				}
+			});
+			registrar.onLeave(CFFuncDeclStatement.class, new NodeHandler<CFFuncDeclStatement>() {
+				public void handle(CFFuncDeclStatement node) {
+					function = null;
+				}
+			});
+			registrar.onEnter(CFAssignmentExpression.class, new NodeHandler<CFAssignmentExpression>() {
+				public void handle(CFAssignmentExpression node) {
+					found.add(function + ":" + node.getLeft().Decompile(0));
+				}
+			});
+		}
+	}
+	
+	private static class EvaluateRule implements CFRule {
+		int count;
+		
+		public String getName() {
+			return "evaluate";
+		}
+		
+		public void register(Registrar registrar) {
+			registrar.onEnter(CFFunctionExpression.class, new NodeHandler<CFFunctionExpression>() {
+				public void handle(CFFunctionExpression node) {
+					if ("evaluate".equals(node.getFunctionName())) {
+						count++;
+					}
+				}
+			});
+		}
+	}
+	
+	private static class CountingRule implements CFRule {
+		int expressions;
+		int vars;
+		
+		public String getName() {
+			return "count";
+		}
+		
+		public void register(Registrar registrar) {
+			registrar.onEnter(CFExpression.class, new NodeHandler<CFExpression>() {
+				public void handle(CFExpression node) {
+					expressions++;
+				}
+			});
+			registrar.onEnter(CFVarDeclExpression.class, new NodeHandler<Object>() {
+				public void handle(Object node) {
+					vars++;
+				}
+			});
+		}
+	}
+	
+	@Test
+	public void testRulesShareOneWalk() throws Exception {
+		CFScriptStatement script = new CFMLParser().parseScript(SCRIPT);
+		UnscopedRule unscoped = new UnscopedRule();
+		EvaluateRule evaluate = new EvaluateRule();
+		CountingRule counting = new CountingRule();
+		CFRuleEngine engine = new CFRuleEngine(Arrays.asList(unscoped, evaluate, counting));
+		engine.run(script);
+		// the compound statement of the script does not keep the functions in source order
+		Collections.sort(unscoped.found);
+		assertEquals(Arrays.asList("f:b", "f:c", "g:d"), unscoped.found);
+		assertEquals(1, evaluate.count);
+		assertEquals(1, counting.vars);
+		assertTrue(counting.expressions > 10);
+	}
+	
+	@Test
+	public void testTimings() throws Exception {
+		CFScriptStatement script = new CFMLParser().parseScript(SCRIPT);
+		CFRuleEngine engine = new CFRuleEngine();
+		engine.addRule(new EvaluateRule());
+		engine.addRule(new CountingRule());
+		engine.run(script);
+		assertEquals(Long.valueOf(0), engine.getTimings().get("evaluate"));
+		
+		engine.setTiming(true);
+		engine.run(script);
+		Map<String, Long> timings = engine.getTimings();
+		assertEquals(Arrays.asList("evaluate", "count"), new ArrayList<String>(timings.keySet()));
+		assertTrue(timings.get("evaluate") > 0);
+		assertTrue(timings.get("count") > 0);
+		engine.resetTimings();
+		assertEquals(Long.valueOf(0), engine.getTimings().get("count"));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testNullRule() {
+		new CFRuleEngine().addRule(null);
+	}
+}
@@ -0,0 +1,88 @@
+package cfml.parsing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.StringWriter;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import cfml.parsing.cfscript.CFExpression;
+import cfml.parsing.cfscript.script.CFScriptStatement;
+import cfml.parsing.cfscript.walker.CFScriptPrinter;
+import cfml.parsing.utils.TestUtils;
+
+public class TestCFScriptPrinter {
+	
+	private CFMLParser fCfmlParser;
+	
+	@Before
+	public void setUp() throws Exception {
+		fCfmlParser = new CFMLParser();
+	}
+	
+	private void assertPrintsLikeDecompile(String script) throws Exception {
+		CFScriptStatement statement = fCfmlParser.parseScript(script);
+		assertNotNull(script, statement);
+		assertEquals(script, statement.Decompile(0), CFScriptPrinter.toString(statement));
+	}
+	
+	@Test
+	public void testStatements() throws Exception {
+		assertPrintsLikeDecompile("var a = 1; b = c = 2; if (a > b) { c++; } else if (!a) d = -b; else { e(); }");
+		assertPrintsLikeDecompile("for (i = 1; i < 10; i++) { continue; } for (k in s) { break; } while (x) x--;");
+		assertPrintsLikeDecompile("do { x = x & 'a#y#b'; } while (x neq ''); return [1, 2, {a : [3]}];");
+		assertPrintsLikeDecompile("switch (a) { case 1: b(); break; default: c(); }");
+		assertPrintsLikeDecompile("try { a(); } catch (any e) { rethrow; } throw 'x'; abort; ");
+		assertPrintsLikeDecompile("lock name='x' timeout=2 { a.b.c[1]['d'] = new foo.Bar(e ?: f, g ? h : i); }");
+		assertPrintsLikeDecompile("param name='a' default='b'; include 'x.cfm'; x = function(a) { return a; };");
+	}
+	
+	@Test
+	public void testComponents() throws Exception {
+		File[] files = new File("src/test/resources/cfml").listFiles();
+		int printed = 0;
+		for (File file : files) {
+			if (!file.getName().endsWith(".cfc")) {
+				continue;
+			}
+			String source = TestUtils.loadFile(file);
+			// Decompile drops finally blocks
+			if (source.contains("finally")) {
+				continue;
+			}
+			CFScriptStatement script = fCfmlParser.parseScript(source);
+			if (script == null) {
+				continue;
+			}
+			assertEquals(file.getName(), script.Decompile(0), CFScriptPrinter.toString(script));
+			printed++;
+		}
+		assertTrue(printed > 0);
+	}
+	
+	@Test
+	public void testFinally() throws Exception {
+		CFScriptStatement script = fCfmlParser.parseScript("try { a(); } catch (any e) { b(); } finally { c(); }");
+		String printed = CFScriptPrinter.toString(script);
+		assertTrue(printed, printed.contains("finally"));
+		assertTrue(printed, printed.indexOf("c()") > printed.indexOf("finally"));
+	}
+	
+	@Test
+	public void testOptions() throws Exception {
+		CFScriptStatement script = fCfmlParser.parseScript("if (a) { b = 1; }");
+		StringWriter out = new StringWriter();
+		CFScriptPrinter printer = new CFScriptPrinter(out);
+		printer.setUseTabs(true);
+		printer.setNewline("\r\n");
+		printer.print(script);
+		assertEquals("if(a ) \t{\r\nb = 1;\r\n\r\n\t}", out.toString());
+		
+		CFExpression expression = fCfmlParser.parseCFMLExpression("a + b", null);
+		assertEquals(expression.Decompile(0), CFScriptPrinter.toString(expression));
+	}
+}
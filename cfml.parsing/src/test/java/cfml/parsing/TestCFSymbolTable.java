@@ -0,0 +1,125 @@
+package cfml.parsing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import cfml.parsing.cfscript.CFIdentifier;
+import cfml.parsing.cfscript.script.CFScriptStatement;
+import cfml.parsing.cfscript.walker.CFSymbolTable;
+import cfml.parsing.cfscript.walker.CFSymbolTable.FunctionScope;
+import cfml.parsing.cfscript.walker.CFSymbolTable.Resolution;
+
+public class TestCFSymbolTable {
+	
+	private CFMLParser fCfmlParser;
+	
+	@Before
+	public void setUp() throws Exception {
+		fCfmlParser = new CFMLParser();
+	}
+	
+	/**
+	 * @return name:kind:w of every reference, w for writes
+	 */
+	private static List<String> describe(CFSymbolTable symbols) {
+		List<String> result = new ArrayList<String>();
+		for (CFIdentifier id : symbols.getReferences()) {
+			Resolution resolution = symbols.resolve(id);
+			result.add(id.getName() + ":" + resolution.getKind() + (resolution.isWrite() ? ":w" : ""));
+		}
+		return result;
+	}
+	
+	@Test
+	public void testFunctionScopes() throws Exception {
+		CFScriptStatement script = fCfmlParser.parseScript("component { function f(a, required b = 2) {"
+				+ " var z = 1; local.x = 2; arguments.a = 3; variables.y = a; q = z + x + this.p + session.s;"
+				+ " for (var i in b) {} try {} catch (any e) { foo(e.message, named = Z); } } }");
+		CFSymbolTable symbols = CFSymbolTable.build(script);
+		assertEquals(1, symbols.getScopes().size());
+		FunctionScope scope = symbols.getScopes().get(0);
+		assertEquals(2, scope.getArguments().size());
+		assertEquals(4, scope.getLocals().size());
+		assertNotNull(scope.getLocal("I"));
+		assertNull(scope.getLocal("q"));
+		assertSame(scope, symbols.getScope(scope.getFunction()));
+		
+		List<String> expected = new ArrayList<String>();
+		expected.add("z:" + CFSymbolTable.LOCAL + ":w");
+		expected.add("local:" + CFSymbolTable.SCOPE);
+		expected.add("x:" + CFSymbolTable.LOCAL + ":w");
+		expected.add("arguments:" + CFSymbolTable.SCOPE);
+		expected.add("a:" + CFSymbolTable.ARGUMENT + ":w");
+		expected.add("variables:" + CFSymbolTable.SCOPE);
+		expected.add("y:" + CFSymbolTable.VARIABLES + ":w");
+		expected.add("a:" + CFSymbolTable.ARGUMENT);
+		expected.add("q:" + CFSymbolTable.UNSCOPED + ":w");
+		expected.add("z:" + CFSymbolTable.LOCAL);
+		expected.add("x:" + CFSymbolTable.LOCAL);
+		expected.add("this:" + CFSymbolTable.SCOPE);
+		expected.add("p:" + CFSymbolTable.THIS);
+		expected.add("session:" + CFSymbolTable.SCOPE);
+		expected.add("s:" + CFSymbolTable.SCOPED);
+		expected.add("i:" + CFSymbolTable.LOCAL + ":w");
+		expected.add("b:" + CFSymbolTable.ARGUMENT);
+		expected.add("e:" + CFSymbolTable.LOCAL + ":w");
+		expected.add("e:" + CFSymbolTable.LOCAL);
+		expected.add("Z:" + CFSymbolTable.LOCAL);
+		assertEquals(expected, describe(symbols));
+		assertEquals(3, scope.getLocal("z").getReferences().size());
+		assertEquals(2, scope.getArgument("A").getReferences().size());
+	}
+	
+	@Test
+	public void testClosures() throws Exception {
+		CFScriptStatement script = fCfmlParser
+				.parseScript("function f(a) { var z = 1; return function(b) { var a = b; return a + z + w; }; }");
+		CFSymbolTable symbols = CFSymbolTable.build(script);
+		assertEquals(2, symbols.getScopes().size());
+		FunctionScope outer = symbols.getScopes().get(0);
+		FunctionScope inner = symbols.getScopes().get(1);
+		assertSame(outer, inner.getParent());
+		assertNull(outer.getParent());
+		
+		for (CFIdentifier id : symbols.getReferences()) {
+			Resolution resolution = symbols.resolve(id);
+			if (id.getName().equals("z") && !resolution.isWrite()) {
+				assertSame(inner, resolution.getScope());
+				assertSame(outer, resolution.getSymbol().getScope());
+				assertTrue(resolution.isCaptured());
+			} else if (id.getName().equals("a") && resolution.getScope() == inner) {
+				// the local a of the closure hides the argument of f
+				assertSame(inner.getLocal("a"), resolution.getSymbol());
+				assertFalse(resolution.isCaptured());
+			} else if (id.getName().equals("w")) {
+				assertEquals(CFSymbolTable.UNSCOPED, resolution.getKind());
+				assertNull(resolution.getSymbol());
+			}
+		}
+		assertEquals(0, outer.getArgument("a").getReferences().size());
+	}
+	
+	@Test
+	public void testNotReferences() throws Exception {
+		CFScriptStatement script = fCfmlParser.parseScript(
+				"x = {k : 1}; y = new foo.Bar(n = 1); lock name='l' timeout=1 { a.b.c(d = 2); }");
+		CFSymbolTable symbols = CFSymbolTable.build(script);
+		List<String> expected = new ArrayList<String>();
+		expected.add("x:" + CFSymbolTable.UNSCOPED + ":w");
+		expected.add("y:" + CFSymbolTable.UNSCOPED + ":w");
+		expected.add("a:" + CFSymbolTable.UNSCOPED);
+		assertEquals(expected, describe(symbols));
+		assertTrue(symbols.getScopes().isEmpty());
+		assertNull(symbols.resolve(symbols.getReferences().get(0)).getScope());
+	}
+}
@@ -0,0 +1,104 @@
+package cfml.parsing;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import cfml.parsing.ComponentIndex.Function;
+import cfml.parsing.cfscript.script.CFScriptStatement;
+
+public class TestCallGraph {
+	
+	private ComponentIndex index;
+	private Map<String, CFScriptStatement> scripts;
+	
+	@Before
+	public void setUp() throws Exception {
+		CFMLParser parser = new CFMLParser();
+		scripts = new LinkedHashMap<String, CFScriptStatement>();
+		scripts.put("/app/Application.cfc", parser.parseScript(
+				"component { function onRequestStart() { var s = new model.Service(); s.run(); } }"));
+		scripts.put("/app/model/Base.cfc", parser.parseScript(
+				"component { function init() { return this; } function log() { helper(); } private function helper() {} "
+						+ "function unusedBase() {} }"));
+		scripts.put("/app/model/Service.cfc", parser.parseScript(
+				"component extends='Base' { variables.repo = createObject('component', 'model.Repo'); "
+						+ "function init() { return super.init(); } function run() { log(); variables.repo.find(); "
+						+ "arrayEach([], function(x) { this.step(); }); } function step() {} "
+						+ "private function dead() { deadToo(); } private function deadToo() { dead(); } }"));
+		scripts.put("/app/model/Repo.cfc", parser.parseScript(
+				"component { function find() {} function save() {} remote function api() { unknown.save(); } }"));
+		index = new ComponentIndex();
+		for (Map.Entry<String, CFScriptStatement> script : scripts.entrySet()) {
+			index.update(script.getKey(), 0, script.getValue());
+		}
+	}
+	
+	private static List<String> names(List<Function> functions) {
+		List<String> result = new ArrayList<String>();
+		for (Function function : functions) {
+			result.add(function.getComponent().getName() + "." + function.getName());
+		}
+		Collections.sort(result);
+		return result;
+	}
+	
+	private static int id(CallGraph graph, String component, String function) {
+		for (int i = 0; i < graph.size(); i++) {
+			Function f = graph.getFunction(i);
+			if (f.getComponent().getName().equals(component) && f.getName().equals(function)) {
+				assertEquals(i, graph.getId(f));
+				return i;
+			}
+		}
+		throw new IllegalArgumentException(component + "." + function);
+	}
+	
+	@Test
+	public void testUnreachable() throws Exception {
+		CallGraph graph = CallGraph.build(index, scripts, 2);
+		assertEquals(13, graph.size());
+		List<String> expected = new ArrayList<String>();
+		expected.add("Base.unusedBase");
+		expected.add("Service.dead");
+		expected.add("Service.deadToo");
+		assertEquals(expected, names(graph.getUnreachable()));
+	}
+	
+	@Test
+	public void testEdges() throws Exception {
+		List<CallGraph.FileCalls> files = new ArrayList<CallGraph.FileCalls>();
+		for (Map.Entry<String, CFScriptStatement> script : scripts.entrySet()) {
+			files.add(CallGraph.collect(script.getKey(), script.getValue()));
+		}
+		CallGraph graph = CallGraph.build(index, files);
+		
+		int run = id(graph, "Service", "run");
+		int[] expected = new int[] { id(graph, "Base", "log"), id(graph, "Service", "step"), id(graph, "Repo", "find") };
+		Arrays.sort(expected);
+		assertArrayEquals(expected, graph.getCallees(run));
+		// new model.Service() calls Service.init, which calls Base.init
+		int onRequestStart = id(graph, "Application", "onRequestStart");
+		expected = new int[] { id(graph, "Service", "init"), run };
+		Arrays.sort(expected);
+		assertArrayEquals(expected, graph.getCallees(onRequestStart));
+		assertArrayEquals(new int[] { id(graph, "Base", "init") }, graph.getCallees(id(graph, "Service", "init")));
+		// the type of unknown is not known: every save
+		assertArrayEquals(new int[] { id(graph, "Repo", "save") }, graph.getCallees(id(graph, "Repo", "api")));
+		assertArrayEquals(new int[] { onRequestStart }, graph.getCallers(run));
+		
+		int dead = id(graph, "Service", "dead");
+		assertTrue(graph.getReachable(dead).get(id(graph, "Service", "deadToo")));
+		assertEquals(2, graph.getReachable(dead).cardinality());
+	}
+}
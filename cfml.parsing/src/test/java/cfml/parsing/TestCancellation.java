@@ -0,0 +1,114 @@
+package cfml.parsing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import cfml.parsing.cfml.CFMLVisitor;
+import cfml.parsing.cfscript.CFExpression;
+import cfml.parsing.cfscript.script.CFScriptStatement;
+import cfml.parsing.reporting.ParseCancelledException;
+import cfml.parsing.util.CancellationToken;
+import net.htmlparser.jericho.Element;
+
+public class TestCancellation {
+	
+	private static String script(int statements) {
+		StringBuilder sb = new StringBuilder("component {\n\tfunction f() {\n");
+		for (int i = 0; i < statements; i++) {
+			sb.append("\t\tx").append(i).append(" = foo(").append(i).append(", 'a' & b[").append(i).append("]);\n");
+		}
+		return sb.append("\t}\n}").toString();
+	}
+	
+	@Test
+	public void testNotCancelled() throws Exception {
+		String script = script(20);
+		String expected = new CFMLParser().parseScript(script).Decompile(0);
+		CancellationToken cancellation = new CancellationToken(60000);
+		assertEquals(expected, new CFMLParser().parseScript(script, cancellation).Decompile(0));
+		assertFalse(cancellation.isCancelled());
+		assertEquals(expected, new CFMLParser().parseScript(script, new CancellationToken()).Decompile(0));
+	}
+	
+	@Test
+	public void testCancelled() throws Exception {
+		CancellationToken cancellation = new CancellationToken();
+		cancellation.cancel();
+		CFMLParser parser = new CFMLParser();
+		try {
+			parser.parseScript(script(5), cancellation);
+			fail();
+		} catch (ParseCancelledException e) {
+			assertFalse(e.isTimedOut());
+		}
+		try {
+			parser.parseCFExpression("a + b * c", null, cancellation);
+			fail();
+		} catch (ParseCancelledException e) {
+			assertFalse(e.isTimedOut());
+		}
+		// the parser goes on without the token
+		CFExpression expression = parser.parseCFExpression("a + b * c", null);
+		assertEquals("a + b * c", expression.Decompile(0));
+		assertEquals(new CFMLParser().parseScript(script(5)).Decompile(0), parser.parseScript(script(5)).Decompile(0));
+	}
+	
+	@Test
+	public void testDeadline() throws Exception {
+		CancellationToken cancellation = new CancellationToken(0);
+		long start = System.nanoTime();
+		try {
+			new CFMLParser().parseScript(script(20000), cancellation);
+			fail();
+		} catch (ParseCancelledException e) {
+			assertTrue(e.isTimedOut());
+		}
+		assertTrue(cancellation.isTimedOut());
+		// stopped long before the script could have been parsed
+		assertTrue(System.nanoTime() - start < 1000000000L);
+	}
+	
+	@Test
+	public void testVisit() throws Exception {
+		final CancellationToken cancellation = new CancellationToken();
+		CFMLSource source = new CFMLSource("<cfif x GT 1><cfset y = 1><cfscript>z = 2;</cfscript></cfif>");
+		List<Element> elements = source.getChildElements();
+		final StringBuilder visited = new StringBuilder();
+		CFMLVisitor visitor = new CFMLVisitor() {
+			@Override
+			public void visitElementStart(Element elem) {
+				visited.append(elem.getName()).append(' ');
+				if (elem.getName().equals("cfset")) {
+					cancellation.cancel();
+				}
+			}
+			
+			@Override
+			public void visitElementEnd(Element elem) {
+			}
+			
+			@Override
+			public void visitExpression(String context, CFExpression expression) {
+				visited.append(expression.Decompile(0)).append(' ');
+			}
+			
+			@Override
+			public void visitScript(CFScriptStatement scriptStatement) {
+				visited.append("script ");
+			}
+		};
+		try {
+			new CFMLParser().visit(elements.get(0), 0, visitor, cancellation);
+			fail();
+		} catch (ParseCancelledException e) {
+			assertFalse(e.isTimedOut());
+		}
+		assertEquals("cfif x GT 1 cfset ", visited.toString());
+	}
+}
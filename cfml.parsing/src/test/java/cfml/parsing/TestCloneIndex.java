@@ -0,0 +1,78 @@
+package cfml.parsing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import cfml.parsing.cfscript.script.CFScriptStatement;
+import cfml.parsing.cfscript.walker.CFFingerprint;
+
+public class TestCloneIndex {
+	
+	private CFMLParser fCfmlParser;
+	
+	@Before
+	public void setUp() throws Exception {
+		fCfmlParser = new CFMLParser();
+	}
+	
+	private long rootHash(String script, boolean normalized) throws Exception {
+		CFFingerprint fingerprint = CFFingerprint.compute(fCfmlParser.parseScript(script), normalized);
+		assertEquals(-1, fingerprint.getParent(fingerprint.size() - 1));
+		return fingerprint.getHash(fingerprint.size() - 1);
+	}
+	
+	@Test
+	public void testFingerprint() throws Exception {
+		CFScriptStatement script = fCfmlParser.parseScript("x = a + 1;");
+		CFFingerprint fingerprint = CFFingerprint.compute(script, false);
+		int root = fingerprint.indexOf(script);
+		assertEquals(fingerprint.size() - 1, root);
+		assertEquals(fingerprint.size(), fingerprint.getSize(root));
+		for (int i = 0; i < root; i++) {
+			assertTrue(fingerprint.getParent(i) > i);
+		}
+		
+		assertEquals(rootHash("x = a + 1;", false), rootHash("x = a + 1;", false));
+		assertNotEquals(rootHash("x = a + 1;", false), rootHash("y = b + 2;", false));
+		assertEquals(rootHash("x = a + 1;", true), rootHash("y = b + 2;", true));
+		assertEquals(rootHash("x = foo(a, 'b');", true), rootHash("y = bar(c, 'd');", true));
+		assertNotEquals(rootHash("x = a + 1;", true), rootHash("x = a - 1;", true));
+		assertNotEquals(rootHash("x = a + 1;", true), rootHash("x = 1 + a;", true));
+		assertNotEquals(rootHash("foo(a, b);", true), rootHash("foo(a);", true));
+	}
+	
+	@Test
+	public void testCloneGroups() throws Exception {
+		String body = "if (a > 0) { total = total + a * rate; log('added ' & a); } else { total = 0; }";
+		CloneIndex clones = new CloneIndex(10, true);
+		clones.update("/a.cfc", fCfmlParser.parseScript("component { function f(a) { " + body + " } }"));
+		clones.update("/b.cfc", fCfmlParser.parseScript("component { function g(b) { var c = 1; "
+				+ body.replace("a", "b").replace("total", "sum") + " return c; } }"));
+		List<CloneIndex.CloneGroup> groups = clones.getCloneGroups();
+		assertEquals(1, groups.size());
+		List<CloneIndex.Occurrence> occurrences = groups.get(0).getOccurrences();
+		assertEquals(2, occurrences.size());
+		assertEquals("/a.cfc", occurrences.get(0).getPath());
+		assertEquals("/b.cfc", occurrences.get(1).getPath());
+		assertTrue(groups.get(0).getSize() > 10);
+		assertEquals(occurrences.get(0).getNode().getClass(), occurrences.get(1).getNode().getClass());
+		
+		// not a clone when names count
+		CloneIndex exact = new CloneIndex(10, false);
+		exact.update("/a.cfc", fCfmlParser.parseScript("component { function f(a) { " + body + " } }"));
+		exact.update("/b.cfc", fCfmlParser.parseScript("component { function g(b) { "
+				+ body.replace("a", "b") + " } }"));
+		assertTrue(exact.getCloneGroups().isEmpty());
+		
+		assertTrue(clones.remove("/b.cfc"));
+		assertFalse(clones.remove("/b.cfc"));
+		assertTrue(clones.getCloneGroups().isEmpty());
+	}
+}
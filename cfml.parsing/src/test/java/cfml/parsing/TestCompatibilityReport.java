@@ -0,0 +1,81 @@
+package cfml.parsing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import cfml.dictionary.CompatibilityIndex;
+import cfml.dictionary.DictionaryManager;
+import cfml.parsing.CompatibilityReport.Issue;
+
+public class TestCompatibilityReport {
+	
+	private CFMLParser fCfmlParser;
+	private CompatibilityReport report;
+	
+	@Before
+	public void setUp() throws Exception {
+		fCfmlParser = new CFMLParser();
+		fCfmlParser.getDictionary();
+		report = new CompatibilityReport(DictionaryManager.getCompatibilityIndex());
+	}
+	
+	private List<String> labels(Issue issue) {
+		return report.getIndex().getLabels(issue.getUnsupported());
+	}
+	
+	@Test
+	public void testTagsAndExpressions() throws Exception {
+		String cfml = "<cfdocument format=\"pdf\">\n<cfset x = queryExecute('select 1')>\n<cfscript>\n y = arrayEach(a, f);\n"
+				+ " z = len(y) & foo.queryExecute();\n</cfscript>\n</cfdocument>";
+		report.checkSource("test.cfm", fCfmlParser, fCfmlParser.addCFMLSource("test.cfm", cfml));
+		List<Issue> issues = report.getIssues("test.cfm");
+		assertEquals(3, issues.size());
+		
+		assertEquals(CompatibilityReport.TAG, issues.get(0).getKind());
+		assertEquals("cfdocument", issues.get(0).getName());
+		assertEquals(1, issues.get(0).getLine());
+		assertTrue(labels(issues.get(0)).contains("ColdFusion MX 6.1"));
+		assertTrue(!labels(issues.get(0)).contains("ColdFusion MX 7.01"));
+		
+		assertEquals("queryexecute", issues.get(1).getName());
+		assertEquals(2, issues.get(1).getLine());
+		assertTrue(labels(issues.get(1)).contains("ColdFusion 10"));
+		assertTrue(!labels(issues.get(1)).contains("ColdFusion 11"));
+		
+		assertEquals(CompatibilityReport.FUNCTION, issues.get(2).getKind());
+		assertEquals("arrayeach", issues.get(2).getName());
+		assertEquals(4, issues.get(2).getLine());
+	}
+	
+	@Test
+	public void testScript() throws Exception {
+		report.checkScript("test.cfc", fCfmlParser.parseScript(
+				"component { function f() { var q = queryExecute('x'); return queryExecute('y') & len(q) & myUdf(); } }"));
+		List<Issue> issues = report.getIssues("test.cfc");
+		assertEquals(1, issues.size());
+		assertEquals("queryexecute", issues.get(0).getName());
+		assertEquals(2, issues.get(0).getCount());
+	}
+	
+	@Test
+	public void testNoIssues() throws Exception {
+		report.checkSource("plain.cfm", fCfmlParser,
+				fCfmlParser.addCFMLSource("plain.cfm", "<cfquery name=\"q\">select 1</cfquery><cfset x = len(q)>"));
+		assertEquals(0, report.getIssues("plain.cfm").size());
+		assertEquals(1, report.getFiles().size());
+	}
+	
+	@Test
+	public void testIndexIsBuiltOnce() {
+		CompatibilityIndex index = DictionaryManager.getCompatibilityIndex();
+		assertTrue(index == DictionaryManager.getCompatibilityIndex());
+		assertEquals(DictionaryManager.getConfiguredDictionaries().length, index.size());
+		assertEquals(index.getAllVersions(), index.getTagVersions("CFQUERY"));
+		assertEquals(0, index.getFunctionVersions("notABuiltInFunction"));
+	}
+}
@@ -0,0 +1,154 @@
+package cfml.parsing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import cfml.parsing.ComponentIndex.Component;
+import cfml.parsing.ComponentIndex.Function;
+
+public class TestComponentIndex {
+	
+	private CFMLParser fCfmlParser;
+	private ComponentIndex index;
+	
+	@Before
+	public void setUp() throws Exception {
+		fCfmlParser = new CFMLParser();
+		index = new ComponentIndex();
+		index.update("/app/model/Base.cfc", 1, fCfmlParser.parseScript(
+				"component { property name='id' type='numeric'; public function init() { return this; } "
+						+ "private string function name() { return ''; } }"));
+		index.update("/app/model/IService.cfc", 2,
+				fCfmlParser.parseScript("interface { function run(required string what); }"));
+		index.update("/app/model/IFastService.cfc", 3,
+				fCfmlParser.parseScript("interface extends='model.IService' { function runFast(); }"));
+		index.update("/app/model/Service.cfc", 4, fCfmlParser.parseScript(
+				"component extends='model.Base' implements='model.IFastService' { property string label; "
+						+ "remote any function run(required string what, numeric times = 1) { var f = function() {}; } "
+						+ "function runFast() {} public function init() { return super.init(); } }"));
+		index.update("/app/model/SubService.cfc", 5,
+				fCfmlParser.parseScript("component extends='Service' { function extra() {} }"));
+	}
+	
+	private static List<String> names(List<?> items) {
+		List<String> result = new ArrayList<String>();
+		for (Object item : items) {
+			result.add(item instanceof Component ? ((Component) item).getName() : ((Function) item).getName());
+		}
+		return result;
+	}
+	
+	@Test
+	public void testFind() throws Exception {
+		Component service = index.findComponent("model.service");
+		assertEquals("/app/model/Service.cfc", service.getPath());
+		assertSame(service, index.findComponent("Service"));
+		assertNull(index.findComponent("Missing"));
+		assertEquals("model.Base", service.getExtends());
+		assertEquals(Arrays.asList("model.IFastService"), service.getImplements());
+		assertEquals("label", service.getProperties().get(0).getName());
+		assertEquals("string", service.getProperties().get(0).getType());
+		assertTrue(index.findComponent("IService").isInterface());
+		
+		Function run = null;
+		for (Function function : service.getFunctions()) {
+			if (function.getName().equals("run")) {
+				run = function;
+			}
+		}
+		assertEquals("remote", run.getAccess());
+		assertEquals("any", run.getReturnType());
+		assertEquals(2, run.getParameters().size());
+		assertTrue(run.getParameters().get(0).isRequired());
+		assertEquals("numeric", run.getParameters().get(1).getType());
+		// the closure in run is not a method
+		assertEquals(3, service.getFunctions().size());
+	}
+	
+	@Test
+	public void testInheritance() throws Exception {
+		List<Function> methods = index.getMethods("SubService");
+		List<String> names = names(methods);
+		Collections.sort(names);
+		assertEquals(Arrays.asList("extra", "init", "name", "run", "runFast"), names);
+		for (Function method : methods) {
+			if (method.getName().equals("init")) {
+				// overridden by Service
+				assertEquals("Service", method.getComponent().getName());
+			}
+		}
+		assertEquals(Arrays.asList("SubService", "Service", "Base"), names(index.getAncestors("SubService")));
+		assertEquals(Arrays.asList("Service"), names(index.getSubcomponents("model.Base")));
+		
+		assertEquals(Arrays.asList("Service", "SubService"), names(index.getImplementors("IService")));
+		assertEquals(Arrays.asList("Service", "SubService"), names(index.getImplementors("IFastService")));
+		assertTrue(index.getImplementors("Base").isEmpty());
+	}
+	
+	@Test
+	public void testUpdateAndRemove() throws Exception {
+		index.update("/app/model/Service.cfc", 6, fCfmlParser.parseScript("component { function other() {} }"));
+		assertEquals(6, index.getStamp("/app/model/Service.cfc"));
+		assertTrue(index.getImplementors("IService").isEmpty());
+		assertTrue(index.getSubcomponents("Base").isEmpty());
+		assertEquals(Arrays.asList("extra", "other"), names(index.getMethods("SubService")));
+		
+		assertTrue(index.remove("/app/model/SubService.cfc"));
+		assertFalse(index.remove("/app/model/SubService.cfc"));
+		assertEquals(-1, index.getStamp("/app/model/SubService.cfc"));
+		assertNull(index.findComponent("SubService"));
+		assertEquals(4, index.getComponents().size());
+	}
+	
+	@Test
+	public void testTagComponent() throws Exception {
+		CFMLSource source = new CFMLSource("<cfcomponent extends=\"Base\" implements=\"IService\">"
+				+ "<cfproperty name=\"size\" type=\"numeric\">"
+				+ "<cffunction name=\"run\" access=\"private\" returntype=\"void\">"
+				+ "<cfargument name=\"what\" type=\"string\" required=\"true\"></cffunction></cfcomponent>");
+		index.update("/app/Tagged.cfc", 7, source);
+		Component tagged = index.findComponent("Tagged");
+		assertEquals("Base", tagged.getExtends());
+		assertEquals("size", tagged.getProperties().get(0).getName());
+		Function run = tagged.getFunctions().get(0);
+		assertEquals("private", run.getAccess());
+		assertEquals("void", run.getReturnType());
+		assertEquals("what", run.getParameters().get(0).getName());
+		assertTrue(run.getParameters().get(0).isRequired());
+		assertTrue(names(index.getImplementors("IService")).contains("Tagged"));
+	}
+	
+	@Test
+	public void testSaveAndLoad() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		index.save(out);
+		ComponentIndex loaded = ComponentIndex.load(new ByteArrayInputStream(out.toByteArray()));
+		assertEquals(names(index.getComponents()), names(loaded.getComponents()));
+		assertEquals(4, loaded.getStamp("/app/model/Service.cfc"));
+		assertEquals(names(index.getMethods("SubService")), names(loaded.getMethods("SubService")));
+		assertEquals(Arrays.asList("Service", "SubService"), names(loaded.getImplementors("IService")));
+		Function run = loaded.findComponent("Service").getFunctions().get(0);
+		assertEquals(names(index.findComponent("Service").getFunctions()).get(0), run.getName());
+		
+		try {
+			ComponentIndex.load(new ByteArrayInputStream(new byte[] { 1, 2, 3, 4, 5 }));
+			assertTrue("loaded garbage", false);
+		} catch (IOException e) {
+			assertEquals("Not a component index", e.getMessage());
+		}
+	}
+}
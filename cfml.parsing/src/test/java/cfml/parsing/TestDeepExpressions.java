@@ -0,0 +1,155 @@
+package cfml.parsing;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import cfml.parsing.cfscript.CFBinaryExpression;
+import cfml.parsing.cfscript.CFExpression;
+import cfml.parsing.cfscript.CFIdentifier;
+import cfml.parsing.cfscript.script.CFCompoundStatement;
+import cfml.parsing.cfscript.script.CFExpressionStatement;
+import cfml.parsing.cfscript.script.CFScriptStatement;
+import cfml.parsing.cfscript.walker.CFAstVisitor;
+import cfml.parsing.cfscript.walker.CFAstWalker;
+import cfml.parsing.cfscript.walker.CFScriptPrinter;
+
+public class TestDeepExpressions {
+	
+	private static final int TERMS = 20000;
+	
+	/**
+	 * Runs a test on a thread with a small stack, so that what recurses for every operator overflows it.
+	 */
+	private static void onSmallStack(final Runnable test) throws Throwable {
+		final Throwable[] failure = new Throwable[1];
+		Thread thread = new Thread(null, new Runnable() {
+			@Override
+			public void run() {
+				try {
+					test.run();
+				} catch (Throwable e) {
+					failure[0] = e;
+				}
+			}
+		}, "small stack", 256 * 1024);
+		thread.start();
+		thread.join();
+		if (failure[0] != null) {
+			throw failure[0];
+		}
+	}
+	
+	private static String chain(String operator) {
+		StringBuilder sb = new StringBuilder("a0");
+		for (int i = 1; i < TERMS; i++) {
+			sb.append(' ').append(operator).append(" a").append(i);
+		}
+		return sb.toString();
+	}
+	
+	private static void assertChain(CFExpression expression, String operator) throws Exception {
+		String text = chain(operator);
+		assertEquals(text, expression.Decompile(0));
+		StringBuilder printed = new StringBuilder();
+		new CFScriptPrinter(printed).print(expression);
+		assertEquals(text, printed.toString());
+		
+		final int[] counts = new int[3];
+		CFAstWalker.walk(expression, new CFAstVisitor() {
+			@Override
+			public boolean enter(CFBinaryExpression node) {
+				counts[0]++;
+				return true;
+			}
+			
+			@Override
+			public void leave(CFBinaryExpression node) {
+				counts[1]++;
+			}
+			
+			@Override
+			public boolean enter(CFIdentifier node) {
+				// from left to right
+				assertEquals("a" + counts[2]++, node.getName());
+				return true;
+			}
+		});
+		assertEquals(TERMS - 1, counts[0]);
+		assertEquals(TERMS - 1, counts[1]);
+		assertEquals(TERMS, counts[2]);
+	}
+	
+	@Test
+	public void testConcatenation() throws Throwable {
+		onSmallStack(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					CFMLParser parser = new CFMLParser();
+					CFExpression expression = parser.parseCFExpression(chain("&"), null);
+					assertChain(expression, "&");
+					// left associative, so the chain is as deep as it is long
+					int depth = 0;
+					for (CFExpression e = expression; e instanceof CFBinaryExpression; e = ((CFBinaryExpression) e)
+							.getLeft()) {
+						depth++;
+					}
+					assertEquals(TERMS - 1, depth);
+				} catch (Exception e) {
+					throw new IllegalStateException(e);
+				}
+			}
+		});
+	}
+	
+	@Test
+	public void testScript() throws Throwable {
+		onSmallStack(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					CFScriptStatement script = new CFMLParser().parseScript("x = " + chain("+") + ";\ny = 1;");
+					CFScriptStatement first = ((CFCompoundStatement) script).getStatements().get(0);
+					CFExpression assignment = ((CFExpressionStatement) first).getExpression();
+					assertEquals("x = " + chain("+"), assignment.Decompile(0));
+				} catch (Exception e) {
+					throw new IllegalStateException(e);
+				}
+			}
+		});
+	}
+	
+	@Test
+	public void testNestedChains() throws Exception {
+		// chains within the arguments and brackets of other chains, which share the stacks of the outer ones
+		String text = "a & f(b & c & g(d + e), h) & (i - j - k) & x[l & m] & n ?: o & p";
+		CFExpression expression = new CFMLParser().parseCFExpression(text, null);
+		String decompiled = expression.Decompile(0);
+		assertEquals(decompiled, CFScriptPrinter.toString(expression));
+		assertEquals(decompiled, new CFMLParser().parseCFExpression(decompiled, null).Decompile(0));
+		
+		final StringBuilder identifiers = new StringBuilder();
+		final int[] depth = new int[1];
+		CFAstWalker.walk(expression, new CFAstVisitor() {
+			@Override
+			public boolean enter(CFBinaryExpression node) {
+				depth[0]++;
+				return true;
+			}
+			
+			@Override
+			public void leave(CFBinaryExpression node) {
+				depth[0]--;
+			}
+			
+			@Override
+			public boolean enter(CFIdentifier node) {
+				identifiers.append(node.getName());
+				return true;
+			}
+		});
+		assertEquals(0, depth[0]);
+		assertEquals("abcdehijkxlmnop", identifiers.toString());
+	}
+}
@@ -0,0 +1,179 @@
+package cfml.parsing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.Token;
+import org.junit.Before;
+import org.junit.Test;
+
+import cfml.parsing.cfscript.CFExpression;
+import cfml.parsing.cfscript.HasToken;
+import cfml.parsing.cfscript.script.CFCompDeclStatement;
+import cfml.parsing.cfscript.script.CFCompoundStatement;
+import cfml.parsing.cfscript.script.CFFuncDeclStatement;
+import cfml.parsing.cfscript.script.CFScriptStatement;
+import cfml.parsing.util.DetachableToken;
+
+public class TestDetachedAst {
+	
+	private static final String SCRIPT = "component { function f(a) { var x = a.b[1] + len('str'); if (x > 1) { return x; } return 0; } }";
+	
+	private CFMLParser fCfmlParser;
+	
+	@Before
+	public void setUp() throws Exception {
+		fCfmlParser = new CFMLParser();
+	}
+	
+	private int assertDetached(Object node) {
+		if (node == null) {
+			return 0;
+		}
+		int count = 0;
+		Token token = ((HasToken) node).getToken();
+		if (token != null) {
+			assertTrue(token instanceof DetachableToken);
+			assertTrue(((DetachableToken) token).isDetached());
+			assertNull(token.getTokenSource());
+			assertNull(token.getInputStream());
+			assertNotNull(token.getText());
+			count++;
+		}
+		List<CFExpression> expressions;
+		List<CFScriptStatement> statements;
+		if (node instanceof CFExpression) {
+			expressions = ((CFExpression) node).decomposeExpression();
+			statements = ((CFExpression) node).decomposeScript();
+		} else {
+			assertNull(((CFScriptStatement) node).getTokens());
+			expressions = ((CFScriptStatement) node).decomposeExpression();
+			statements = ((CFScriptStatement) node).decomposeScript();
+		}
+		if (expressions != null) {
+			for (CFExpression expression : expressions) {
+				count += assertDetached(expression);
+			}
+		}
+		if (statements != null) {
+			for (CFScriptStatement statement : statements) {
+				count += assertDetached(statement);
+			}
+		}
+		return count;
+	}
+	
+	/**
+	 * Fails if the source, a copy of it or an input stream can be reached from the fields of the AST.
+	 */
+	private static void assertSourceUnreachable(Object ast, String source) throws IllegalAccessException {
+		Set<Object> seen = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+		ArrayDeque<Object> pending = new ArrayDeque<Object>();
+		pending.push(ast);
+		while (!pending.isEmpty()) {
+			Object o = pending.pop();
+			if (!seen.add(o) || o instanceof Class) {
+				continue;
+			}
+			assertNotSame(source, o);
+			assertFalse(source.equals(o));
+			assertFalse(o instanceof CharStream);
+			if (o instanceof char[]) {
+				assertFalse(Arrays.equals(source.toCharArray(), (char[]) o));
+			} else if (o instanceof Object[]) {
+				for (Object element : (Object[]) o) {
+					if (element != null) {
+						pending.push(element);
+					}
+				}
+			} else if (o instanceof Collection) {
+				pending.addAll((Collection<?>) o);
+			} else if (o instanceof Map) {
+				pending.addAll(((Map<?, ?>) o).keySet());
+				pending.addAll(((Map<?, ?>) o).values());
+			} else if (!o.getClass().getName().startsWith("java.")) {
+				for (Class<?> c = o.getClass(); c != null; c = c.getSuperclass()) {
+					for (Field field : c.getDeclaredFields()) {
+						if (Modifier.isStatic(field.getModifiers()) || field.getType().isPrimitive()) {
+							continue;
+						}
+						field.setAccessible(true);
+						Object value = field.get(o);
+						if (value != null) {
+							pending.push(value);
+						}
+					}
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void testAttachedByDefault() throws Exception {
+		CFScriptStatement attached = fCfmlParser.parseScript(SCRIPT);
+		assertNotNull(attached.getTokens());
+	}
+	
+	@Test
+	public void testDetachedWithSource() throws Exception {
+		String expected = fCfmlParser.parseScript(SCRIPT).Decompile(0);
+		fCfmlParser.setDetachedAst(true, true);
+		CFScriptStatement detached = fCfmlParser.parseScript(SCRIPT);
+		assertTrue(assertDetached(detached) > 10);
+		assertEquals(expected, detached.Decompile(0));
+	}
+	
+	@Test
+	public void testDetachedWithoutSource() throws Exception {
+		String expected = fCfmlParser.parseScript(SCRIPT).Decompile(0);
+		fCfmlParser.setDetachedAst(true, false);
+		CFScriptStatement detached = fCfmlParser.parseScript(SCRIPT);
+		assertTrue(assertDetached(detached) > 10);
+		assertEquals(expected, detached.Decompile(0));
+	}
+	
+	@Test
+	public void testDetachedExpression() throws Exception {
+		fCfmlParser.setDetachedAst(true, true);
+		CFExpression expression = fCfmlParser.parseCFExpression("a.b(1) & 'x'", null);
+		assertTrue(assertDetached(expression) > 0);
+		assertEquals("a.b(1) & 'x'", expression.Decompile(0));
+		assertEquals(1, expression.getLine());
+	}
+	
+	@Test
+	public void testDetachedDocCommentsWithoutSource() throws Exception {
+		String script = "/** A service. */ component {\n/**\n * Finds one.\n * @id the key\n */\n"
+				+ "function find(id) { return id; }\nfunction plain() {}\n}";
+		fCfmlParser.setDetachedAst(true, false);
+		CFCompDeclStatement component = (CFCompDeclStatement) fCfmlParser.parseScript(script);
+		// before any doc comment is read, when they all still point into the comment table
+		assertSourceUnreachable(component, script);
+		assertEquals("A service.", component.getDocComment().getHint());
+		for (CFScriptStatement statement : ((CFCompoundStatement) component.getBody()).getStatements()) {
+			CFFuncDeclStatement function = (CFFuncDeclStatement) statement;
+			if ("find".equals(function.getName().getName())) {
+				assertEquals("Finds one.", function.getDocComment().getHint());
+				assertEquals("the key", function.getDocComment().getAnnotations().get("id"));
+			} else {
+				assertNull(function.getDocComment());
+			}
+		}
+	}
+}
@@ -0,0 +1,69 @@
+package cfml.parsing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import cfml.parsing.cfscript.CFDocComment;
+import cfml.parsing.cfscript.script.CFCompDeclStatement;
+import cfml.parsing.cfscript.script.CFCompoundStatement;
+import cfml.parsing.cfscript.script.CFFuncDeclStatement;
+import cfml.parsing.cfscript.script.CFFunctionParameter;
+import cfml.parsing.cfscript.script.CFPropertyStatement;
+import cfml.parsing.cfscript.script.CFScriptStatement;
+
+public class TestDocComments {
+	
+	private static final String SCRIPT = "/**\n * A service.\n * Does things.\n * @accessors true\n * @singleton\n */\n"
+			+ "component extends=\"base\" {\n"
+			+ "\t/** the dao @inject dao */\n\tproperty name=\"dao\";\n"
+			+ "\t/* not a doc comment */\n\tproperty name=\"other\";\n"
+			+ "\t/**\n\t * Finds one.\n\t * @id the key,\n\t *     never null\n\t */\n"
+			+ "\t// TODO cache\n"
+			+ "\tpublic any function find(/** the key */ required numeric id, boolean strict = false) {\n"
+			+ "\t\t/** a doc comment that is not before a declaration */\n\t\treturn id;\n\t}\n"
+			+ "\t/** lost */ x = 1;\n\tfunction plain() {}\n}";
+	
+	private static void assertDocs(CFScriptStatement statement) {
+		CFCompDeclStatement component = (CFCompDeclStatement) statement;
+		CFDocComment doc = component.getDocComment();
+		assertNotNull(doc);
+		assertEquals(1, doc.getLine());
+		assertEquals(0, doc.getStart());
+		assertEquals("A service. Does things.", doc.getHint());
+		Map<String, String> annotations = doc.getAnnotations();
+		assertEquals(2, annotations.size());
+		assertEquals("true", annotations.get("accessors"));
+		assertEquals("", annotations.get("singleton"));
+		
+		List<CFScriptStatement> elements = ((CFCompoundStatement) component.getBody()).getStatements();
+		CFPropertyStatement dao = (CFPropertyStatement) elements.get(0);
+		assertEquals("/** the dao @inject dao */", dao.getDocComment().getText());
+		assertEquals("the dao @inject dao", dao.getDocComment().getHint());
+		assertNull(((CFPropertyStatement) elements.get(1)).getDocComment());
+		
+		CFFuncDeclStatement find = (CFFuncDeclStatement) elements.get(2);
+		assertEquals("Finds one.", find.getDocComment().getHint());
+		assertEquals("the key, never null", find.getDocComment().getAnnotations().get("id"));
+		List<CFFunctionParameter> parameters = find.getFormals();
+		assertEquals("the key", parameters.get(0).getDocComment().getHint());
+		assertNull(parameters.get(1).getDocComment());
+		CFFuncDeclStatement plain = (CFFuncDeclStatement) elements.get(elements.size() - 1);
+		assertNull(plain.getDocComment());
+	}
+	
+	@Test
+	public void testDocComments() throws Exception {
+		assertDocs(new CFMLParser().parseScript(SCRIPT));
+		
+		CFMLParser parser = new CFMLParser();
+		parser.setSignificantTokensOnly(true);
+		parser.setDetachedAst(true, false);
+		assertDocs(parser.parseScript(SCRIPT));
+	}
+}
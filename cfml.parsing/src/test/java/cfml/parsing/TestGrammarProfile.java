@@ -0,0 +1,58 @@
+package cfml.parsing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import cfml.CFSCRIPTParser;
+
+public class TestGrammarProfile {
+	
+	private static final String SCRIPT = "component {\n\tfunction f(a, b) {\n\t\tvar x = a.b.c(1, 2)[3];\n"
+			+ "\t\tif (x > 1 && b) { return x ? 1 : 2; }\n\t\tfor (var i in a) { x &= i; }\n\t\treturn x;\n\t}\n}";
+	
+	@Test
+	public void testProfile() throws Exception {
+		GrammarProfile profile = new GrammarProfile();
+		profile.profile("a.cfc", SCRIPT);
+		profile.profile("b.cfc", SCRIPT.replace("x", "y"));
+		assertEquals(2, profile.getFileCount());
+		assertEquals(Arrays.asList("a.cfc", "b.cfc"), profile.getFiles());
+		
+		List<GrammarProfile.Decision> decisions = profile.getDecisions();
+		assertFalse(decisions.isEmpty());
+		List<String> rules = Arrays.asList(CFSCRIPTParser.ruleNames);
+		long invocations = 0;
+		for (int i = 0; i < decisions.size(); i++) {
+			GrammarProfile.Decision decision = decisions.get(i);
+			assertTrue(rules.contains(decision.getRule()));
+			assertTrue(decision.getInvocations() > 0);
+			assertTrue(decision.getSllMaxLookahead() >= 1);
+			if (i > 0) {
+				assertTrue(decisions.get(i - 1).getTime() >= decision.getTime());
+			}
+			invocations += decision.getInvocations();
+		}
+		assertTrue(invocations > 20);
+		
+		List<GrammarProfile.Site> sites = profile.getSites("a.cfc");
+		assertFalse(sites.isEmpty());
+		for (GrammarProfile.Site site : sites) {
+			assertNotNull(site.getDecision());
+			assertTrue(site.getLine() >= 1 && site.getLine() <= 8);
+		}
+		assertTrue(sites.get(0).getLookahead() >= sites.get(sites.size() - 1).getLookahead());
+		assertTrue(profile.getSites("c.cfc").isEmpty());
+		
+		StringBuilder report = new StringBuilder();
+		profile.write(report, 5);
+		assertTrue(report.toString().startsWith("2 files"));
+		assertEquals(7, report.toString().split("\n").length);
+	}
+}
@@ -0,0 +1,66 @@
+package cfml.parsing;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import cfml.parsing.util.IncrementalTokenizer;
+import cfml.parsing.util.ScriptTokenizer;
+
+public class TestIncrementalTokenizer {
+	
+	private static final String LINE = "\tvar s%d = \"a#x%d#b\" & 'c' + %d; // note\n";
+	
+	private static String script(int lines) {
+		StringBuilder sb = new StringBuilder("component {\nfunction f() {\n");
+		for (int i = 0; i < lines; i++) {
+			sb.append(String.format(LINE, i, i, i));
+		}
+		return sb.append("}\n}\n").toString();
+	}
+	
+	private static void assertSameAsFresh(IncrementalTokenizer tokenizer) {
+		String text = tokenizer.getText();
+		assertArrayEquals(text, new ScriptTokenizer().tokenize(text).toArray(), tokenizer.getTokens().toArray());
+		assertEquals(new IncrementalTokenizer(text).getCheckpointCount(), tokenizer.getCheckpointCount());
+	}
+	
+	@Test
+	public void testLocalEdit() throws Exception {
+		String script = script(1000);
+		IncrementalTokenizer tokenizer = new IncrementalTokenizer(script);
+		assertEquals(1004, tokenizer.getCheckpointCount());
+		int offset = script.indexOf("s500");
+		tokenizer.edit(offset + 1, 3, "renamed");
+		assertSameAsFresh(tokenizer);
+		// two lines relexed
+		assertTrue(tokenizer.getDamageEnd() - tokenizer.getDamageStart() < 3 * LINE.length());
+		
+		// opening a string relexes up to where it closes, here the end
+		offset = tokenizer.getText().indexOf("s700");
+		tokenizer.edit(offset, 0, "\"");
+		assertSameAsFresh(tokenizer);
+		assertEquals(tokenizer.getText().length(), tokenizer.getDamageEnd());
+		tokenizer.edit(offset, 1, "");
+		assertSameAsFresh(tokenizer);
+		assertEquals(script.replace("s500", "srenamed"), tokenizer.getText());
+	}
+	
+	@Test
+	public void testRandomEdits() throws Exception {
+		String[] pieces = { "\"", "'", "#", "\n", "x", "/*", "*/", "//", " ", "##", "{", "1.5e" };
+		Random random = new Random(43);
+		IncrementalTokenizer tokenizer = new IncrementalTokenizer(script(40));
+		for (int i = 0; i < 300; i++) {
+			int length = tokenizer.getText().length();
+			int offset = random.nextInt(length + 1);
+			int removed = random.nextInt(Math.min(4, length - offset) + 1);
+			tokenizer.edit(offset, removed, pieces[random.nextInt(pieces.length)]);
+			assertSameAsFresh(tokenizer);
+		}
+	}
+}
@@ -1,6 +1,9 @@
 package cfml.parsing;
 
+import static org.junit.Assert.assertEquals;
+
 import java.io.IOException;
+import java.io.StringReader;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -56,4 +59,62 @@ public class TestPoundSignFilterStream {
 			
 		}
 	}
+	
+	private static String filter(PoundSignFilterStream psf, int chunk) throws IOException {
+		StringBuilder sb = new StringBuilder();
+		char[] buffer = new char[chunk];
+		int read;
+		while ((read = psf.read(buffer, 0, chunk)) != -1) {
+			sb.append(buffer, 0, read);
+		}
+		return sb.toString();
+	}
+	
+	@Test
+	public void testFilteredText() throws IOException {
+		String[][] cases = { { "writeoutput( \"##\" );", "writeoutput( \"#\" );" },
+				{ "writeoutput( \"#a#\" );", "writeoutput( a );" },
+				{ "writeoutput( \"more text#a#more text\" );", "writeoutput( \"more text\"&a&\"more text\" );" },
+				{ "x = 'it''s' & \"#f('#y#')#\"; // \"#z#\"\n/* '#w#' */ y",
+						"x = 'it''s' & f(y); // \"#z#\"\n/* '#w#' */ y" } };
+		for (String[] test : cases) {
+			for (int chunk : new int[] { 1, 5, 1024 }) {
+				assertEquals(test[1], filter(new PoundSignFilterStream(new StringReader(test[0])), chunk));
+			}
+			PoundSignFilterStream psf = new PoundSignFilterStream(new StringReader(test[0]));
+			StringBuilder sb = new StringBuilder();
+			int c;
+			while ((c = psf.read()) != -1) {
+				sb.append((char) c);
+			}
+			assertEquals(test[1], sb.toString());
+			assertEquals(test[1].length() - test[0].length(), psf.getAdded());
+		}
+		
+		// longer than a block of input
+		StringBuilder input = new StringBuilder();
+		StringBuilder output = new StringBuilder();
+		for (int i = 0; i < 2000; i++) {
+			input.append("x").append(i).append(" = \"#a#\"; // \"#b#\"\n");
+			output.append("x").append(i).append(" = a; // \"#b#\"\n");
+		}
+		assertEquals(output.toString(), filter(new PoundSignFilterStream(new StringReader(input.toString())), 1000));
+	}
+	
+	@Test
+	public void testInputOffsets() throws IOException {
+		String input = "writeoutput( \"more text#a#more text\" ); \"#b#\"";
+		PoundSignFilterStream psf = new PoundSignFilterStream(new StringReader(input));
+		String output = filter(psf, 1024);
+		assertEquals("writeoutput( \"more text\"&a&\"more text\" ); b", output);
+		for (int i = 0; i < output.length(); i++) {
+			char c = output.charAt(i);
+			if (c != '"' && c != '&') {
+				assertEquals(c, input.charAt(psf.getInputOffset(i)));
+			}
+		}
+		// the "& before the expression maps to its pound sign
+		assertEquals(input.indexOf('#'), psf.getInputOffset(output.indexOf('&') - 1));
+		assertEquals(input.lastIndexOf('b'), psf.getInputOffset(output.length() - 1));
+	}
 }
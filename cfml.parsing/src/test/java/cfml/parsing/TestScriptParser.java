@@ -56,6 +56,16 @@ public class TestScriptParser {
 		assertNotNull(scriptStatement);
 	}
 	
+	@Test
+	public void testParseScriptWithoutDictionary() throws Exception {
+		// script parsing never needs the dictionary, so a parser pointed at a missing one still works
+		CFMLParser parser = new CFMLParser("does/not/exist", "nodictionary");
+		CFScriptStatement statement = parser.parseScript("var x = 1; y = x + 5;");
+		assertNotNull(statement);
+		assertNotNull(parser.parseCFExpression("x + 1", null));
+		assertEquals(0, parser.getMessages().size());
+	}
+	
 	@Test
 	public void testParseScriptMissingSemiColon() {
 		String script = "var x = 1; y = 5 createObject('java','java.lang.String');";
@@ -0,0 +1,48 @@
+package cfml.parsing;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.Token;
+import org.junit.Test;
+
+import cfml.CFSCRIPTLexer;
+import cfml.parsing.util.ScriptTokenizer;
+import cfml.parsing.util.TokenBuffer;
+
+public class TestScriptTokenizer {
+	
+	private static final String SCRIPT = "component {\n\t// a comment\n\tfunction f(a) {\n"
+			+ "\t\tvar s = \"x#a#y\" & 'q';\n\t\t/* block */ return s <= 10;\n\t}\n}";
+	
+	@Test
+	public void testSameAsTokenStream() throws Exception {
+		CommonTokenStream stream = new CFMLParser().createTokenStream(SCRIPT);
+		stream.fill();
+		TokenBuffer buffer = new CFMLParser().tokenize(SCRIPT);
+		assertEquals(stream.getTokens().size() - 1, buffer.size());
+		for (int i = 0; i < buffer.size(); i++) {
+			Token token = stream.get(i);
+			assertEquals(token.getType(), buffer.getType(i));
+			assertEquals(token.getStartIndex(), buffer.getStart(i));
+			assertEquals(token.getStopIndex(), buffer.getStop(i));
+			assertEquals(token.getChannel(), buffer.getChannel(i));
+		}
+		assertEquals(CFSCRIPTLexer.COMPONENT, buffer.getType(0));
+		assertEquals(buffer.size() * TokenBuffer.STRIDE, buffer.toArray().length);
+	}
+	
+	@Test
+	public void testReuse() throws Exception {
+		ScriptTokenizer tokenizer = new ScriptTokenizer();
+		TokenBuffer buffer = new TokenBuffer(1);
+		int[] first = tokenizer.tokenize(SCRIPT, buffer).toArray();
+		assertSame(buffer, tokenizer.tokenize(new StringBuilder("x = 1;"), buffer));
+		assertEquals(4, buffer.size());
+		assertEquals(CFSCRIPTLexer.IDENTIFIER, buffer.getType(0));
+		assertEquals(5, buffer.getStart(3));
+		assertArrayEquals(first, tokenizer.tokenize(SCRIPT, buffer).toArray());
+	}
+}
@@ -0,0 +1,68 @@
+package cfml.parsing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.junit.Test;
+
+import cfml.CFSCRIPTParser;
+import cfml.parsing.util.SignificantTokenStream;
+
+public class TestSignificantTokenStream {
+	
+	private static void assertSameParse(String script) throws Exception {
+		CFMLParser parser = new CFMLParser();
+		CommonTokenStream tokens = parser.createTokenStream(script);
+		String expected = parser.parseScriptBlockContext(tokens).toStringTree(new CFSCRIPTParser(tokens));
+		int errors = parser.getMessages().size();
+		
+		CFMLParser significant = new CFMLParser();
+		significant.setSignificantTokensOnly(true);
+		CommonTokenStream significantTokens = significant.createTokenStream(script);
+		assertTrue(significantTokens instanceof SignificantTokenStream);
+		String actual = significant.parseScriptBlockContext(significantTokens)
+				.toStringTree(new CFSCRIPTParser(significantTokens));
+		assertEquals(script, expected, actual);
+		assertEquals(script, errors, significant.getMessages().size());
+		assertTrue(significantTokens.size() <= tokens.size());
+	}
+	
+	@Test
+	public void testStatementEnds() throws Exception {
+		String script = "x = 1\ny = 2 // note\nz = 3 /* block */\nreturn x\n";
+		CFMLParser parser = new CFMLParser();
+		parser.setSignificantTokensOnly(true);
+		SignificantTokenStream tokens = (SignificantTokenStream) parser.createTokenStream(script);
+		tokens.fill();
+		// x = 1 y = 2 z = 3 return x EOF
+		assertEquals(12, tokens.size());
+		assertTrue(tokens.isNewlineAfter(2));
+		// a comment comes first
+		assertFalse(tokens.isNewlineAfter(5));
+		assertFalse(tokens.isNewlineAfter(8));
+		assertTrue(tokens.isNewlineAfter(10));
+		assertFalse(tokens.isNewlineAfter(0));
+		
+		assertSameParse(script);
+		assertSameParse("component {\n\tfunction f() {\n\t\tvar a = 1\n\t\tbreak\n\t\treturn a\n\t}\n}");
+		assertSameParse("do { x++ } while (x < 10)\nfor (i = 0; i < 2; i++) {}");
+	}
+	
+	@Test
+	public void testFiles() throws Exception {
+		File[] files = new File("src/test/resources/cfml").listFiles();
+		int parsed = 0;
+		for (File file : files) {
+			if (file.getName().endsWith(".cfc")) {
+				assertSameParse(new String(Files.readAllBytes(file.toPath()), "UTF-8"));
+				parsed++;
+			}
+		}
+		assertTrue(parsed > 10);
+	}
+}
@@ -0,0 +1,85 @@
+package cfml.parsing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.junit.Test;
+
+import cfml.CFSCRIPTParser;
+import cfml.CFSCRIPTParser.ScriptBlockContext;
+import cfml.parsing.cfscript.script.CFScriptStatement;
+
+public class TestStagedErrorStrategy {
+	
+	private static String component(String broken) {
+		StringBuilder sb = new StringBuilder("component {\n");
+		for (int i = 0; i < 20; i++) {
+			sb.append("\tfunction f").append(i).append("(a) {\n\t\tvar x = a.b[").append(i).append("] + 1;\n");
+			if (i == 10) {
+				sb.append(broken);
+			}
+			sb.append("\t\treturn x;\n\t}\n");
+		}
+		return sb.append("}\n").toString();
+	}
+	
+	/**
+	 * @return the tree the old whole script second stage made of the script, and the number of errors it reported
+	 */
+	private static String parseLL(String script, int[] errors) throws Exception {
+		CFMLParser cfmlParser = new CFMLParser();
+		CFSCRIPTParser parser = new CFSCRIPTParser(cfmlParser.createTokenStream(script));
+		parser.removeErrorListeners();
+		parser.addErrorListener(cfmlParser.errorReporter);
+		parser.setErrorHandler(new DefaultErrorStrategy());
+		parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+		String tree = parser.scriptBlock().toStringTree(parser);
+		errors[0] = cfmlParser.getMessages().size();
+		return tree;
+	}
+	
+	private static void assertSameAsLL(String script) throws Exception {
+		int[] errors = new int[1];
+		String expected = parseLL(script, errors);
+		CFMLParser cfmlParser = new CFMLParser();
+		CommonTokenStream tokens = cfmlParser.createTokenStream(script);
+		ScriptBlockContext tree = cfmlParser.parseScriptBlockContext(tokens);
+		assertEquals(expected, tree.toStringTree(new CFSCRIPTParser(tokens)));
+		assertEquals(errors[0], cfmlParser.getMessages().size());
+	}
+	
+	@Test
+	public void testBrokenFunction() throws Exception {
+		String script = component("\t\tx = ;\n");
+		CFSCRIPTParser parser = new CFSCRIPTParser(new CFMLParser().createTokenStream(script));
+		parser.removeErrorListeners();
+		parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+		StagedErrorStrategy strategy = new StagedErrorStrategy();
+		parser.setErrorHandler(strategy);
+		parser.scriptBlock();
+		assertEquals(1, strategy.getReparsedElements());
+		
+		assertSameAsLL(script);
+		CFMLParser cfmlParser = new CFMLParser();
+		CFScriptStatement statement = cfmlParser.parseScript(script);
+		assertTrue(cfmlParser.getMessages().size() > 0);
+		for (int i = 0; i < 20; i++) {
+			assertTrue(statement.Decompile(0).contains("function f" + i + "("));
+		}
+	}
+	
+	@Test
+	public void testUnchanged() throws Exception {
+		// parses in SLL mode
+		assertSameAsLL(component(""));
+		// an error outside of any function, the whole script is parsed again
+		assertSameAsLL(component("").replace("component {", "component { ]"));
+		assertSameAsLL(component("\t\tif (x {\n"));
+		// plain scripts
+		assertSameAsLL("x = 1;\ny = ;\nz = 3;\n");
+		assertSameAsLL("x = 1;\n}\nz = 3;\n");
+	}
+}